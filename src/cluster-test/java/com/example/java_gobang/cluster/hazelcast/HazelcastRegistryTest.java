@@ -0,0 +1,323 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.ClusterNode;
+import com.example.java_gobang.cluster.MatchTicket;
+import com.example.java_gobang.cluster.Presence;
+import com.example.java_gobang.cluster.RoomLocation;
+import com.example.java_gobang.cluster.RoomRequest;
+import com.example.java_gobang.game.Leaderboard;
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserCache;
+import com.example.java_gobang.model.UserMapper;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+//在同一个进程里启动嵌入式的 Hazelcast 成员，代替真正的多节点部署
+//a、b 两个成员一直在线 (a 先启动，是最老的成员，负责清理下线节点的数据)；测试节点下线的时候另外启动一个成员再关掉它
+//用的是 HazelcastClusterConfig 生成的配置，集群名带随机后缀，不会和同一台机器上的其他集群连到一起
+public class HazelcastRegistryTest {
+    private static final int PORT = 5801;
+    //最多等多久，Hazelcast 的数据迁移和成员事件都是异步的
+    private static final long TIMEOUT_MS = 30000;
+
+    private static final String CLUSTER_NAME = "java_gobang-test-" + UUID.randomUUID();
+
+    private static HazelcastInstance a;
+    private static HazelcastInstance b;
+
+    @BeforeAll
+    public static void startMembers() {
+        a = startMember("node-a");
+        b = startMember("node-b");
+        assertEquals(2, b.getCluster().getMembers().size());
+    }
+
+    @AfterAll
+    public static void stopMembers() {
+        b.shutdown();
+        a.shutdown();
+    }
+
+    @Test
+    public void claimAndPutBackAcrossMembers() {
+        HazelcastMatchQueue queueA = matchQueue(a);
+        HazelcastMatchQueue queueB = matchQueue(b);
+        assertTrue(queueA.isCoordinator());
+        assertFalse(queueB.isCoordinator());
+
+        MatchTicket ticket = new MatchTicket(user(101, 1200), 1000, "node-b");
+        assertTrue(queueB.offer(ticket));
+        //同一个玩家不能排两次队
+        assertFalse(queueB.offer(new MatchTicket(user(101, 1200), 2000, "node-b")));
+        assertEquals(1, queueA.size());
+        assertEquals(ticket, queueA.ordered().iterator().next());
+
+        //一条记录只能被摘下来一次
+        assertTrue(queueA.claim(ticket));
+        assertFalse(queueA.claim(ticket));
+        assertEquals(0, queueB.size());
+
+        //放回去之后另一个成员能看到，排队时间不变
+        queueA.putBack(ticket);
+        assertEquals(ticket, queueB.ordered().iterator().next());
+
+        //退出之后重新排队：旧记录 claim 失败，不会把新记录摘掉
+        assertEquals(ticket, queueB.remove(101));
+        MatchTicket again = new MatchTicket(user(101, 1200), 3000, "node-b");
+        assertTrue(queueB.offer(again));
+        assertFalse(queueA.claim(ticket));
+        assertTrue(queueA.claim(again));
+    }
+
+    @Test
+    public void roomRequestReachesOtherMembers() throws InterruptedException {
+        HazelcastMatchQueue queueA = matchQueue(a);
+        HazelcastMatchQueue queueB = matchQueue(b);
+        BlockingQueue<RoomRequest> received = new LinkedBlockingQueue<>();
+        queueB.onRoomRequest(received::add);
+
+        //负责配对的 a 请玩家所在的 b 建房间
+        MatchTicket ticket1 = new MatchTicket(user(501, 1300), 1000, "node-b");
+        MatchTicket ticket2 = new MatchTicket(user(502, 1310), 2000, "node-a");
+        queueA.requestRoom(new RoomRequest("node-b", ticket1, ticket2));
+        RoomRequest request = received.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(request);
+        assertEquals("node-b", request.getHostNodeId());
+        assertEquals(ticket1, request.getTicket1());
+        assertEquals(ticket2, request.getTicket2());
+
+        //电脑对手的房间没有 ticket2
+        queueA.requestRoom(new RoomRequest("node-b", ticket1, null));
+        request = received.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(request);
+        assertNull(request.getTicket2());
+    }
+
+    @Test
+    public void roomIdsAreUniqueAcrossMembers() {
+        HazelcastRoomIdAllocator allocatorA = roomIdAllocator(a, 4);
+        HazelcastRoomIdAllocator allocatorB = roomIdAllocator(b, 4);
+        long floor = System.currentTimeMillis() << 10;
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            long idA = allocatorA.next(floor);
+            long idB = allocatorB.next(floor);
+            assertTrue(idA >= floor && idB >= floor);
+            assertTrue(ids.add(idA));
+            assertTrue(ids.add(idB));
+        }
+        //下限往后挪了 (比如整个集群重启过)，之后领到的号都不小于新的下限
+        long later = floor + 1000000;
+        long idA = allocatorA.next(later);
+        long idB = allocatorB.next(later);
+        assertTrue(ids.add(idA) && ids.add(idB));
+        //手里剩下的那一段用完之前还是旧的号，下一段一定不小于新的下限
+        for (int i = 0; i < 4; i++) {
+            idA = allocatorA.next(later);
+        }
+        assertTrue(idA >= later);
+    }
+
+    @Test
+    public void registerLocateUnregisterAcrossMembers() {
+        HazelcastRoomRegistry registryA = roomRegistry(a);
+        HazelcastRoomRegistry registryB = roomRegistry(b);
+
+        registryA.register(new RoomLocation(11, "node-a", "http://a", 201, 202));
+        RoomLocation located = registryB.locate(11);
+        assertNotNull(located);
+        assertEquals("node-a", located.getNodeId());
+        assertEquals("http://a", located.getUrl());
+        assertEquals(11, registryB.locateByUserId(202).getRoomId());
+
+        //玩家 201 匹配进了新的房间，释放旧房间不能把新房间的映射删掉
+        registryB.register(new RoomLocation(12, "node-b", "http://b", 201, 203));
+        registryB.unregister(11);
+        assertNull(registryA.locate(11));
+        assertNull(registryA.locateByUserId(202));
+        assertEquals(12, registryA.locateByUserId(201).getRoomId());
+
+        registryA.unregister(12);
+        assertNull(registryB.locateByUserId(201));
+        assertNull(registryB.locateByUserId(203));
+    }
+
+    @Test
+    public void departedMemberIsPurged() {
+        HazelcastRoomRegistry registryA = roomRegistry(a);
+        HazelcastMatchQueue queueA = matchQueue(a);
+        HazelcastPresenceRegistry presenceA = presenceRegistry(a);
+        //注册监听，保证清理逻辑在 b 上也有；负责清理的只有最老的成员 a
+        roomRegistry(b);
+        matchQueue(b);
+        presenceRegistry(b);
+
+        HazelcastInstance c = startMember("node-c");
+        try {
+            roomRegistry(c).register(new RoomLocation(21, "node-c", "http://c", 301, 302));
+            matchQueue(c).offer(new MatchTicket(user(303, 1000), 1000, "node-c"));
+            presenceRegistry(c).enter(301, new Presence("node-c", Presence.Place.ROOM, "s1"));
+            //别的节点上的数据不受影响
+            registryA.register(new RoomLocation(22, "node-a", "http://a", 311, 312));
+            presenceA.enter(311, new Presence("node-a", Presence.Place.ROOM, "s2"));
+        } finally {
+            c.shutdown();
+        }
+
+        await(() -> registryA.locate(21) == null && registryA.locateByUserId(301) == null
+                && registryA.locateByUserId(302) == null);
+        await(() -> queueA.size() == 0);
+        await(() -> presenceA.get(301) == null);
+        assertNotNull(registryA.locate(22));
+        assertEquals(22, registryA.locateByUserId(311).getRoomId());
+        assertNotNull(presenceA.get(311));
+
+        registryA.unregister(22);
+        presenceA.exit(311, presenceA.get(311));
+    }
+
+    @Test
+    public void scoreUpdatesReachEveryMember() {
+        Leaderboard leaderboardA = leaderboard();
+        Leaderboard leaderboardB = leaderboard();
+        UserCache userCacheA = mock(UserCache.class);
+        UserCache userCacheB = mock(UserCache.class);
+        HazelcastScoreFeed feedA = scoreFeed(a, leaderboardA, userCacheA);
+        HazelcastScoreFeed feedB = scoreFeed(b, leaderboardB, userCacheB);
+        try {
+            //a 上写回了一局：a 直接刷新，b 收到广播之后更新排行榜，缓存失效 (下次回源)
+            User latest = user(401, 1234);
+            latest.setTotalCount(3);
+            feedA.publish(Collections.singletonList(latest));
+            assertEquals(1234, leaderboardA.rating(401).getScore());
+            verify(userCacheA).refresh(Collections.singletonList(latest));
+            await(() -> leaderboardB.rating(401) != null);
+            assertEquals(1234, leaderboardB.rating(401).getScore());
+            assertEquals(3, leaderboardB.rating(401).getGames());
+            verify(userCacheB, timeout(TIMEOUT_MS)).invalidate(Collections.singletonList(401));
+
+            //晚到的旧数据 (局数更少) 不会把新分数覆盖掉
+            User stale = user(401, 1100);
+            stale.setTotalCount(2);
+            feedB.publish(Collections.singletonList(stale));
+            User newer = user(401, 1250);
+            newer.setTotalCount(4);
+            feedB.publish(Collections.singletonList(newer));
+            await(() -> leaderboardA.rating(401).getScore() == 1250);
+            assertEquals(1250, leaderboardB.rating(401).getScore());
+
+            feedB.invalidate(Collections.singletonList(402));
+            verify(userCacheA, timeout(TIMEOUT_MS)).invalidate(Collections.singletonList(402));
+        } finally {
+            leaderboardA.stop();
+            leaderboardB.stop();
+        }
+    }
+
+    private static HazelcastInstance startMember(String nodeId) {
+        ClusterNode node = new ClusterNode();
+        ReflectionTestUtils.setField(node, "nodeId", nodeId);
+        HazelcastClusterConfig clusterConfig = new HazelcastClusterConfig();
+        ReflectionTestUtils.setField(clusterConfig, "clusterName", CLUSTER_NAME);
+        ReflectionTestUtils.setField(clusterConfig, "port", PORT);
+        //三个成员最多用到 PORT + 2 (端口被占用的时候自动往后找)，多列几个
+        String[] members = new String[5];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = "127.0.0.1:" + (PORT + i);
+        }
+        ReflectionTestUtils.setField(clusterConfig, "members", members);
+        return Hazelcast.newHazelcastInstance(clusterConfig.hazelcastConfig(node));
+    }
+
+    private static HazelcastMatchQueue matchQueue(HazelcastInstance hazelcast) {
+        HazelcastMatchQueue queue = new HazelcastMatchQueue();
+        ReflectionTestUtils.setField(queue, "hazelcast", hazelcast);
+        queue.init();
+        return queue;
+    }
+
+    private static HazelcastRoomRegistry roomRegistry(HazelcastInstance hazelcast) {
+        HazelcastRoomRegistry registry = new HazelcastRoomRegistry();
+        ReflectionTestUtils.setField(registry, "hazelcast", hazelcast);
+        registry.init();
+        return registry;
+    }
+
+    private static HazelcastPresenceRegistry presenceRegistry(HazelcastInstance hazelcast) {
+        HazelcastPresenceRegistry registry = new HazelcastPresenceRegistry();
+        ReflectionTestUtils.setField(registry, "hazelcast", hazelcast);
+        registry.init();
+        return registry;
+    }
+
+    private static HazelcastScoreFeed scoreFeed(HazelcastInstance hazelcast, Leaderboard leaderboard, UserCache userCache) {
+        HazelcastScoreFeed feed = new HazelcastScoreFeed();
+        ReflectionTestUtils.setField(feed, "hazelcast", hazelcast);
+        ReflectionTestUtils.setField(feed, "leaderboard", leaderboard);
+        ReflectionTestUtils.setField(feed, "userCache", userCache);
+        feed.init();
+        return feed;
+    }
+
+    private static HazelcastRoomIdAllocator roomIdAllocator(HazelcastInstance hazelcast, int blockSize) {
+        HazelcastRoomIdAllocator allocator = new HazelcastRoomIdAllocator();
+        ReflectionTestUtils.setField(allocator, "hazelcast", hazelcast);
+        ReflectionTestUtils.setField(allocator, "blockSize", blockSize);
+        allocator.init();
+        return allocator;
+    }
+
+    //空库上的排行榜，分数全靠推送
+    private static Leaderboard leaderboard() {
+        Leaderboard leaderboard = new Leaderboard();
+        ReflectionTestUtils.setField(leaderboard, "userMapper", mock(UserMapper.class));
+        ReflectionTestUtils.setField(leaderboard, "minScore", -100000);
+        ReflectionTestUtils.setField(leaderboard, "maxScore", 100000);
+        ReflectionTestUtils.setField(leaderboard, "maxTop", 100);
+        ReflectionTestUtils.setField(leaderboard, "loadRetryMs", 5000L);
+        leaderboard.start();
+        return leaderboard;
+    }
+
+    private static User user(int userId, int score) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUsername("user" + userId);
+        user.setScore(score);
+        return user;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.ClusterNode;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.HazelcastInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+//多节点部署：每个游戏节点同时是一个嵌入式的 Hazelcast 成员，房间目录、在线状态和匹配队列放在分布式的 Map 里
+//Spring Boot 看到 Config 之后会自动创建 HazelcastInstance
+//
+//成员之间用 TCP/IP 直接发现，不用组播；members 为空的话只有自己一个成员
+@Configuration
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "hazelcast")
+public class HazelcastClusterConfig {
+    //成员上的属性：对应的游戏节点 id，节点下线之后按它清理这个节点留下的数据
+    static final String NODE_ID_ATTRIBUTE = "gobang.node-id";
+
+    @Value("${gobang.cluster.hazelcast.cluster-name:java_gobang}")
+    private String clusterName;
+
+    @Value("${gobang.cluster.hazelcast.port:5701}")
+    private int port;
+
+    //其他成员的地址，例如 10.0.0.5:5701,10.0.0.6:5701
+    @Value("${gobang.cluster.hazelcast.members:}")
+    private String[] members;
+
+    @Bean
+    public Config hazelcastConfig(ClusterNode clusterNode) {
+        Config config = new Config();
+        config.setClusterName(clusterName);
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        config.getNetworkConfig().setPort(port).setPortAutoIncrement(true);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).setMembers(Arrays.asList(members));
+        config.getMemberAttributeConfig().setAttribute(NODE_ID_ATTRIBUTE, clusterNode.getNodeId());
+        return config;
+    }
+
+    //当前成员是不是集群里最老的成员；负责配对和清理下线节点数据的都是它，集群里任何时刻只有一个
+    static boolean isOldestMember(HazelcastInstance hazelcast) {
+        Iterator<Member> members = hazelcast.getCluster().getMembers().iterator();
+        return members.hasNext() && members.next().localMember();
+    }
+}
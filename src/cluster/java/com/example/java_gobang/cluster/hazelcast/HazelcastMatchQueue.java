@@ -0,0 +1,116 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.MatchQueue;
+import com.example.java_gobang.cluster.MatchTicket;
+import com.example.java_gobang.cluster.RoomRequest;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicates;
+import com.hazelcast.topic.ITopic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//多节点部署的匹配队列
+//排队记录放在一个按 userId 分区的分布式 Map 里，各个节点直接加入/退出；
+//只有最老的成员负责配对，每一轮把所有记录拉过来排一次序，claim 用 remove(key, value) 保证一条记录只会被摘下来一次
+//建房间的请求和匹配成功都通过 Topic 广播：玩家的大厅连接所在的节点收到请求之后建房间，再广播匹配成功通知玩家
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "hazelcast")
+public class HazelcastMatchQueue implements MatchQueue {
+    private static final Logger log = LoggerFactory.getLogger(HazelcastMatchQueue.class);
+
+    @Resource
+    private HazelcastInstance hazelcast;
+
+    private IMap<Integer, MatchTicket> tickets;
+    private ITopic<Integer> matched;
+    private ITopic<RoomRequest> roomRequests;
+
+    @PostConstruct
+    public void init() {
+        tickets = hazelcast.getMap("gobang.match-tickets");
+        matched = hazelcast.getTopic("gobang.matched");
+        roomRequests = hazelcast.getTopic("gobang.room-requests");
+        hazelcast.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent event) {
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent event) {
+                //节点下线之后它上面排队的玩家已经收不到通知了
+                String nodeId = event.getMember().getAttribute(HazelcastClusterConfig.NODE_ID_ATTRIBUTE);
+                if (nodeId != null && HazelcastClusterConfig.isOldestMember(hazelcast)) {
+                    tickets.removeAll(Predicates.equal("nodeId", nodeId));
+                    log.info("节点 {} 已下线，清除了它上面玩家的排队记录", nodeId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean offer(MatchTicket ticket) {
+        return tickets.putIfAbsent(ticket.getUserId(), ticket) == null;
+    }
+
+    @Override
+    public MatchTicket remove(int userId) {
+        return tickets.remove(userId);
+    }
+
+    @Override
+    public boolean claim(MatchTicket ticket) {
+        return tickets.remove(ticket.getUserId(), ticket);
+    }
+
+    @Override
+    public void putBack(MatchTicket ticket) {
+        tickets.putIfAbsent(ticket.getUserId(), ticket);
+    }
+
+    @Override
+    public Iterable<MatchTicket> ordered() {
+        //拉一份快照在本地排序；之后被别的节点删掉的记录在 claim 的时候会失败
+        return new TreeSet<>(tickets.values());
+    }
+
+    @Override
+    public int size() {
+        return tickets.size();
+    }
+
+    @Override
+    public boolean isCoordinator() {
+        return HazelcastClusterConfig.isOldestMember(hazelcast);
+    }
+
+    @Override
+    public void publishMatched(int userId) {
+        matched.publish(userId);
+    }
+
+    @Override
+    public void onMatched(IntConsumer listener) {
+        matched.addMessageListener(message -> listener.accept(message.getMessageObject()));
+    }
+
+    @Override
+    public void requestRoom(RoomRequest request) {
+        roomRequests.publish(request);
+    }
+
+    @Override
+    public void onRoomRequest(Consumer<RoomRequest> listener) {
+        roomRequests.addMessageListener(message -> listener.accept(message.getMessageObject()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.Presence;
+import com.example.java_gobang.cluster.PresenceRegistry;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+//多节点部署的在线状态目录
+//登记用 putIfAbsent，下线用 remove(key, value)，都是在 key 所在的分区上原子执行的
+//节点下线之后它上面的连接都断了，由最老的成员把这些玩家标记为不在线
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "hazelcast")
+public class HazelcastPresenceRegistry implements PresenceRegistry {
+    private static final Logger log = LoggerFactory.getLogger(HazelcastPresenceRegistry.class);
+
+    @Resource
+    private HazelcastInstance hazelcast;
+
+    private IMap<Integer, Presence> presences;
+
+    @PostConstruct
+    public void init() {
+        presences = hazelcast.getMap("gobang.presences");
+        hazelcast.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent event) {
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent event) {
+                String nodeId = event.getMember().getAttribute(HazelcastClusterConfig.NODE_ID_ATTRIBUTE);
+                if (nodeId != null && HazelcastClusterConfig.isOldestMember(hazelcast)) {
+                    presences.removeAll(Predicates.equal("nodeId", nodeId));
+                    log.info("节点 {} 已下线，清除了它上面玩家的在线状态", nodeId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean enter(int userId, Presence presence) {
+        return presences.putIfAbsent(userId, presence) == null;
+    }
+
+    @Override
+    public boolean exit(int userId, Presence presence) {
+        return presences.remove(userId, presence);
+    }
+
+    @Override
+    public Presence get(int userId) {
+        return presences.get(userId);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.RoomIdAllocator;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IFunction;
+import com.hazelcast.cp.IAtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+//多节点部署：所有节点共用一个计数器，每个节点一次从里面领一段房间号，用完再领，不用每建一个房间都访问一次集群
+//领号的时候计数器同样不小于 floor，整个集群重启、计数器丢了之后也不会发出以前用过的房间号
+//没有打开 CP 子系统的时候 Hazelcast 会提示这个计数器运行在 UNSAFE 模式，多个成员同时宕机才可能丢
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "hazelcast")
+public class HazelcastRoomIdAllocator implements RoomIdAllocator {
+    @Resource
+    private HazelcastInstance hazelcast;
+
+    //一次领多少个房间号
+    @Value("${gobang.cluster.room-id-block:1024}")
+    private int blockSize;
+
+    private IAtomicLong counter;
+    //本节点手里还没用的房间号 [nextRoomId, endRoomId]
+    private long nextRoomId = 1;
+    private long endRoomId;
+
+    @PostConstruct
+    public void init() {
+        counter = hazelcast.getCPSubsystem().getAtomicLong("gobang.room-ids");
+    }
+
+    @Override
+    public synchronized long next(long floor) {
+        if (nextRoomId > endRoomId) {
+            endRoomId = counter.alterAndGet(new Reserve(floor, blockSize));
+            nextRoomId = endRoomId - blockSize + 1;
+        }
+        return nextRoomId++;
+    }
+
+    //在计数器所在的成员上执行：领走 (max(当前值, floor - 1), + count] 这一段
+    private static class Reserve implements IFunction<Long, Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final long floor;
+        private final int count;
+
+        Reserve(long floor, int count) {
+            this.floor = floor;
+            this.count = count;
+        }
+
+        @Override
+        public Long apply(Long last) {
+            return Math.max(last, floor - 1) + count;
+        }
+    }
+}
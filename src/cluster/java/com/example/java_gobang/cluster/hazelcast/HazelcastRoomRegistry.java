@@ -0,0 +1,90 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.RoomLocation;
+import com.example.java_gobang.cluster.RoomRegistry;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+//多节点部署的房间目录
+//房间的位置和玩家 -> 房间的映射分别放在两个分布式 Map 里；只在创建、释放房间和路由的时候访问
+//节点下线之后它的房间都没了，由最老的成员把这些房间从目录里删掉
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "hazelcast")
+public class HazelcastRoomRegistry implements RoomRegistry {
+    private static final Logger log = LoggerFactory.getLogger(HazelcastRoomRegistry.class);
+
+    @Resource
+    private HazelcastInstance hazelcast;
+
+    private IMap<Long, RoomLocation> rooms;
+    private IMap<Integer, Long> userIdToRoomId;
+
+    @PostConstruct
+    public void init() {
+        rooms = hazelcast.getMap("gobang.rooms");
+        userIdToRoomId = hazelcast.getMap("gobang.user-rooms");
+        hazelcast.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent event) {
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent event) {
+                if (HazelcastClusterConfig.isOldestMember(hazelcast)) {
+                    purge(event.getMember().getAttribute(HazelcastClusterConfig.NODE_ID_ATTRIBUTE));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void register(RoomLocation location) {
+        //先登记房间再登记玩家，别的节点按玩家查到房间 id 的时候房间一定已经在了
+        rooms.set(location.getRoomId(), location);
+        userIdToRoomId.set(location.getUserId1(), location.getRoomId());
+        userIdToRoomId.set(location.getUserId2(), location.getRoomId());
+    }
+
+    @Override
+    public void unregister(long roomId) {
+        RoomLocation location = rooms.remove(roomId);
+        if (location != null) {
+            //玩家可能已经进了新的房间，只删除仍然指向这个房间的映射
+            userIdToRoomId.remove(location.getUserId1(), roomId);
+            userIdToRoomId.remove(location.getUserId2(), roomId);
+        }
+    }
+
+    @Override
+    public RoomLocation locate(long roomId) {
+        return rooms.get(roomId);
+    }
+
+    @Override
+    public RoomLocation locateByUserId(int userId) {
+        Long roomId = userIdToRoomId.get(userId);
+        return roomId == null ? null : rooms.get(roomId);
+    }
+
+    private void purge(String nodeId) {
+        if (nodeId == null) {
+            return;
+        }
+        int count = 0;
+        for (RoomLocation location : rooms.values(Predicates.equal("nodeId", nodeId))) {
+            unregister(location.getRoomId());
+            count++;
+        }
+        log.info("节点 {} 已下线，从房间目录中删除了它的 {} 个房间", nodeId, count);
+    }
+}
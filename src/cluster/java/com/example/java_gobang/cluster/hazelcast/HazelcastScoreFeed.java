@@ -0,0 +1,65 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.cluster.ScoreFeed;
+import com.example.java_gobang.game.Leaderboard;
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserCache;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.List;
+
+//多节点部署：本机直接更新，再通过 topic 广播给其他节点
+//其他节点更新排行榜 (它们的 GameResultWriter 也用排行榜里的分数算 Elo)，用户缓存直接失效：
+//缓存里的 User 要带密码给登录用，广播里不带，下次访问时回源就是最新的
+//同一个节点发的消息按顺序到达，不同节点之间没有顺序，旧数据晚到的情况由排行榜按局数丢弃
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "hazelcast")
+public class HazelcastScoreFeed implements ScoreFeed {
+    @Resource
+    private HazelcastInstance hazelcast;
+
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private Leaderboard leaderboard;
+
+    private ITopic<ScoreUpdate> topic;
+
+    @PostConstruct
+    public void init() {
+        topic = hazelcast.getTopic("gobang.scores");
+        topic.addMessageListener(this::onMessage);
+    }
+
+    @Override
+    public void publish(List<User> latest) {
+        userCache.refresh(latest);
+        leaderboard.update(latest);
+        topic.publish(ScoreUpdate.of(latest));
+    }
+
+    @Override
+    public void invalidate(List<Integer> userIds) {
+        userCache.invalidate(userIds);
+        topic.publish(ScoreUpdate.invalidate(userIds));
+    }
+
+    private void onMessage(Message<ScoreUpdate> message) {
+        //自己发的在 publish 里已经处理过了
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) {
+            return;
+        }
+        ScoreUpdate update = message.getMessageObject();
+        userCache.invalidate(update.getUserIds());
+        if (!update.isInvalidateOnly()) {
+            leaderboard.update(update.getUsers());
+        }
+    }
+}
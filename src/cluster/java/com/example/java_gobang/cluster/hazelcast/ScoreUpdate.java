@@ -0,0 +1,73 @@
+package com.example.java_gobang.cluster.hazelcast;
+
+import com.example.java_gobang.model.User;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+//通过 Hazelcast 的 topic 发给别的节点的一批分数变化
+//只带排行榜要用的字段，密码之类的不出本机；invalidateOnly 表示只有 userId，让缓存失效
+public class ScoreUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean invalidateOnly;
+    private final int[] userIds;
+    private final String[] usernames;
+    private final int[] scores;
+    private final int[] totalCounts;
+
+    private ScoreUpdate(boolean invalidateOnly, int size) {
+        this.invalidateOnly = invalidateOnly;
+        this.userIds = new int[size];
+        this.usernames = invalidateOnly ? null : new String[size];
+        this.scores = invalidateOnly ? null : new int[size];
+        this.totalCounts = invalidateOnly ? null : new int[size];
+    }
+
+    public static ScoreUpdate of(List<User> users) {
+        ScoreUpdate update = new ScoreUpdate(false, users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            update.userIds[i] = user.getUserId();
+            update.usernames[i] = user.getUsername();
+            update.scores[i] = user.getScore();
+            update.totalCounts[i] = user.getTotalCount();
+        }
+        return update;
+    }
+
+    public static ScoreUpdate invalidate(List<Integer> userIds) {
+        ScoreUpdate update = new ScoreUpdate(true, userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            update.userIds[i] = userIds.get(i);
+        }
+        return update;
+    }
+
+    public boolean isInvalidateOnly() {
+        return invalidateOnly;
+    }
+
+    public List<Integer> getUserIds() {
+        List<Integer> result = new ArrayList<>(userIds.length);
+        for (int userId : userIds) {
+            result.add(userId);
+        }
+        return result;
+    }
+
+    //还原成排行榜用的 User (没有密码和胜场)
+    public List<User> getUsers() {
+        List<User> result = new ArrayList<>(userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            User user = new User();
+            user.setUserId(userIds[i]);
+            user.setUsername(usernames[i]);
+            user.setScore(scores[i]);
+            user.setTotalCount(totalCounts[i]);
+            result.add(user);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.java_gobang.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+//生成基准测试用的棋盘局面
+//每个局面除了棋盘本身，还带上一组"探测点"：已经有子的位置，拿来调用 checkWinner
+public class BenchmarkBoards {
+    public enum Layout {
+        //随机散落，大约40%的格子有子
+        RANDOM,
+        //只在离棋盘边缘两格以内落子，探测点也都在边缘，原来的写法在这里会大量越界
+        EDGE,
+        //几乎下满，大约90%的格子有子
+        NEAR_FULL
+    }
+
+    public static class Probe {
+        public final int row;
+        public final int col;
+        public final int chess;
+
+        Probe(int row, int col, int chess) {
+            this.row = row;
+            this.col = col;
+            this.chess = chess;
+        }
+    }
+
+    //在给定的棋盘上按照布局落子，返回所有的探测点
+    public static List<Probe> fill(Board board, Layout layout, long seed) {
+        Random random = new Random(seed);
+        List<Probe> probes = new ArrayList<>();
+        for (int r = 0; r < Board.MAX_ROW; r++) {
+            for (int c = 0; c < Board.MAX_COL; c++) {
+                if (!chosen(layout, r, c, random)) {
+                    continue;
+                }
+                int chess = 1 + random.nextInt(2);
+                board.put(r, c, chess);
+                probes.add(new Probe(r, c, chess));
+            }
+        }
+        Collections.shuffle(probes, random);
+        return probes;
+    }
+
+    //生成一串轮流落子、并且谁都不会获胜的落子顺序 (下标为偶数的是玩家1，奇数的是玩家2)
+    //用来在 putChess 基准中反复下棋而不触发房间销毁
+    public static List<Probe> nonWinningGame(long seed, int maxMoves) {
+        Random random = new Random(seed);
+        List<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < Board.MAX_ROW * Board.MAX_COL; i++) {
+            cells.add(i);
+        }
+        Collections.shuffle(cells, random);
+        Board board = new ArrayBoard();
+        List<Probe> moves = new ArrayList<>();
+        int chess = 1;
+        while (moves.size() < maxMoves) {
+            Probe next = null;
+            for (Integer cell : cells) {
+                int r = cell / Board.MAX_COL;
+                int c = cell % Board.MAX_COL;
+                if (board.get(r, c) != 0) {
+                    continue;
+                }
+                board.put(r, c, chess);
+                if (board.isFive(r, c, chess)) {
+                    //这一步会赢，撤销掉换一个位置
+                    board.put(r, c, 0);
+                    continue;
+                }
+                next = new Probe(r, c, chess);
+                break;
+            }
+            if (next == null) {
+                break;
+            }
+            moves.add(next);
+            chess = chess == 1 ? 2 : 1;
+        }
+        return moves;
+    }
+
+    private static boolean chosen(Layout layout, int r, int c, Random random) {
+        switch (layout) {
+            case EDGE:
+                boolean nearEdge = r < 2 || c < 2 || r >= Board.MAX_ROW - 2 || c >= Board.MAX_COL - 2;
+                return nearEdge && random.nextInt(100) < 60;
+            case NEAR_FULL:
+                return random.nextInt(100) < 90;
+            default:
+                return random.nextInt(100) < 40;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Room.checkWinner 在不同局面下的耗时，同时对比 BitBoard 和原来的二维数组写法
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckWinnerBenchmark {
+    @Param({"RANDOM", "EDGE", "NEAR_FULL"})
+    public BenchmarkBoards.Layout layout;
+
+    @Param({"bit", "array"})
+    public String board;
+
+    private Room room;
+    private BenchmarkBoards.Probe[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Board b = "bit".equals(board) ? new BitBoard() : new ArrayBoard();
+        List<BenchmarkBoards.Probe> list = BenchmarkBoards.fill(b, layout, 42);
+        probes = list.toArray(new BenchmarkBoards.Probe[0]);
+        room = new Room(1, b, null, null, null, null, null, null, null, null);
+        User user1 = new User();
+        user1.setUserId(1);
+        User user2 = new User();
+        user2.setUserId(2);
+        room.setUser1(user1);
+        room.setUser2(user2);
+    }
+
+    @Benchmark
+    public int checkWinner() {
+        BenchmarkBoards.Probe probe = probes[next];
+        next = next + 1 == probes.length ? 0 : next + 1;
+        return room.checkWinner(probe.row, probe.col, probe.chess);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.java_gobang.game;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//落子请求的解析和落子响应的序列化：ObjectMapper 绑定对象 和 JsonCodec 流式读写 对比
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private ObjectMapper objectMapper;
+    private String requestJson;
+    private GameResponse response;
+    private final GameRequest request = new GameRequest();
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        requestJson = "{\"message\":\"putChess\",\"userId\":1,\"row\":7,\"col\":8}";
+        response = new GameResponse();
+        response.setMessage("putChess");
+        response.setUserId(1);
+        response.setRow(7);
+        response.setCol(8);
+        response.setWinner(0);
+    }
+
+    @Benchmark
+    public GameRequest parseGameRequest() throws IOException {
+        return objectMapper.readValue(requestJson, GameRequest.class);
+    }
+
+    @Benchmark
+    public String writeGameResponse() throws IOException {
+        return objectMapper.writeValueAsString(response);
+    }
+
+    @Benchmark
+    public GameRequest streamGameRequest() throws IOException {
+        JsonCodec.readGameRequest(requestJson, request);
+        return request;
+    }
+
+    @Benchmark
+    public String streamGameResponse() throws IOException {
+        return JsonCodec.writeGameResponse(response);
+    }
+}
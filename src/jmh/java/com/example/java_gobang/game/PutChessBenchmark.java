@@ -0,0 +1,78 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//一次完整的 putChess：解析JSON、写棋盘、胜负判定、序列化响应、给两个玩家发消息
+//会话是桩对象，不做网络 I/O；日志级别见 src/jmh/resources/logback-test.xml (INFO，不打印棋盘)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutChessBenchmark {
+    private Room room;
+    private String[] moves;
+    private int[] players;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        User user1 = new User();
+        user1.setUserId(1);
+        user1.setUsername("bench1");
+        User user2 = new User();
+        user2.setUserId(2);
+        user2.setUsername("bench2");
+
+        UserIndex users = new UserIndex();
+        OnlineUserManager onlineUserManager = new OnlineUserManager(users);
+        onlineUserManager.enterGameRoom(1, new StubWebSocketSession("1"));
+        onlineUserManager.enterGameRoom(2, new StubWebSocketSession("2"));
+        RoomManager roomManager = new RoomManager(users);
+
+        //这里的落子顺序不会分出胜负，用不到结果写回；基准里直接调用 putChess，也不经过信箱
+        room = new Room(1, new BitBoard(), onlineUserManager, roomManager, null, null, null, null, null, null);
+        room.setUser1(user1);
+        room.setUser2(user2);
+        room.setWhiteUser(1);
+        roomManager.add(room, 1, 2);
+
+        //服务器会检查是不是轮到这个玩家：两个玩家交替落子，玩家1 (先手) 先下
+        //步数取偶数，一局下完从头再来的时候正好又轮到玩家1
+        List<BenchmarkBoards.Probe> game = BenchmarkBoards.nonWinningGame(7, 200);
+        moves = new String[game.size() & ~1];
+        players = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            BenchmarkBoards.Probe move = game.get(i);
+            moves[i] = "{\"message\":\"putChess\",\"userId\":" + move.chess
+                    + ",\"row\":" + move.row + ",\"col\":" + move.col + "}";
+            players[i] = move.chess;
+        }
+    }
+
+    @Benchmark
+    public void putChess() throws IOException {
+        if (next == moves.length) {
+            //一局下完了，清空棋盘从头再来
+            room.getBoard().clear();
+            next = 0;
+        }
+        room.putChess(players[next], moves[next]);
+        next++;
+    }
+}
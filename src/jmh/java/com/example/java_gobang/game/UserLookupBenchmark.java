@@ -0,0 +1,70 @@
+package com.example.java_gobang.game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//按 userId 找玩家的房间连接和所在的房间：原来的 ConcurrentHashMap<Integer, ...> (装箱，房间要查两次) 和 UserIndex 对比
+//userId 取 1..users 里随机的一个，超出小整数缓存的部分每次查找都要新建一个 Integer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserLookupBenchmark {
+    @Param({"10000", "100000"})
+    private int users;
+
+    private final ConcurrentHashMap<Integer, WebSocketSession> gameRoom = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> userIdToRoomId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final UserIndex index = new UserIndex();
+
+    @Setup
+    public void setUp() {
+        OnlineUserManager onlineUserManager = new OnlineUserManager(index);
+        RoomManager roomManager = new RoomManager(index);
+        for (int userId = 1; userId < users; userId += 2) {
+            Room room = new Room(userId, new BitBoard(), onlineUserManager, roomManager,
+                    null, null, null, null, null, null);
+            String roomId = Long.toString(room.getRoomId());
+            rooms.put(roomId, room);
+            for (int id = userId; id <= userId + 1; id++) {
+                WebSocketSession session = new StubWebSocketSession(Integer.toString(id));
+                gameRoom.put(id, session);
+                userIdToRoomId.put(id, roomId);
+                onlineUserManager.enterGameRoom(id, session);
+            }
+            roomManager.add(room, userId, userId + 1);
+        }
+    }
+
+    @Benchmark
+    public Object hashMaps() {
+        int userId = 1 + ThreadLocalRandom.current().nextInt(users);
+        WebSocketSession session = gameRoom.get(userId);
+        String roomId = userIdToRoomId.get(userId);
+        return roomId == null ? session : rooms.get(roomId);
+    }
+
+    @Benchmark
+    public Object userIndex() {
+        int userId = 1 + ThreadLocalRandom.current().nextInt(users);
+        UserState state = index.get(userId);
+        return state == null ? null : state.getRoom() == null ? null : state.getCurrentRoom();
+    }
+}
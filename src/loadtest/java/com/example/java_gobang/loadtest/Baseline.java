@@ -0,0 +1,118 @@
+package com.example.java_gobang.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+//基线：上一次认可的负载测试结果，存成 properties 文件放在代码库里
+//这一次的结果比基线差出 tolerance 以上 (吞吐量低了、延迟高了、错误多了) 就算退步
+//基线和机器有关，换了跑测试的机器要重新记录一次 (-Dloadtest.update-baseline=true)
+final class Baseline {
+    //延迟在 1 毫秒以内的抖动不算退步，本机测试的 p50 只有零点几毫秒，按比例比较太敏感
+    private static final double LATENCY_FLOOR_MS = 1.0;
+
+    private Baseline() {
+    }
+
+    //和基线对比，返回退步的项；没有基线或者参数不一样 (结果没法比) 返回空列表并说明原因
+    static List<String> compare(Path file, Map<String, Object> result, double tolerance, List<String> notes)
+            throws IOException {
+        List<String> regressions = new ArrayList<>();
+        if (!Files.exists(file)) {
+            notes.add("没有找到基线 " + file + "，跳过对比");
+            return regressions;
+        }
+        Properties baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            baseline.load(reader);
+        }
+        for (String key : new String[]{"players", "thinkMs", "protocol"}) {
+            if (!String.valueOf(result.get(key)).equals(baseline.getProperty(key))) {
+                notes.add("参数 " + key + " 和基线不一样 (" + result.get(key) + " / " + baseline.getProperty(key)
+                        + ")，跳过对比");
+                return regressions;
+            }
+        }
+        Map<String, Object> flat = flatten(result);
+        //越大越好
+        checkLower(regressions, "movesPerSecond", flat, baseline, tolerance);
+        checkLower(regressions, "gamesPerSecond", flat, baseline, tolerance);
+        //越小越好；匹配耗时的长尾主要是在等一个刚下完棋的对手，每次都不一样，只比中位数
+        for (String key : new String[]{"moveLatencyMs.p50", "moveLatencyMs.p99", "moveLatencyMs.p999",
+                "matchTimeMs.p50"}) {
+            checkHigher(regressions, key, flat, baseline, tolerance);
+        }
+        long errors = ((Number) flat.get("errors")).longValue();
+        long baselineErrors = Long.parseLong(baseline.getProperty("errors", "0"));
+        if (errors > baselineErrors) {
+            regressions.add("errors: " + errors + " (基线 " + baselineErrors + ")");
+        }
+        return regressions;
+    }
+
+    //按照结果里的顺序一行一个写出来，方便在代码评审里看出基线变了哪些
+    static void save(Path file, Map<String, Object> result) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# 负载测试基线，重新生成: mvn -P loadtest test-compile exec:exec -Dloadtest.update-baseline=true\n");
+            for (Map.Entry<String, Object> entry : flatten(result).entrySet()) {
+                if (!entry.getKey().startsWith("errorsByType.")) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            }
+        }
+    }
+
+    private static void checkLower(List<String> regressions, String key, Map<String, Object> result,
+                                   Properties baseline, double tolerance) {
+        String expected = baseline.getProperty(key);
+        if (expected == null) {
+            return;
+        }
+        double actual = ((Number) result.get(key)).doubleValue();
+        double limit = Double.parseDouble(expected) * (1 - tolerance);
+        if (actual < limit) {
+            regressions.add(key + ": " + actual + " (基线 " + expected + "，下限 " + round(limit) + ")");
+        }
+    }
+
+    private static void checkHigher(List<String> regressions, String key, Map<String, Object> result,
+                                    Properties baseline, double tolerance) {
+        String expected = baseline.getProperty(key);
+        if (expected == null) {
+            return;
+        }
+        double actual = ((Number) result.get(key)).doubleValue();
+        double base = Double.parseDouble(expected);
+        double limit = Math.max(base * (1 + tolerance), base + LATENCY_FLOOR_MS);
+        if (actual > limit) {
+            regressions.add(key + ": " + actual + " (基线 " + expected + "，上限 " + round(limit) + ")");
+        }
+    }
+
+    //嵌套的结果展开成 a.b 形式的 key
+    private static Map<String, Object> flatten(Map<String, Object> result) {
+        Map<String, Object> flat = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            if (entry.getValue() instanceof Map) {
+                for (Map.Entry<?, ?> inner : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                    flat.put(entry.getKey() + "." + inner.getKey(), inner.getValue());
+                }
+            } else {
+                flat.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return flat;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.java_gobang.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//负载测试的统计：延迟用 HdrHistogram 记录 (微秒，3 位有效数字)，次数用 LongAdder
+//所有玩家的回调线程同时写，Recorder 和 LongAdder 都不加锁
+final class LoadStats {
+    enum Error {
+        //注册/登录失败
+        LOGIN,
+        //websocket 握手失败
+        CONNECT,
+        //大厅返回了失败的响应
+        MATCH,
+        //进房间失败 (gameReady 的 ok 为 false，或者一直被当成多开)
+        GAME_READY,
+        //一局下了太久还没有分出胜负
+        GAME_TIMEOUT,
+        //连接被服务器意外断开
+        DISCONNECT,
+        //看不懂的响应
+        PROTOCOL
+    }
+
+    //发出落子请求到收到自己这一步的广播
+    private final Recorder moveLatency = new Recorder(3);
+    //发出 startMatch 到收到 matchSuccess
+    private final Recorder matchTime = new Recorder(3);
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    //因为服务器还没处理完上一个连接的下线，被当成多开之后重试的次数；不算错误
+    private final LongAdder retries = new LongAdder();
+    private final Map<Error, LongAdder> errors = new EnumMap<>(Error.class);
+
+    LoadStats() {
+        for (Error error : Error.values()) {
+            errors.put(error, new LongAdder());
+        }
+    }
+
+    void recordMove(long nanos) {
+        moveLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        moves.increment();
+    }
+
+    void recordMatch(long nanos) {
+        matchTime.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordGame() {
+        games.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordError(Error error) {
+        errors.get(error).increment();
+    }
+
+    long moves() {
+        return moves.sum();
+    }
+
+    long games() {
+        return games.sum();
+    }
+
+    //开始正式统计：丢掉上线阶段的延迟和次数；错误从头开始一直累计
+    void startMeasurement() {
+        moveLatency.reset();
+        matchTime.reset();
+        moves.reset();
+        games.reset();
+    }
+
+    //测试结束的那一刻拿一份结果，之后收尾阶段的数据不算进去
+    Map<String, Object> snapshot(LoadTestSettings settings, long measuredMillis) {
+        Histogram move = moveLatency.getIntervalHistogram();
+        Histogram match = matchTime.getIntervalHistogram();
+        double seconds = measuredMillis / 1000.0;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("players", settings.players);
+        result.put("thinkMs", settings.thinkMillis);
+        result.put("protocol", settings.binary ? "binary" : "json");
+        result.put("durationSeconds", round(seconds));
+        result.put("moves", moves.sum());
+        result.put("games", games.sum());
+        result.put("movesPerSecond", round(moves.sum() / seconds));
+        result.put("gamesPerSecond", round(games.sum() / seconds));
+        result.put("moveLatencyMs", percentiles(move));
+        result.put("matchTimeMs", percentiles(match));
+        Map<String, Long> errorCounts = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<Error, LongAdder> entry : errors.entrySet()) {
+            errorCounts.put(entry.getKey().name(), entry.getValue().sum());
+            total += entry.getValue().sum();
+        }
+        result.put("errors", total);
+        result.put("errorsByType", errorCounts);
+        result.put("retries", retries.sum());
+        return result;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", histogram.getTotalCount());
+        result.put("p50", millis(histogram.getValueAtPercentile(50)));
+        result.put("p99", millis(histogram.getValueAtPercentile(99)));
+        result.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        result.put("max", millis(histogram.getMaxValue()));
+        return result;
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
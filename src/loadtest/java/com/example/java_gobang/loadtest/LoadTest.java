@@ -0,0 +1,184 @@
+package com.example.java_gobang.loadtest;
+
+import com.example.java_gobang.JavaGobangApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//负载测试的入口：mvn -P loadtest test-compile exec:exec (参数见 pom.xml 里的 loadtest profile)
+//
+//1) 没有指定 loadtest.target 时，在当前进程里用 loadtest 配置 (内存数据库) 启动服务器
+//2) ramp-up 时间内陆续启动所有模拟玩家 (SimulatedPlayer)，之后清空统计，正式测 duration 这么久
+//3) 时间到了，排队中的玩家直接离开，正在下棋的玩家下完这一局 (最多等 drain-seconds)
+//4) 打印结果，写 JSON 文件，和基线对比；有退步的话进程以 1 退出，构建失败
+public class LoadTest {
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    //每隔多久打印一次进度
+    private static final long PROGRESS_INTERVAL_MILLIS = 10000;
+
+    private final LoadTestSettings settings;
+    private final String baseUrl;
+    private final LoadStats stats = new LoadStats();
+    private final StandardWebSocketClient client = new StandardWebSocketClient();
+    private final ThreadPoolTaskExecutor connectExecutor = new ThreadPoolTaskExecutor();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+    private final CountDownLatch finished;
+    private volatile boolean stopping;
+
+    private LoadTest(LoadTestSettings settings, String baseUrl) {
+        this.settings = settings;
+        this.baseUrl = baseUrl;
+        this.finished = new CountDownLatch(settings.players);
+        //玩家的信箱和定时任务都在这里执行；发送是阻塞的，线程数多给一些
+        AtomicInteger index = new AtomicInteger();
+        scheduler = new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors() * 2, r -> {
+            Thread t = new Thread(r, "loadtest-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        //结束的时候不再等还没到期的定时任务 (思考、对局超时)
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        //握手是阻塞的，几千个玩家同时上线的时候不能每个连接开一个线程
+        connectExecutor.setCorePoolSize(32);
+        connectExecutor.setMaxPoolSize(32);
+        connectExecutor.setThreadNamePrefix("loadtest-connect-");
+        connectExecutor.setDaemon(true);
+        connectExecutor.initialize();
+        client.setTaskExecutor(connectExecutor);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        String baseUrl = settings.target;
+        if (baseUrl.isEmpty()) {
+            //devtools 在测试的 classpath 上，不关掉的话服务器会跑在它的重启线程里
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            SpringApplication application = new SpringApplication(JavaGobangApplication.class);
+            application.setAdditionalProfiles("loadtest");
+            JavaGobangApplication.context = application.run(args);
+            baseUrl = "http://127.0.0.1:" + JavaGobangApplication.context.getEnvironment().getProperty("local.server.port");
+        }
+        int status;
+        try {
+            status = new LoadTest(settings, baseUrl).run();
+        } finally {
+            if (JavaGobangApplication.context != null) {
+                JavaGobangApplication.context.close();
+            }
+        }
+        System.exit(status);
+    }
+
+    private int run() throws Exception {
+        log.info("负载测试开始: 服务器 {}，{} 个玩家，上线 {} 秒，测试 {} 秒，每步最多想 {} 毫秒，{} 格式",
+                baseUrl, settings.players, settings.rampUpMillis / 1000, settings.durationMillis / 1000,
+                settings.thinkMillis, settings.binary ? "二进制" : "JSON");
+        //每次运行用不同的用户名，压测已经部署的服务器时不会和上一次的玩家撞上
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        for (int i = 0; i < settings.players; i++) {
+            SimulatedPlayer player = new SimulatedPlayer("load-" + runId + "-" + i, this);
+            players.add(player);
+            long delay = settings.rampUpMillis * i / settings.players;
+            scheduler.schedule(player::start, delay, TimeUnit.MILLISECONDS);
+        }
+        Thread.sleep(settings.rampUpMillis);
+
+        stats.startMeasurement();
+        long start = System.currentTimeMillis();
+        long end = start + settings.durationMillis;
+        long lastMoves = 0;
+        for (long now = start; now < end; now = System.currentTimeMillis()) {
+            Thread.sleep(Math.min(PROGRESS_INTERVAL_MILLIS, end - now));
+            long moves = stats.moves();
+            log.info("已测 {} 秒: 共 {} 步，{} 局，最近每秒 {} 步", (System.currentTimeMillis() - start) / 1000,
+                    moves, stats.games(), (moves - lastMoves) * 1000 / PROGRESS_INTERVAL_MILLIS);
+            lastMoves = moves;
+        }
+        Map<String, Object> result = stats.snapshot(settings, System.currentTimeMillis() - start);
+
+        stopping = true;
+        for (SimulatedPlayer player : players) {
+            player.stop();
+        }
+        if (!finished.await(settings.drainMillis, TimeUnit.MILLISECONDS)) {
+            log.warn("还有 {} 个玩家的对局没有下完，直接断开", finished.getCount());
+            for (SimulatedPlayer player : players) {
+                player.abort();
+            }
+        }
+        //让 abort 投递的断开连接执行完
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        connectExecutor.shutdown();
+        return report(result);
+    }
+
+    private int report(Map<String, Object> result) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
+        log.info("负载测试结果:\n{}", json);
+        mapper.writerWithDefaultPrettyPrinter().writeValue(settings.resultFile.toFile(), result);
+        log.info("结果已写入 {}", settings.resultFile);
+
+        if (settings.updateBaseline) {
+            Baseline.save(settings.baseline, result);
+            log.info("已把这次的结果记为新的基线 {}", settings.baseline);
+            return 0;
+        }
+        List<String> notes = new ArrayList<>();
+        List<String> regressions = Baseline.compare(settings.baseline, result, settings.tolerance, notes);
+        for (String note : notes) {
+            log.warn(note);
+        }
+        if (regressions.isEmpty()) {
+            log.info("和基线相比没有退步 (容差 {}%)", Math.round(settings.tolerance * 100));
+            return 0;
+        }
+        for (String regression : regressions) {
+            log.error("退步: {}", regression);
+        }
+        return 1;
+    }
+
+    LoadTestSettings getSettings() {
+        return settings;
+    }
+
+    LoadStats getStats() {
+        return stats;
+    }
+
+    StandardWebSocketClient getClient() {
+        return client;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    boolean isStopping() {
+        return stopping;
+    }
+
+    void playerFinished() {
+        finished.countDown();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.java_gobang.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+//负载测试的参数，都从系统属性里读，默认值和 pom.xml 里 loadtest profile 的一样
+final class LoadTestSettings {
+    //压测的服务器地址，例如 http://10.0.0.5:8080；为空表示在当前进程里启动一个
+    final String target;
+    final int players;
+    //所有玩家在这段时间里陆续上线，之后才开始统计
+    final long rampUpMillis;
+    //统计多长时间
+    final long durationMillis;
+    //每一步之前随机想 0 ~ thinkMillis 毫秒
+    final long thinkMillis;
+    //落子用二进制格式还是 JSON
+    final boolean binary;
+    //一局超过这么久还没有分出胜负就算出错
+    final long gameTimeoutMillis;
+    //测试结束之后等还没下完的对局多久
+    final long drainMillis;
+    final double tolerance;
+    final boolean updateBaseline;
+    final Path baseline;
+    final Path resultFile;
+
+    private LoadTestSettings() {
+        target = System.getProperty("loadtest.target", "").trim();
+        players = Integer.getInteger("loadtest.players", 200);
+        rampUpMillis = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.ramp-up-seconds", 5));
+        durationMillis = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.duration-seconds", 60));
+        thinkMillis = Long.getLong("loadtest.think-ms", 20);
+        binary = !"json".equalsIgnoreCase(System.getProperty("loadtest.protocol", "binary"));
+        gameTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.game-timeout-seconds", 120));
+        drainMillis = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.drain-seconds", 30));
+        tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25"));
+        updateBaseline = Boolean.getBoolean("loadtest.update-baseline");
+        baseline = Paths.get(System.getProperty("loadtest.baseline", "baseline.properties"));
+        resultFile = Paths.get(System.getProperty("loadtest.result-file", "loadtest.json"));
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        LoadTestSettings settings = new LoadTestSettings();
+        if (settings.players < 2 || settings.players % 2 != 0) {
+            throw new IllegalArgumentException("loadtest.players 必须是不小于 2 的偶数: " + settings.players);
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,562 @@
+package com.example.java_gobang.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//一个模拟的玩家，和页面上的脚本走一样的流程：
+//注册、登录 -> 连上 /findMatch 发 startMatch -> 收到 matchSuccess 后断开大厅，连上 /game ->
+//收到 gameReady 之后轮流落子 (随机挑一个空位) -> 分出胜负后断开房间，回到大厅接着匹配，直到测试结束
+//
+//和房间一样，玩家也有一个"信箱"：连接的回调、定时任务都先投递进来，再按顺序在 scheduler 上一个一个执行，
+//所以玩家的状态不用加锁。websocket 的 I/O 线程只负责投递：发送是阻塞的，要等 I/O 线程把数据写出去，
+//I/O 线程要是反过来在回调里等玩家的锁，两边就会互相卡死
+final class SimulatedPlayer {
+    private static final Logger log = LoggerFactory.getLogger(SimulatedPlayer.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String BINARY_PROTOCOL = "gobang.binary.v1";
+    private static final String JSON_PROTOCOL = "gobang.json";
+    private static final byte TYPE_PUT_CHESS = 1;
+    private static final int RESPONSE_LENGTH = 11;
+    private static final int SIZE = 15;
+
+    //被当成多开 (服务器还没处理完上一个连接的下线) 之后隔多久重试，最多重试多少次
+    private static final long RETRY_DELAY_MILLIS = 50;
+    private static final int MAX_RETRIES = 100;
+    //出错之后隔多久重新开始
+    private static final long ERROR_DELAY_MILLIS = 1000;
+
+    private enum State {
+        IDLE,
+        HALL,
+        GAME,
+        DONE
+    }
+
+    private interface Event {
+        void run() throws Exception;
+    }
+
+    private final String username;
+    private final LoadTest driver;
+    private final LoadTestSettings settings;
+    private final LoadStats stats;
+    private final WebSocketClient client;
+    private final ScheduledExecutorService scheduler;
+    private final HallHandler hallHandler = new HallHandler();
+    private final GameHandler gameHandler = new GameHandler();
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    //还没执行完的事件数，从0变成1的那个投递方负责把信箱提交给 scheduler
+    private final AtomicInteger pending = new AtomicInteger();
+
+    //下面的状态只在信箱里读写
+    private String cookie;
+    private State state = State.IDLE;
+    //当前正在使用的连接；关闭回调里据此区分是不是意外断开
+    private WebSocketSession hall;
+    private WebSocketSession game;
+    private int retries;
+
+    private int userId;
+    private int whiteUser;
+    //是不是轮到自己落子，想好之后只落一次
+    private boolean myTurn;
+    //棋盘上还空着的格子 (row * 15 + col)，前 free 个有效
+    private final int[] cells = new int[SIZE * SIZE];
+    private final boolean[] occupied = new boolean[SIZE * SIZE];
+    private int free;
+    private long matchStartedAt;
+    private long moveSentAt;
+    private ScheduledFuture<?> gameTimeout;
+
+    SimulatedPlayer(String username, LoadTest driver) {
+        this.username = username;
+        this.driver = driver;
+        this.settings = driver.getSettings();
+        this.stats = driver.getStats();
+        this.client = driver.getClient();
+        this.scheduler = driver.getScheduler();
+    }
+
+    void start() {
+        post(() -> {
+            try {
+                login();
+            } catch (IOException e) {
+                log.warn("玩家 {} 登录失败: {}", username, e.toString());
+                stats.recordError(LoadStats.Error.LOGIN);
+                finish();
+                return;
+            }
+            enterHall();
+        });
+    }
+
+    //测试结束：还在排队的玩家直接离开，正在下棋的玩家下完这一局
+    //已经匹配上但是还没开始的也直接离开，对手可能已经离开了，等不到 gameReady
+    void stop() {
+        post(() -> {
+            if (state != State.GAME || gameTimeout == null) {
+                closeQuietly(detachHall());
+                closeQuietly(detachGame());
+                finish();
+            }
+        });
+    }
+
+    //收尾超时，直接断开
+    void abort() {
+        post(() -> {
+            closeQuietly(detachHall());
+            closeQuietly(detachGame());
+            finish();
+        });
+    }
+
+    private void login() throws IOException {
+        String form = "username=" + URLEncoder.encode(username, "UTF-8") + "&password=123";
+        //已经注册过的时候返回的是空的 User，接着登录就行
+        post("/register", form);
+        HttpURLConnection conn = post("/login", form);
+        JsonNode user = MAPPER.readTree(conn.getInputStream());
+        String setCookie = conn.getHeaderField("Set-Cookie");
+        if (user.path("userId").asInt() == 0 || setCookie == null) {
+            throw new IOException("用户名或密码错误");
+        }
+        cookie = setCookie.split(";", 2)[0];
+    }
+
+    private HttpURLConnection post(String path, String form) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(driver.getBaseUrl() + path).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(10000);
+        conn.setReadTimeout(10000);
+        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+        if (conn.getResponseCode() != 200) {
+            throw new IOException(path + " 返回 " + conn.getResponseCode());
+        }
+        return conn;
+    }
+
+    //////////////////////////////////////////////////
+    // 游戏大厅
+    //////////////////////////////////////////////////
+
+    private void enterHall() {
+        if (state == State.DONE) {
+            return;
+        }
+        if (driver.isStopping()) {
+            finish();
+            return;
+        }
+        state = State.HALL;
+        connect("/findMatch", hallHandler, null);
+    }
+
+    private void onHallOpen(WebSocketSession session) throws IOException {
+        if (state != State.HALL) {
+            closeQuietly(session);
+            return;
+        }
+        hall = session;
+        matchStartedAt = System.nanoTime();
+        session.sendMessage(new TextMessage("{\"message\":\"startMatch\"}"));
+    }
+
+    private void onHallMessage(WebSocketSession session, JsonNode resp) {
+        if (session != hall) {
+            return;
+        }
+        String message = resp.path("message").asText();
+        if ("matchSuccess".equals(message)) {
+            stats.recordMatch(System.nanoTime() - matchStartedAt);
+            closeQuietly(detachHall());
+            retries = 0;
+            enterGame();
+        } else if ("repeatConnection".equals(message)) {
+            //上一局房间的连接在服务器上还没下线
+            closeQuietly(detachHall());
+            retryLater(this::enterHall);
+        } else if (!resp.path("ok").asBoolean()) {
+            log.warn("玩家 {} 匹配失败: {}", username, resp);
+            stats.recordError(LoadStats.Error.MATCH);
+            closeQuietly(detachHall());
+            postLater(this::enterHall, ERROR_DELAY_MILLIS);
+        }
+        //startMatch 的回复不用处理
+    }
+
+    private void onHallClosed(WebSocketSession session, CloseStatus status) {
+        if (session != hall) {
+            return;
+        }
+        hall = null;
+        log.warn("玩家 {} 的大厅连接被断开: {}", username, status);
+        stats.recordError(LoadStats.Error.DISCONNECT);
+        postLater(this::enterHall, ERROR_DELAY_MILLIS);
+    }
+
+    //////////////////////////////////////////////////
+    // 游戏房间
+    //////////////////////////////////////////////////
+
+    private void enterGame() {
+        if (state == State.DONE) {
+            return;
+        }
+        state = State.GAME;
+        connect("/game", gameHandler, settings.binary
+                ? Arrays.asList(BINARY_PROTOCOL, JSON_PROTOCOL) : Arrays.asList(JSON_PROTOCOL));
+    }
+
+    private void onGameOpen(WebSocketSession session) {
+        if (state != State.GAME) {
+            closeQuietly(session);
+            return;
+        }
+        game = session;
+    }
+
+    private void onGameMessage(WebSocketSession session, JsonNode resp) throws IOException {
+        if (session != game) {
+            return;
+        }
+        String message = resp.path("message").asText();
+        if ("gameReady".equals(message)) {
+            onGameReady(resp);
+        } else if ("putChess".equals(message)) {
+            onPutChess(resp.path("userId").asInt(), resp.path("row").asInt(),
+                    resp.path("col").asInt(), resp.path("winner").asInt());
+        } else if ("repeatConnection".equals(message)) {
+            //大厅的连接在服务器上还没下线
+            closeQuietly(detachGame());
+            retryLater(this::enterGame);
+        } else if (!resp.path("ok").asBoolean(true)) {
+            gameReadyFailed(resp.path("reason").asText());
+        }
+        //棋钟、对手掉线之类的通知不用处理
+    }
+
+    private void onGameReady(JsonNode resp) throws IOException {
+        if (!resp.path("ok").asBoolean()) {
+            gameReadyFailed(resp.path("reason").asText());
+            return;
+        }
+        userId = resp.path("thisUserId").asInt();
+        whiteUser = resp.path("whiteUser").asInt();
+        free = cells.length;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+            occupied[i] = false;
+        }
+        moveSentAt = 0;
+        gameTimeout = postLater(this::onGameTimeout, settings.gameTimeoutMillis);
+        if (whiteUser == userId) {
+            //先手
+            scheduleMove();
+        }
+    }
+
+    private void gameReadyFailed(String reason) {
+        log.warn("玩家 {} 进入房间失败: {}", username, reason);
+        stats.recordError(LoadStats.Error.GAME_READY);
+        leaveGame();
+        postLater(this::enterHall, ERROR_DELAY_MILLIS);
+    }
+
+    private void onPutChess(int mover, int row, int col, int winner) throws IOException {
+        if (row >= 0 && row < SIZE && col >= 0 && col < SIZE) {
+            occupy(row * SIZE + col);
+        }
+        if (mover == userId && moveSentAt != 0) {
+            stats.recordMove(System.nanoTime() - moveSentAt);
+            moveSentAt = 0;
+        }
+        if (winner != 0) {
+            //胜负已分 (也可能是某一方超时/掉线判负)，每局只由先手方计一次
+            if (userId == whiteUser) {
+                stats.recordGame();
+            }
+            leaveGame();
+            enterHall();
+            return;
+        }
+        if (mover != userId) {
+            scheduleMove();
+        }
+    }
+
+    private void scheduleMove() throws IOException {
+        myTurn = true;
+        if (settings.thinkMillis <= 0) {
+            move();
+        } else {
+            postLater(this::move, ThreadLocalRandom.current().nextLong(settings.thinkMillis + 1));
+        }
+    }
+
+    private void move() throws IOException {
+        if (!myTurn || game == null || free == 0) {
+            return;
+        }
+        myTurn = false;
+        int cell = cells[ThreadLocalRandom.current().nextInt(free)];
+        int row = cell / SIZE;
+        int col = cell % SIZE;
+        moveSentAt = System.nanoTime();
+        if (BINARY_PROTOCOL.equals(game.getAcceptedProtocol())) {
+            game.sendMessage(new BinaryMessage(new byte[]{TYPE_PUT_CHESS, (byte) row, (byte) col}));
+        } else {
+            game.sendMessage(new TextMessage("{\"message\":\"putChess\",\"userId\":" + userId
+                    + ",\"row\":" + row + ",\"col\":" + col + "}"));
+        }
+    }
+
+    //把 cell 从空格子里拿掉：和最后一个空格子交换
+    private void occupy(int cell) {
+        if (occupied[cell]) {
+            return;
+        }
+        occupied[cell] = true;
+        for (int i = 0; i < free; i++) {
+            if (cells[i] == cell) {
+                cells[i] = cells[--free];
+                cells[free] = cell;
+                return;
+            }
+        }
+    }
+
+    private void onGameTimeout() {
+        if (game == null) {
+            return;
+        }
+        log.warn("玩家 {} 的对局超过 {} 毫秒还没有结束", username, settings.gameTimeoutMillis);
+        stats.recordError(LoadStats.Error.GAME_TIMEOUT);
+        leaveGame();
+        enterHall();
+    }
+
+    private void onGameClosed(WebSocketSession session, CloseStatus status) {
+        if (session != game) {
+            return;
+        }
+        log.warn("玩家 {} 的房间连接被断开: {}", username, status);
+        stats.recordError(LoadStats.Error.DISCONNECT);
+        leaveGame();
+        postLater(this::enterHall, ERROR_DELAY_MILLIS);
+    }
+
+    private void leaveGame() {
+        if (gameTimeout != null) {
+            gameTimeout.cancel(false);
+            gameTimeout = null;
+        }
+        myTurn = false;
+        closeQuietly(detachGame());
+        state = State.IDLE;
+    }
+
+    //////////////////////////////////////////////////
+    // 公共部分
+    //////////////////////////////////////////////////
+
+    private void post(Event event) {
+        events.offer(event);
+        if (pending.getAndIncrement() == 0) {
+            try {
+                scheduler.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                //测试已经结束了
+            }
+        }
+    }
+
+    private ScheduledFuture<?> postLater(Event event, long delayMillis) {
+        try {
+            return scheduler.schedule(() -> post(event), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private void drain() {
+        do {
+            Event event = events.poll();
+            try {
+                event.run();
+            } catch (Exception e) {
+                log.warn("玩家 {} 处理事件失败: {}", username, e.toString());
+            }
+        } while (pending.decrementAndGet() != 0);
+    }
+
+    private void connect(String path, AbstractWebSocketHandler handler, List<String> protocols) {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", cookie);
+        if (protocols != null) {
+            headers.setSecWebSocketProtocol(protocols);
+        }
+        URI uri = URI.create(driver.getBaseUrl().replaceFirst("^http", "ws") + path);
+        client.doHandshake(handler, headers, uri).addCallback(session -> { }, e -> post(() -> {
+            log.warn("玩家 {} 连接 {} 失败: {}", username, path, e.toString());
+            stats.recordError(LoadStats.Error.CONNECT);
+            if (state != State.DONE) {
+                state = State.IDLE;
+                postLater(this::enterHall, ERROR_DELAY_MILLIS);
+            }
+        }));
+    }
+
+    //主动断开之前先把连接摘下来，之后收到的关闭回调就不会被当成意外断开
+    private WebSocketSession detachHall() {
+        WebSocketSession session = hall;
+        hall = null;
+        return session;
+    }
+
+    private WebSocketSession detachGame() {
+        WebSocketSession session = game;
+        game = null;
+        return session;
+    }
+
+    private void retryLater(Event action) {
+        stats.recordRetry();
+        if (++retries > MAX_RETRIES) {
+            log.warn("玩家 {} 一直被当成多开", username);
+            stats.recordError(LoadStats.Error.GAME_READY);
+            retries = 0;
+            state = State.IDLE;
+            postLater(this::enterHall, ERROR_DELAY_MILLIS);
+            return;
+        }
+        postLater(action, RETRY_DELAY_MILLIS);
+    }
+
+    private void finish() {
+        if (state != State.DONE) {
+            state = State.DONE;
+            driver.playerFinished();
+        }
+    }
+
+    private static void closeQuietly(WebSocketSession session) {
+        if (session == null || !session.isOpen()) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (IOException e) {
+            //连接已经断了
+        }
+    }
+
+    private JsonNode parse(String payload) {
+        try {
+            return MAPPER.readTree(payload);
+        } catch (IOException e) {
+            log.warn("玩家 {} 收到看不懂的响应: {}", username, payload);
+            stats.recordError(LoadStats.Error.PROTOCOL);
+            return null;
+        }
+    }
+
+    //下面的回调都在 websocket 的 I/O 线程上，只做解析和投递
+
+    private class HallHandler extends AbstractWebSocketHandler {
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) {
+            post(() -> onHallOpen(session));
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            JsonNode resp = parse(message.getPayload());
+            if (resp != null) {
+                post(() -> onHallMessage(session, resp));
+            }
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            post(() -> onHallClosed(session, status));
+        }
+    }
+
+    private class GameHandler extends AbstractWebSocketHandler {
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) {
+            post(() -> onGameOpen(session));
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            JsonNode resp = parse(message.getPayload());
+            if (resp != null) {
+                post(() -> onGameMessage(session, resp));
+            }
+        }
+
+        //落子广播: [类型 1字节][row 1字节][col 1字节][userId 4字节][winner 4字节]，大端序
+        //判负的广播里 row/col 是 -1，按有符号数读
+        @Override
+        protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+            ByteBuffer buffer = message.getPayload();
+            int pos = buffer.position();
+            if (buffer.remaining() != RESPONSE_LENGTH || buffer.get(pos) != TYPE_PUT_CHESS) {
+                stats.recordError(LoadStats.Error.PROTOCOL);
+                return;
+            }
+            int row = buffer.get(pos + 1);
+            int col = buffer.get(pos + 2);
+            int mover = buffer.getInt(pos + 3);
+            int winner = buffer.getInt(pos + 7);
+            post(() -> {
+                if (session == game) {
+                    onPutChess(mover, row, col, winner);
+                }
+            });
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            post(() -> onGameClosed(session, status));
+        }
+    }
+}
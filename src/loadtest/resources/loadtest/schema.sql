@@ -0,0 +1,9 @@
+-- 负载测试用的表结构，和 src/main/java/db.sql 一样，玩家由负载测试自己注册
+create table if not exists user(
+    userId int primary key auto_increment,
+    username varchar(50) unique,
+    password varchar(50),
+    score int, -- 天梯分数
+    totalCount int, -- 比赛总场次
+    winCount int -- 获胜场次
+);
@@ -1,23 +1,34 @@
 package com.example.java_gobang.api;
 
+import com.example.java_gobang.cluster.RouteTokens;
 import com.example.java_gobang.game.*;
 import com.example.java_gobang.model.User;
-import com.example.java_gobang.model.UserMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
-import javax.annotation.Resource;
 import java.io.IOException;
 
+//同时处理 JSON 文本帧和二进制帧，所以继承 AbstractWebSocketHandler 而不是 TextWebSocketHandler
 @Component
-public class GameAPI extends TextWebSocketHandler {
-    private ObjectMapper objectMapper = new ObjectMapper();
+public class GameAPI extends AbstractWebSocketHandler {
+    private static final Logger log = LoggerFactory.getLogger(GameAPI.class);
+
+    //内容固定的失败响应，提前编码好
+    private static final BroadcastFrame NOT_LOGGED_IN = gameReadyFailure("用户尚未登陆！");
+    private static final BroadcastFrame NOT_MATCHED = gameReadyFailure("当前用户尚未匹配到！");
+    private static final BroadcastFrame ROOM_FULL = gameReadyFailure("当前房间已满！您不能加入房间");
+    private static final BroadcastFrame ROOM_ON_OTHER_NODE = gameReadyFailure("房间不在当前节点上！请重新进入房间");
+    private static final BroadcastFrame ROUTE_TOKEN_MISMATCH = gameReadyFailure("凭证和房间不符！请重新进入房间");
+    //游戏房间的多开提示，和游戏大厅的 (MatchResponse) 不是同一种消息
+    private static final BroadcastFrame REPEAT_CONNECTION = repeatConnection();
 
     @Autowired
     private RoomManager roomManager;
@@ -25,45 +36,60 @@ public class GameAPI extends TextWebSocketHandler {
     @Autowired
     private OnlineUserManager onlineUserManager;
 
-    @Resource
-    private UserMapper userMapper;
+    //断线之后保留房间等待重连的时间，0 表示像以前一样马上判负
+    @Value("${gobang.reconnect.grace-ms:30000}")
+    private long reconnectGraceMillis;
+
+    //棋钟：每个玩家一开始有多少时间，0 表示不限时
+    @Value("${gobang.clock.initial-ms:600000}")
+    private long clockInitialMillis;
+
+    //每走一步加多少时间
+    @Value("${gobang.clock.increment-ms:5000}")
+    private long clockIncrementMillis;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        GameReadyResponse resp = new GameReadyResponse();
         //1.先获取到用户的身份信息（从HttpSession里拿到当前用户的对象）
         User user = (User) session.getAttributes().get("user");
         if(user == null){
-            resp.setOk(false);
-            resp.setReason("用户尚未登陆！");
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(resp)));
+            NOT_LOGGED_IN.sendTo(session);
             return;
         }
 
         //2.判定当前用户是否以及进入房间(拿着房间管理器进行查询)
         Room room = roomManager.getRoomByUserId(user.getUserId());
         if(room == null){
-            //如果为null，当前没有找到对应的房间，该玩家还没有匹配到
-            resp.setOk(false);
-            resp.setReason("当前用户尚未匹配到！");
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(resp)));
+            //如果为null，当前节点上没有找到对应的房间
+            //  房间可能在别的节点上 (客户端应该先通过 /route 找到房间所在的节点)，否则就是该玩家还没有匹配到
+            if(roomManager.locateByUserId(user.getUserId()) != null) {
+                ROOM_ON_OTHER_NODE.sendTo(session);
+            } else {
+                NOT_MATCHED.sendTo(session);
+            }
+            return;
+        }
+        //  凭着 /route 的凭证进来的玩家，只能进凭证签发时的那个房间
+        Object routeRoomId = session.getAttributes().get(RouteTokens.ROOM_ID_ATTRIBUTE);
+        if(routeRoomId != null && (Long) routeRoomId != room.getRoomId()) {
+            ROUTE_TOKEN_MISMATCH.sendTo(session);
             return;
         }
 
         //3.判定当前是不是多开（该用户是不是已经在其他地方进入游戏了）
         //  前面准备了一个 OnlineUserManager
-        if(onlineUserManager.getFromGameHall(user.getUserId()) != null
-                || onlineUserManager.getFromGameRoom(user.getUserId()) != null) {
-            //如果一个账号 一边在游戏大厅 一边在游戏房间 也视为多开
-            resp.setOk(true);
-            resp.setReason("禁止多开游戏页面！");
-            resp.setMessage("repeatConnection");
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(resp)));
-            return;
+        //  断线重连的时候，旧连接的关闭回调可能还没来得及执行，已经关闭的旧连接不算多开，直接顶替掉
+        WebSocketSession stale = onlineUserManager.getFromGameRoom(user.getUserId());
+        if(stale != null && !stale.isOpen()) {
+            onlineUserManager.exitGameRoom(user.getUserId(), stale);
         }
-
         //4.设置当前玩家上线
-        onlineUserManager.enterGameRoom(user.getUserId(),session);
+        //  如果一个账号 一边在游戏大厅 一边在游戏房间 也视为多开；判定和上线在 PresenceRegistry 里一步完成
+        if(!onlineUserManager.enterGameRoom(user.getUserId(),session)) {
+            GameMetrics.DUPLICATE_LOGIN_ROOM.increment();
+            REPEAT_CONNECTION.sendTo(session);
+            return;
+        }
 
         //5.把这两个玩家加入到游戏房间中
         //  当前这个逻辑是在game_room.html页面加载的时候进行的
@@ -71,35 +97,65 @@ public class GameAPI extends TextWebSocketHandler {
         //  因此前面匹配到对手之后，需要经过页面跳转，来到 game_room.html才算玩家准备就绪
         //  执行到当前逻辑，说明玩家已经页面跳转成功了
         synchronized (room) {
+            if(room.isPlayer(user.getUserId())) {
+                //已经在房间里的玩家又连上来了，说明是断线重连，把当前的棋盘发给他，接着下
+                room.execute(() -> room.playerReconnected(user));
+                return;
+            }
             if(room.getUser1() == null) {
                 //第一个玩家还尚未加入房间
                 // 就把当前连上 websocket的玩家作为 user1 加入到房间中
                 room.setUser1(user);
                 // 把先连入房间的玩家作为先手方
                 room.setWhiteUser(user.getUserId());
-                System.out.println("玩家 " + user.getUsername() + "已经准备就绪！");
+                log.info("玩家 {} 已经准备就绪！", user.getUsername());
+                if(room.getUser2() == null) {
+                    return;
+                }
+                //和电脑的对局：电脑在匹配的时候就已经坐在玩家2的位置上了，真人进来就可以开始
+                startGame(room);
                 return;
             }
             if(room.getUser2() == null){
                 //进入到这个逻辑 说明玩家1已经进入房间，现在要给当前玩家作为玩家2了
                 room.setUser2(user);
-                System.out.println("玩家 " + user.getUsername() + "已经准备就绪！");
-
-                //当两个玩家都加入成功之后，就要让服务器，给这两个玩家都返回websocket的响应数据
-                //通知这个两个玩家说 游戏双方都已经准备好了
-                //通知玩家1
-                noticeGameReady(room,room.getUser1(),room.getUser2());
-                //通知玩家2
-                noticeGameReady(room,room.getUser2(),room.getUser1());
+                log.info("玩家 {} 已经准备就绪！", user.getUsername());
+                startGame(room);
                 return;
             }
         }
 
         //6.此处如果又有玩家尝试连接同一个房间，就显示报错
         //  这种情况理论上不存在 但为了让程序更加健壮 此处做一个提示
+        ROOM_FULL.sendTo(session);
+    }
+
+    private void startGame(Room room) throws IOException {
+        //当两个玩家都加入成功之后，就要让服务器，给这两个玩家都返回websocket的响应数据
+        //通知这个两个玩家说 游戏双方都已经准备好了
+        //先通知玩家2，再通知玩家1：玩家1是先手，收到通知之后马上就可以落子，
+        //要是先通知他，落子的广播可能赶在玩家2的 gameReady 前面发到玩家2
+        //通知玩家2
+        noticeGameReady(room,room.getUser2(),room.getUser1());
+        //通知玩家1
+        noticeGameReady(room,room.getUser1(),room.getUser2());
+        //双方都准备好了，开始给先手方计时
+        room.execute(() -> room.startClock(clockInitialMillis, clockIncrementMillis));
+    }
+
+    private static BroadcastFrame gameReadyFailure(String reason) {
+        GameReadyResponse resp = new GameReadyResponse();
         resp.setOk(false);
-        resp.setReason("当前房间已满！您不能加入房间");
-        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(resp)));
+        resp.setReason(reason);
+        return BroadcastFrame.json(resp);
+    }
+
+    private static BroadcastFrame repeatConnection() {
+        GameReadyResponse resp = new GameReadyResponse();
+        resp.setOk(true);
+        resp.setReason("禁止多开游戏页面！");
+        resp.setMessage("repeatConnection");
+        return BroadcastFrame.json(resp);
     }
 
     private void noticeGameReady(Room room, User thisUser, User thatUser) throws IOException {
@@ -111,9 +167,16 @@ public class GameAPI extends TextWebSocketHandler {
         resp.setThisUserId(thisUser.getUserId());
         resp.setThatUserId(thatUser.getUserId());
         resp.setWhiteUser(room.getWhiteUser());
+        resp.setClockMillis(clockInitialMillis);
+        resp.setIncrementMillis(clockIncrementMillis);
         //把当前的响应数据传回给对应的玩家
+        //两个玩家收到的 thisUserId/thatUserId 正好相反，所以每个玩家各自编码一份
+        //电脑没有连接，不用通知
         WebSocketSession webSocketSession = onlineUserManager.getFromGameRoom(thisUser.getUserId());
-        webSocketSession.sendMessage(new TextMessage(objectMapper.writeValueAsString(resp)));
+        if(webSocketSession == null) {
+            return;
+        }
+        BroadcastFrame.json(resp).sendTo(webSocketSession);
 
     }
 
@@ -122,15 +185,44 @@ public class GameAPI extends TextWebSocketHandler {
         //1.先从session里拿到用户的身份信息
         User user = (User) session.getAttributes().get("user");
         if(user == null){
-            System.out.println("[handleTextMessage]当前玩家尚未登陆！");
+            log.info("[handleTextMessage]当前玩家尚未登陆！");
             return;
         }
+        onlineUserManager.touch(session);
 
         //2.根据玩家id获取到房间对象
         Room room = roomManager.getRoomByUserId(user.getUserId());
+        if(room == null) {
+            log.info("[handleTextMessage]当前玩家{}不在任何房间中！", user.getUsername());
+            return;
+        }
 
         //3.通过room对象来处理这次具体的请求
-         room.putChess(message.getPayload());
+        //  落子投递到房间的信箱里，和这个房间的其他操作按顺序执行，不会和对手的落子/掉线判负同时修改棋盘
+        String payload = message.getPayload();
+        room.execute(() -> room.putChess(user.getUserId(), payload));
+    }
+
+    //协商了二进制子协议的客户端，落子请求走这里
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        User user = (User) session.getAttributes().get("user");
+        if(user == null){
+            log.info("[handleBinaryMessage]当前玩家尚未登陆！");
+            return;
+        }
+        onlineUserManager.touch(session);
+        GameRequest request = new GameRequest();
+        if(!BinaryMoveCodec.decodeRequest(message.getPayload(), user.getUserId(), request)) {
+            log.info("[handleBinaryMessage]非法的落子请求！长度={}", message.getPayloadLength());
+            return;
+        }
+        Room room = roomManager.getRoomByUserId(user.getUserId());
+        if(room == null) {
+            log.info("[handleBinaryMessage]当前玩家{}不在任何房间中！", user.getUsername());
+            return;
+        }
+        room.execute(() -> room.putChess(request));
     }
 
     @Override
@@ -140,15 +232,15 @@ public class GameAPI extends TextWebSocketHandler {
             //此时简单处理 在断开连接时，就不给客户端返回响应了
             return;
         }
-        WebSocketSession exitSession = onlineUserManager.getFromGameRoom(user.getUserId());
-        if(session == exitSession) {
-            //加上这个判定，目的是为了避免在多开的情况下，第二个用户退出连接动作，导致第一个用户被影响
-            onlineUserManager.exitGameRoom(user.getUserId());
+        //只有登记的正好是当前这个连接时才下线，目的是为了避免在多开的情况下，第二个用户退出连接动作，导致第一个用户被影响
+        //被拒绝的多开连接、已经被重连顶替掉的旧连接断开时，什么都不用做
+        if(!onlineUserManager.exitGameRoom(user.getUserId(), session)) {
+            return;
         }
-        System.out.println("当前用户："+ user.getUsername() + "游戏房间连接异常");
+        log.info("当前用户：{}游戏房间连接异常", user.getUsername());
 
-        //通知对手获胜
-        noticeThatUserWin(user);
+        //不马上判负，给玩家留一段时间重连
+        noticeThatUserLeft(user);
     }
 
 
@@ -159,46 +251,24 @@ public class GameAPI extends TextWebSocketHandler {
             //此时简单处理 在断开连接时，就不给客户端返回响应了
             return;
         }
-        WebSocketSession exitSession = onlineUserManager.getFromGameRoom(user.getUserId());
-        if(session == exitSession) {
-            //加上这个判定，目的是为了避免在多开的情况下，第二个用户退出连接动作，导致第一个用户被影响
-            onlineUserManager.exitGameRoom(user.getUserId());
+        //只有登记的正好是当前这个连接时才下线，目的是为了避免在多开的情况下，第二个用户退出连接动作，导致第一个用户被影响
+        if(!onlineUserManager.exitGameRoom(user.getUserId(), session)) {
+            return;
         }
-        System.out.println("当前用户："+ user.getUsername() + "已离开游戏房间");
-        //通知对手获胜
-        noticeThatUserWin(user);
+        log.info("当前用户：{}已离开游戏房间", user.getUsername());
+        //不马上判负，给玩家留一段时间重连
+        noticeThatUserLeft(user);
     }
-    private void noticeThatUserWin(User user) throws IOException {
+    private void noticeThatUserLeft(User user) {
         //1.根据当前玩家，找到玩家所在的房间
         Room room = roomManager.getRoomByUserId(user.getUserId());
         if(room == null) {
             //这个情况意味着房间已经释放了，也就没有对手了
-            System.out.println("当前房间已经释放，无需通知对手！");
-            return;
-        }
-        //2.根据房间找到对手
-        User thatUser = (user == room.getUser1() ? room.getUser2() : room.getUser1());
-        //3.扎到对手的在线状态
-        WebSocketSession webSocketSession = onlineUserManager.getFromGameRoom(thatUser.getUserId());
-        if(webSocketSession == null) {
-            //这就意味着对手也掉线了
-            System.out.println("对手也掉线，无需通知！");
+            log.info("当前房间已经释放，无需通知对手！");
             return;
         }
-        //4.构造一个响应，来通知对手，你是获胜方
-        GameResponse resp = new GameResponse();
-        resp.setMessage("putChess");
-        resp.setUserId(thatUser.getUserId());
-        resp.setWinner(thatUser.getUserId());
-        webSocketSession.sendMessage(new TextMessage(objectMapper.writeValueAsString(resp)));
-
-        //5.更新的玩家信息
-        int winUserId = thatUser.getUserId();
-        int loseUserId = user.getUserId();
-        userMapper.userWin(winUserId);
-        userMapper.userLose(loseUserId);
-
-        //6.释放房间对象
-        roomManager.remove(room.getRoomId(),room.getUser1().getUserId(),room.getUser2().getUserId());
+        //投递到房间的信箱里，和还没处理完的落子按顺序执行
+        //等待时间到了还没有回来才判负，见 Room.playerLeft
+        room.execute(() -> room.playerLeft(user, reconnectGraceMillis));
     }
 }
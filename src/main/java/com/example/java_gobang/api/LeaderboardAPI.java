@@ -0,0 +1,37 @@
+package com.example.java_gobang.api;
+
+import com.example.java_gobang.game.Leaderboard;
+import com.example.java_gobang.game.LeaderboardEntry;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+//天梯排行榜，数据全部来自内存里的 Leaderboard，不访问数据库
+@RestController
+public class LeaderboardAPI {
+
+    @Resource
+    private Leaderboard leaderboard;
+
+    //分数最高的前 top 名
+    @GetMapping("/leaderboard")
+    @ResponseBody
+    public Object leaderboard(@RequestParam(defaultValue = "10") int top) {
+        return leaderboard.top(top);
+    }
+
+    //某个玩家的名次，不在排行榜里返回一个空对象 (rank 为 0)
+    @GetMapping("/rank/{userId}")
+    @ResponseBody
+    public Object rank(@PathVariable int userId) {
+        LeaderboardEntry entry = leaderboard.rank(userId);
+        if (entry == null) {
+            return new LeaderboardEntry();
+        }
+        return entry;
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.java_gobang.api;
 
+import com.example.java_gobang.game.BroadcastFrame;
+import com.example.java_gobang.game.GameMetrics;
+import com.example.java_gobang.game.JsonCodec;
 import com.example.java_gobang.game.MatchRequest;
-import com.example.java_gobang.game.MatchResponse;
 import com.example.java_gobang.game.Matcher;
 import com.example.java_gobang.game.OnlineUserManager;
+import com.example.java_gobang.game.OutboundSession;
 import com.example.java_gobang.model.User;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
@@ -16,7 +20,7 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 //通过这个类来处理匹配功能中的 websocket 请求
 @Component
 public class MatchAPI extends TextWebSocketHandler {
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private static final Logger log = LoggerFactory.getLogger(MatchAPI.class);
 
 
     @Autowired
@@ -41,25 +45,21 @@ public class MatchAPI extends TextWebSocketHandler {
             User user = (User) session.getAttributes().get("user");
 
             //2.先判定当前用户是否已经登陆过（已经是在线状态），如果是已经在线，就不该继续进行后续逻辑
-            if(onlineUserManager.getFromGameHall(user.getScore()) != null
-                    || onlineUserManager.getFromGameRoom(user.getUserId()) != null) {
+            //3.拿到了身份信息之后，就可以把玩家设置成上线状态了
+            //  判定和上线在 PresenceRegistry 里一步完成，多个节点同时登录同一个账号也只有一个能成功
+            if(!onlineUserManager.enterGameHall(user.getUserId(), session)) {
                 //当前用户已经登陆了
                 //针对这个情况要告知客户端，你这里重复登陆了
-                MatchResponse response = new MatchResponse();
-                response.setOk(true);
-                response.setReason("当前禁止多开！");
-                response.setMessage("repeatConnection");
-                session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+                GameMetrics.DUPLICATE_LOGIN_HALL.increment();
+                BroadcastFrame.REPEAT_CONNECTION.sendTo(session);
                 //此处直接关闭有些太激进了，还是返回一个特殊的message 供客户端来进行判定 由客户端来进行处理
                 //session.close();
                 return;
             }
 
-            //3.拿到了身份信息之后，就可以把玩家设置成上线状态了
-            onlineUserManager.enterGameHall(user.getUserId(), session);
-            System.out.println("玩家"+ user.getUsername() +"进入游戏大厅");
+            log.info("玩家{}进入游戏大厅", user.getUsername());
         }catch (NullPointerException e){
-            System.out.println("[MatchAPI.afterConnectionEstablished] 当前用户未登录");
+            log.info("[afterConnectionEstablished] 当前用户未登录");
 //            e.printStackTrace();
 //            //出现空指针异常，说明当前用户的身份信息为空
 //            //把当前用户尚未登陆这个信息返回
@@ -75,33 +75,30 @@ public class MatchAPI extends TextWebSocketHandler {
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         //实现处理开始匹配请求和停止匹配请求
         User user = (User) session.getAttributes().get("user");
+        onlineUserManager.touch(session);
         //获取到客户端给服务器发送的数据
         String payload = message.getPayload();
         //当前这个数据载荷是一个JSON格式的字符串，就需要把它转成Java对象。MatchRequest
-        MatchRequest request = objectMapper.readValue(payload, MatchRequest.class);
-        MatchResponse response = new MatchResponse();
+        MatchRequest request = JsonCodec.readMatchRequest(payload);
+        //开始匹配/停止匹配的响应内容都是固定的，直接使用预先编码好的常量
+        BroadcastFrame response;
         if(request.getMessage().equals("startMatch")) {
             //进入匹配队列
             matcher.add(user);
             // 把玩家信息放入匹配队列中，就可以返回一个响应给客户端了
-            response.setOk(true);
-            response.setMessage("startMatch");
+            response = BroadcastFrame.START_MATCH;
 
         }else if(request.getMessage().equals("stopMatch")){
             //退出匹配队列
             matcher.remove(user);
             //移除之后，就可以返回一个响应给客户端了
-            response.setOk(true);
-            response.setMessage("stopMatch");
+            response = BroadcastFrame.STOP_MATCH;
         }else {
             //非法情况
-            response.setOk(false);
-            response.setReason("非法的匹配请求");
+            response = BroadcastFrame.INVALID_MATCH_REQUEST;
         }
-        String jsonString = objectMapper.writeValueAsString(response);
-        session.sendMessage(new TextMessage(jsonString));
-
-
+        //经过发送缓冲区回复，避免和匹配线程同时往这个连接里写
+        response.sendTo(OutboundSession.of(session));
     }
 
     @Override
@@ -109,16 +106,13 @@ public class MatchAPI extends TextWebSocketHandler {
         try {
             //玩家下线，从OnlineUserManager中删除
             User user = (User) session.getAttributes().get("user");
-            WebSocketSession tmpSession = onlineUserManager.getFromGameHall(user.getUserId());
-            if(tmpSession == session){
-                onlineUserManager.exitGameHall(user.getUserId());
-
-            }
+            //只有登记的正好是当前这个连接时才下线 (登记的会话外面包了一层发送缓冲区，不能直接用 == 比较)
+            onlineUserManager.exitGameHall(user.getUserId(), session);
             //如果玩家正在匹配中，而websocket连接断开,就应该移除匹配队列
             matcher.remove(user);
 
         }catch (NullPointerException e){
-            System.out.println("[MatchAPI.handleTransportError] 当前用户未登录");
+            log.info("[handleTransportError] 当前用户未登录");
 //            e.printStackTrace();
 //            MatchResponse response = new MatchResponse();
 //            response.setOk(false);
@@ -132,14 +126,12 @@ public class MatchAPI extends TextWebSocketHandler {
         try {
             //玩家下线，从OnlineUserManager中删除
             User user = (User) session.getAttributes().get("user");
-            WebSocketSession tmpSession = onlineUserManager.getFromGameHall(user.getUserId());
-            if(tmpSession == session){
-                onlineUserManager.exitGameHall(user.getUserId());
-            }
+            //只有登记的正好是当前这个连接时才下线 (登记的会话外面包了一层发送缓冲区，不能直接用 == 比较)
+            onlineUserManager.exitGameHall(user.getUserId(), session);
             //如果玩家正在匹配中，而websocket连接断开,就应该移除匹配队列
             matcher.remove(user);
         }catch (NullPointerException e){
-            System.out.println("[MatchAPI.afterConnectionClosed] 当前用户未登录");
+            log.info("[afterConnectionClosed] 当前用户未登录");
             //e.printStackTrace();
 
             //这个代码之前写的草率了
@@ -0,0 +1,30 @@
+package com.example.java_gobang.api;
+
+import com.example.java_gobang.game.RatingRecalculator;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+//天梯分数重算，挂在 Actuator 下面 (只监听本机的管理端口)，不对玩家开放
+//  GET  /actuator/ratings                     只计算，报告和当前分数的差别
+//  POST /actuator/ratings {"apply": true}     计算并写回数据库 (对局历史不完整的时候拒绝写回，见 RatingRecalculator)
+@Component
+@Endpoint(id = "ratings")
+public class RatingsEndpoint {
+
+    @Resource
+    private RatingRecalculator ratingRecalculator;
+
+    @ReadOperation
+    public RatingRecalculator.Summary preview() {
+        return ratingRecalculator.recalculate(false);
+    }
+
+    @WriteOperation
+    public RatingRecalculator.Summary recalculate(boolean apply) {
+        return ratingRecalculator.recalculate(apply);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.java_gobang.api;
+
+import com.example.java_gobang.game.Replay;
+import com.example.java_gobang.game.ReplayStore;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+//对局回放，数据来自 ReplayStore 的日志文件
+@RestController
+public class ReplayAPI {
+
+    @Resource
+    private ReplayStore replayStore;
+
+    //按照落子顺序返回一局棋的所有步骤，找不到返回一个空对象
+    @GetMapping("/replay/{roomId}")
+    @ResponseBody
+    public Object replay(@PathVariable String roomId) {
+        Replay replay = replayStore.read(roomId);
+        if (replay == null) {
+            return new Replay();
+        }
+        return replay;
+    }
+}
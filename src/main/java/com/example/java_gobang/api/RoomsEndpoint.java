@@ -0,0 +1,29 @@
+package com.example.java_gobang.api;
+
+import com.example.java_gobang.game.RoomLoad;
+import com.example.java_gobang.game.RoomManager;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+//当前节点上信箱排队最多的房间，挂在 Actuator 下面 (只监听本机的管理端口)，用来找是哪个房间慢
+//  GET /actuator/rooms?limit=20
+@Component
+@Endpoint(id = "rooms")
+public class RoomsEndpoint {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 200;
+
+    @Resource
+    private RoomManager roomManager;
+
+    @ReadOperation
+    public List<RoomLoad> busiest(@Nullable Integer limit) {
+        int n = limit == null ? DEFAULT_LIMIT : Math.max(0, Math.min(limit, MAX_LIMIT));
+        return roomManager.busiest(n);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.java_gobang.api;
+
+import com.example.java_gobang.cluster.ClusterNode;
+import com.example.java_gobang.cluster.RoomLocation;
+import com.example.java_gobang.cluster.RoomRegistry;
+import com.example.java_gobang.cluster.RouteResponse;
+import com.example.java_gobang.cluster.RouteTokens;
+import com.example.java_gobang.game.RoomFactory;
+import com.example.java_gobang.model.User;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+//房间在哪个节点上：进入房间 / 观战之前先问一下这里，再去连房间所在节点的 /game 或者 /watch
+//单节点部署时返回的 url 总是空的，客户端直接连当前页面的地址
+@RestController
+public class RouteAPI {
+
+    @Resource
+    private RoomRegistry roomRegistry;
+
+    @Resource
+    private ClusterNode clusterNode;
+
+    @Resource
+    private RouteTokens routeTokens;
+
+    //带 roomId 是观战要看的房间，不带是当前登录的玩家自己所在的房间
+    @GetMapping("/route")
+    @ResponseBody
+    public Object route(@RequestParam(required = false) String roomId, HttpServletRequest req) {
+        RouteResponse resp = new RouteResponse();
+        User user = null;
+        RoomLocation location;
+        if (roomId != null && !roomId.isEmpty()) {
+            long id = RoomFactory.parseRoomId(roomId);
+            location = id == 0 ? null : roomRegistry.locate(id);
+        } else {
+            HttpSession httpSession = req.getSession(false);
+            user = httpSession == null ? null : (User) httpSession.getAttribute("user");
+            if (user == null) {
+                resp.setOk(false);
+                resp.setReason("用户尚未登陆！");
+                return resp;
+            }
+            location = roomRegistry.locateByUserId(user.getUserId());
+        }
+        if (location == null) {
+            resp.setOk(false);
+            resp.setReason("房间不存在或者对局已经结束！");
+            return resp;
+        }
+        resp.setOk(true);
+        resp.setReason("");
+        resp.setRoomId(location.getRoomId());
+        resp.setNodeId(location.getNodeId());
+        if (clusterNode.getNodeId().equals(location.getNodeId())) {
+            resp.setUrl("");
+            return resp;
+        }
+        resp.setUrl(location.getUrl());
+        if (user != null) {
+            //房间所在的节点上没有这个玩家的 HttpSession，带着凭证过去
+            resp.setToken(routeTokens.issue(user, location.getRoomId()));
+        }
+        return resp;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.java_gobang.api;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -8,25 +10,27 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 @Component
 public class TestAPI extends TextWebSocketHandler {
+    private static final Logger log = LoggerFactory.getLogger(TestAPI.class);
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        System.out.println("连接成功");
+        log.info("连接成功");
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        System.out.println("收到消息: "+ message.getPayload());
+        log.info("收到消息: {}", message.getPayload());
         //让服务器收到数据之后，把数据原封不动的返回回去~
         session.sendMessage(message);
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
-        System.out.println("连接异常");
+        log.info("连接异常");
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        System.out.println("连接关闭");
+        log.info("连接关闭");
     }
 }
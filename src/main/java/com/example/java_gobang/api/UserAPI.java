@@ -1,7 +1,11 @@
 package com.example.java_gobang.api;
 
+import com.example.java_gobang.cluster.ScoreFeed;
 import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserCache;
 import com.example.java_gobang.model.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -12,23 +16,33 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletMapping;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.util.Collections;
 
 @RestController
 public class UserAPI {
+    private static final Logger log = LoggerFactory.getLogger(UserAPI.class);
+
 
     @Resource
     private UserMapper userMapper;
 
+    //登录和查询个人信息都先查缓存
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private ScoreFeed scoreFeed;
+
     @PostMapping("/login")    //请求使用的是POST
     @ResponseBody    //将java对象转为json格式的数据
     public Object login(String username, String password, HttpServletRequest req){
         //关键操作：根据username去数据库中进行查询
         //如果能找到匹配的用户，并且密码也一致，就认为登陆成功
-        User user = userMapper.selectByName(username);
-        System.out.println("[login] user=" + username);
+        User user = userCache.getByName(username);
+        log.info("[login] user={}", username);
         if(user == null || !user.getPassword().equals(password)){
             //登陆失败
-            System.out.println("登陆失败");
+            log.info("[login] 登陆失败 user={}", username);
             return new User();//无效对象
         }
         HttpSession httpSession = req.getSession(true);
@@ -46,6 +60,9 @@ public class UserAPI {
             user.setUsername(username);
             user.setPassword(password);
             userMapper.insert(user);
+            //新注册的玩家直接进排行榜，初始分数和 insert 语句里写的一样
+            user.setScore(User.INITIAL_SCORE);
+            scoreFeed.publish(Collections.singletonList(user));
             return user;
         } catch (org.springframework.dao.DuplicateKeyException e){
             User user = new User();
@@ -59,8 +76,9 @@ public class UserAPI {
         try {
             HttpSession httpSession = req.getSession(false);
             User user = (User) httpSession.getAttribute("user");
-            //拿着这个user对象，去数据库中找，找到最新的数据
-            User newUser = userMapper.selectByName(user.getUsername());
+            //拿着这个user对象，去缓存/数据库中找，找到最新的数据
+            //战绩写回数据库之后缓存会同步刷新，所以这里拿到的也是最新的
+            User newUser = userCache.getById(user.getUserId());
             return newUser;
         } catch (NullPointerException e){
             return new User();
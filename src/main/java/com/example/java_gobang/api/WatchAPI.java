@@ -0,0 +1,103 @@
+package com.example.java_gobang.api;
+
+import com.example.java_gobang.game.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+//观战：ws://host/watch?roomId=xxx
+//连上之后先收到一份当前棋盘的快照 (watchSnapshot)，之后收到和玩家完全一样的落子消息 (putChess)
+//观众只收不发，发过来的消息直接忽略
+@Component
+public class WatchAPI extends TextWebSocketHandler {
+    private static final Logger log = LoggerFactory.getLogger(WatchAPI.class);
+
+    //观众的连接在 attributes 里用这个 key 记录正在看的房间
+    private static final String ROOM_ATTRIBUTE = "watchRoom";
+
+    private static final BroadcastFrame MISSING_ROOM_ID = watchFailure("没有指定要观战的房间！");
+    private static final BroadcastFrame ROOM_NOT_FOUND = watchFailure("房间不存在或者对局已经结束！");
+    private static final BroadcastFrame TOO_MANY_SPECTATORS = watchFailure("当前房间的观众太多了，请稍后再试！");
+
+    @Autowired
+    private RoomManager roomManager;
+
+    @Autowired
+    private OutboundExecutor outboundExecutor;
+
+    //一个房间最多允许多少人同时观战
+    @Value("${gobang.spectator.max-per-room:10000}")
+    private int maxPerRoom;
+
+    //观众的发送缓冲区满了怎么办，默认直接断开：跟不上的观众重新连上来拿一份新的快照就行
+    @Value("${gobang.spectator.overflow-policy:CLOSE}")
+    private OutboundSession.OverflowPolicy overflowPolicy;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        String roomId = session.getUri() == null ? null : UriComponentsBuilder.fromUri(session.getUri())
+                .build().getQueryParams().getFirst("roomId");
+        if (roomId == null || roomId.isEmpty()) {
+            reject(session, MISSING_ROOM_ID);
+            return;
+        }
+        long id = RoomFactory.parseRoomId(roomId);
+        Room room = id == 0 ? null : roomManager.getRoomByRoomId(id);
+        if (room == null || room.isOver()) {
+            reject(session, ROOM_NOT_FOUND);
+            return;
+        }
+        if (room.getSpectatorCount() >= maxPerRoom) {
+            reject(session, TOO_MANY_SPECTATORS);
+            return;
+        }
+        //观众的所有消息都经过发送缓冲区，网络 I/O 不会发生在房间线程或者分发线程上
+        WebSocketSession outbound = outboundExecutor.wrap(session, overflowPolicy);
+        session.getAttributes().put(ROOM_ATTRIBUTE, room);
+        //在房间的信箱里取快照，保证快照和之后的落子消息之间不会漏掉或者重复
+        room.execute(() -> room.addSpectator(outbound));
+        log.info("连接 {} 开始观战房间 {}", session.getId(), roomId);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        //观众不需要发消息
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        leave(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        leave(session);
+    }
+
+    private void leave(WebSocketSession session) {
+        Object room = session.getAttributes().remove(ROOM_ATTRIBUTE);
+        if (room instanceof Room) {
+            ((Room) room).removeSpectator(OutboundSession.of(session));
+        }
+    }
+
+    private void reject(WebSocketSession session, BroadcastFrame frame) throws Exception {
+        frame.sendTo(session);
+        session.close(CloseStatus.NORMAL);
+    }
+
+    private static BroadcastFrame watchFailure(String reason) {
+        WatchSnapshot resp = new WatchSnapshot();
+        resp.setMessage("watchSnapshot");
+        resp.setOk(false);
+        resp.setReason(reason);
+        return BroadcastFrame.json(resp);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.java_gobang.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+
+//当前这个节点的身份
+//多个节点一起部署时，房间、在线状态里都记着归哪个节点，玩家要被引到房间所在的节点上去下棋
+@Component
+public class ClusterNode {
+    //节点 id，集群里不能重复；不配置的话用 主机名:端口 再加一段随机数
+    @Value("${gobang.cluster.node-id:}")
+    private String nodeId;
+
+    //别的节点把玩家引到这个节点时使用的地址，例如 http://10.0.0.5:8080
+    //为空表示和玩家当前访问的页面是同一个地址 (单节点部署)
+    @Value("${gobang.cluster.advertised-url:}")
+    private String advertisedUrl;
+
+    @Value("${server.port:8080}")
+    private int port;
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isEmpty()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "localhost";
+            }
+            nodeId = host + ":" + port + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        if (advertisedUrl == null) {
+            advertisedUrl = "";
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getAdvertisedUrl() {
+        return advertisedUrl;
+    }
+}
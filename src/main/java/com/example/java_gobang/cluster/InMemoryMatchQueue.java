@@ -0,0 +1,98 @@
+package com.example.java_gobang.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//单节点部署的匹配队列：按分数排序的有序集合，加入/退出匹配都是 O(log n)
+//当前节点就是唯一负责配对的节点，匹配成功的通知直接在调用方的线程上回调
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "local", matchIfMissing = true)
+public class InMemoryMatchQueue implements MatchQueue {
+    //等待匹配的玩家，按照 分数 -> 入队顺序 排序
+    private final ConcurrentSkipListSet<MatchTicket> waiting = new ConcurrentSkipListSet<>();
+    //userId -> 这个玩家当前的排队记录，用来快速找到要删除的那一项
+    private final ConcurrentHashMap<Integer, MatchTicket> tickets = new ConcurrentHashMap<>();
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<RoomRequest>> roomRequestListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public boolean offer(MatchTicket ticket) {
+        if (tickets.putIfAbsent(ticket.getUserId(), ticket) != null) {
+            return false;
+        }
+        waiting.add(ticket);
+        return true;
+    }
+
+    @Override
+    public MatchTicket remove(int userId) {
+        MatchTicket ticket = tickets.remove(userId);
+        if (ticket != null) {
+            waiting.remove(ticket);
+        }
+        return ticket;
+    }
+
+    @Override
+    public boolean claim(MatchTicket ticket) {
+        if (!tickets.remove(ticket.getUserId(), ticket)) {
+            return false;
+        }
+        waiting.remove(ticket);
+        return true;
+    }
+
+    @Override
+    public void putBack(MatchTicket ticket) {
+        if (tickets.putIfAbsent(ticket.getUserId(), ticket) == null) {
+            waiting.add(ticket);
+        }
+    }
+
+    @Override
+    public Iterable<MatchTicket> ordered() {
+        //跳表的迭代器是弱一致的，遍历的时候不用加锁
+        return waiting;
+    }
+
+    @Override
+    public int size() {
+        return tickets.size();
+    }
+
+    @Override
+    public boolean isCoordinator() {
+        return true;
+    }
+
+    @Override
+    public void publishMatched(int userId) {
+        for (IntConsumer listener : listeners) {
+            listener.accept(userId);
+        }
+    }
+
+    @Override
+    public void onMatched(IntConsumer listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void requestRoom(RoomRequest request) {
+        for (Consumer<RoomRequest> listener : roomRequestListeners) {
+            listener.accept(request);
+        }
+    }
+
+    @Override
+    public void onRoomRequest(Consumer<RoomRequest> listener) {
+        roomRequestListeners.add(listener);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.java_gobang.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+//单节点部署的在线状态目录
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "local", matchIfMissing = true)
+public class InMemoryPresenceRegistry implements PresenceRegistry {
+    private final ConcurrentHashMap<Integer, Presence> presences = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean enter(int userId, Presence presence) {
+        return presences.putIfAbsent(userId, presence) == null;
+    }
+
+    @Override
+    public boolean exit(int userId, Presence presence) {
+        return presences.remove(userId, presence);
+    }
+
+    @Override
+    public Presence get(int userId) {
+        return presences.get(userId);
+    }
+}
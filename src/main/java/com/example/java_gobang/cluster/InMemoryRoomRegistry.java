@@ -0,0 +1,44 @@
+package com.example.java_gobang.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+//单节点部署的房间目录：所有房间都在当前节点上
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "local", matchIfMissing = true)
+public class InMemoryRoomRegistry implements RoomRegistry {
+    private final ConcurrentHashMap<Long, RoomLocation> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> userIdToRoomId = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(RoomLocation location) {
+        //在 compute 里登记玩家的映射，和 unregister 互斥
+        rooms.compute(location.getRoomId(), (roomId, old) -> {
+            userIdToRoomId.put(location.getUserId1(), roomId);
+            userIdToRoomId.put(location.getUserId2(), roomId);
+            return location;
+        });
+    }
+
+    @Override
+    public void unregister(long roomId) {
+        rooms.computeIfPresent(roomId, (key, location) -> {
+            userIdToRoomId.remove(location.getUserId1(), roomId);
+            userIdToRoomId.remove(location.getUserId2(), roomId);
+            return null;
+        });
+    }
+
+    @Override
+    public RoomLocation locate(long roomId) {
+        return rooms.get(roomId);
+    }
+
+    @Override
+    public RoomLocation locateByUserId(int userId) {
+        Long roomId = userIdToRoomId.get(userId);
+        return roomId == null ? null : rooms.get(roomId);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.java_gobang.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//单节点部署：房间号 = max(上一个房间号 + 1, floor)
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "local", matchIfMissing = true)
+public class LocalRoomIdAllocator implements RoomIdAllocator {
+    private final AtomicLong lastRoomId = new AtomicLong();
+
+    @Override
+    public long next(long floor) {
+        return lastRoomId.updateAndGet(last -> Math.max(last + 1, floor));
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.java_gobang.cluster;
+
+import com.example.java_gobang.game.Leaderboard;
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+//单节点部署：直接更新本机的用户缓存和排行榜
+@Component
+@ConditionalOnProperty(name = "gobang.cluster.mode", havingValue = "local", matchIfMissing = true)
+public class LocalScoreFeed implements ScoreFeed {
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private Leaderboard leaderboard;
+
+    @Override
+    public void publish(List<User> latest) {
+        userCache.refresh(latest);
+        leaderboard.update(latest);
+    }
+
+    @Override
+    public void invalidate(List<Integer> userIds) {
+        userCache.invalidate(userIds);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.java_gobang.cluster;
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+//匹配队列：所有正在等待匹配的玩家
+//Matcher 每隔一小段时间拿一份按分数排好的快照，把相邻的玩家配对，再用 claim 把配上的玩家摘下来
+//多节点部署时只有一个节点 (isCoordinator) 负责配对，其他节点只负责把玩家放进来、拿出去，以及按照 RoomRequest 建房间
+//单节点部署用 InMemoryMatchQueue，多节点部署用 -P cluster 打包进来的 Hazelcast 实现
+public interface MatchQueue {
+    //开始排队；这个玩家已经在排队了返回 false
+    boolean offer(MatchTicket ticket);
+
+    //退出匹配，返回被删掉的记录，没有在排队返回 null
+    MatchTicket remove(int userId);
+
+    //匹配器把这条记录摘下来；返回 false 说明玩家刚刚自己退出了匹配 (或者又重新排了一次队)
+    boolean claim(MatchTicket ticket);
+
+    //把摘下来的记录原样放回去，保留原来的排队时间
+    void putBack(MatchTicket ticket);
+
+    //按照 分数 -> 排队顺序 排好的所有记录，遍历的过程中队列可以被修改
+    Iterable<MatchTicket> ordered();
+
+    int size();
+
+    //当前节点是不是负责配对的节点
+    boolean isCoordinator();
+
+    //通知玩家所在的节点：这个玩家匹配成功了
+    void publishMatched(int userId);
+
+    //收到匹配成功的通知时调用 listener，参数是 userId；每个节点都会收到所有的通知
+    void onMatched(IntConsumer listener);
+
+    //请 request.hostNodeId 这个节点建房间
+    void requestRoom(RoomRequest request);
+
+    //收到建房间的请求时调用 listener；每个节点都会收到所有的请求，只处理发给自己的
+    void onRoomRequest(Consumer<RoomRequest> listener);
+}
@@ -0,0 +1,76 @@
+package com.example.java_gobang.cluster;
+
+import com.example.java_gobang.model.User;
+
+import java.io.Serializable;
+
+//一条排队记录，按照 分数 -> 开始排队的时间 -> userId 排序
+//分布式的实现里会序列化之后存到别的节点上，所以开始排队的时间用的是墙上时间而不是 System.nanoTime
+public final class MatchTicket implements Comparable<MatchTicket>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int userId;
+    private final String username;
+    private final int score;
+    //开始排队的时间 (System.currentTimeMillis)
+    private final long enqueuedAt;
+    //玩家的大厅连接在哪个节点上
+    private final String nodeId;
+
+    public MatchTicket(User user, long enqueuedAt, String nodeId) {
+        this.userId = user.getUserId();
+        this.username = user.getUsername();
+        this.score = user.getScore();
+        this.enqueuedAt = enqueuedAt;
+        this.nodeId = nodeId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public int compareTo(MatchTicket o) {
+        if (score != o.score) {
+            return Integer.compare(score, o.score);
+        }
+        if (enqueuedAt != o.enqueuedAt) {
+            return Long.compare(enqueuedAt, o.enqueuedAt);
+        }
+        return Integer.compare(userId, o.userId);
+    }
+
+    //同一个玩家的两次排队是不同的记录：退出匹配之后又马上开始匹配，旧记录不能把新记录删掉
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MatchTicket)) {
+            return false;
+        }
+        MatchTicket that = (MatchTicket) o;
+        return userId == that.userId && score == that.score && enqueuedAt == that.enqueuedAt;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(userId) * 31 + Long.hashCode(enqueuedAt);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.java_gobang.cluster;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+//一个玩家的在线状态：在哪个节点、大厅还是房间、哪一个连接
+public class Presence implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Place {
+        HALL,
+        ROOM
+    }
+
+    private String nodeId;
+    private Place place;
+    private String sessionId;
+
+    public Presence() {
+    }
+
+    public Presence(String nodeId, Place place, String sessionId) {
+        this.nodeId = nodeId;
+        this.place = place;
+        this.sessionId = sessionId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Place getPlace() {
+        return place;
+    }
+
+    public void setPlace(Place place) {
+        this.place = place;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    //按值比较，分布式的实现用它做 “只有登记的正好是这个连接时才删除”
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Presence)) {
+            return false;
+        }
+        Presence that = (Presence) o;
+        return Objects.equals(nodeId, that.nodeId) && place == that.place
+                && Objects.equals(sessionId, that.sessionId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nodeId, place, sessionId);
+    }
+}
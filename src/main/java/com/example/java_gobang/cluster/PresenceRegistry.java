@@ -0,0 +1,15 @@
+package com.example.java_gobang.cluster;
+
+//在线状态目录：整个集群里一个玩家同一时刻只能有一个连接 (大厅或者房间)
+//多开检查以这里为准，登记是原子的，不会有两个节点同时登记成功
+//单节点部署用 InMemoryPresenceRegistry，多节点部署用 -P cluster 打包进来的 Hazelcast 实现
+public interface PresenceRegistry {
+    //登记玩家上线；这个玩家已经在任何地方 (任何节点、大厅或者房间) 在线了返回 false
+    boolean enter(int userId, Presence presence);
+
+    //只有登记的正好是 presence 时才下线，返回是否下线了
+    boolean exit(int userId, Presence presence);
+
+    //玩家当前的在线状态，不在线返回 null
+    Presence get(int userId);
+}
@@ -0,0 +1,8 @@
+package com.example.java_gobang.cluster;
+
+//房间号的分配；房间建在不同的节点上，房间号要在整个集群里唯一 (房间目录和对局记录都按房间号存)
+//单节点部署用 LocalRoomIdAllocator，多节点部署用 -P cluster 打包进来的 Hazelcast 实现
+public interface RoomIdAllocator {
+    //分配一个新的房间号，不小于 floor (RoomFactory 用当前毫秒数算出来的下限，保证重启之后不会和以前的重复)
+    long next(long floor);
+}
@@ -0,0 +1,67 @@
+package com.example.java_gobang.cluster;
+
+import java.io.Serializable;
+
+//房间在哪个节点上，以及匹配进这个房间的两个玩家
+//分布式的实现里会序列化之后存到别的节点上，所以只放简单的字段
+public class RoomLocation implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private long roomId;
+    private String nodeId;
+    //房间所在节点对外的地址，为空表示和当前页面同一个地址
+    private String url;
+    private int userId1;
+    private int userId2;
+
+    public RoomLocation() {
+    }
+
+    public RoomLocation(long roomId, String nodeId, String url, int userId1, int userId2) {
+        this.roomId = roomId;
+        this.nodeId = nodeId;
+        this.url = url;
+        this.userId1 = userId1;
+        this.userId2 = userId2;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getUserId1() {
+        return userId1;
+    }
+
+    public void setUserId1(int userId1) {
+        this.userId1 = userId1;
+    }
+
+    public int getUserId2() {
+        return userId2;
+    }
+
+    public void setUserId2(int userId2) {
+        this.userId2 = userId2;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.java_gobang.cluster;
+
+//房间目录：每个房间归哪个节点，每个玩家在哪个房间
+//Room 对象本身 (棋盘、信箱、连接) 只存在于创建它的节点上，由 RoomManager 管理；这里只记位置
+//单节点部署用 InMemoryRoomRegistry，多节点部署用 -P cluster 打包进来的 Hazelcast 实现
+//
+//RoomManager 只在创建和释放房间的时候调用这里，落子路径上不会访问
+public interface RoomRegistry {
+    //登记一个房间，同时登记两个玩家 -> 房间的映射
+    void register(RoomLocation location);
+
+    //释放房间，同时释放仍然指向这个房间的玩家映射 (玩家可能已经匹配进了新的房间)
+    void unregister(long roomId);
+
+    //房间在哪里，不存在返回 null
+    RoomLocation locate(long roomId);
+
+    //玩家所在的房间在哪里，不在任何房间里返回 null
+    RoomLocation locateByUserId(int userId);
+}
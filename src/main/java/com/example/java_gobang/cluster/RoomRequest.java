@@ -0,0 +1,32 @@
+package com.example.java_gobang.cluster;
+
+import java.io.Serializable;
+
+//负责配对的节点请另一个节点建房间：房间建在玩家大厅连接所在的节点上，不全挤在负责配对的节点上
+//ticket2 为 null 表示给 ticket1 的玩家安排电脑对手
+public final class RoomRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    //负责建房间的节点
+    private final String hostNodeId;
+    private final MatchTicket ticket1;
+    private final MatchTicket ticket2;
+
+    public RoomRequest(String hostNodeId, MatchTicket ticket1, MatchTicket ticket2) {
+        this.hostNodeId = hostNodeId;
+        this.ticket1 = ticket1;
+        this.ticket2 = ticket2;
+    }
+
+    public String getHostNodeId() {
+        return hostNodeId;
+    }
+
+    public MatchTicket getTicket1() {
+        return ticket1;
+    }
+
+    public MatchTicket getTicket2() {
+        return ticket2;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.java_gobang.cluster;
+
+//GET /route 的响应：房间在哪个节点上，客户端应该连哪个地址
+public class RouteResponse {
+    private boolean ok;
+    private String reason;
+    private long roomId;
+    private String nodeId;
+    //房间所在节点的地址，为空表示就是当前页面的地址
+    private String url;
+    //连别的节点时带上的凭证，同一个节点上为空
+    private String token;
+
+    public boolean isOk() {
+        return ok;
+    }
+
+    public void setOk(boolean ok) {
+        this.ok = ok;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
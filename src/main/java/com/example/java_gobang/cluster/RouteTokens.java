@@ -0,0 +1,123 @@
+package com.example.java_gobang.cluster;
+
+import com.example.java_gobang.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+//把玩家引到别的节点时带上的凭证
+//玩家是在某一个节点上登录的，HttpSession 只在那个节点上；房间在别的节点上时，/route 签发一个短时间有效的凭证，
+//玩家连房间所在节点的 /game 时带上 ?token=，那个节点验证签名之后就知道他是谁了
+//凭证只对签发时的那个房间有效：GameAPI 会检查玩家在这个节点上的房间是不是凭证里的房间
+//所有节点要配置同一个 gobang.cluster.route-secret；没有配置的话不签发凭证，只能在同一个节点上下棋
+@Component
+public class RouteTokens {
+    //凭证验证通过之后，凭证里的房间号记在 websocket 会话的 attributes 里
+    public static final String ROOM_ID_ATTRIBUTE = "routeRoomId";
+
+    private static final Logger log = LoggerFactory.getLogger(RouteTokens.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${gobang.cluster.route-secret:}")
+    private String secret;
+
+    //凭证多久之内有效
+    @Value("${gobang.cluster.route-token-ttl-ms:60000}")
+    private long ttlMillis;
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init() {
+        if (secret != null && !secret.isEmpty()) {
+            key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        }
+    }
+
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    //验证通过的凭证：玩家 (只有 userId、用户名和分数) 和签发时指定的房间
+    public static final class Grant {
+        private final User user;
+        private final long roomId;
+
+        Grant(User user, long roomId) {
+            this.user = user;
+            this.roomId = roomId;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public long getRoomId() {
+            return roomId;
+        }
+    }
+
+    //给玩家签发进入 roomId 的凭证，没有配置密钥返回 null
+    public String issue(User user, long roomId) {
+        if (key == null) {
+            return null;
+        }
+        //用户名放在最后，里面有 '|' 也不影响解析
+        String payload = user.getUserId() + "|" + user.getScore() + "|"
+                + (System.currentTimeMillis() + ttlMillis) + "|" + roomId + "|" + user.getUsername();
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(bytes));
+    }
+
+    //验证凭证，通过的话返回里面记的玩家和房间，否则返回 null
+    public Grant verify(String token) {
+        if (key == null || token == null) {
+            return null;
+        }
+        try {
+            int dot = token.indexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return null;
+            }
+            String[] fields = new String(payload, StandardCharsets.UTF_8).split("\\|", 5);
+            if (fields.length != 5 || Long.parseLong(fields[2]) < System.currentTimeMillis()) {
+                return null;
+            }
+            User user = new User();
+            user.setUserId(Integer.parseInt(fields[0]));
+            user.setScore(Integer.parseInt(fields[1]));
+            user.setUsername(fields[4]);
+            return new Grant(user, Long.parseLong(fields[3]));
+        } catch (IllegalArgumentException e) {
+            log.info("非法的路由凭证：{}", e.toString());
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.java_gobang.cluster;
+
+import com.example.java_gobang.model.User;
+
+import java.util.List;
+
+//玩家的分数变了 (战绩写回、重算写回、新注册) 之后，通知每个节点的排行榜和用户缓存
+//排行榜是每个节点内存里的一份，算分用的也是它，不通知的话别的节点一直是启动时加载的旧分数
+//单节点部署用 LocalScoreFeed，多节点部署用 -P cluster 打包进来的 Hazelcast 实现
+public interface ScoreFeed {
+    //latest 是刚从数据库查出来的最新数据
+    void publish(List<User> latest);
+
+    //查不到最新数据的时候，让所有节点缓存的这些玩家失效，下次访问时再回源
+    void invalidate(List<Integer> userIds);
+}
@@ -0,0 +1,98 @@
+package com.example.java_gobang.config;
+
+import com.example.java_gobang.model.UserMapper;
+import com.example.java_gobang.model.UserResultDelta;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//启动自检 + 预热
+//启动完成之后先把连接池填满，再把 UserMapper 的语句各执行几遍：
+//建立连接、MyBatis 解析语句、服务端预编译、JIT 这些一次性的开销都在这里付掉，
+//发布之后第一批登录的玩家就不会碰到明显变慢的请求
+//数据库连不上不影响启动，只打一条警告
+@Component
+public class DatabaseWarmup implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(DatabaseWarmup.class);
+
+    //预热时用的 userId / 用户名，数据库里不存在，查询都是空结果，更新也不会改到任何一行
+    private static final int WARMUP_USER_ID = -1;
+    private static final String WARMUP_USERNAME = "__warmup__";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${gobang.db-warmup.enabled:true}")
+    private boolean enabled;
+
+    //每条语句执行几遍
+    @Value("${gobang.db-warmup.rounds:5}")
+    private int rounds;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int connections = fillPool();
+            for (int i = 0; i < rounds; i++) {
+                warmUserMapper();
+            }
+            log.info("数据库预热完成：{} 个连接，每条语句 {} 遍，耗时 {}ms",
+                    connections, rounds, System.currentTimeMillis() - start);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("数据库预热失败，跳过：{}", e.toString());
+        }
+    }
+
+    //同时借出 minimumIdle 个连接再还回去，逼连接池一次性把连接建好
+    private int fillPool() throws SQLException {
+        int target = 1;
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            target = Math.max(1, dataSource.unwrap(HikariDataSource.class).getMinimumIdle());
+        }
+        List<Connection> borrowed = new ArrayList<>(target);
+        try {
+            for (int i = 0; i < target; i++) {
+                borrowed.add(dataSource.getConnection());
+            }
+        } finally {
+            for (Connection connection : borrowed) {
+                connection.close();
+            }
+        }
+        return borrowed.size();
+    }
+
+    private void warmUserMapper() {
+        userMapper.selectByName(WARMUP_USERNAME);
+        userMapper.selectById(WARMUP_USER_ID);
+        userMapper.selectByIds(Collections.singletonList(WARMUP_USER_ID));
+        //写回战绩的语句也走一遍，放在事务里并且回滚，不会留下任何修改
+        transactionTemplate.executeWithoutResult(status -> {
+            userMapper.batchUpdateResult(Collections.singletonList(new UserResultDelta(WARMUP_USER_ID)));
+            status.setRollbackOnly();
+        });
+    }
+}
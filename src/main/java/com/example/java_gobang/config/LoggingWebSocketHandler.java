@@ -0,0 +1,56 @@
+package com.example.java_gobang.config;
+
+import com.example.java_gobang.game.LogContext;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+//在 websocket 的每个回调前后设置/清理日志的 MDC (userId)，业务代码里就不用每个方法都写一遍
+public class LoggingWebSocketHandler extends WebSocketHandlerDecorator {
+
+    public LoggingWebSocketHandler(WebSocketHandler delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        LogContext.forSession(session);
+        try {
+            super.afterConnectionEstablished(session);
+        } finally {
+            LogContext.clear();
+        }
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        LogContext.forSession(session);
+        try {
+            super.handleMessage(session, message);
+        } finally {
+            LogContext.clear();
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        LogContext.forSession(session);
+        try {
+            super.handleTransportError(session, exception);
+        } finally {
+            LogContext.clear();
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        LogContext.forSession(session);
+        try {
+            super.afterConnectionClosed(session, closeStatus);
+        } finally {
+            LogContext.clear();
+        }
+    }
+}
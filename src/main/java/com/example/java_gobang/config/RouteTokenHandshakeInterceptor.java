@@ -0,0 +1,41 @@
+package com.example.java_gobang.config;
+
+import com.example.java_gobang.cluster.RouteTokens;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+//从别的节点被引过来的玩家，这个节点上没有他的 HttpSession，凭 /route 签发的 ?token= 确认身份
+//要放在 HttpSessionHandshakeInterceptor 后面：有 HttpSession 的时候以 HttpSession 为准
+//凭证里的房间号也记下来，GameAPI 用它确认玩家进的就是凭证签发时的房间
+public class RouteTokenHandshakeInterceptor implements HandshakeInterceptor {
+    private final RouteTokens routeTokens;
+
+    public RouteTokenHandshakeInterceptor(RouteTokens routeTokens) {
+        this.routeTokens = routeTokens;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (attributes.get("user") == null && routeTokens.isEnabled()) {
+            String token = UriComponentsBuilder.fromUri(request.getURI()).build()
+                    .getQueryParams().getFirst("token");
+            RouteTokens.Grant grant = routeTokens.verify(token);
+            if (grant != null) {
+                attributes.put("user", grant.getUser());
+                attributes.put(RouteTokens.ROOM_ID_ATTRIBUTE, grant.getRoomId());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
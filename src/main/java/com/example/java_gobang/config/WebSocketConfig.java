@@ -3,12 +3,17 @@ package com.example.java_gobang.config;
 import com.example.java_gobang.api.GameAPI;
 import com.example.java_gobang.api.MatchAPI;
 import com.example.java_gobang.api.TestAPI;
+import com.example.java_gobang.api.WatchAPI;
+import com.example.java_gobang.cluster.RouteTokens;
+import com.example.java_gobang.game.BinaryMoveCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.HttpRequestHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 import org.springframework.web.socket.server.support.HttpSessionHandshakeInterceptor;
 
 @Configuration
@@ -25,12 +30,36 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Autowired
     private GameAPI gameAPI;
 
+    @Autowired
+    private WatchAPI watchAPI;
+
+    @Autowired
+    private RouteTokens routeTokens;
+
+    //多节点部署时页面在一个节点上，/game 和 /watch 可能连的是别的节点，需要允许其他节点的地址跨域
+    //例如 http://10.0.0.*:8080；不配置就只允许同源
+    @Value("${gobang.cluster.allowed-origins:}")
+    private String[] allowedOrigins;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry webSocketHandlerRegistry) {
         webSocketHandlerRegistry.addHandler(testAPI,"/test");
-        webSocketHandlerRegistry.addHandler(matchAPI,"/findMatch")
-                .addInterceptors(new HttpSessionHandshakeInterceptor());
-        webSocketHandlerRegistry.addHandler(gameAPI,"/game")
+        //匹配和游戏房间的日志里都带上 userId
+        webSocketHandlerRegistry.addHandler(new LoggingWebSocketHandler(matchAPI),"/findMatch")
                 .addInterceptors(new HttpSessionHandshakeInterceptor());
+        //游戏房间支持两种子协议：二进制的落子格式 和 JSON
+        //客户端没有声明子协议时 (老版本的页面)，默认就是 JSON
+        DefaultHandshakeHandler gameHandshakeHandler = new DefaultHandshakeHandler();
+        gameHandshakeHandler.setSupportedProtocols(BinaryMoveCodec.PROTOCOL, BinaryMoveCodec.JSON_PROTOCOL);
+        //房间在别的节点上的时候，玩家带着 /route 签发的凭证连过来
+        webSocketHandlerRegistry.addHandler(new LoggingWebSocketHandler(gameAPI),"/game")
+                .setHandshakeHandler(gameHandshakeHandler)
+                .addInterceptors(new HttpSessionHandshakeInterceptor(), new RouteTokenHandshakeInterceptor(routeTokens))
+                .setAllowedOriginPatterns(allowedOrigins);
+        //观战收到的落子消息和玩家一样，所以也支持两种子协议
+        webSocketHandlerRegistry.addHandler(new LoggingWebSocketHandler(watchAPI),"/watch")
+                .setHandshakeHandler(gameHandshakeHandler)
+                .addInterceptors(new HttpSessionHandshakeInterceptor())
+                .setAllowedOriginPatterns(allowedOrigins);
     }
 }
@@ -0,0 +1,97 @@
+package com.example.java_gobang.game;
+
+//基于二维数组的棋盘，也就是最早写在 Room 里的那一套判定逻辑
+//这里保留下来作为参考实现，方便和 BitBoard 的结果互相对照
+public class ArrayBoard implements Board {
+    private int[][] board = new int[MAX_ROW][MAX_COL];
+
+    @Override
+    public int get(int row, int col) {
+        return board[row][col];
+    }
+
+    @Override
+    public void put(int row, int col, int chess) {
+        board[row][col] = chess;
+    }
+
+    @Override
+    public boolean isFive(int row, int col, int chess) {
+        //1.检查所有的行
+        //  先遍历这五种情况
+        for (int c = col - 4; c <= col; c++) {
+            //针对其中的一种情况，来判定这五个子是不是连在一起了
+            //不光是这五个子得连着，而且要跟玩家落的子是一样的 才算获胜
+            try {
+                if (board[row][c] == chess
+                        && board[row][c + 1] == chess
+                        && board[row][c + 2] == chess
+                        && board[row][c + 3] == chess
+                        && board[row][c + 4] == chess) {
+                    //构成了五子连珠！胜负已分
+                    return true;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                //如果出现数组下标越界得情况，可以直接忽略这个异常
+                continue;
+            }
+        }
+
+        //2.检查所有列
+        for (int r = row - 4; r <= row; r++) {
+            try {
+                if (board[r][col] == chess
+                        && board[r + 1][col] == chess
+                        && board[r + 2][col] == chess
+                        && board[r + 3][col] == chess
+                        && board[r + 4][col] == chess) {
+                    return true;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                continue;
+            }
+        }
+
+        //3.检查左对角线
+        for (int r = row - 4, c = col - 4; r <= row && c <= col; r++, c++) {
+            try {
+                if (board[r][c] == chess
+                        && board[r + 1][c + 1] == chess
+                        && board[r + 2][c + 2] == chess
+                        && board[r + 3][c + 3] == chess
+                        && board[r + 4][c + 4] == chess) {
+                    return true;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                continue;
+            }
+        }
+
+        //4.检查右对角线
+        for (int r = row - 4, c = col + 4; r <= row && c >= col; r++, c--) {
+            try {
+                if (board[r][c] == chess
+                        && board[r + 1][c - 1] == chess
+                        && board[r + 2][c - 2] == chess
+                        && board[r + 3][c - 3] == chess
+                        && board[r + 4][c - 4] == chess) {
+                    return true;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                continue;
+            }
+        }
+
+        //胜负未分
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for (int r = 0; r < MAX_ROW; r++) {
+            for (int c = 0; c < MAX_COL; c++) {
+                board[r][c] = 0;
+            }
+        }
+    }
+}
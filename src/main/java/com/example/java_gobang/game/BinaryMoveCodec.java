@@ -0,0 +1,64 @@
+package com.example.java_gobang.game;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+
+//落子消息的二进制编解码
+//客户端在建立 websocket 连接的时候通过子协议 (Sec-WebSocket-Protocol) 声明自己支持二进制格式，
+//协商成功之后落子请求/响应都走二进制帧；没有声明的老客户端继续使用 JSON
+//
+//落子请求 (3字节)：  [类型 1字节][row 1字节][col 1字节]
+//  落子的玩家就是这个 websocket 连接对应的玩家，不需要再传 userId
+//落子响应 (11字节)：[类型 1字节][row 1字节][col 1字节][userId 4字节][winner 4字节]
+//  多字节整数都是大端序
+public class BinaryMoveCodec {
+    //二进制格式对应的子协议名
+    public static final String PROTOCOL = "gobang.binary.v1";
+    //显式声明使用 JSON 的子协议名，同时支持两种格式的客户端把它作为备选
+    public static final String JSON_PROTOCOL = "gobang.json";
+
+    public static final byte TYPE_PUT_CHESS = 1;
+
+    public static final int REQUEST_LENGTH = 3;
+    public static final int RESPONSE_LENGTH = 11;
+
+    //这个连接协商出来的是不是二进制格式
+    public static boolean isBinary(WebSocketSession session) {
+        return PROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    //把二进制的落子请求解析到 request 里，格式不对就返回 false
+    public static boolean decodeRequest(ByteBuffer payload, int userId, GameRequest request) {
+        if (payload.remaining() != REQUEST_LENGTH) {
+            return false;
+        }
+        int pos = payload.position();
+        if (payload.get(pos) != TYPE_PUT_CHESS) {
+            return false;
+        }
+        request.setMessage("putChess");
+        request.setUserId(userId);
+        request.setRow(payload.get(pos + 1) & 0xFF);
+        request.setCol(payload.get(pos + 2) & 0xFF);
+        return true;
+    }
+
+    //编码成字节数组而不是直接给出 BinaryMessage：发送时会消费 ByteBuffer 的读指针，
+    //所以每个连接发送时都要用 new BinaryMessage(bytes) 各自包一层 (只是包装，不会复制)
+    public static byte[] encodeResponse(GameResponse response) {
+        byte[] bytes = new byte[RESPONSE_LENGTH];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.put(TYPE_PUT_CHESS);
+        buffer.put((byte) response.getRow());
+        buffer.put((byte) response.getCol());
+        buffer.putInt(response.getUserId());
+        buffer.putInt(response.getWinner());
+        return bytes;
+    }
+
+    public static BinaryMessage toMessage(byte[] bytes) {
+        return new BinaryMessage(bytes);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.java_gobang.game;
+
+//基于位运算的棋盘
+//每个玩家在每个方向上的每一条线都用一个 int 的低15位来表示，落子就是把对应的位置1
+//判定五子连珠时只需要取出经过落子点的四条线，用移位+按位与找出"连续5个1"的起点，
+//再和落子点附近的窗口做一次按位与即可，全程没有异常、没有循环、也不会分配内存
+public class BitBoard implements Board {
+    //四个方向：横、竖、左对角线(\)、右对角线(/)
+    private static final int ROW_LINES = MAX_ROW;
+    private static final int COL_LINES = MAX_COL;
+    private static final int DIAG_LINES = MAX_ROW + MAX_COL - 1;
+
+    private static final int ROW_BASE = 0;
+    private static final int COL_BASE = ROW_BASE + ROW_LINES;
+    private static final int DIAG_BASE = COL_BASE + COL_LINES;
+    private static final int ANTI_BASE = DIAG_BASE + DIAG_LINES;
+    //一个玩家一共有多少条线
+    private static final int LINES_PER_PLAYER = ANTI_BASE + DIAG_LINES;
+
+    //每个格子在四个方向上分别属于哪一条线，以及在这条线上是第几位
+    //下标是 row * MAX_COL + col
+    private static final int[] ROW_LINE = new int[MAX_ROW * MAX_COL];
+    private static final int[] COL_LINE = new int[MAX_ROW * MAX_COL];
+    private static final int[] DIAG_LINE = new int[MAX_ROW * MAX_COL];
+    private static final int[] ANTI_LINE = new int[MAX_ROW * MAX_COL];
+
+    //WINDOW[i] 表示能覆盖到第 i 位的五连起点：第 i-4 位到第 i 位 (越界的部分去掉)
+    private static final int[] WINDOW = new int[Math.max(MAX_ROW, MAX_COL)];
+
+    static {
+        for (int r = 0; r < MAX_ROW; r++) {
+            for (int c = 0; c < MAX_COL; c++) {
+                int cell = r * MAX_COL + c;
+                ROW_LINE[cell] = ROW_BASE + r;
+                COL_LINE[cell] = COL_BASE + c;
+                //同一条左对角线上 r - c 相同，同一条右对角线上 r + c 相同
+                //对角线上统一使用列号作为位号，沿着线走的时候列号是连续的
+                DIAG_LINE[cell] = DIAG_BASE + r - c + (MAX_COL - 1);
+                ANTI_LINE[cell] = ANTI_BASE + r + c;
+            }
+        }
+        for (int i = 0; i < WINDOW.length; i++) {
+            int from = Math.max(i - 4, 0);
+            WINDOW[i] = ((1 << (i + 1)) - 1) & ~((1 << from) - 1);
+        }
+    }
+
+    //两个玩家的所有线，玩家1在前，玩家2在后
+    private final int[] lines = new int[LINES_PER_PLAYER * 2];
+
+    @Override
+    public int get(int row, int col) {
+        int line = ROW_LINE[row * MAX_COL + col];
+        int mask = 1 << col;
+        if ((lines[line] & mask) != 0) {
+            return 1;
+        }
+        if ((lines[LINES_PER_PLAYER + line] & mask) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    @Override
+    public void put(int row, int col, int chess) {
+        int base = (chess - 1) * LINES_PER_PLAYER;
+        int cell = row * MAX_COL + col;
+        lines[base + ROW_LINE[cell]] |= 1 << col;
+        lines[base + COL_LINE[cell]] |= 1 << row;
+        lines[base + DIAG_LINE[cell]] |= 1 << col;
+        lines[base + ANTI_LINE[cell]] |= 1 << col;
+    }
+
+    @Override
+    public boolean isFive(int row, int col, int chess) {
+        int base = (chess - 1) * LINES_PER_PLAYER;
+        int cell = row * MAX_COL + col;
+        int hit = (fives(lines[base + ROW_LINE[cell]]) & WINDOW[col])
+                | (fives(lines[base + COL_LINE[cell]]) & WINDOW[row])
+                | (fives(lines[base + DIAG_LINE[cell]]) & WINDOW[col])
+                | (fives(lines[base + ANTI_LINE[cell]]) & WINDOW[col]);
+        return hit != 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = 0;
+        }
+    }
+
+    //返回值的第 i 位为1，表示这条线上第 i 位到第 i+4 位都是1
+    private static int fives(int line) {
+        return line & (line >>> 1) & (line >>> 2) & (line >>> 3) & (line >>> 4);
+    }
+}
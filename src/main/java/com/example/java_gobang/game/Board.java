@@ -0,0 +1,23 @@
+package com.example.java_gobang.game;
+
+//这个接口表示一个棋盘
+//约定：
+// 1) 使用0表示当前位置 未落子
+// 2) 使用1表示 user1 的落子位置
+// 3) 使用2表示 user2 的落子位置
+public interface Board {
+    int MAX_ROW = 15;
+    int MAX_COL = 15;
+
+    //获取某个位置上的棋子 (0/1/2)
+    int get(int row, int col);
+
+    //在某个位置落子，调用方需要先保证这个位置是空的
+    void put(int row, int col, int chess);
+
+    //判定刚刚落在 (row,col) 的这个子，是否和同色的子构成了五子连珠
+    boolean isFive(int row, int col, int chess);
+
+    //清空棋盘，方便复用
+    void clear();
+}
@@ -0,0 +1,110 @@
+package com.example.java_gobang.game;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+
+//一条要发给若干个客户端的消息
+//消息只编码一次，之后发给多少个人都复用同一份编码结果：
+// 1) JSON 文本帧：TextMessage 本身是不可变的，所有连接共用同一个对象
+// 2) 二进制帧 (只有落子消息有)：共用同一个字节数组，每次发送时包一层 BinaryMessage
+//内容固定不变的消息 (开始匹配、停止匹配、游戏大厅的多开提示等) 直接做成静态常量
+public final class BroadcastFrame {
+    private static final Logger log = LoggerFactory.getLogger(BroadcastFrame.class);
+
+    public static final BroadcastFrame START_MATCH = json(matchResponse(true, "startMatch", null));
+    public static final BroadcastFrame STOP_MATCH = json(matchResponse(true, "stopMatch", null));
+    public static final BroadcastFrame MATCH_SUCCESS = json(matchResponse(true, "matchSuccess", null));
+    public static final BroadcastFrame INVALID_MATCH_REQUEST = json(matchResponse(false, null, "非法的匹配请求"));
+    public static final BroadcastFrame REPEAT_CONNECTION = json(matchResponse(true, "repeatConnection", "当前禁止多开！"));
+
+    //要编码的对象，交给 BroadcastFrame 之后就不能再修改了
+    private final Object payload;
+    //落子消息才有二进制格式
+    private final GameResponse move;
+    //编码结果按需生成；并发时可能重复编码一次，但结果是一样的，所以不加锁
+    private volatile TextMessage text;
+    private volatile byte[] binary;
+
+    private BroadcastFrame(Object payload, GameResponse move) {
+        this.payload = payload;
+        this.move = move;
+    }
+
+    //只有 JSON 格式的消息
+    public static BroadcastFrame json(Object payload) {
+        BroadcastFrame frame = new BroadcastFrame(payload, null);
+        //常量和普通消息都立刻编码，编码失败在这里就能发现
+        frame.text();
+        return frame;
+    }
+
+    //落子消息：按照每个连接协商好的格式，发 JSON 或者二进制
+    public static BroadcastFrame move(GameResponse response) {
+        return new BroadcastFrame(response, response);
+    }
+
+    //发给一个客户端
+    public void sendTo(WebSocketSession session) throws IOException {
+        session.sendMessage(messageFor(session));
+    }
+
+    //发给多个客户端，某一个发送失败不影响其他人，返回成功发出的个数
+    public int sendTo(Iterable<WebSocketSession> sessions) {
+        int sent = 0;
+        for (WebSocketSession session : sessions) {
+            if (session == null) {
+                continue;
+            }
+            try {
+                sendTo(session);
+                sent++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("给连接 {} 发送消息失败：{}", session.getId(), e.toString());
+            }
+        }
+        return sent;
+    }
+
+    public WebSocketMessage<?> messageFor(WebSocketSession session) {
+        if (move != null && BinaryMoveCodec.isBinary(session)) {
+            return BinaryMoveCodec.toMessage(binary());
+        }
+        return text();
+    }
+
+    private TextMessage text() {
+        TextMessage result = text;
+        if (result == null) {
+            try {
+                result = new TextMessage(JsonCodec.write(payload));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("消息编码失败：" + payload.getClass().getSimpleName(), e);
+            }
+            text = result;
+        }
+        return result;
+    }
+
+    private byte[] binary() {
+        byte[] result = binary;
+        if (result == null) {
+            result = BinaryMoveCodec.encodeResponse(move);
+            binary = result;
+        }
+        return result;
+    }
+
+    private static MatchResponse matchResponse(boolean ok, String message, String reason) {
+        MatchResponse response = new MatchResponse();
+        response.setOk(ok);
+        response.setMessage(message);
+        response.setReason(reason);
+        return response;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.java_gobang.game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+//以 long 为键的并发哈希表，键不装箱
+//开放寻址 + 线性探测：键和值各放在一个数组里，查找只是顺着数组往后比较 long，没有链表节点
+//读不加锁：写的时候先写值再写键，读到键的线程一定能看到对应的值
+//写加锁：房间的创建/释放、玩家的上下线都远比查找少，串行写就够了
+//删除只把值清空，键留在原地当墓碑，同一个键以后还会用回这个位置；
+//墓碑太多的时候整张表重新建一份，再一次性换上去，正在读旧表的线程不受影响
+//
+//约定：0 不能作为键 (数组里的 0 表示空位)；userId 和房间号都不会是 0
+public class ConcurrentLongMap<V> {
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Table<V> {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<V> values;
+        final int mask;
+        //用掉的位置 (包括墓碑) 超过这个数就重建
+        final int threshold;
+        //用掉的位置数，只在写锁里读写
+        int used;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            threshold = capacity / 4 * 3;
+        }
+    }
+
+    private volatile Table<V> table;
+    private volatile int size;
+
+    public ConcurrentLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public ConcurrentLongMap(int expectedSize) {
+        table = new Table<>(capacityFor(expectedSize));
+    }
+
+    public V get(long key) {
+        Table<V> t = table;
+        int mask = t.mask;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                return t.values.get(i);
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    //返回原来的值
+    public synchronized V put(long key, V value) {
+        checkKey(key);
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Table<V> t = table;
+        int i = slot(t, key);
+        if (t.keys.get(i) == EMPTY) {
+            if (t.used >= t.threshold) {
+                t = rehash();
+                i = slot(t, key);
+            }
+            t.values.set(i, value);
+            t.keys.set(i, key);
+            t.used++;
+            size++;
+            return null;
+        }
+        V old = t.values.getAndSet(i, value);
+        if (old == null) {
+            size++;
+        }
+        return old;
+    }
+
+    //已经有值的话不覆盖，返回已有的值
+    public synchronized V putIfAbsent(long key, V value) {
+        V old = get(key);
+        if (old != null) {
+            return old;
+        }
+        put(key, value);
+        return null;
+    }
+
+    //返回删掉的值
+    public synchronized V remove(long key) {
+        Table<V> t = table;
+        int i = slot(t, key);
+        if (t.keys.get(i) == EMPTY) {
+            return null;
+        }
+        V old = t.values.getAndSet(i, null);
+        if (old != null) {
+            size--;
+        }
+        return old;
+    }
+
+    //只有当前的值还是 value (同一个对象) 的时候才删除
+    public synchronized boolean remove(long key, V value) {
+        Table<V> t = table;
+        int i = slot(t, key);
+        if (value == null || t.keys.get(i) == EMPTY || !t.values.compareAndSet(i, value, null)) {
+            return false;
+        }
+        size--;
+        return true;
+    }
+
+    //只有当前的值还是 expected (同一个对象) 的时候才换成 value
+    public synchronized boolean replace(long key, V expected, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Table<V> t = table;
+        int i = slot(t, key);
+        return t.keys.get(i) != EMPTY && expected != null && t.values.compareAndSet(i, expected, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    //分批遍历用的游标，可以跨多次调用一直用下去，走到表尾之后从头再来
+    //和 ConcurrentHashMap 的迭代器一样是弱一致的：遍历期间的增删不一定能看到，表重建的时候可能漏掉或者重复几个
+    //一个游标只能在一个线程上使用
+    public final class Cursor {
+        private int position;
+
+        //往后访问最多 limit 个元素，返回实际访问的个数；上一次已经走到表尾的话这一次从头开始
+        public int advance(int limit, Consumer<? super V> visitor) {
+            Table<V> t = table;
+            int length = t.mask + 1;
+            if (position >= length) {
+                position = 0;
+            }
+            int visited = 0;
+            while (visited < limit && position < length) {
+                V value = t.values.get(position++);
+                if (value != null) {
+                    visitor.accept(value);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+    }
+
+    //key 所在的位置，不存在的话是它应该放的空位
+    private static int slot(Table<?> t, long key) {
+        int mask = t.mask;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = t.keys.get(i);
+            if (k == key || k == EMPTY) {
+                return i;
+            }
+        }
+    }
+
+    //按照现在的元素个数重新建一张表，丢掉墓碑；需要在写锁里调用
+    private Table<V> rehash() {
+        Table<V> old = table;
+        Table<V> t = new Table<>(capacityFor(size + 1));
+        for (int i = 0; i <= old.mask; i++) {
+            V value = old.values.get(i);
+            if (value != null) {
+                long key = old.keys.get(i);
+                int j = slot(t, key);
+                t.values.set(j, value);
+                t.keys.set(j, key);
+                t.used++;
+            }
+        }
+        table = t;
+        return t;
+    }
+
+    //至少留出一半的空位，探测的距离才会短
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        //房间号、userId 都是连续分配的，乘一个奇数把高位也搅进来
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("0 不能作为键");
+        }
+    }
+}
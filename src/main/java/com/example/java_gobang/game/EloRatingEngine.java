@@ -0,0 +1,37 @@
+package com.example.java_gobang.game;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Elo 分数：赢了一个分数比自己高的对手加得多，赢了比自己低的对手加得少，输的一方反过来
+//  获胜方的期望得分 E = 1 / (1 + 10^((失败方分数 - 获胜方分数) / scale))
+//  获胜方 +K*(1-E)，失败方 -K*(1-E)
+//前 provisional-games 局是定级赛，K 值更大，让新玩家尽快到达和自己水平相符的分数段
+@Component
+public class EloRatingEngine implements RatingEngine {
+    @Value("${gobang.rating.k-factor:24}")
+    private int kFactor;
+
+    @Value("${gobang.rating.provisional-k-factor:48}")
+    private int provisionalKFactor;
+
+    @Value("${gobang.rating.provisional-games:20}")
+    private int provisionalGames;
+
+    //分差为 scale 的时候，高分一方的期望胜率是 10/11
+    @Value("${gobang.rating.scale:400}")
+    private double scale;
+
+    @Override
+    public int[] rate(Rating winner, Rating loser) {
+        double expected = 1.0 / (1.0 + Math.pow(10, (loser.getScore() - winner.getScore()) / scale));
+        //赢了至少加1分，输了至少扣1分
+        int winDelta = Math.max(1, (int) Math.round(k(winner) * (1 - expected)));
+        int loseDelta = -Math.max(1, (int) Math.round(k(loser) * (1 - expected)));
+        return new int[]{winDelta, loseDelta};
+    }
+
+    private int k(Rating rating) {
+        return rating.getGames() < provisionalGames ? provisionalKFactor : kFactor;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.java_gobang.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//好几个类都会用到的对局指标，集中定义在这里
+//和其他指标一样注册在 Metrics.globalRegistry 上，Actuator 启动后会把它们导出到 /actuator/prometheus
+public final class GameMetrics {
+    //处理一次落子的耗时：从房间线程开始处理，到响应交给发送缓冲区为止
+    public static final Timer MOVE = Timer.builder("gobang.move")
+            .description("处理一次落子的耗时")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+
+    //下出五子连珠分出胜负的对局数
+    public static final Counter WINS = Counter.builder("gobang.game.wins")
+            .description("下出五子连珠分出胜负的对局数")
+            .register(Metrics.globalRegistry);
+
+    //没有下出五子、因为一方判负结束的对局数，按照原因区分：掉线没有回来 / 棋钟超时
+    public static final Counter FORFEITS_DISCONNECT = forfeits("disconnect");
+    public static final Counter FORFEITS_TIMEOUT = forfeits("timeout");
+
+    //两个玩家都断线没有回来、作废的对局数
+    public static final Counter ABANDONED = Counter.builder("gobang.game.abandoned")
+            .description("两个玩家都断线没有回来、作废的对局数")
+            .register(Metrics.globalRegistry);
+
+    //断线之后在等待时间内重新连上房间的次数
+    public static final Counter RECONNECTS = Counter.builder("gobang.game.reconnects")
+            .description("断线之后在等待时间内重新连上房间的次数")
+            .register(Metrics.globalRegistry);
+
+    //因为多开被拒绝的连接数，按照 大厅/房间 区分
+    public static final Counter DUPLICATE_LOGIN_HALL = duplicateLogin("hall");
+    public static final Counter DUPLICATE_LOGIN_ROOM = duplicateLogin("room");
+
+    //所有房间加起来的观众数，由 SpectatorGroup 维护
+    public static final AtomicInteger SPECTATORS = new AtomicInteger();
+
+    static {
+        Gauge.builder("gobang.spectators", SPECTATORS, AtomicInteger::get)
+                .description("正在观战的连接数")
+                .register(Metrics.globalRegistry);
+    }
+
+    private GameMetrics() {
+    }
+
+    private static Counter forfeits(String reason) {
+        return Counter.builder("gobang.game.forfeits")
+                .description("因为一方判负结束的对局数")
+                .tag("reason", reason)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static Counter duplicateLogin(String place) {
+        return Counter.builder("gobang.login.duplicate")
+                .description("因为多开被拒绝的连接数")
+                .tag("place", place)
+                .register(Metrics.globalRegistry);
+    }
+}
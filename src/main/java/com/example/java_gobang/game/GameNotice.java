@@ -0,0 +1,43 @@
+package com.example.java_gobang.game;
+
+//对局中发给玩家的通知，例如 对手断线 (opponentOffline) / 对手重连 (opponentOnline)
+public class GameNotice {
+    private String message;
+    private boolean ok;
+    //通知说的是哪个玩家
+    private int userId;
+    //和通知相关的秒数，例如对手断线之后还会等他多久
+    private long seconds;
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public boolean isOk() {
+        return ok;
+    }
+
+    public void setOk(boolean ok) {
+        this.ok = ok;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+
+    public void setSeconds(long seconds) {
+        this.seconds = seconds;
+    }
+}
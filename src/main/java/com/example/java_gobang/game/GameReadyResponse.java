@@ -5,10 +5,13 @@ public class GameReadyResponse {
     private String message;
     private boolean ok;
     private String reason;
-    private String roomId;
+    private long roomId;
     private int thisUserId;
     private int thatUserId;
     private int whiteUser;
+    //棋钟：每个玩家一开始的时间和每步加的时间 (毫秒)，不限时的对局是 0
+    private long clockMillis;
+    private long incrementMillis;
 
     public String getMessage() {
         return message;
@@ -34,11 +37,11 @@ public class GameReadyResponse {
         this.reason = reason;
     }
 
-    public String getRoomId() {
+    public long getRoomId() {
         return roomId;
     }
 
-    public void setRoomId(String roomId) {
+    public void setRoomId(long roomId) {
         this.roomId = roomId;
     }
 
@@ -65,4 +68,20 @@ public class GameReadyResponse {
     public void setWhiteUser(int whiteUser) {
         this.whiteUser = whiteUser;
     }
+
+    public long getClockMillis() {
+        return clockMillis;
+    }
+
+    public void setClockMillis(long clockMillis) {
+        this.clockMillis = clockMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    public void setIncrementMillis(long incrementMillis) {
+        this.incrementMillis = incrementMillis;
+    }
 }
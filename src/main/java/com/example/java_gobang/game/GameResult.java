@@ -0,0 +1,20 @@
+package com.example.java_gobang.game;
+
+//一局游戏的结果，等待写回数据库
+public class GameResult {
+    private final int winUserId;
+    private final int loseUserId;
+
+    public GameResult(int winUserId, int loseUserId) {
+        this.winUserId = winUserId;
+        this.loseUserId = loseUserId;
+    }
+
+    public int getWinUserId() {
+        return winUserId;
+    }
+
+    public int getLoseUserId() {
+        return loseUserId;
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.cluster.ScoreFeed;
+import com.example.java_gobang.model.GameRecord;
+import com.example.java_gobang.model.GameRecordMapper;
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserCache;
+import com.example.java_gobang.model.UserMapper;
+import com.example.java_gobang.model.UserResultDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+//游戏结果的异步写回
+//一局游戏结束的时候，只把结果放进一个有界队列里就返回，不在 websocket 的线程上等数据库
+//后台线程把一段时间内的结果攒成一批，由 RatingEngine 算出每一局的分数变化，
+//按玩家合并之后用一条 UPDATE 在一个事务里写回去；提交之后再单独写入对局历史
+@Component
+public class GameResultWriter {
+    private static final Logger log = LoggerFactory.getLogger(GameResultWriter.class);
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private Leaderboard leaderboard;
+
+    //提交之后把最新分数推给 (所有节点的) 用户缓存和排行榜
+    @Autowired
+    private ScoreFeed scoreFeed;
+
+    @Autowired
+    private RatingEngine ratingEngine;
+
+    @Autowired
+    private GameRecordMapper gameRecordMapper;
+
+    //是否把每一局写进对局历史 (game_result 表，建表语句见 db.sql)，默认关闭：没有建表的库打开之后每一批历史都会写失败
+    @Value("${gobang.rating.record-history:false}")
+    private boolean recordHistory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${gobang.result-writer.capacity:10000}")
+    private int capacity;
+
+    //一批最多合并多少局
+    @Value("${gobang.result-writer.batch-size:200}")
+    private int batchSize;
+
+    //队列里一直没有新结果的时候，后台线程多久醒来一次
+    @Value("${gobang.result-writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    //写库失败之后的重试次数，每次重试的等待时间翻倍
+    @Value("${gobang.result-writer.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${gobang.result-writer.initial-backoff-ms:100}")
+    private long initialBackoffMs;
+
+    @Value("${gobang.result-writer.max-backoff-ms:5000}")
+    private long maxBackoffMs;
+
+    //关闭的时候最多等待多久把队列里剩下的结果写完
+    @Value("${gobang.result-writer.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<GameResult> queue;
+    //队列满了之后提交的结果先放在这里 (不限长度)，flusher 排在队列后面写
+    private final Queue<GameResult> overflow = new ConcurrentLinkedQueue<>();
+    private Thread flusher;
+    private volatile boolean running;
+    //flusher 写每一批的时候持有；paused() 拿到它之后，在它释放之前不会有分数写回 (结果照常在队列里排队)
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Timer flushTimer = Timer.builder("gobang.result.flush")
+            .description("一批游戏结果写回数据库的耗时")
+            .register(Metrics.globalRegistry);
+    private final Counter flushedGames = Counter.builder("gobang.result.flushed")
+            .description("已经写回数据库的对局数")
+            .register(Metrics.globalRegistry);
+    private final Counter flushFailures = Counter.builder("gobang.result.flush.failures")
+            .description("写回数据库失败的次数 (包括重试)")
+            .register(Metrics.globalRegistry);
+    private final Counter droppedGames = Counter.builder("gobang.result.dropped")
+            .description("重试耗尽之后被丢弃的对局数")
+            .register(Metrics.globalRegistry);
+    private final Counter historyFailures = Counter.builder("gobang.result.history.failures")
+            .description("分数已经写回、对局历史没有写进去的对局数")
+            .register(Metrics.globalRegistry);
+    private final Counter overflowedGames = Counter.builder("gobang.result.overflowed")
+            .description("队列已满，放进溢出队列的对局数")
+            .register(Metrics.globalRegistry);
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("gobang.result.queue.depth", queue, BlockingQueue::size)
+                .description("等待写回数据库的对局数")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("gobang.result.overflow.depth", overflow, Queue::size)
+                .description("溢出队列里等待写回数据库的对局数")
+                .register(Metrics.globalRegistry);
+        running = true;
+        flusher = new Thread(this::runFlusher, "game-result-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    //提交一局游戏的结果
+    //调用方是房间的信箱线程 (RoomExecutor 上所有房间共用)，这里绝不能碰数据库，也不能等：
+    //正常情况下只是入队；队列满了说明数据库已经跟不上了，结果放进不限长度的溢出队列，一局也不丢
+    //溢出队列里还有结果的时候新的结果也往那里放，保持先后顺序
+    public void submit(int winUserId, int loseUserId) {
+        GameResult result = new GameResult(winUserId, loseUserId);
+        if (overflow.isEmpty() && queue.offer(result)) {
+            return;
+        }
+        if (overflow.isEmpty()) {
+            log.warn("结果队列已满 ({} 局)，之后的结果先放进溢出队列", queue.size());
+        }
+        overflow.add(result);
+        overflowedGames.increment();
+    }
+
+    public int getQueueDepth() {
+        return queue.size() + overflow.size();
+    }
+
+    public boolean isRecordHistory() {
+        return recordHistory;
+    }
+
+    //暂停写回，执行 action (比如按绝对值改写分数)，期间提交的结果都留在队列里，结束之后接着写
+    //正在写的那一批会先写完 (包括对局历史和刷新排行榜)，所以 action 看到的排行榜和数据库是一致的
+    public <T> T paused(Supplier<T> action) {
+        flushLock.lock();
+        try {
+            return action.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(shutdownTimeoutMs);
+        if (flusher.isAlive() || !queue.isEmpty() || !overflow.isEmpty()) {
+            log.error("关闭超时，还有 {} 局结果没有写回！", getQueueDepth());
+        }
+    }
+
+    private void runFlusher() {
+        List<GameResult> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                //溢出队列里有结果的时候不等，直接接着写
+                GameResult first = overflow.isEmpty() ? queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                }
+                drain(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                flushLocked(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                //被 stop 唤醒，跳出循环之后把剩下的写完
+                break;
+            }
+        }
+        //优雅关闭：把两个队列里剩下的结果全部写完
+        while (true) {
+            batch.clear();
+            drain(batch);
+            if (batch.isEmpty()) {
+                break;
+            }
+            flushLocked(batch);
+        }
+    }
+
+    private void flushLocked(List<GameResult> batch) {
+        flushLock.lock();
+        try {
+            flushWithRetry(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    //凑满一批：先取有界队列 (里面的结果比溢出队列里的早)，再取溢出队列
+    private void drain(List<GameResult> batch) {
+        queue.drainTo(batch, batchSize - batch.size());
+        GameResult result;
+        while (batch.size() < batchSize && (result = overflow.poll()) != null) {
+            batch.add(result);
+        }
+    }
+
+    private void flushWithRetry(List<GameResult> batch) {
+        long backoff = initialBackoffMs;
+        for (int attempt = 0; ; attempt++) {
+            List<GameRecord> records;
+            List<UserResultDelta> deltas;
+            try {
+                //每次重试都按照当时的分数重新计算一遍
+                records = rate(batch);
+                List<UserResultDelta> merged = merge(records);
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(status ->
+                        userMapper.batchUpdateResult(merged)));
+                deltas = merged;
+                flushedGames.increment(batch.size());
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                if (attempt >= maxRetries) {
+                    droppedGames.increment(batch.size());
+                    log.error("写回游戏结果失败，已重试 {} 次，丢弃 {} 局：{}", attempt, batch.size(), describe(batch), e);
+                    return;
+                }
+                log.warn("写回游戏结果失败，{}ms 之后重试：{}", backoff, e.toString());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    //flusher 线程只会在关闭的时候被中断，这一批还是要写完
+                }
+                backoff = Math.min(backoff * 2, maxBackoffMs);
+                continue;
+            }
+            //下面两步都放在重试循环外面：失败不能让已经提交的增量再写一遍
+            if (recordHistory) {
+                recordHistory(records);
+            }
+            //提交之后再刷新用户缓存和排行榜，它们里面不会出现没有提交的数据
+            publish(deltas);
+            return;
+        }
+    }
+
+    //对局历史单独写 (一条 INSERT，自己就是一个事务)：写不进去只影响以后的重算，分数已经提交了，不回滚也不重试
+    private void recordHistory(List<GameRecord> records) {
+        try {
+            gameRecordMapper.batchInsert(records);
+        } catch (RuntimeException e) {
+            historyFailures.increment(records.size());
+            log.warn("写入 {} 局对局历史失败：{}", records.size(), e.toString());
+        }
+    }
+
+    //查一次这批玩家的最新数据，同时给用户缓存和排行榜用
+    private void publish(List<UserResultDelta> deltas) {
+        List<Integer> userIds = new ArrayList<>(deltas.size());
+        for (UserResultDelta delta : deltas) {
+            userIds.add(delta.getUserId());
+        }
+        List<User> latest;
+        try {
+            latest = userMapper.selectByIds(userIds);
+        } catch (RuntimeException e) {
+            //查不到最新数据：缓存直接失效，排行榜等这些玩家下一局结束时再更新
+            log.warn("查询 {} 个玩家的最新战绩失败：{}", userIds.size(), e.toString());
+            scoreFeed.invalidate(userIds);
+            return;
+        }
+        scoreFeed.publish(latest);
+    }
+
+    //按照对局的先后顺序计算每一局双方的分数变化
+    //同一个玩家在一批里可能出现多次，后面的对局要用前面对局算完之后的分数
+    private List<GameRecord> rate(List<GameResult> batch) {
+        Map<Integer, Rating> ratings = new HashMap<>();
+        List<GameRecord> records = new ArrayList<>(batch.size());
+        for (GameResult result : batch) {
+            Rating winner = ratings.computeIfAbsent(result.getWinUserId(), this::currentRating);
+            Rating loser = ratings.computeIfAbsent(result.getLoseUserId(), this::currentRating);
+            int[] change = ratingEngine.rate(winner, loser);
+            GameRecord record = new GameRecord();
+            record.setWinUserId(result.getWinUserId());
+            record.setLoseUserId(result.getLoseUserId());
+            record.setWinScoreBefore(winner.getScore());
+            record.setLoseScoreBefore(loser.getScore());
+            record.setWinDelta(change[0]);
+            record.setLoseDelta(change[1]);
+            records.add(record);
+            ratings.put(result.getWinUserId(), winner.after(change[0]));
+            ratings.put(result.getLoseUserId(), loser.after(change[1]));
+        }
+        return records;
+    }
+
+    //玩家在这一批之前的分数：先看排行榜 (内存里，已经提交的最新分数)，没有再查用户缓存/数据库
+    private Rating currentRating(int userId) {
+        Rating rating = leaderboard.rating(userId);
+        if (rating != null) {
+            return rating;
+        }
+        User user = userCache.getById(userId);
+        if (user == null) {
+            return new Rating(User.INITIAL_SCORE, 0);
+        }
+        return new Rating(user.getScore(), user.getTotalCount());
+    }
+
+    //同一个玩家在一批里可能出现多次，先按玩家合并成一条增量
+    private static List<UserResultDelta> merge(List<GameRecord> records) {
+        Map<Integer, UserResultDelta> byUser = new LinkedHashMap<>();
+        for (GameRecord record : records) {
+            UserResultDelta win = byUser.computeIfAbsent(record.getWinUserId(), UserResultDelta::new);
+            win.setTotalDelta(win.getTotalDelta() + 1);
+            win.setWinDelta(win.getWinDelta() + 1);
+            win.setScoreDelta(win.getScoreDelta() + record.getWinDelta());
+            UserResultDelta lose = byUser.computeIfAbsent(record.getLoseUserId(), UserResultDelta::new);
+            lose.setTotalDelta(lose.getTotalDelta() + 1);
+            lose.setScoreDelta(lose.getScoreDelta() + record.getLoseDelta());
+        }
+        return new ArrayList<>(byUser.values());
+    }
+
+    private static String describe(List<GameResult> batch) {
+        StringBuilder sb = new StringBuilder();
+        for (GameResult result : batch) {
+            sb.append(result.getWinUserId()).append('>').append(result.getLoseUserId()).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.java_gobang.game;
+
+//断线的玩家重新连上游戏房间后，服务器返回的响应 (message 为 gameResume)
+//在 gameReady 的基础上多了当前的棋盘和接下来轮到谁
+public class GameResumeResponse extends GameReadyResponse {
+    //接下来轮到哪个玩家落子
+    private int turn;
+    //按行展开的棋盘，一共 15 * 15 个字符：'0' 没有子，'1' 先手方 (白子)，'2' 后手方 (黑子)
+    private String board;
+    //双方棋钟还剩多少毫秒，不限时的对局是 0
+    private long thisClockMillis;
+    private long thatClockMillis;
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public void setTurn(int turn) {
+        this.turn = turn;
+    }
+
+    public String getBoard() {
+        return board;
+    }
+
+    public void setBoard(String board) {
+        this.board = board;
+    }
+
+    public long getThisClockMillis() {
+        return thisClockMillis;
+    }
+
+    public void setThisClockMillis(long thisClockMillis) {
+        this.thisClockMillis = thisClockMillis;
+    }
+
+    public long getThatClockMillis() {
+        return thatClockMillis;
+    }
+
+    public void setThatClockMillis(long thatClockMillis) {
+        this.thatClockMillis = thatClockMillis;
+    }
+}
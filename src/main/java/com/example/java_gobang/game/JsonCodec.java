@@ -0,0 +1,189 @@
+package com.example.java_gobang.game;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+//websocket 消息的 JSON 编解码，整个程序共用一份
+//1) 落子请求/落子响应、匹配请求这几种最频繁的消息，直接用 Jackson 的流式 API 读写：
+//   不走反射和序列化器查找，读出来的字段写进调用方传进来的对象 (房间里复用同一个 GameRequest)，
+//   解析用的字符缓冲区由 Jackson 按线程回收复用，输出用的 StringWriter 每个线程一个，每一步几乎不产生垃圾
+//2) 其他消息 (gameReady、重连快照、观战等) 还是交给 ObjectMapper，
+//   只有一个实例，类加载的时候把这些类型的序列化器都先建好，第一局不用等
+//
+//输出的格式和原来 new ObjectMapper() 得到的完全一样，客户端不用改
+public final class JsonCodec {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private static final String PUT_CHESS = "putChess";
+    private static final String START_MATCH = "startMatch";
+    private static final String STOP_MATCH = "stopMatch";
+
+    //落子响应的输出缓冲区，每个线程 (房间线程、发送线程) 复用一个
+    private static final ThreadLocal<StringWriter> WRITER = ThreadLocal.withInitial(() -> new StringWriter(128));
+
+    static {
+        //预热：把固定的几种消息类型的序列化器提前建好，放进 MAPPER 的缓存里
+        for (Object sample : new Object[]{new GameReadyResponse(), new GameResumeResponse(),
+                new WatchSnapshot(), new GameNotice(), new MatchResponse(), new GameResponse()}) {
+            try {
+                MAPPER.writeValueAsString(sample);
+            } catch (JsonProcessingException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    private JsonCodec() {
+    }
+
+    //把 JSON 格式的落子请求解析到 request 里
+    //不认识的字段直接跳过；格式不对抛出 JsonProcessingException，和原来 readValue 的行为一样
+    public static void readGameRequest(String json, GameRequest request) throws IOException {
+        request.setMessage(null);
+        request.setUserId(0);
+        request.setRow(0);
+        request.setCol(0);
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            expectObject(parser);
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                //字段名由 Jackson 规范化过，可以放心用 switch
+                switch (field) {
+                    case "message":
+                        request.setMessage(readMessage(parser, token));
+                        break;
+                    case "userId":
+                        request.setUserId(readInt(parser, token));
+                        break;
+                    case "row":
+                        request.setRow(readInt(parser, token));
+                        break;
+                    case "col":
+                        request.setCol(readInt(parser, token));
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+    }
+
+    //解析匹配请求，只关心 message 字段
+    public static MatchRequest readMatchRequest(String json) throws IOException {
+        MatchRequest request = new MatchRequest();
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            expectObject(parser);
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if ("message".equals(field)) {
+                    request.setMessage(readMessage(parser, token));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return request;
+    }
+
+    //落子响应：{"message":..,"userId":..,"row":..,"col":..,"winner":..}
+    public static String writeGameResponse(GameResponse response) throws IOException {
+        StringWriter writer = WRITER.get();
+        writer.getBuffer().setLength(0);
+        try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("message", response.getMessage());
+            generator.writeNumberField("userId", response.getUserId());
+            generator.writeNumberField("row", response.getRow());
+            generator.writeNumberField("col", response.getCol());
+            generator.writeNumberField("winner", response.getWinner());
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    //其他消息交给共用的 ObjectMapper
+    public static String write(Object payload) throws JsonProcessingException {
+        if (payload instanceof GameResponse) {
+            try {
+                return writeGameResponse((GameResponse) payload);
+            } catch (JsonProcessingException e) {
+                throw e;
+            } catch (IOException e) {
+                //写到内存里不会有 I/O 错误
+                throw new IllegalStateException(e);
+            }
+        }
+        return MAPPER.writeValueAsString(payload);
+    }
+
+    private static void expectObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "消息不是一个 JSON 对象");
+        }
+    }
+
+    //常见的几个 message 直接返回常量，不用每次都新建字符串
+    private static String readMessage(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "message 字段不是字符串");
+        }
+        if (textEquals(parser, PUT_CHESS)) {
+            return PUT_CHESS;
+        }
+        if (textEquals(parser, START_MATCH)) {
+            return START_MATCH;
+        }
+        if (textEquals(parser, STOP_MATCH)) {
+            return STOP_MATCH;
+        }
+        return parser.getText();
+    }
+
+    private static boolean textEquals(JsonParser parser, String expected) throws IOException {
+        int length = parser.getTextLength();
+        if (length != expected.length()) {
+            return false;
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //和 ObjectMapper 一样，null 当作 0，字符串形式的数字也接受
+    private static int readInt(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return 0;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(parser, "不是整数: " + parser.getText());
+            }
+        }
+        throw new JsonParseException(parser, "字段 " + parser.getCurrentName() + " 不是整数");
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+//天梯排行榜，查询完全在内存里完成，不访问数据库
+//  ranking：按照 分数从高到低 -> userId 排好序的跳表，取前 N 名就是从头往后走 N 步
+//  counts：按分数统计人数的树状数组 (Fenwick tree)，某个分数的名次 = 1 + 分数比它高的人数，O(log 分数范围)
+//启动时后台线程从数据库加载所有玩家的分数，之后由 GameResultWriter 在战绩提交之后把最新分数推过来
+//推过来的是分数的最新值而不是增量，重复推送或者和启动加载交错都不会算错
+//集群部署时别的节点推过来的更新可能乱序到达，局数比现在少的更新是旧数据，直接丢掉 (重算分数不改局数，局数相同照常更新)
+@Component
+public class Leaderboard {
+    private static final Logger log = LoggerFactory.getLogger(Leaderboard.class);
+
+    @Autowired
+    private UserMapper userMapper;
+
+    //树状数组覆盖的分数范围，超出范围的分数按边界值计算名次
+    @Value("${gobang.leaderboard.min-score:-100000}")
+    private int minScore;
+
+    @Value("${gobang.leaderboard.max-score:100000}")
+    private int maxScore;
+
+    //一次最多查询前多少名
+    @Value("${gobang.leaderboard.max-top:100}")
+    private int maxTop;
+
+    //启动加载失败之后多久重试
+    @Value("${gobang.leaderboard.load-retry-ms:5000}")
+    private long loadRetryMs;
+
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private AtomicIntegerArray counts;
+    private Thread loader;
+    private volatile boolean loaded;
+
+    //排行榜里的一个玩家，创建之后不再修改
+    private static class Entry implements Comparable<Entry> {
+        final int userId;
+        final String username;
+        final int score;
+        //已经下过的局数，计算分数变化 (RatingEngine) 时要用
+        final int games;
+
+        Entry(User user) {
+            this.userId = user.getUserId();
+            this.username = user.getUsername();
+            this.score = user.getScore();
+            this.games = user.getTotalCount();
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (score != o.score) {
+                return Integer.compare(o.score, score);
+            }
+            return Integer.compare(userId, o.userId);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        counts = new AtomicIntegerArray(maxScore - minScore + 2);
+        Gauge.builder("gobang.leaderboard.players", entries, ConcurrentHashMap::size)
+                .description("排行榜里的玩家数")
+                .register(Metrics.globalRegistry);
+        //数据库暂时连不上也不影响启动，后台一直重试到加载成功
+        loader = new Thread(this::loadWithRetry, "leaderboard-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        loader.interrupt();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    //更新若干个玩家的分数，传进来的是数据库里的最新数据
+    public void update(List<User> users) {
+        for (User user : users) {
+            update(user);
+        }
+    }
+
+    public void update(User user) {
+        //同一个玩家的更新在 compute 里串行执行，跳表和树状数组始终和 entries 保持一致
+        entries.compute(user.getUserId(), (key, old) -> {
+            if (old != null && old.games > user.getTotalCount()) {
+                return old;
+            }
+            Entry entry = new Entry(user);
+            //分数没变 (比如只有局数变了) 也要把跳表里的旧对象换掉，不然排行榜上显示的还是旧的用户名和局数
+            //跳表按照 分数+userId 比较，新旧对象"相等"，直接 add 会失败，所以先删再加
+            if (old != null) {
+                ranking.remove(old);
+            }
+            ranking.add(entry);
+            if (old == null || old.score != entry.score) {
+                if (old != null) {
+                    add(old.score, -1);
+                }
+                add(entry.score, 1);
+            }
+            return entry;
+        });
+    }
+
+    //某个玩家当前的分数和局数，不在排行榜里返回 null
+    public Rating rating(int userId) {
+        Entry entry = entries.get(userId);
+        return entry == null ? null : new Rating(entry.score, entry.games);
+    }
+
+    //分数最高的前 top 名
+    public List<LeaderboardEntry> top(int top) {
+        int limit = Math.max(0, Math.min(top, maxTop));
+        List<LeaderboardEntry> result = new ArrayList<>(limit);
+        //同分的玩家名次相同
+        int rank = 0;
+        int previousScore = 0;
+        for (Entry entry : ranking) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (rank == 0 || entry.score != previousScore) {
+                rank = result.size() + 1;
+                previousScore = entry.score;
+            }
+            result.add(toResponse(entry, rank));
+        }
+        return result;
+    }
+
+    //某个玩家的名次，不在排行榜里返回 null
+    public LeaderboardEntry rank(int userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        return toResponse(entry, 1 + countAbove(entry.score));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private LeaderboardEntry toResponse(Entry entry, int rank) {
+        LeaderboardEntry response = new LeaderboardEntry();
+        response.setUserId(entry.userId);
+        response.setUsername(entry.username);
+        response.setScore(entry.score);
+        response.setRank(rank);
+        return response;
+    }
+
+    private void loadWithRetry() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                long start = System.currentTimeMillis();
+                int[] loadedCount = new int[1];
+                userMapper.selectAllScores(context -> {
+                    //加载期间已经有更新推过来的玩家，以更新为准 (更新里的数据一定不比这里旧)
+                    addIfAbsent(context.getResultObject());
+                    loadedCount[0]++;
+                });
+                loaded = true;
+                log.info("排行榜加载完成：{} 个玩家，耗时 {}ms", loadedCount[0], System.currentTimeMillis() - start);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("排行榜加载失败，{}ms 之后重试：{}", loadRetryMs, e.toString());
+                try {
+                    Thread.sleep(loadRetryMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void addIfAbsent(User user) {
+        entries.computeIfAbsent(user.getUserId(), key -> {
+            Entry entry = new Entry(user);
+            ranking.add(entry);
+            add(entry.score, 1);
+            return entry;
+        });
+    }
+
+    //树状数组的下标：分数从低到高对应 1..n
+    private int index(int score) {
+        int clamped = Math.max(minScore, Math.min(maxScore, score));
+        return clamped - minScore + 1;
+    }
+
+    private void add(int score, int delta) {
+        for (int i = index(score); i < counts.length(); i += i & -i) {
+            counts.addAndGet(i, delta);
+        }
+    }
+
+    //分数 <= score 的人数
+    private int countAtMost(int score) {
+        int sum = 0;
+        for (int i = index(score); i > 0; i -= i & -i) {
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    //分数比 score 高的人数
+    private int countAbove(int score) {
+        if (score >= maxScore) {
+            return 0;
+        }
+        return countAtMost(Integer.MAX_VALUE) - countAtMost(score);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.java_gobang.game;
+
+//排行榜接口返回的一条记录
+public class LeaderboardEntry {
+    //名次，从1开始，同分的玩家名次相同
+    private int rank;
+    private int userId;
+    private String username;
+    private int score;
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+}
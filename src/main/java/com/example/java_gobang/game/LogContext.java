@@ -0,0 +1,33 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.model.User;
+import org.slf4j.MDC;
+import org.springframework.web.socket.WebSocketSession;
+
+//日志的 MDC 字段，logback-spring.xml 的输出格式里会打印出来
+//websocket 的回调由 LoggingWebSocketHandler 设置 userId；房间的信箱线程由 RoomMailbox 负责设置
+public class LogContext {
+    public static final String ROOM_ID = "roomId";
+    public static final String USER_ID = "userId";
+
+    //把这个 websocket 连接对应的玩家记到当前线程的 MDC 里
+    public static void forSession(WebSocketSession session) {
+        Object user = session.getAttributes().get("user");
+        if (user instanceof User) {
+            MDC.put(USER_ID, String.valueOf(((User) user).getUserId()));
+        }
+    }
+
+    static void putUserId(String userId) {
+        if (userId == null) {
+            MDC.remove(USER_ID);
+        } else {
+            MDC.put(USER_ID, userId);
+        }
+    }
+
+    public static void clear() {
+        MDC.remove(USER_ID);
+        MDC.remove(ROOM_ID);
+    }
+}
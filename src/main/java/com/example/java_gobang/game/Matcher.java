@@ -1,23 +1,52 @@
 package com.example.java_gobang.game;
 
+import com.example.java_gobang.cluster.ClusterNode;
+import com.example.java_gobang.cluster.MatchQueue;
+import com.example.java_gobang.cluster.MatchTicket;
+import com.example.java_gobang.cluster.Presence;
+import com.example.java_gobang.cluster.PresenceRegistry;
+import com.example.java_gobang.cluster.RoomRequest;
+import com.example.java_gobang.game.ai.AiExecutor;
+import com.example.java_gobang.game.ai.AiLevel;
+import com.example.java_gobang.game.ai.AiPlayer;
 import com.example.java_gobang.model.User;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Queue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //这个类表示“匹配器”，通过这个类负责完成整个匹配功能
+//所有等待匹配的玩家按照天梯分数排在匹配队列 (MatchQueue) 里
+//后台每隔一小段时间扫描一遍，把分数足够接近的相邻玩家两两配对
+//多节点部署时只有负责配对的节点扫描；房间建在玩家1 的大厅连接所在的节点上 (不是负责配对的节点就通过匹配队列发 RoomRequest 过去)，
+//建好之后由建房间的节点发出匹配成功的通知，匹配队列把通知送到玩家所在的节点；玩家进房间时按房间目录被引到房间所在的节点
+//玩家能接受的分差会随着等待时间变大，等得越久越容易匹配到人
+//人少的时候 (例如深夜的高分段) 等了 ai.fallback-after-ms 还没有匹配到人，就安排一个电脑对手
 @Component
 public class Matcher {
-    //创建三个匹配队列
-    private Queue<User> normalQueue = new LinkedList<>();
-    public Queue<User> highQueue = new LinkedList<>();
-    public Queue<User> veryHighQueue = new LinkedList<>();
+    private static final Logger log = LoggerFactory.getLogger(Matcher.class);
+
+    //按分数段统计排队人数，只用于监控；分段和最早的三个匹配队列一样
+    //每次扫描的时候重新数一遍，不负责配对的节点上都是 0，所有节点加起来就是整个集群的排队人数
+    private static final int[] TIER_BOUNDS = {2000, 3000};
+    private static final String[] TIER_NAMES = {"lt2000", "2000-3000", "ge3000"};
+    private final AtomicInteger[] tierWaiting = new AtomicInteger[TIER_NAMES.length];
 
     @Autowired
     private OnlineUserManager onlineUserManager;
@@ -25,156 +54,293 @@ public class Matcher {
     @Autowired
     private RoomManager roomManager;
 
-    private ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private RoomFactory roomFactory;
+
+    @Autowired
+    private MatchQueue matchQueue;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    //多久扫描一次匹配队列
+    @Value("${gobang.matcher.tick-ms:200}")
+    private long tickMs;
+
+    //刚开始排队的时候能接受的分差
+    @Value("${gobang.matcher.base-window:50}")
+    private int baseWindow;
+
+    //每多等一秒，能接受的分差增加多少
+    @Value("${gobang.matcher.window-growth-per-second:25}")
+    private int windowGrowthPerSecond;
+
+    //分差最多放宽到多少
+    @Value("${gobang.matcher.max-window:1000}")
+    private int maxWindow;
+
+    @Autowired
+    private AiExecutor aiExecutor;
+
+    //等了多久还没有匹配到真人就安排电脑对手，0 表示不安排
+    @Value("${gobang.ai.fallback-after-ms:60000}")
+    private long aiFallbackAfterMs;
+
+    //按照玩家的分数选电脑的难度：达到 normal-score 是普通，达到 hard-score 是困难，否则是简单
+    @Value("${gobang.ai.normal-score:1100}")
+    private int aiNormalScore;
+
+    @Value("${gobang.ai.hard-score:1500}")
+    private int aiHardScore;
+
+    private ScheduledExecutorService scheduler;
+
+    //从开始匹配到匹配成功的等待时间
+    private final Timer timeToMatch = Timer.builder("gobang.match.wait")
+            .description("玩家从开始匹配到匹配成功的等待时间")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+
+    private final Counter aiMatches = Counter.builder("gobang.match.ai")
+            .description("等不到真人、安排了电脑对手的次数")
+            .register(Metrics.globalRegistry);
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < TIER_NAMES.length; i++) {
+            tierWaiting[i] = new AtomicInteger();
+            Gauge.builder("gobang.match.waiting", tierWaiting[i], AtomicInteger::get)
+                    .description("正在等待匹配的玩家数，按照分数段区分")
+                    .tag("tier", TIER_NAMES[i])
+                    .register(Metrics.globalRegistry);
+        }
+        //不管房间建在哪个节点上，匹配成功的通知都会送到玩家大厅连接所在的节点
+        matchQueue.onMatched(this::notifyMatched);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "matcher");
+            t.setDaemon(true);
+            return t;
+        });
+        //别的节点请这个节点建的房间也在 matcher 线程上建，不占用 Hazelcast 的事件线程
+        matchQueue.onRoomRequest(request -> {
+            if (clusterNode.getNodeId().equals(request.getHostNodeId())) {
+                scheduler.execute(() -> createRoom(request));
+            }
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
 
     //操作匹配队列的方法
     //把玩家放到匹配队列中
     public void add(User user) {
-        if(user.getScore() < 2000){
-            synchronized (normalQueue){
-                normalQueue.offer(user);
-                normalQueue.notify();
-            }
-            System.out.println("把玩家" + user.getUsername() + "加入到了normalQueue中！");
-        }else if(user.getScore()>= 2000 && user.getScore() < 3000){
-            synchronized (highQueue) {
-                highQueue.offer(user);
-                highQueue.notify();
-            }
-            System.out.println("把玩家" + user.getUsername() + "加入到了highQueue中！");
-        }else {
-            synchronized (veryHighQueue) {
-                veryHighQueue.offer(user);
-                veryHighQueue.notify();
-            }
-            System.out.println("把玩家" + user.getUsername() + "加入到了veryHighQueue中！");
-
+        MatchTicket ticket = new MatchTicket(user, System.currentTimeMillis(), clusterNode.getNodeId());
+        if (!matchQueue.offer(ticket)) {
+            log.debug("玩家{}已经在匹配队列中了！", user.getUsername());
+            return;
         }
+        log.info("把玩家{}加入到了匹配队列中！score={}", user.getUsername(), user.getScore());
     }
 
     //当玩家点击停止匹配的时候，就需要把玩家从匹配队列中删除
     public void remove(User user) {
-        if(user.getScore() < 2000){
-            synchronized (normalQueue) {
-                normalQueue.remove(user);
-            }
-        System.out.println("把玩家" + user.getUsername() + "移除了normalQueue中！");
-        }else if(user.getScore()>= 2000 && user.getScore() < 3000){
-            synchronized (highQueue) {
-                highQueue.remove(user);
-            }
-        System.out.println("把玩家" + user.getUsername() + "移除了highQueue中！");
-        }else {
-            synchronized (veryHighQueue) {
-                veryHighQueue.remove(user);
-            }
-        System.out.println("把玩家" + user.getUsername() + "移除了verHighQueue中！");
-
+        if (matchQueue.remove(user.getUserId()) != null) {
+            log.info("把玩家{}移除了匹配队列！", user.getUsername());
         }
     }
 
-    public Matcher() {
-        //创建三个线程，分别针对这三个匹配队列，进行操作
-        Thread t1 = new Thread() {
-            @Override
-            public void run() {
-                //扫描normalqueue
-                while (true) {
-                    handleMatch(normalQueue);
-                }
+    //当前正在等待匹配的玩家数
+    public int getWaitingCount() {
+        return matchQueue.size();
+    }
+
+    //扫描一遍匹配队列，一次产出一批对手
+    private void tick() {
+        try {
+            int[] tiers = new int[TIER_NAMES.length];
+            if (!matchQueue.isCoordinator()) {
+                //别的节点负责配对
+                updateTierWaiting(tiers);
+                return;
             }
-        };
-        t1.start();
-
-        Thread t2 = new Thread() {
-            @Override
-            public void run() {
-                while (true) {
-                    handleMatch(highQueue);
+            long now = System.currentTimeMillis();
+            List<MatchTicket> pairs = new ArrayList<>();
+            //这一轮没有配上对的玩家
+            List<MatchTicket> unmatched = new ArrayList<>();
+            //按分数从低到高走一遍，每个玩家只和紧挨着的下一个还没配对的玩家比较
+            //有序集合里离得最近的就是相邻的两个人
+            MatchTicket pending = null;
+            for (MatchTicket current : matchQueue.ordered()) {
+                tiers[tier(current.getScore())]++;
+                if (pending != null && current.getScore() - pending.getScore()
+                        <= Math.min(window(pending, now), window(current, now))) {
+                    pairs.add(pending);
+                    pairs.add(current);
+                    pending = null;
+                } else {
+                    if (pending != null) {
+                        unmatched.add(pending);
+                    }
+                    pending = current;
                 }
             }
-        };
-        t2.start();
-
-        Thread t3 = new Thread() {
-            @Override
-            public void run() {
-                while (true) {
-                    handleMatch(veryHighQueue);
-                }
+            if (pending != null) {
+                unmatched.add(pending);
             }
-        };
-        t3.start();
-    }
-
-    private void handleMatch(Queue<User> matchQueue) {
-        synchronized (matchQueue) {
-            try {
-                //1.检测队列中元素个数是否达到2
-                //  队列的初始情况可能为 空
-                //  如果往队列中添加一个元素 仍然不能进行后续的匹配操作
-                //  因此在这里使用 while 循环检查更合理
-                while (matchQueue.size() < 2){
-                    matchQueue.wait();
-                }
-                //2.尝试从队列中取出两个玩家
-                User player1 = matchQueue.poll();
-                User player2 = matchQueue.poll();
-                System.out.println("匹配出两个玩家：" + player1.getUsername()
-                        + "," + player2.getUsername());
-                //3.获取到玩家的websocket会话
-                //  获取会话的目的：告诉玩家 你排到了
-                WebSocketSession session1 = onlineUserManager.getFromGameHall(player1.getUserId());
-                WebSocketSession session2 = onlineUserManager.getFromGameHall(player2.getUserId());
-                //从理论上来说，匹配队列中的玩家一定是在线的状态
-                //因为前面的逻辑里进行了处理，当玩家断开连接的时候就把玩家从匹配队列中移除
-                //但此处仍进行一次判定
-                if(session1 == null) {
-                    //如果玩家1 现在不在线 就把玩家2放回到匹配队列中
-                    matchQueue.offer(player2);
-                    return;
-                }
-                if(session2 == null) {
-                    //如果玩家2 现在不在线 就把玩家1放回到匹配队列中
-                    matchQueue.offer(player1);
-                    return;
-                }
-                //当前能否排到两个玩家是同一个用户的情况？一个玩家入队列了两次
-                // 理论上也不会存在
-                // 1）如果玩家下线，就会对玩家移除匹配队列
-                // 2）又禁止了玩家多开
-                // 但是仍然在这里多进行一次判定，以免前面的逻辑出现bug时带来的严重的后果
-                if(session1 == session2) {
-                    // 把其中的一个玩家放回匹配队列
-                    matchQueue.offer(player1);
-                    return;
+            updateTierWaiting(tiers);
+            for (int i = 0; i < pairs.size(); i += 2) {
+                handleMatch(pairs.get(i), pairs.get(i + 1));
+            }
+            if (aiFallbackAfterMs > 0) {
+                for (MatchTicket ticket : unmatched) {
+                    if (now - ticket.getEnqueuedAt() >= aiFallbackAfterMs) {
+                        handleAiMatch(ticket);
+                    }
                 }
+            }
+        } catch (Throwable e) {
+            //定时任务抛出异常之后就不会再被调度了，这里兜住所有异常
+            log.error("扫描匹配队列失败", e);
+        }
+    }
+
+    //某个玩家当前能接受的分差
+    private int window(MatchTicket ticket, long now) {
+        long waitedSeconds = TimeUnit.MILLISECONDS.toSeconds(now - ticket.getEnqueuedAt());
+        return (int) Math.min(maxWindow, baseWindow + waitedSeconds * windowGrowthPerSecond);
+    }
+
+    private static int tier(int score) {
+        int tier = 0;
+        while (tier < TIER_BOUNDS.length && score >= TIER_BOUNDS[tier]) {
+            tier++;
+        }
+        return tier;
+    }
+
+    private void updateTierWaiting(int[] tiers) {
+        for (int i = 0; i < tiers.length; i++) {
+            tierWaiting[i].set(tiers[i]);
+        }
+    }
+
+    //玩家现在是不是在大厅里 (任何一个节点上)
+    private boolean isInHall(int userId) {
+        Presence presence = presenceRegistry.get(userId);
+        return presence != null && presence.getPlace() == Presence.Place.HALL;
+    }
+
+    //匹配成功的通知：玩家的大厅连接在当前节点上就告诉他，不在就是别的节点的事
+    private void notifyMatched(int userId) {
+        WebSocketSession session = onlineUserManager.getFromGameHall(userId);
+        if (session != null) {
+            //通过websocket返回一个message 为‘matchSuccess’这样的响应
+            //所有玩家收到的内容完全一样，直接使用预先编码好的常量
+            BroadcastFrame.MATCH_SUCCESS.sendTo(Collections.singletonList(session));
+        }
+    }
+
+    private void handleMatch(MatchTicket ticket1, MatchTicket ticket2) {
+        if (!matchQueue.claim(ticket1)) {
+            return;
+        }
+        if (!matchQueue.claim(ticket2)) {
+            matchQueue.putBack(ticket1);
+            return;
+        }
+        log.info("匹配出两个玩家：{},{}", ticket1.getUsername(), ticket2.getUsername());
+        //从理论上来说，匹配队列中的玩家一定是在线的状态
+        //因为前面的逻辑里进行了处理，当玩家断开连接的时候就把玩家从匹配队列中移除
+        //但此处仍进行一次判定 (玩家的连接可能在别的节点上，所以看的是在线状态目录)
+        if (!isInHall(ticket1.getUserId())) {
+            //如果玩家1 现在不在线 就把玩家2放回到匹配队列中
+            matchQueue.putBack(ticket2);
+            return;
+        }
+        if (!isInHall(ticket2.getUserId())) {
+            //如果玩家2 现在不在线 就把玩家1放回到匹配队列中
+            matchQueue.putBack(ticket1);
+            return;
+        }
+        //当前能否排到两个玩家是同一个用户的情况？
+        //同一个 userId 在匹配队列里最多只有一条记录，但是仍然在这里多进行一次判定
+        if (ticket1.getUserId() == ticket2.getUserId()) {
+            matchQueue.putBack(ticket1);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        timeToMatch.record(now - ticket1.getEnqueuedAt(), TimeUnit.MILLISECONDS);
+        timeToMatch.record(now - ticket2.getEnqueuedAt(), TimeUnit.MILLISECONDS);
+
+        //把这两个玩家放到一个游戏房间中，房间建在玩家1 的大厅连接所在的节点上
+        requestRoom(new RoomRequest(ticket1.getNodeId(), ticket1, ticket2));
+    }
 
-                //4. 把这两个玩家放到一个游戏房间中
-                //一会再实现
-                Room room = new Room();
-                roomManager.add(room, player1.getUserId(), player2.getUserId());
-
-                //5.给玩家反馈信息： 你匹配到对手啦
-                //   通过websocket返回一个message 为‘matchSuccess’这样的响应
-                //   此处需要给两个玩家都返回“匹配成功”的信息，因此需要返回两次
-                MatchResponse response1 = new MatchResponse();
-                response1.setOk(true);
-                response1.setMessage("matchSuccess");
-                String json1 = objectMapper.writeValueAsString(response1);
-                session1.sendMessage(new TextMessage(json1));
-
-                MatchResponse response2 = new MatchResponse();
-                response2.setOk(true);
-                response2.setMessage("matchSuccess");
-                String json2 = objectMapper.writeValueAsString(response1);
-                session2.sendMessage(new TextMessage(json2));
-
-            } catch (IOException | InterruptedException e){
-                e.printStackTrace();
+    //等了太久没有匹配到真人，安排一个电脑对手
+    private void handleAiMatch(MatchTicket ticket) {
+        if (!matchQueue.claim(ticket)) {
+            return;
+        }
+        if (!isInHall(ticket.getUserId())) {
+            //玩家已经不在线了，不用放回匹配队列
+            return;
+        }
+        long now = System.currentTimeMillis();
+        timeToMatch.record(now - ticket.getEnqueuedAt(), TimeUnit.MILLISECONDS);
+        log.info("玩家{}等待了{}秒还没有匹配到对手，安排电脑对手", ticket.getUsername(),
+                TimeUnit.MILLISECONDS.toSeconds(now - ticket.getEnqueuedAt()));
+        requestRoom(new RoomRequest(ticket.getNodeId(), ticket, null));
+    }
+
+    //房间就建在当前节点上的话直接建，不用绕一圈
+    private void requestRoom(RoomRequest request) {
+        if (clusterNode.getNodeId().equals(request.getHostNodeId())) {
+            createRoom(request);
+        } else {
+            matchQueue.requestRoom(request);
+        }
+    }
+
+    //在房间所在的节点上建房间，登记到房间目录之后再通知玩家匹配成功，玩家进房间的时候一定找得到
+    private void createRoom(RoomRequest request) {
+        try {
+            MatchTicket ticket1 = request.getTicket1();
+            MatchTicket ticket2 = request.getTicket2();
+            Room room = roomFactory.create();
+            if (ticket2 == null) {
+                //电脑直接坐在玩家2的位置上，真人连上 /game 之后作为玩家1先手
+                AiPlayer ai = new AiPlayer(aiLevel(ticket1.getScore()), aiExecutor);
+                room.setAi(ai);
+                //房间里只有一个真人，两个映射都登记成他
+                roomManager.add(room, ticket1.getUserId(), ticket1.getUserId());
+                aiMatches.increment();
+                log.info("给玩家{}安排了{}", ticket1.getUsername(), ai.getUser().getUsername());
+                matchQueue.publishMatched(ticket1.getUserId());
+                return;
             }
+            roomManager.add(room, ticket1.getUserId(), ticket2.getUserId());
 
+            //给玩家反馈信息： 你匹配到对手啦
+            //   玩家的大厅连接可能在别的节点上，通知交给匹配队列送过去
+            matchQueue.publishMatched(ticket1.getUserId());
+            matchQueue.publishMatched(ticket2.getUserId());
+        } catch (RuntimeException e) {
+            log.error("建房间失败：{}", request.getTicket1().getUsername(), e);
         }
+    }
 
+    private AiLevel aiLevel(int score) {
+        if (score >= aiHardScore) {
+            return AiLevel.HARD;
+        }
+        return score >= aiNormalScore ? AiLevel.NORMAL : AiLevel.EASY;
     }
 }
@@ -0,0 +1,84 @@
+package com.example.java_gobang.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//一个房间的落子记录，在房间的信箱线程上追加，不需要加锁
+//每一步只记 位置 (1字节，row * 15 + col)、是哪一方落的子 (1比特) 和距离上一步的时间，
+//编码之后的格式见 ReplayCodec
+public class MoveLog {
+    //一盘棋最多就是下满整个棋盘
+    static final int MAX_MOVES = Board.MAX_ROW * Board.MAX_COL;
+
+    //对局开始的时间 (System.currentTimeMillis)
+    private final long startMillis;
+    private long lastMillis;
+    private int count;
+    private final byte[] positions = new byte[MAX_MOVES];
+    //第 i 位为 1 表示第 i 步是玩家2 (chess == 2) 落的子
+    private final byte[] players = new byte[(MAX_MOVES + 7) / 8];
+    //距离上一步的时间，单位 100ms
+    private final int[] deltas = new int[MAX_MOVES];
+
+    public MoveLog(long startMillis) {
+        this.startMillis = startMillis;
+        this.lastMillis = startMillis;
+    }
+
+    public void record(int row, int col, int chess, long nowMillis) {
+        if (count >= MAX_MOVES) {
+            return;
+        }
+        positions[count] = (byte) (row * Board.MAX_COL + col);
+        if (chess == 2) {
+            players[count >> 3] |= (byte) (1 << (count & 7));
+        }
+        deltas[count] = (int) Math.max(0, (nowMillis - lastMillis + 50) / 100);
+        lastMillis = nowMillis;
+        count++;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    //展开成一步一步的记录，观战的快照用；chess 换算成两个玩家的 userId
+    public List<Replay.Move> toMoves(int user1, int user2) {
+        List<Replay.Move> moves = new ArrayList<>(count);
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            time += deltas[i] * 100L;
+            Replay.Move move = new Replay.Move();
+            move.setRow(getRow(i));
+            move.setCol(getCol(i));
+            move.setUserId((players[i >> 3] & (1 << (i & 7))) != 0 ? user2 : user1);
+            move.setTime(time);
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    int getRow(int i) {
+        return (positions[i] & 0xFF) / Board.MAX_COL;
+    }
+
+    int getCol(int i) {
+        return (positions[i] & 0xFF) % Board.MAX_COL;
+    }
+
+    byte[] positions() {
+        return positions;
+    }
+
+    byte[] players() {
+        return players;
+    }
+
+    int[] deltas() {
+        return deltas;
+    }
+}
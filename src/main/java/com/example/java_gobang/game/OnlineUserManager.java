@@ -1,39 +1,236 @@
 package com.example.java_gobang.game;
 
+import com.example.java_gobang.cluster.ClusterNode;
+import com.example.java_gobang.cluster.Presence;
+import com.example.java_gobang.cluster.PresenceRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
 
-import java.util.HashMap;
-import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
+//当前节点上的连接；一个玩家在整个集群里能不能上线 (多开检查) 以 PresenceRegistry 为准
+//玩家在大厅/房间里的连接都记在 UserIndex 里这个玩家的 UserState 上
 @Component
 public class OnlineUserManager {
-    //当前这个哈希表 就用来表示当前用户在游戏大厅的在线状态
-    private ConcurrentHashMap<Integer, WebSocketSession> gameHall = new ConcurrentHashMap<>();
-    //这个哈希表就用来表示当前用户在游戏房间的在线状态
-    private ConcurrentHashMap<Integer,WebSocketSession> gameRoom = new ConcurrentHashMap<>();
+    //连接最近一次活动 (连上来、发消息) 的时间 (System.nanoTime)，记在会话的 attributes 里
+    public static final String LAST_ACTIVE = "lastActive";
 
-    public void enterGameHall(int userId, WebSocketSession webSocketSession) {
-        gameHall.put(userId,webSocketSession);
+    @Autowired
+    private UserIndex users;
+
+    //在大厅/房间里的玩家数，只用来统计
+    private final AtomicInteger hallCount = new AtomicInteger();
+    private final AtomicInteger roomCount = new AtomicInteger();
+
+    //Reaper 分批扫描用的游标，只在 Reaper 的线程上使用
+    private ConcurrentLongMap<UserState>.Cursor hallCursor;
+    private ConcurrentLongMap<UserState>.Cursor roomCursor;
+
+    //登记进来的会话都会包上一层发送缓冲区，之后通过这里拿到的会话调用 sendMessage 都不会阻塞
+    @Autowired
+    private OutboundExecutor outboundExecutor;
+
+    //在线状态目录，多开检查在这里原子地完成；不经过 Spring 创建的时候 (例如 benchmark) 为 null，不做检查
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    public OnlineUserManager() {
+    }
+
+    //不经过 Spring 创建的时候 (例如 benchmark) 用，和 RoomManager 传同一个 UserIndex
+    OnlineUserManager(UserIndex users) {
+        this.users = users;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        registerOnlineGauge("hall", hallCount);
+        registerOnlineGauge("room", roomCount);
+    }
+
+    private static void registerOnlineGauge(String place, AtomicInteger count) {
+        Gauge.builder("gobang.online.users", count, AtomicInteger::get)
+                .description("在线的玩家数，按照 大厅/房间 区分")
+                .tag("place", place)
+                .register(Metrics.globalRegistry);
+    }
+
+    //玩家进入大厅；这个玩家已经在任何地方 (任何节点、大厅或者房间) 在线了返回 false，也就是多开
+    public boolean enterGameHall(int userId, WebSocketSession webSocketSession) {
+        if (!enterPresence(userId, Presence.Place.HALL, webSocketSession)) {
+            return false;
+        }
+        touch(webSocketSession);
+        WebSocketSession outbound = outbound(webSocketSession);
+        users.update(userId, state -> {
+            if (state.getHall() == null) {
+                hallCount.incrementAndGet();
+            }
+            state.setHall(outbound);
+            return null;
+        });
+        return true;
     }
     public void exitGameHall(int userId){
-        gameHall.remove(userId);
+        WebSocketSession session = users.updateIfPresent(userId, state -> {
+            WebSocketSession current = state.getHall();
+            if (current != null) {
+                state.setHall(null);
+                hallCount.decrementAndGet();
+            }
+            return current;
+        });
+        if (session != null) {
+            exitPresence(userId, Presence.Place.HALL, session);
+        }
+    }
+
+    //只有当前登记的正好是这个连接的时候才下线
+    //避免在多开的情况下，第二个连接断开导致第一个连接被下线
+    public boolean exitGameHall(int userId, WebSocketSession webSocketSession) {
+        WebSocketSession target = WebSocketSessionDecorator.unwrap(webSocketSession);
+        Boolean removed = users.updateIfPresent(userId, state -> {
+            if (!isSame(state.getHall(), target)) {
+                return false;
+            }
+            state.setHall(null);
+            hallCount.decrementAndGet();
+            return true;
+        });
+        if (removed == null || !removed) {
+            return false;
+        }
+        exitPresence(userId, Presence.Place.HALL, webSocketSession);
+        return true;
     }
 
     public WebSocketSession getFromGameHall(int userId) {
-        return gameHall.get(userId);
+        UserState state = users.get(userId);
+        return state == null ? null : state.getHall();
     }
 
-    public void enterGameRoom(int userId,WebSocketSession webSocketSession) {
-        gameRoom.put(userId,webSocketSession);
+    //玩家进入房间；和进入大厅一样，已经在任何地方在线了返回 false
+    public boolean enterGameRoom(int userId,WebSocketSession webSocketSession) {
+        if (!enterPresence(userId, Presence.Place.ROOM, webSocketSession)) {
+            return false;
+        }
+        touch(webSocketSession);
+        WebSocketSession outbound = outbound(webSocketSession);
+        users.update(userId, state -> {
+            if (state.getRoom() == null) {
+                roomCount.incrementAndGet();
+            }
+            state.setRoom(outbound);
+            return null;
+        });
+        return true;
     }
 
     public void exitGameRoom(int userId) {
-        gameRoom.remove(userId);
+        WebSocketSession session = users.updateIfPresent(userId, state -> {
+            WebSocketSession current = state.getRoom();
+            if (current != null) {
+                state.setRoom(null);
+                roomCount.decrementAndGet();
+            }
+            return current;
+        });
+        if (session != null) {
+            exitPresence(userId, Presence.Place.ROOM, session);
+        }
+    }
+
+    public boolean exitGameRoom(int userId, WebSocketSession webSocketSession) {
+        WebSocketSession target = WebSocketSessionDecorator.unwrap(webSocketSession);
+        Boolean removed = users.updateIfPresent(userId, state -> {
+            if (!isSame(state.getRoom(), target)) {
+                return false;
+            }
+            state.setRoom(null);
+            roomCount.decrementAndGet();
+            return true;
+        });
+        if (removed == null || !removed) {
+            return false;
+        }
+        exitPresence(userId, Presence.Place.ROOM, webSocketSession);
+        return true;
     }
 
     public WebSocketSession getFromGameRoom(int userId) {
-        return gameRoom.get(userId);
+        UserState state = users.get(userId);
+        return state == null ? null : state.getRoom();
     }
 
+    //记录一次连接上的活动，收到客户端的消息时调用
+    public void touch(WebSocketSession webSocketSession) {
+        webSocketSession.getAttributes().put(LAST_ACTIVE, System.nanoTime());
+    }
+
+    //连接最近一次活动的时间 (System.nanoTime)，没有记录过返回 null
+    public static Long lastActive(WebSocketSession webSocketSession) {
+        Object value = webSocketSession.getAttributes().get(LAST_ACTIVE);
+        return value instanceof Long ? (Long) value : null;
+    }
+
+    //从上次停下的地方接着往下检查最多 limit 个玩家在大厅里的连接，返回实际检查的玩家数；只给 Reaper 用
+    int sweepGameHall(int limit, BiConsumer<Integer, WebSocketSession> visitor) {
+        if (hallCursor == null) {
+            hallCursor = users.cursor();
+        }
+        return hallCursor.advance(limit, state -> {
+            WebSocketSession session = state.getHall();
+            if (session != null) {
+                visitor.accept(state.getUserId(), session);
+            }
+        });
+    }
+
+    //同上，检查房间里的连接
+    int sweepGameRoom(int limit, BiConsumer<Integer, WebSocketSession> visitor) {
+        if (roomCursor == null) {
+            roomCursor = users.cursor();
+        }
+        return roomCursor.advance(limit, state -> {
+            WebSocketSession session = state.getRoom();
+            if (session != null) {
+                visitor.accept(state.getUserId(), session);
+            }
+        });
+    }
+
+    private boolean enterPresence(int userId, Presence.Place place, WebSocketSession webSocketSession) {
+        return presenceRegistry == null || presenceRegistry.enter(userId, presence(place, webSocketSession));
+    }
+
+    private void exitPresence(int userId, Presence.Place place, WebSocketSession webSocketSession) {
+        if (presenceRegistry != null) {
+            presenceRegistry.exit(userId, presence(place, webSocketSession));
+        }
+    }
+
+    //登记的会话外面包了一层发送缓冲区，在线状态里记的是原始连接的 id
+    private Presence presence(Presence.Place place, WebSocketSession webSocketSession) {
+        return new Presence(clusterNode.getNodeId(), place,
+                WebSocketSessionDecorator.unwrap(webSocketSession).getId());
+    }
+
+    private WebSocketSession outbound(WebSocketSession webSocketSession) {
+        //不经过 Spring 创建的时候 (例如 benchmark) 没有发送线程池，直接使用原始会话
+        return outboundExecutor == null ? webSocketSession : outboundExecutor.wrap(webSocketSession);
+    }
+
+    //登记的会话外面包了一层发送缓冲区，按原始连接比较
+    private static boolean isSame(WebSocketSession current, WebSocketSession target) {
+        return current != null && WebSocketSessionDecorator.unwrap(current) == target;
+    }
 }
@@ -0,0 +1,187 @@
+package com.example.java_gobang.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//所有 OutboundSession 共用的发送线程池，以及发送缓冲区的配置和统计
+//一条消息发得太久 (客户端不收) 会占住一个发送线程，所以发送时间的上限由两道保险一起保证，不靠发送线程自己：
+// 1) 容器层面：Tomcat 的阻塞发送超时设成 send-time-limit-ms，卡住的写到时间就抛异常，发送线程被放出来
+// 2) 看门狗：时间轮到点检查，还没发完就把连接标记为不可用，在单独的关闭线程上关掉，不用等下一条消息进来
+//关闭连接 (可能要写 close 帧) 也在关闭线程上做，发送线程全部卡住的时候照样能关
+@Component
+public class OutboundExecutor {
+    //Tomcat 的 websocket 阻塞发送超时 (毫秒)，放在原生会话的 userProperties 里
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    //每个连接最多缓冲多少条消息
+    @Value("${gobang.outbound.max-messages:256}")
+    private int maxMessages;
+
+    //每个连接最多缓冲多少字节
+    @Value("${gobang.outbound.max-bytes:524288}")
+    private long maxBytes;
+
+    //一条消息最多允许发送多久，超过之后再有新消息进来就关闭这个连接
+    @Value("${gobang.outbound.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    //玩家连接的缓冲区满了怎么办，默认直接断开：
+    //丢掉的可能是落子消息，客户端的棋盘就和服务器对不上了，而且自己发现不了；
+    //断开之后客户端重连，拿到一份完整的棋盘快照 (断线重连) 接着下
+    //丢消息 (DROP_*) 只适合丢了也没关系的连接
+    @Value("${gobang.outbound.overflow-policy:CLOSE}")
+    private OutboundSession.OverflowPolicy overflowPolicy;
+
+    //发送线程数，0 表示CPU核数的两倍 (网络写可能会阻塞，所以比房间线程多一些)
+    @Value("${gobang.outbound.threads:0}")
+    private int threads;
+
+    //关闭连接的线程数，和发送线程分开
+    @Value("${gobang.outbound.close-threads:2}")
+    private int closeThreads;
+
+    //发送超时的看门狗挂在这上面
+    @Autowired
+    private TimingWheel timingWheel;
+
+    private ExecutorService pool;
+    private ExecutorService closer;
+    //按原因缓存的丢弃计数器，不用每丢一条都到注册表里查一次
+    private final ConcurrentHashMap<String, Counter> droppedCounters = new ConcurrentHashMap<>();
+    private long sendTimeLimitNanos;
+
+    //所有连接的缓冲区里一共排着多少条消息
+    private final AtomicLong queuedMessages = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger index = new AtomicInteger();
+        pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "ws-sender-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger closerIndex = new AtomicInteger();
+        ThreadPoolExecutor closePool = new ThreadPoolExecutor(Math.max(closeThreads, 1), Math.max(closeThreads, 1),
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "ws-closer-" + closerIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        closePool.allowCoreThreadTimeOut(true);
+        closer = closePool;
+        Gauge.builder("gobang.outbound.queued", queuedMessages, AtomicLong::get)
+                .description("所有连接的发送缓冲区里排队的消息数")
+                .register(Metrics.globalRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        pool.shutdown();
+        closer.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        closer.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    //给连接包上发送缓冲区；同一个连接重复调用返回的是同一个对象
+    public WebSocketSession wrap(WebSocketSession session) {
+        return wrap(session, overflowPolicy);
+    }
+
+    //同上，但是这个连接的缓冲区满了之后按照指定的策略处理 (例如观战的连接跟不上就直接断开)
+    //策略只在第一次包装的时候生效
+    public WebSocketSession wrap(WebSocketSession session, OutboundSession.OverflowPolicy policy) {
+        if (session instanceof OutboundSession) {
+            return session;
+        }
+        return (WebSocketSession) session.getAttributes()
+                .computeIfAbsent(OutboundSession.ATTRIBUTE, key -> {
+                    limitBlockingSend(session);
+                    return new OutboundSession(session, this, policy);
+                });
+    }
+
+    public long getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    int getMaxMessages() {
+        return maxMessages;
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    long getSendTimeLimitNanos() {
+        return sendTimeLimitNanos;
+    }
+
+    //在发送线程上执行一个任务 (观战消息的分发也在这里做，不占用房间线程)
+    void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    void queued(int delta) {
+        queuedMessages.addAndGet(delta);
+    }
+
+    void dropped(String reason) {
+        droppedCounters.computeIfAbsent(reason, key -> Counter.builder("gobang.outbound.dropped")
+                .description("没有发出去的消息数")
+                .tag("reason", key)
+                .register(Metrics.globalRegistry))
+                .increment();
+    }
+
+    //delayNanos 之后在时间轮线程上执行 check (要很快)；没有时间轮的时候 (例如 benchmark) 不检查
+    void watch(Runnable check, long delayNanos) {
+        if (timingWheel != null) {
+            timingWheel.schedule(check, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //关闭连接也可能要写网络 (close 帧)，放到单独的关闭线程上做，不和发送线程抢
+    void close(WebSocketSession session, CloseStatus status) {
+        closer.execute(() -> {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                //连接本来就有问题，关不掉也没关系
+            }
+        });
+    }
+
+    //让容器的阻塞发送也有超时，卡住的发送线程最多被占用 send-time-limit-ms
+    private void limitBlockingSend(WebSocketSession session) {
+        WebSocketSession raw = WebSocketSessionDecorator.unwrap(session);
+        if (!(raw instanceof NativeWebSocketSession)) {
+            return;
+        }
+        Object nativeSession = ((NativeWebSocketSession) raw).getNativeSession();
+        if (nativeSession instanceof javax.websocket.Session) {
+            ((javax.websocket.Session) nativeSession).getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeLimitMs);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.java_gobang.game;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//带发送缓冲区的 WebSocketSession
+//思路和 Spring 的 ConcurrentWebSocketSessionDecorator 类似，区别是调用 sendMessage 的线程永远只负责入队，
+//真正的网络 I/O 都交给 OutboundExecutor 的发送线程去做，所以一个很慢的客户端不会卡住匹配线程或者房间线程
+//同一个连接同一时刻最多只有一个发送线程在写，不会出现多个线程同时往一个连接里写的情况
+//一条消息发得太久由看门狗 (时间轮) 发现并关掉连接，不用等下一条消息进来
+public class OutboundSession extends WebSocketSessionDecorator {
+    //原始会话的 attributes 里用这个 key 记录它对应的 OutboundSession
+    static final String ATTRIBUTE = OutboundSession.class.getName();
+
+    //缓冲区满了之后怎么办
+    public enum OverflowPolicy {
+        //丢掉新来的这条消息
+        DROP_NEWEST,
+        //丢掉缓冲区里最早的消息，给新消息腾位置
+        DROP_OLDEST,
+        //认为客户端已经跟不上了，直接关闭连接
+        CLOSE
+    }
+
+    private final OutboundExecutor executor;
+    private final OverflowPolicy overflowPolicy;
+    private final Queue<WebSocketMessage<?>> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedMessages = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    //当前是否已经有发送线程在处理这个连接
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    //当前这一条消息开始发送的时间 (System.nanoTime)，0 表示没有在发送
+    private volatile long sendStartedAt;
+    private volatile boolean limitExceeded;
+    //时间轮上是不是已经挂着这个连接的看门狗，同一时刻最多挂一个
+    private final AtomicBoolean watchdogArmed = new AtomicBoolean();
+
+    OutboundSession(WebSocketSession delegate, OutboundExecutor executor, OverflowPolicy overflowPolicy) {
+        super(delegate);
+        this.executor = executor;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    //如果这个连接已经注册过发送缓冲区，就返回带缓冲区的那个会话，否则原样返回
+    //直接回复客户端的地方要经过它，才不会和发送线程同时往一个连接里写
+    public static WebSocketSession of(WebSocketSession session) {
+        Object outbound = session.getAttributes().get(ATTRIBUTE);
+        return outbound instanceof OutboundSession ? (OutboundSession) outbound : session;
+    }
+
+    //只入队，不做任何网络 I/O
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (limitExceeded || !isOpen()) {
+            drop("closed");
+            return;
+        }
+        if (isSendTimedOut()) {
+            //上一条消息发了太久都没有发完，认为这个客户端已经卡死了 (一般看门狗已经先发现了)
+            timedOut();
+            return;
+        }
+        if (!makeRoom(message)) {
+            return;
+        }
+        buffer.offer(message);
+        queuedMessages.incrementAndGet();
+        queuedBytes.addAndGet(message.getPayloadLength());
+        executor.queued(1);
+        scheduleFlush();
+    }
+
+    public int getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    //按照溢出策略给新消息腾位置，返回 false 表示这条消息不发了
+    private boolean makeRoom(WebSocketMessage<?> message) {
+        int length = message.getPayloadLength();
+        //缓冲区为空的时候，单条消息超过字节上限也放行，不然这条消息永远发不出去
+        while (queuedMessages.get() >= executor.getMaxMessages()
+                || (queuedMessages.get() > 0 && queuedBytes.get() + length > executor.getMaxBytes())) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    if (poll() == null) {
+                        //缓冲区刚刚被发送线程取空了
+                        return true;
+                    }
+                    drop("overflow");
+                    break;
+                case CLOSE:
+                    limitExceeded = true;
+                    drop("overflow");
+                    executor.close(this, CloseStatus.SESSION_NOT_RELIABLE);
+                    return false;
+                default:
+                    drop("overflow");
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private void timedOut() {
+        if (limitExceeded) {
+            return;
+        }
+        limitExceeded = true;
+        drop("timeout");
+        executor.close(this, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    //开始发送一条消息的时候挂上看门狗；已经挂着的那个到点之后会接着看这一条
+    private void armWatchdog(long delayNanos) {
+        if (watchdogArmed.compareAndSet(false, true)) {
+            executor.watch(this::checkSend, delayNanos);
+        }
+    }
+
+    //在时间轮线程上执行：正在发的这条消息超时了就关掉连接，还没超时就等到它的截止时间再看
+    private void checkSend() {
+        watchdogArmed.set(false);
+        long startedAt = sendStartedAt;
+        if (startedAt == 0 || limitExceeded) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        long limit = executor.getSendTimeLimitNanos();
+        if (elapsed > limit) {
+            timedOut();
+        } else {
+            armWatchdog(limit - elapsed);
+        }
+    }
+
+    private boolean isSendTimedOut() {
+        long startedAt = sendStartedAt;
+        return startedAt != 0 && System.nanoTime() - startedAt > executor.getSendTimeLimitNanos();
+    }
+
+    private void scheduleFlush() {
+        if (flushing.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    //在发送线程上执行：把缓冲区里的消息依次写到网络上
+    private void flush() {
+        while (true) {
+            WebSocketMessage<?> message;
+            while ((message = poll()) != null) {
+                if (limitExceeded || !isOpen()) {
+                    drop("closed");
+                    continue;
+                }
+                sendStartedAt = System.nanoTime();
+                armWatchdog(executor.getSendTimeLimitNanos());
+                try {
+                    getDelegate().sendMessage(message);
+                } catch (IOException | RuntimeException e) {
+                    limitExceeded = true;
+                    drop("error");
+                    executor.close(this, CloseStatus.SERVER_ERROR);
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+            flushing.set(false);
+            //释放标记之后再看一眼，避免刚好在这中间入队的消息没人发
+            if (buffer.isEmpty() || !flushing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private WebSocketMessage<?> poll() {
+        WebSocketMessage<?> message = buffer.poll();
+        if (message != null) {
+            queuedMessages.decrementAndGet();
+            queuedBytes.addAndGet(-message.getPayloadLength());
+            executor.queued(-1);
+        }
+        return message;
+    }
+
+    private void drop(String reason) {
+        droppedMessages.incrementAndGet();
+        executor.dropped(reason);
+    }
+}
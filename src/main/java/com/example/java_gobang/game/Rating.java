@@ -0,0 +1,27 @@
+package com.example.java_gobang.game;
+
+//计算分数变化时用到的一个玩家的当前状态
+public class Rating {
+    //当前的天梯分数
+    private final int score;
+    //已经下过的局数，局数少的玩家分数还不准，变化幅度要大一些
+    private final int games;
+
+    public Rating(int score, int games) {
+        this.score = score;
+        this.games = games;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    //下完一局之后的状态
+    public Rating after(int delta) {
+        return new Rating(score + delta, games + 1);
+    }
+}
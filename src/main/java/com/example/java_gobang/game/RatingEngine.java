@@ -0,0 +1,10 @@
+package com.example.java_gobang.game;
+
+//天梯分数的计算规则
+//根据两个玩家对局前的状态算出这一局双方的分数变化；实现必须是无状态的，同样的输入永远得到同样的结果，
+//这样才能拿对局历史 (game_result 表) 从头重算一遍，用来校准参数
+//默认实现是 EloRatingEngine，换一种算法 (例如带评分偏差的 Glicko) 只需要提供另一个 RatingEngine 的 bean
+public interface RatingEngine {
+    //返回 {获胜方的分数变化, 失败方的分数变化}
+    int[] rate(Rating winner, Rating loser);
+}
@@ -0,0 +1,240 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.cluster.ScoreFeed;
+import com.example.java_gobang.model.GameRecord;
+import com.example.java_gobang.model.GameRecordMapper;
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//按照对局历史 (game_result 表) 用当前的 RatingEngine 重算一遍所有玩家的天梯分数
+//用来在调整 K 值等参数之后校准分数；默认只计算并报告和当前分数的差别，apply=true 才写回
+//每个玩家从历史里他第一局之前的分数 (winScoreBefore / loseScoreBefore) 开始重放，局数从 当前局数 - 历史里的局数 开始，
+//历史开始之前下的对局保持原样，不会被"清零"
+//历史不完整的玩家 (中间缺了对局：前后两局的分数接不上，或者最后一局之后的分数和现在的分数对不上) 算不准，
+//只要有一个这样的玩家就不写回；所以 gobang.rating.record-history 要从上线第一天起就打开，中途关过就没法写回了
+//写回的是分数的绝对值，整个过程在 GameResultWriter.paused 里执行：期间结束的对局在队列里等着，写回之后再按新分数计算
+//写回时对局历史里的分数和分数变化也一起改成重算的结果 (同一个事务)，之后的对局接得上，下次还能再重算
+//集群部署的时候每个节点都有自己的 GameResultWriter，这里只能暂停本节点的，写回之前要先停掉其他节点
+@Component
+public class RatingRecalculator {
+    private static final Logger log = LoggerFactory.getLogger(RatingRecalculator.class);
+
+    //写回时一条 UPDATE 最多包含多少个玩家 (或者多少局对局历史)
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private GameRecordMapper gameRecordMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private RatingEngine ratingEngine;
+
+    @Autowired
+    private Leaderboard leaderboard;
+
+    @Autowired
+    private ScoreFeed scoreFeed;
+
+    @Autowired
+    private GameResultWriter gameResultWriter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    //重算的结果
+    public static class Summary {
+        private int games;
+        private int players;
+        //历史不完整、没法重算的玩家数，不为 0 的时候不写回
+        private int incompletePlayers;
+        //重算之后分数和现在不一样的玩家数
+        private int changedPlayers;
+        //分数差别的最大值和平均值 (绝对值)
+        private int maxDifference;
+        private double meanDifference;
+        private boolean applied;
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getPlayers() {
+            return players;
+        }
+
+        public int getIncompletePlayers() {
+            return incompletePlayers;
+        }
+
+        public int getChangedPlayers() {
+            return changedPlayers;
+        }
+
+        public int getMaxDifference() {
+            return maxDifference;
+        }
+
+        public double getMeanDifference() {
+            return meanDifference;
+        }
+
+        public boolean isApplied() {
+            return applied;
+        }
+    }
+
+    public Summary recalculate(boolean apply) {
+        //分数的绝对值写回之前不能有增量写进去，干脆整个过程都暂停写回，计算时看到的当前分数也是稳定的
+        return gameResultWriter.paused(() -> recalculatePaused(apply));
+    }
+
+    //历史里一个玩家的对局，用来检查历史是不是完整
+    private static class History {
+        //历史里第一局之前的分数
+        final int firstScore;
+        //按照历史里的分数变化，最后一局之后应该是多少分
+        int nextScore;
+        int games;
+        //前后两局的分数接不上，中间有对局没有写进历史
+        boolean broken;
+
+        History(int firstScore) {
+            this.firstScore = firstScore;
+            this.nextScore = firstScore;
+        }
+
+        void observe(int scoreBefore, int delta) {
+            if (scoreBefore != nextScore) {
+                broken = true;
+            }
+            nextScore = scoreBefore + delta;
+            games++;
+        }
+    }
+
+    private Summary recalculatePaused(boolean apply) {
+        long start = System.currentTimeMillis();
+        Summary summary = new Summary();
+        //第一遍：每个玩家在历史里的起点和局数，顺便检查历史是不是完整
+        Map<Integer, History> histories = new HashMap<>();
+        gameRecordMapper.selectAll(context -> {
+            GameRecord record = context.getResultObject();
+            histories.computeIfAbsent(record.getWinUserId(), id -> new History(record.getWinScoreBefore()))
+                    .observe(record.getWinScoreBefore(), record.getWinDelta());
+            histories.computeIfAbsent(record.getLoseUserId(), id -> new History(record.getLoseScoreBefore()))
+                    .observe(record.getLoseScoreBefore(), record.getLoseDelta());
+            summary.games++;
+        });
+        Map<Integer, Rating> ratings = new HashMap<>();
+        for (Map.Entry<Integer, History> entry : histories.entrySet()) {
+            History history = entry.getValue();
+            Rating current = leaderboard.rating(entry.getKey());
+            if (current == null || history.broken || current.getScore() != history.nextScore
+                    || current.getGames() < history.games) {
+                summary.incompletePlayers++;
+            }
+            int gamesBefore = current == null ? 0 : Math.max(0, current.getGames() - history.games);
+            ratings.put(entry.getKey(), new Rating(history.firstScore, gamesBefore));
+        }
+        histories.clear();
+        summary.players = ratings.size();
+        String refused = apply ? refuseReason(summary) : null;
+        boolean rewrite = apply && refused == null;
+
+        //第二遍：从每个玩家的起点开始，按照对局的先后顺序用当前的 RatingEngine 重放
+        //要写回的话，结果和历史里记的不一样的对局也记下来，和分数一起写回
+        List<GameRecord> rewritten = new ArrayList<>();
+        gameRecordMapper.selectAll(context -> {
+            GameRecord record = context.getResultObject();
+            Rating winner = ratings.get(record.getWinUserId());
+            Rating loser = ratings.get(record.getLoseUserId());
+            int[] change = ratingEngine.rate(winner, loser);
+            if (rewrite && (record.getWinScoreBefore() != winner.getScore() || record.getLoseScoreBefore() != loser.getScore()
+                    || record.getWinDelta() != change[0] || record.getLoseDelta() != change[1])) {
+                record.setWinScoreBefore(winner.getScore());
+                record.setLoseScoreBefore(loser.getScore());
+                record.setWinDelta(change[0]);
+                record.setLoseDelta(change[1]);
+                rewritten.add(record);
+            }
+            ratings.put(record.getWinUserId(), winner.after(change[0]));
+            ratings.put(record.getLoseUserId(), loser.after(change[1]));
+        });
+
+        List<User> changed = new ArrayList<>();
+        long totalDifference = 0;
+        for (Map.Entry<Integer, Rating> entry : ratings.entrySet()) {
+            Rating current = leaderboard.rating(entry.getKey());
+            int score = entry.getValue().getScore();
+            int difference = current == null ? 0 : Math.abs(score - current.getScore());
+            if (current == null || difference != 0) {
+                User user = new User();
+                user.setUserId(entry.getKey());
+                user.setScore(score);
+                changed.add(user);
+            }
+            totalDifference += difference;
+            summary.maxDifference = Math.max(summary.maxDifference, difference);
+        }
+        summary.changedPlayers = changed.size();
+        summary.meanDifference = summary.players == 0 ? 0 : (double) totalDifference / summary.players;
+
+        if (refused != null) {
+            log.warn("不写回重算的分数：{}", refused);
+        } else if (rewrite && !changed.isEmpty()) {
+            //分数和历史在一个事务里写回，失败的话两边都不变，可以直接再来一次
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int from = 0; from < rewritten.size(); from += CHUNK_SIZE) {
+                    gameRecordMapper.batchUpdateRatings(rewritten.subList(from, Math.min(rewritten.size(), from + CHUNK_SIZE)));
+                }
+                for (int from = 0; from < changed.size(); from += CHUNK_SIZE) {
+                    userMapper.batchSetScore(changed.subList(from, Math.min(changed.size(), from + CHUNK_SIZE)));
+                }
+            });
+            for (int from = 0; from < changed.size(); from += CHUNK_SIZE) {
+                publish(changed.subList(from, Math.min(changed.size(), from + CHUNK_SIZE)));
+            }
+            summary.applied = true;
+        }
+        log.info("按照 {} 局对局历史重算了 {} 个玩家的分数，{} 个历史不完整，{} 个有变化，最大差 {}，apply={}，耗时 {}ms",
+                summary.games, summary.players, summary.incompletePlayers, summary.changedPlayers,
+                summary.maxDifference, summary.applied, System.currentTimeMillis() - start);
+        return summary;
+    }
+
+    //不能写回的原因，可以写回返回 null
+    private String refuseReason(Summary summary) {
+        if (!gameResultWriter.isRecordHistory()) {
+            return "没有打开 gobang.rating.record-history，之后的对局不会进历史";
+        }
+        if (!leaderboard.isLoaded()) {
+            return "排行榜还没有加载完，拿不到玩家当前的分数";
+        }
+        if (summary.incompletePlayers > 0) {
+            return summary.incompletePlayers + " 个玩家的对局历史不完整";
+        }
+        return null;
+    }
+
+    //写回之后用数据库里的最新数据刷新排行榜和用户缓存
+    private void publish(List<User> chunk) {
+        List<Integer> userIds = new ArrayList<>(chunk.size());
+        for (User user : chunk) {
+            userIds.add(user.getUserId());
+        }
+        List<User> latest = userMapper.selectByIds(userIds);
+        scoreFeed.publish(latest);
+    }
+}
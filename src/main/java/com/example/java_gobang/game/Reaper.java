@@ -0,0 +1,200 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//后台清理没人管的房间和已经失效的连接
+//正常情况下房间在对局结束/玩家断开时就释放了，连接在关闭回调里就下线了；
+//但是关闭回调可能失败，匹配成功之后玩家也可能根本没有进入房间，这些东西会一直留在表里
+//
+//每隔 interval-ms 扫描一次，每次每张表最多只看 batch-size 项，从上次停下的地方接着往下，
+//扫完一遍再从头开始；不会一次遍历整张表，表再大每次扫描的耗时也是有上限的
+@Component
+public class Reaper {
+    private static final Logger log = LoggerFactory.getLogger(Reaper.class);
+
+    @Autowired
+    private RoomManager roomManager;
+
+    @Autowired
+    private OnlineUserManager onlineUserManager;
+
+    @Autowired
+    private OutboundExecutor outboundExecutor;
+
+    @Autowired
+    private Matcher matcher;
+
+    //多久扫描一次
+    @Value("${gobang.reaper.interval-ms:1000}")
+    private long intervalMs;
+
+    //每次每张表最多检查多少项
+    @Value("${gobang.reaper.batch-size:512}")
+    private int batchSize;
+
+    //房间多久没有任何操作就作废
+    @Value("${gobang.reaper.room-idle-ms:1800000}")
+    private long roomIdleMs;
+
+    //匹配成功之后多久还没有两个玩家都进入房间就作废
+    @Value("${gobang.reaper.unstarted-room-ms:60000}")
+    private long unstartedRoomMs;
+
+    //大厅里的连接多久没有发过消息就断开，0 表示不断开
+    @Value("${gobang.reaper.hall-idle-ms:3600000}")
+    private long hallIdleMs;
+
+    //房间里的连接被清理掉之后，和正常断线一样给玩家留出重连的时间
+    @Value("${gobang.reconnect.grace-ms:30000}")
+    private long reconnectGraceMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    private final Counter finishedRooms = reclaimed("room_finished");
+    private final Counter unstartedRooms = reclaimed("room_unstarted");
+    private final Counter idleRooms = reclaimed("room_idle");
+    private final Counter closedHallSessions = reclaimed("hall_session_closed");
+    private final Counter idleHallSessions = reclaimed("hall_session_idle");
+    private final Counter closedRoomSessions = reclaimed("room_session_closed");
+
+    private final Timer sweepTimer = Timer.builder("gobang.reaper.sweep")
+            .description("一次清理扫描的耗时")
+            .register(Metrics.globalRegistry);
+
+    //一次扫描的统计，只在 reaper 线程上使用
+    private final int[] counts = new int[6];
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void sweep() {
+        long start = System.nanoTime();
+        try {
+            Arrays.fill(counts, 0);
+            roomManager.sweep(batchSize, room -> checkRoom(room, start));
+            onlineUserManager.sweepGameHall(batchSize, (userId, session) -> checkHallSession(userId, session, start));
+            onlineUserManager.sweepGameRoom(batchSize, this::checkRoomSession);
+            report();
+        } catch (Throwable e) {
+            //定时任务抛出异常之后就不会再被调度了，这里兜住所有异常
+            log.error("清理扫描失败", e);
+        } finally {
+            sweepTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void checkRoom(Room room, long now) {
+        if (room.isOver() && now - room.getLastActiveNanos() > TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+            //对局已经结束了却还留在表里 (释放的时候出了异常)
+            //刚刚结束的房间可能正在释放的过程中，多等一轮再算
+            roomManager.remove(room.getRoomId());
+            count(0, finishedRooms);
+            return;
+        }
+        if (!room.isStarted() && now - room.getCreatedNanos() > TimeUnit.MILLISECONDS.toNanos(unstartedRoomMs)) {
+            //匹配成功之后有玩家一直没有进入房间；到信箱里再确认一次，玩家可能刚刚进来
+            room.execute(() -> {
+                if (!room.isStarted()) {
+                    room.abandon("匹配成功之后玩家一直没有进入房间！");
+                }
+            });
+            count(1, unstartedRooms);
+            return;
+        }
+        if (now - room.getLastActiveNanos() > TimeUnit.MILLISECONDS.toNanos(roomIdleMs)) {
+            room.execute(() -> room.abandon("房间长时间没有任何操作！"));
+            count(2, idleRooms);
+        }
+    }
+
+    private void checkHallSession(int userId, WebSocketSession session, long now) {
+        if (!session.isOpen()) {
+            //连接已经断了，但是关闭回调没有把它下线
+            if (onlineUserManager.exitGameHall(userId, session)) {
+                Object user = session.getAttributes().get("user");
+                if (user instanceof User) {
+                    matcher.remove((User) user);
+                }
+                count(3, closedHallSessions);
+            }
+            return;
+        }
+        Long lastActive = OnlineUserManager.lastActive(session);
+        if (hallIdleMs > 0 && lastActive != null && now - lastActive > TimeUnit.MILLISECONDS.toNanos(hallIdleMs)) {
+            //关闭连接会触发 MatchAPI 的关闭回调，由它负责下线和退出匹配
+            //先刷新一下活动时间，关闭完成之前再扫到它不会重复关闭
+            onlineUserManager.touch(session);
+            outboundExecutor.close(session, CloseStatus.GOING_AWAY);
+            count(4, idleHallSessions);
+        }
+    }
+
+    private void checkRoomSession(int userId, WebSocketSession session) {
+        if (session.isOpen() || !onlineUserManager.exitGameRoom(userId, session)) {
+            return;
+        }
+        count(5, closedRoomSessions);
+        //和 GameAPI 的关闭回调做一样的事情：对局还在进行的话，给玩家留出重连的时间
+        Room room = roomManager.getRoomByUserId(userId);
+        if (room == null) {
+            return;
+        }
+        User user = room.getPlayer(userId);
+        if (user != null) {
+            room.execute(() -> room.playerLeft(user, reconnectGraceMillis));
+        }
+    }
+
+    private void count(int index, Counter counter) {
+        counts[index]++;
+        counter.increment();
+    }
+
+    private void report() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        if (total > 0) {
+            log.info("清理了 {} 项：已结束的房间 {}，没有开始的房间 {}，空闲的房间 {}，"
+                            + "大厅里已断开的连接 {}，大厅里空闲的连接 {}，房间里已断开的连接 {}",
+                    total, counts[0], counts[1], counts[2], counts[3], counts[4], counts[5]);
+        }
+    }
+
+    private static Counter reclaimed(String kind) {
+        return Counter.builder("gobang.reaper.reclaimed")
+                .description("后台清理掉的房间和连接数")
+                .tag("kind", kind)
+                .register(Metrics.globalRegistry);
+    }
+}
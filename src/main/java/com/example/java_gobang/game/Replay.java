@@ -0,0 +1,113 @@
+package com.example.java_gobang.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//一局棋的回放，/replay/{roomId} 返回的内容
+public class Replay {
+    private long roomId;
+    private int user1;
+    private int user2;
+    private int whiteUser;
+    private int winner;
+    //对局开始的时间，毫秒时间戳
+    private long startTime;
+    private List<Move> moves = new ArrayList<>();
+
+    //一步棋
+    public static class Move {
+        private int row;
+        private int col;
+        private int userId;
+        //距离对局开始的时间，毫秒 (精度 100ms)
+        private long time;
+
+        public int getRow() {
+            return row;
+        }
+
+        public void setRow(int row) {
+            this.row = row;
+        }
+
+        public int getCol() {
+            return col;
+        }
+
+        public void setCol(int col) {
+            this.col = col;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public void setUserId(int userId) {
+            this.userId = userId;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public void setTime(long time) {
+            this.time = time;
+        }
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public int getUser1() {
+        return user1;
+    }
+
+    public void setUser1(int user1) {
+        this.user1 = user1;
+    }
+
+    public int getUser2() {
+        return user2;
+    }
+
+    public void setUser2(int user2) {
+        this.user2 = user2;
+    }
+
+    public int getWhiteUser() {
+        return whiteUser;
+    }
+
+    public void setWhiteUser(int whiteUser) {
+        this.whiteUser = whiteUser;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    public void setMoves(List<Move> moves) {
+        this.moves = moves;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.java_gobang.game;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+//对局记录的二进制格式，ReplayStore 把它一条接一条地追加到日志文件里
+//
+//一条记录：[body 长度 varint][body][body 的 CRC32 4字节]
+//body：    [版本 1字节][roomId varint][user1 varint][user2 varint][whiteUser varint][winner varint]
+//          [开始时间 毫秒 varint][步数 n varint][位置 n字节][落子方 (n+7)/8 字节][时间间隔 n个 varint，单位100ms]
+//varint 是无符号 LEB128：每个字节低7位是数据，最高位为1表示后面还有
+//一局 40 步左右的棋一般在 130 字节以内
+public class ReplayCodec {
+    static final byte VERSION = 1;
+    static final int CRC_LENGTH = 4;
+
+    //编码一条完整的记录 (包括长度前缀和校验和)
+    public static byte[] encode(long roomId, int user1, int user2, int whiteUser, int winner, MoveLog log) {
+        int n = log.getCount();
+        //每个 varint 最多 5 字节 (int) / 10 字节 (long)，先按最大值分配
+        //电脑玩家的 userId 是负数，按 long 编码要 10 个字节
+        ByteBuffer body = ByteBuffer.allocate(1 + 10 + 10 * 4 + 10 + 5 + n + (n + 7) / 8 + 5 * n);
+        body.put(VERSION);
+        putVarint(body, roomId);
+        putVarint(body, user1);
+        putVarint(body, user2);
+        putVarint(body, whiteUser);
+        putVarint(body, winner);
+        putVarint(body, log.getStartMillis());
+        putVarint(body, n);
+        body.put(log.positions(), 0, n);
+        body.put(log.players(), 0, (n + 7) / 8);
+        int[] deltas = log.deltas();
+        for (int i = 0; i < n; i++) {
+            putVarint(body, deltas[i]);
+        }
+        body.flip();
+
+        int length = body.remaining();
+        ByteBuffer record = ByteBuffer.allocate(varintSize(length) + length + CRC_LENGTH);
+        putVarint(record, length);
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        record.put(body);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    //解析一条记录的 body
+    public static Replay decode(ByteBuffer body) {
+        if (body.get() != VERSION) {
+            throw new IllegalArgumentException("不认识的对局记录版本");
+        }
+        Replay replay = new Replay();
+        replay.setRoomId(getVarint(body));
+        replay.setUser1((int) getVarint(body));
+        replay.setUser2((int) getVarint(body));
+        replay.setWhiteUser((int) getVarint(body));
+        replay.setWinner((int) getVarint(body));
+        replay.setStartTime(getVarint(body));
+        int n = (int) getVarint(body);
+        int positions = body.position();
+        int players = positions + n;
+        body.position(players + (n + 7) / 8);
+        long time = 0;
+        for (int i = 0; i < n; i++) {
+            int position = body.get(positions + i) & 0xFF;
+            boolean second = (body.get(players + (i >> 3)) & (1 << (i & 7))) != 0;
+            time += getVarint(body) * 100;
+            Replay.Move move = new Replay.Move();
+            move.setRow(position / Board.MAX_COL);
+            move.setCol(position % Board.MAX_COL);
+            move.setUserId(second ? replay.getUser2() : replay.getUser1());
+            move.setTime(time);
+            replay.getMoves().add(move);
+        }
+        return replay;
+    }
+
+    //读出 body 里的 roomId，建立索引的时候用，不需要解析整条记录；不认识的版本返回 0
+    static long roomIdOf(ByteBuffer buffer, int bodyOffset) {
+        if (buffer.get(bodyOffset) != VERSION) {
+            return 0;
+        }
+        ByteBuffer body = buffer.duplicate();
+        body.position(bodyOffset + 1);
+        return getVarint(body);
+    }
+
+    static boolean checksumMatches(ByteBuffer buffer, int bodyOffset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(bodyOffset + length).position(bodyOffset);
+        crc.update(body);
+        return buffer.getInt(bodyOffset + length) == (int) crc.getValue();
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint 太长");
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.java_gobang.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+//对局记录的存储：按段切分、内存映射、只追加的日志文件
+//  目录下是 replay-000001.seg、replay-000002.seg ... 每个文件固定大小，整个映射到内存里
+//  记录一条接一条地写 (格式见 ReplayCodec)，写不下就换下一个文件；文件里没写到的部分都是0，读到长度为0就是结尾
+//  roomId -> 记录位置 的索引只放在内存里，启动时扫描所有文件重建；校验和不对的记录 (上次没写完就宕机) 及其后面的内容都丢弃
+//对局结束时房间线程只是把编码好的记录放进队列，真正的写文件在后台线程 "replay-writer" 上完成
+//段文件数超过上限之后删除最老的
+@Component
+public class ReplayStore {
+    private static final Logger log = LoggerFactory.getLogger(ReplayStore.class);
+
+    private static final String PREFIX = "replay-";
+    private static final String SUFFIX = ".seg";
+    private static final int ZERO_PAGE = 4096;
+
+    @Value("${gobang.replay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gobang.replay.dir:replays}")
+    private String dir;
+
+    @Value("${gobang.replay.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    //最多保留多少个段文件，0 表示不限制
+    @Value("${gobang.replay.max-segments:64}")
+    private int maxSegments;
+
+    @Value("${gobang.replay.queue-capacity:10000}")
+    private int queueCapacity;
+
+    //多久把写入的内容刷到磁盘上一次
+    @Value("${gobang.replay.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private File directory;
+    private int segmentSize;
+    //段序号 -> 映射到内存的段文件
+    private final ConcurrentHashMap<Integer, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    //roomId -> (段序号 << 32 | 段内偏移)
+    private final ConcurrentHashMap<Long, Long> index = new ConcurrentHashMap<>();
+    private BlockingQueue<byte[]> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    //以下字段只在启动时和 writer 线程上访问
+    private int currentSegment;
+    private MappedByteBuffer current;
+    private int writePosition;
+    private boolean dirty;
+
+    private final Counter written = Counter.builder("gobang.replay.written")
+            .description("写入日志文件的对局数")
+            .register(Metrics.globalRegistry);
+    private final Counter writtenBytes = Counter.builder("gobang.replay.bytes")
+            .description("写入日志文件的字节数")
+            .register(Metrics.globalRegistry);
+    private final Counter dropped = Counter.builder("gobang.replay.dropped")
+            .description("队列满了或者写入失败，没有保存下来的对局数")
+            .register(Metrics.globalRegistry);
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        segmentSize = segmentSizeMb * 1024 * 1024;
+        directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建对局记录目录：" + directory.getAbsolutePath());
+        }
+        recover();
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("gobang.replay.queue.depth", queue, BlockingQueue::size)
+                .description("等待写入日志文件的对局数")
+                .register(Metrics.globalRegistry);
+        running = true;
+        writer = new Thread(this::runWriter, "replay-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(5000);
+    }
+
+    //提交一局结束的对局，只入队，不做任何 I/O；队列满了就丢掉这一局的记录
+    public void submit(byte[] record) {
+        if (!enabled || !running || !queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    //按 roomId 读出一局棋，找不到返回 null
+    public Replay read(String roomId) {
+        long id = RoomFactory.parseRoomId(roomId);
+        if (!enabled || id == 0) {
+            return null;
+        }
+        Long location = index.get(id);
+        if (location == null) {
+            return null;
+        }
+        MappedByteBuffer segment = segments.get((int) (location >>> 32));
+        if (segment == null) {
+            //段文件刚好被清理掉了
+            return null;
+        }
+        //每次读取都用自己的一份 duplicate，读指针互不影响
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position((int) (long) location);
+        int length = (int) ReplayCodec.getVarint(buffer);
+        buffer.limit(buffer.position() + length);
+        return ReplayCodec.decode(buffer.slice());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private void runWriter() {
+        List<byte[]> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                byte[] first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (byte[] record : batch) {
+                        append(record);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                //被 stop 唤醒，把队列里剩下的写完再退出
+                queue.drainTo(batch);
+                for (byte[] record : batch) {
+                    append(record);
+                }
+                batch.clear();
+                running = false;
+            }
+            force();
+        }
+        force();
+    }
+
+    private void append(byte[] record) {
+        try {
+            if (writePosition + record.length > segmentSize) {
+                roll();
+            }
+            int offset = writePosition;
+            ByteBuffer buffer = current.duplicate();
+            buffer.position(offset);
+            buffer.put(record);
+            writePosition += record.length;
+            dirty = true;
+            //先写数据再发布索引，读到索引的线程一定能看到完整的记录
+            ByteBuffer header = ByteBuffer.wrap(record);
+            ReplayCodec.getVarint(header);
+            index.put(ReplayCodec.roomIdOf(header, header.position()), ((long) currentSegment << 32) | offset);
+            written.increment();
+            writtenBytes.increment(record.length);
+        } catch (IOException | RuntimeException e) {
+            dropped.increment();
+            log.warn("写入对局记录失败：{}", e.toString());
+        }
+    }
+
+    private void force() {
+        if (dirty) {
+            current.force();
+            dirty = false;
+        }
+    }
+
+    //当前的段写满了，换一个新的段，必要时删除最老的段
+    private void roll() throws IOException {
+        force();
+        openSegment(currentSegment + 1);
+        if (maxSegments > 0) {
+            while (segments.size() > maxSegments) {
+                int oldest = segments.keySet().stream().min(Integer::compare).get();
+                dropSegment(oldest);
+            }
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+        current = map(segmentFile(number));
+        currentSegment = number;
+        writePosition = 0;
+        segments.put(number, current);
+    }
+
+    private void dropSegment(int number) {
+        segments.remove(number);
+        index.values().removeIf(location -> (int) (location >>> 32) == number);
+        File file = segmentFile(number);
+        if (!file.delete()) {
+            log.warn("删除对局记录文件失败：{}", file.getAbsolutePath());
+        }
+    }
+
+    //启动时扫描已有的段文件，重建索引并找到写入位置
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        int[] numbers = files == null ? new int[0] : Arrays.stream(files)
+                .mapToInt(f -> Integer.parseInt(f.getName().substring(PREFIX.length(),
+                        f.getName().length() - SUFFIX.length())))
+                .sorted()
+                .toArray();
+        if (numbers.length == 0) {
+            openSegment(1);
+            return;
+        }
+        long start = System.currentTimeMillis();
+        for (int number : numbers) {
+            MappedByteBuffer segment = map(segmentFile(number));
+            segments.put(number, segment);
+            int end = scan(number, segment);
+            current = segment;
+            currentSegment = number;
+            writePosition = end;
+        }
+        log.info("对局记录恢复完成：{} 个段文件，{} 局，耗时 {}ms",
+                numbers.length, size(), System.currentTimeMillis() - start);
+    }
+
+    //扫描一个段，返回最后一条完整记录之后的位置
+    private int scan(int number, MappedByteBuffer segment) {
+        ByteBuffer buffer = segment.duplicate();
+        int position = 0;
+        while (position < segmentSize) {
+            buffer.position(position);
+            int length;
+            try {
+                length = (int) ReplayCodec.getVarint(buffer);
+            } catch (RuntimeException e) {
+                break;
+            }
+            int bodyOffset = buffer.position();
+            if (length <= 0 || bodyOffset + length + ReplayCodec.CRC_LENGTH > segmentSize
+                    || !ReplayCodec.checksumMatches(buffer, bodyOffset, length)) {
+                break;
+            }
+            long roomId = ReplayCodec.roomIdOf(buffer, bodyOffset);
+            if (roomId != 0) {
+                index.put(roomId, ((long) number << 32) | position);
+            }
+            position = bodyOffset + length + ReplayCodec.CRC_LENGTH;
+        }
+        //后面可能是上次没写完的记录，清零之后从这里接着写
+        //一直清到连续一整页都是0为止，再往后是从来没有写过的部分
+        int zeros = 0;
+        for (int i = position; i < segmentSize && zeros < ZERO_PAGE; i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+                zeros = 0;
+            } else {
+                zeros++;
+            }
+        }
+        return position;
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            //映射建立之后关闭文件也不影响映射
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format("%s%06d%s", PREFIX, number, SUFFIX));
+    }
+}
@@ -1,40 +1,39 @@
 package com.example.java_gobang.game;
 
 
-import com.example.java_gobang.JavaGobangApplication;
+import com.example.java_gobang.game.ai.AiPlayer;
 import com.example.java_gobang.model.User;
-import com.example.java_gobang.model.UserMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 //这个类就表示一个游戏房间
 public class Room {
-    //使用字符串类型来表示，方便生成唯一值
-    private String roomId;
+    private static final Logger log = LoggerFactory.getLogger(Room.class);
+
+    //房间号，由 RoomFactory 分配
+    private final long roomId;
     private User user1;
     private User user2;
 
     //先手方的的玩家 id
     private int whiteUser;
 
-    private static final int MAX_ROW = 15;
-    private static final int MAX_COL = 15;
-    //这个二维数组用来表示棋盘
-    //约定：
-    // 1) 使用0表示当前位置 未落子，初始化好的int二维数组就相当于是全0
-    // 2) 使用1表示 user1 的落子位置
-    // 3) 使用2表示 user2 的落子位置
-    private int [][] board = new int[MAX_ROW][MAX_COL];
+    private static final int MAX_ROW = Board.MAX_ROW;
+    private static final int MAX_COL = Board.MAX_COL;
+    //棋盘，约定见 Board 接口
+    //默认使用位运算实现的 BitBoard，ArrayBoard 是原来二维数组的写法，作为参考实现保留
+    private Board board;
 
-    //创建ObjectMapper用来转换 JSON
-    private ObjectMapper objectMapper = new ObjectMapper();
+    //JSON 格式的落子请求解析到这里，每一步都复用，只在信箱线程上读写
+    private final GameRequest jsonRequest = new GameRequest();
 
     //引入OnlineUserManager
     //@Autowired
@@ -44,26 +43,204 @@ public class Room {
     //@Autowired
     private RoomManager roomManager;
 
-    private UserMapper userMapper;
+    //游戏结果的异步写回
+    private GameResultWriter gameResultWriter;
+
+    //创建这个房间的工厂，对局结束之后把棋盘还给它
+    private final RoomFactory factory;
+
+    //落子记录，对局结束后交给 ReplayStore 保存，用于回放
+    private MoveLog moveLog;
+    private ReplayStore replayStore;
+
+    //房间的信箱：落子、掉线判负等操作都投递到这里，按顺序串行执行
+    private RoomMailbox mailbox;
+
+    //观战的连接，落子消息在发送线程上分发给他们
+    private SpectatorGroup spectators;
+    //当前棋盘的快照，编码一次给所有新加入的观众共用；落子之后作废
+    private BroadcastFrame snapshot;
+
+    //所有房间共用的定时器
+    private TimingWheel timingWheel;
+    //断线玩家的判负定时，下标和 chess 一样 (1 是玩家1，2 是玩家2)，只在信箱线程上读写
+    private final TimingWheel.Timeout[] graceTimers = new TimingWheel.Timeout[3];
+
+    //接下来轮到谁落子 (userId)，0 表示还没有人落子、轮到先手方，只在信箱线程上读写
+    private int turn;
+
+    //棋钟：每个玩家还剩多少时间 (毫秒)，下标和 chess 一样；每走一步给走棋的一方加 incrementMillis
+    //超时由时间轮触发，都只在信箱线程上读写
+    private final long[] clockMillis = new long[3];
+    private long incrementMillis;
+    //当前这一手开始计时的时间 (System.nanoTime)，0 表示棋钟没有开始
+    private long turnStartedAt;
+    private TimingWheel.Timeout clockTimer;
+
+    //电脑对手，和真人对局的时候为 null；电脑坐在 user2 的位置上
+    private AiPlayer ai;
+
+    private final long createdNanos = System.nanoTime();
+    private volatile long lastActiveNanos = createdNanos;
+
+    //胜负是否已分，只在信箱线程上修改
+    private volatile boolean over;
+    //获胜方，只在信箱线程上读写
+    private int winner;
+
+    //把一个操作投递到房间的信箱里，稍后在共享线程池上按顺序执行
+    public void execute(RoomMailbox.Task task) {
+        lastActiveNanos = System.nanoTime();
+        mailbox.execute(task);
+    }
+
+    //房间创建的时间 (System.nanoTime)
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    //最近一次有操作投递进来的时间 (System.nanoTime)，Reaper 用来判断房间是不是没人管了
+    public long getLastActiveNanos() {
+        return lastActiveNanos;
+    }
+
+    //两个玩家是不是都已经进入房间了
+    public boolean isStarted() {
+        return user1 != null && user2 != null;
+    }
+
+    //信箱里还没处理完的操作数
+    public int getPendingTasks() {
+        return mailbox.getPendingTasks();
+    }
+
+    //不经过 Spring 创建的时候 (例如 benchmark) 为 null
+    RoomMailbox getMailbox() {
+        return mailbox;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    public void setOver(boolean over) {
+        this.over = over;
+    }
+
+    //加入观战，需要在房间的信箱里调用：先发当前棋盘的快照，之后的落子和玩家同步收到
+    //session 应该已经经过 OutboundExecutor.wrap 包装
+    public void addSpectator(WebSocketSession session) {
+        spectators.join(session, snapshot());
+    }
+
+    //离开观战，任何线程都可以调用
+    public void removeSpectator(WebSocketSession session) {
+        spectators.leave(session);
+    }
+
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
 
-    //通过这个方法来处理一次落子操作
+    //对局结束，需要在房间的信箱里调用：给观众发一份带着胜负结果的最终快照，之后不再给他们发消息
+    public void finishSpectators(int winner) {
+        this.winner = winner;
+        snapshot = null;
+        spectators.broadcast(snapshot());
+        spectators.finish();
+    }
+
+    //当前棋盘的快照；两个玩家都进入房间之后才缓存，之前 user1/user2 还会变
+    private BroadcastFrame snapshot() {
+        BroadcastFrame frame = snapshot;
+        if (frame == null) {
+            WatchSnapshot resp = new WatchSnapshot();
+            resp.setMessage("watchSnapshot");
+            resp.setOk(true);
+            resp.setReason("");
+            resp.setRoomId(roomId);
+            User u1 = user1;
+            User u2 = user2;
+            resp.setUser1(u1 == null ? 0 : u1.getUserId());
+            resp.setUser2(u2 == null ? 0 : u2.getUserId());
+            resp.setWhiteUser(whiteUser);
+            resp.setOver(over);
+            resp.setWinner(winner);
+            resp.setMoves(moveLog.toMoves(resp.getUser1(), resp.getUser2()));
+            frame = BroadcastFrame.json(resp);
+            if (u1 != null && u2 != null) {
+                snapshot = frame;
+            }
+        }
+        return frame;
+    }
+
+    //处理一次 JSON 格式的落子请求，需要在房间的信箱里调用
+    //落子的玩家以连接对应的 userId 为准，不相信请求里自己填的 userId
+    public void putChess(int userId, String reqJson) throws IOException {
+        if (over) {
+            //胜负已分之后还在路上的落子请求，直接丢掉
+            return;
+        }
+        JsonCodec.readGameRequest(reqJson, jsonRequest);
+        jsonRequest.setUserId(userId);
+        putChess(jsonRequest);
+    }
+
+    //通过这个方法来处理一次落子操作，需要在房间的信箱里调用
+    //请求可能来自 JSON，也可能来自二进制帧 (BinaryMoveCodec)
     //要做的事情：
-    public void putChess(String reqJson) throws IOException {
+    public void putChess(GameRequest request) throws IOException {
+        if (over) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            applyMove(request);
+        } finally {
+            GameMetrics.MOVE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void applyMove(GameRequest request) throws IOException {
         //1.记录当前落子的位置
-        GameRequest request = objectMapper.readValue(reqJson,GameRequest.class);
         GameResponse response = new GameResponse();
+        if (user1 == null || user2 == null) {
+            log.info("两个玩家还没有都进入房间，不能落子！");
+            return;
+        }
+        if (request.getUserId() != currentTurn()) {
+            //客户端只在轮到自己的时候才能点，这里在服务器再判定一次，也挡住了不是这个房间玩家的请求
+            log.info("还没有轮到玩家{}落子！", request.getUserId());
+            return;
+        }
         //当前这个子是玩家1落得还是玩家2落的。根据这个玩家1 和玩家2 来决定往数组中写1还是2
         int chess = request.getUserId() == user1.getUserId() ? 1 : 2;
         int row = request.getRow();
         int col = request.getCol();
-        if (board[row][col] != 0) {
+        if (row < 0 || row >= MAX_ROW || col < 0 || col >= MAX_COL) {
+            log.info("当前位置({},{})不在棋盘上！", row, col);
+            return;
+        }
+        if (board.get(row, col) != 0) {
             //在客户端已经针对重复落子进行过判定，此处为了程序更加稳健，在服务器再判定一次
-            System.out.println("当前位置(" + row + "," + col + ")已经有子啦！");
+            log.info("当前位置({},{})已经有子啦！", row, col);
+            return;
+        }
+        if (!chargeClock(chess)) {
+            //时间已经用完了，只是时间轮的到期任务还没来得及执行
+            timeout(chess);
             return;
         }
-        board[row][col] = chess;
+        board.put(row, col, chess);
+        turn = chess == 1 ? user2.getUserId() : user1.getUserId();
+        moveLog.record(row, col, chess, System.currentTimeMillis());
+        snapshot = null;
         //2.打印出当前的棋盘信息，方便来观察局势，也方便后面验证胜负关系的判定
-        printBoard();
+        //  每一步都会走到这里，只有打开 debug 级别的时候才去拼棋盘字符串
+        if (log.isDebugEnabled()) {
+            log.debug("[打印棋盘信息]\n{}", renderBoard());
+        }
         //3.进行胜负判定
         int winner = checkWinner(row,col,chess);
         //4.给房间中的所有客户端返回响应
@@ -74,134 +251,403 @@ public class Room {
         response.setWinner(winner);
 
         //要想给用户发送 websocket 数据，就需要获取到这个用户 WebSocketSession
+        //对手可能正好断线了 (session 为 null)，这时不判负：他重连上来会拿到包含这一步的快照
         WebSocketSession session1 = onlineUserManager.getFromGameRoom(user1.getUserId());
         WebSocketSession session2 = onlineUserManager.getFromGameRoom(user2.getUserId());
-        //万一当前查到的对话为空（玩家下线）特殊处理一下
-        if(session1 == null) {
-            //玩家1 已经下线了。直接认为玩家2获胜
-            response.setWinner(user2.getUserId());
-            System.out.println("玩家1 掉线！");
-        }
-        if(session2 == null) {
-            //玩家2 已经下线了。直接认为玩家1获胜
-            response.setWinner(user1.getUserId());
-            System.out.println("玩家2 掉线！");
-        }
-        //把响应构造成JSON字符串，通过session进行传输
-        String respJson = objectMapper.writeValueAsString(response);
-        if(session1 != null) {
-            session1.sendMessage(new TextMessage(respJson));
-        }
-        if(session2 != null) {
-            session2.sendMessage(new TextMessage(respJson));
-        }
+        //把响应编码一次，按照每个连接协商好的格式 (JSON / 二进制) 发给房间里的所有人
+        //观众收到的也是同一份编码结果，分发在发送线程上做，这里只是入队
+        BroadcastFrame frame = BroadcastFrame.move(response);
+        frame.sendTo(Arrays.asList(session1, session2));
+        spectators.broadcast(frame);
 
         //5.如果玩家1和万家胜负已分，那么就可以销毁房间
         //把房间从房间管理器中移除
-        if(response.getWinner() != 0) {
+        if(winner != 0) {
             //胜负已分
-            System.out.println("游戏结束！房间即将销毁！roomId=" + roomId + "获胜方" + response.getWinner());
-            //更新获胜方和是拜访的信息
-            int winUserId = response.getWinner();
-            int loseUserId = response.getWinner() == user1.getUserId() ? user2.getUserId() : user1.getUserId();
-            userMapper.userWin(winUserId);
-            userMapper.userLose(loseUserId);
-            //销毁房间
-            roomManager.remove(roomId,user1.getUserId(),user2.getUserId());
+            log.info("游戏结束！房间即将销毁！获胜方{}", winner);
+            GameMetrics.WINS.increment();
+            int loseUserId = winner == user1.getUserId() ? user2.getUserId() : user1.getUserId();
+            finish(winner, loseUserId);
+            return;
+        }
+        //轮到对手，开始给对手计时
+        armClock();
+        requestAiMove();
+    }
+
+    //两个玩家都准备好之后开始计时，需要在房间的信箱里调用
+    //initialMillis 是每个玩家一开始的时间，incrementMillis 是每走一步加的时间；initialMillis 为 0 表示不限时
+    //先手是电脑的话，电脑也从这里开始想第一步
+    public void startClock(long initialMillis, long incrementMillis) {
+        if (over || turnStartedAt != 0) {
+            return;
         }
+        if (initialMillis > 0) {
+            clockMillis[1] = initialMillis;
+            clockMillis[2] = initialMillis;
+            this.incrementMillis = incrementMillis;
+            turnStartedAt = System.nanoTime();
+            armClock();
+        }
+        requestAiMove();
     }
 
-    private void printBoard() {
-        //打印出qipan
-        System.out.println("[打印棋盘信息]" + roomId);
-        System.out.println("====================================================================");
+    //轮到电脑的话让它开始想下一步，需要在房间的信箱里调用
+    //搜索在 AI 线程池上做，想好之后同样投递到信箱里落子，不会占着房间线程
+    private void requestAiMove() {
+        if (ai == null || over || user1 == null || user2 == null
+                || currentTurn() != ai.getUser().getUserId()) {
+            return;
+        }
+        int[] cells = new int[MAX_ROW * MAX_COL];
         for (int r = 0; r < MAX_ROW; r++) {
             for (int c = 0; c < MAX_COL; c++) {
-                //针对一行之内的若干列，不要打印换行
-                System.out.print(board[r][c] + " ");
+                cells[r * MAX_COL + c] = board.get(r, c);
             }
-            //每次遍历完一行之后，再打印换行
-            System.out.println();
         }
-        System.out.println("====================================================================");
+        int aiUserId = ai.getUser().getUserId();
+        ai.think(cells, chessOf(ai.getUser()), cell -> execute(() -> aiMoved(aiUserId, cell)));
+    }
 
+    private void aiMoved(int aiUserId, int cell) throws IOException {
+        if (over || cell < 0) {
+            return;
+        }
+        GameRequest request = new GameRequest();
+        request.setMessage("putChess");
+        request.setUserId(aiUserId);
+        request.setRow(cell / MAX_COL);
+        request.setCol(cell % MAX_COL);
+        putChess(request);
     }
 
-    //使用这个方法进行判定
-    //如果玩家1获胜，就返回玩家1的id
-    //如果玩家2获胜，就返回玩家2的id
-    //胜负未分 返回0
-    private int checkWinner(int row, int col, int chess) {
-        //1.检查所有的行
-        //  先遍历这五种情况
-        for (int c = col - 4; c <= col ; c++) {
-            //针对其中的一种情况，来判定这五个子是不是连在一起了
-            //不光是这五个子得连着，而且要跟玩家落的子是一样的 才算获胜
-            try {
-                if(board[row][c] == chess
-                        && board[row][c+1] == chess
-                        && board[row][c+2] == chess
-                        && board[row][c+3] == chess
-                        && board[row][c+4] == chess) {
-                    //构成了五子连珠！胜负已分
-                    return chess == 1 ? user1.getUserId() : user2.getUserId();
-                }
-            }catch (ArrayIndexOutOfBoundsException e) {
-                //如果出现数组下标越界得情况，可以直接忽略这个异常
-                continue;
-            }
+    //扣掉这一手用的时间，再加上每步的加秒；时间已经用完了返回 false
+    private boolean chargeClock(int chess) {
+        if (turnStartedAt == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        clockMillis[chess] -= TimeUnit.NANOSECONDS.toMillis(now - turnStartedAt);
+        if (clockMillis[chess] < 0) {
+            return false;
+        }
+        clockMillis[chess] += incrementMillis;
+        turnStartedAt = now;
+        return true;
+    }
+
+    //按照当前落子一方剩下的时间，在时间轮上设好超时
+    private void armClock() {
+        if (clockTimer != null) {
+            clockTimer.cancel();
+            clockTimer = null;
+        }
+        if (turnStartedAt == 0 || timingWheel == null || over) {
+            return;
+        }
+        int chess = currentTurn() == user1.getUserId() ? 1 : 2;
+        //ref 在信箱线程上赋值，到期的任务也在信箱线程上读，不会读到 null
+        TimingWheel.Timeout[] ref = new TimingWheel.Timeout[1];
+        ref[0] = timingWheel.schedule(() -> execute(() -> clockExpired(ref[0])),
+                clockMillis[chess], TimeUnit.MILLISECONDS);
+        clockTimer = ref[0];
+    }
+
+    private void clockExpired(TimingWheel.Timeout timeout) throws IOException {
+        if (over || clockTimer != timeout) {
+            //这一手已经走完了，或者对局已经结束了
+            return;
+        }
+        clockTimer = null;
+        timeout(currentTurn() == user1.getUserId() ? 1 : 2);
+    }
+
+    //chess 一方的时间用完了，判负
+    private void timeout(int chess) throws IOException {
+        User loser = chess == 1 ? user1 : user2;
+        log.info("玩家 {} 的时间用完了！", loser.getUsername());
+        lose(loser, GameMetrics.FORFEITS_TIMEOUT);
+    }
+
+    //某一方还剩多少时间；轮到他走的话要扣掉这一手已经用掉的时间，没有开始计时返回 0
+    private long remainingMillis(User user) {
+        if (turnStartedAt == 0) {
+            return 0;
+        }
+        int chess = chessOf(user);
+        long remaining = clockMillis[chess];
+        if (currentTurn() == user.getUserId()) {
+            remaining -= TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - turnStartedAt);
+        }
+        return Math.max(remaining, 0);
+    }
+
+    //胜负已分：写库、保存回放、通知观众、销毁房间，需要在房间的信箱里调用
+    private void finish(int winUserId, int loseUserId) {
+        over = true;
+        cancelTimers();
+        //写库交给后台线程，不在当前的 websocket 线程上等数据库
+        //和电脑的对局不计入天梯
+        if (ai == null) {
+            gameResultWriter.submit(winUserId, loseUserId);
+        }
+        saveReplay(winUserId);
+        finishSpectators(winUserId);
+        //销毁房间
+        roomManager.remove(roomId);
+        recycleBoard();
+    }
+
+    //对局作废：不计入胜负也不写库，直接释放房间，需要在房间的信箱里调用
+    public void abandon(String reason) {
+        if (over) {
+            return;
+        }
+        log.info("对局作废！{}", reason);
+        over = true;
+        cancelTimers();
+        GameMetrics.ABANDONED.increment();
+        if (moveLog.getCount() > 0) {
+            saveReplay(0);
+        }
+        finishSpectators(0);
+        roomManager.remove(roomId);
+        recycleBoard();
+    }
+
+    //over 之后的操作都直接返回，不会再读写棋盘，可以把棋盘交给下一个房间
+    private void recycleBoard() {
+        if (factory != null) {
+            factory.recycle(board);
+            board = null;
+        }
+    }
+
+    //玩家的连接断开了，需要在房间的信箱里调用
+    //对局已经开始的话不马上判负，先保留房间等他 graceMillis 毫秒，期间重连上来可以接着下
+    public void playerLeft(User user, long graceMillis) throws IOException {
+        if (over) {
+            //前面的落子已经分出了胜负，房间也已经释放了
+            log.info("当前房间已经结束，无需通知对手！");
+            return;
+        }
+        User thatUser = opponentOf(user);
+        if (thatUser == null) {
+            //对手还没有进入房间，直接释放房间，不计入胜负
+            abandon("对手尚未进入房间，直接释放房间！");
+            return;
+        }
+        if (onlineUserManager.getFromGameRoom(user.getUserId()) != null) {
+            //断开的是旧连接，玩家已经用新连接回来了
+            return;
+        }
+        if (graceMillis <= 0 || timingWheel == null) {
+            lose(user, GameMetrics.FORFEITS_DISCONNECT);
+            return;
+        }
+        int chess = chessOf(user);
+        if (graceTimers[chess] != null) {
+            graceTimers[chess].cancel();
+        }
+        //到期之后同样投递到信箱里处理；ref 在信箱线程上赋值，到期的任务也在信箱线程上读，不会读到 null
+        TimingWheel.Timeout[] ref = new TimingWheel.Timeout[1];
+        ref[0] = timingWheel.schedule(() -> execute(() -> graceExpired(user, ref[0])),
+                graceMillis, TimeUnit.MILLISECONDS);
+        graceTimers[chess] = ref[0];
+        log.info("玩家 {} 断线，保留房间 {} 毫秒等待重连", user.getUsername(), graceMillis);
+        sendNotice(thatUser, "opponentOffline", user.getUserId(),
+                TimeUnit.MILLISECONDS.toSeconds(graceMillis));
+    }
+
+    //断线的玩家重新连上了房间，需要在房间的信箱里调用：取消判负的定时，把当前棋盘发给他
+    public void playerReconnected(User user) throws IOException {
+        if (over) {
+            return;
+        }
+        int chess = chessOf(user);
+        if (graceTimers[chess] != null) {
+            graceTimers[chess].cancel();
+            graceTimers[chess] = null;
+        }
+        GameMetrics.RECONNECTS.increment();
+        User thatUser = opponentOf(user);
+        WebSocketSession session = onlineUserManager.getFromGameRoom(user.getUserId());
+        if (session != null) {
+            resumeSnapshot(user, thatUser).sendTo(session);
+        }
+        sendNotice(thatUser, "opponentOnline", user.getUserId(), 0);
+        log.info("玩家 {} 重新连上了房间", user.getUsername());
+    }
+
+    private void graceExpired(User user, TimingWheel.Timeout timeout) throws IOException {
+        int chess = chessOf(user);
+        if (over || graceTimers[chess] != timeout) {
+            //已经重连过了，或者对局已经结束了
+            return;
+        }
+        graceTimers[chess] = null;
+        if (onlineUserManager.getFromGameRoom(user.getUserId()) != null) {
+            return;
+        }
+        User thatUser = opponentOf(user);
+        if (!isConnected(thatUser)) {
+            //两个人都没有回来 (例如负载均衡整体断开)，这局棋作废，不计入胜负也不写库
+            abandon("房间里的两个玩家都没有重连！");
+            return;
+        }
+        lose(user, GameMetrics.FORFEITS_DISCONNECT);
+    }
+
+    //user 判负 (断线没有回来 / 超时)，对手获胜，需要在房间的信箱里调用
+    private void lose(User user, Counter reason) throws IOException {
+        if (over) {
+            return;
         }
+        User thatUser = opponentOf(user);
+        //构造一个没有落子位置 (row/col 为 -1) 的响应，来通知双方胜负结果
+        GameResponse resp = new GameResponse();
+        resp.setMessage("putChess");
+        resp.setUserId(thatUser.getUserId());
+        resp.setRow(-1);
+        resp.setCol(-1);
+        resp.setWinner(thatUser.getUserId());
+        BroadcastFrame.move(resp).sendTo(Arrays.asList(
+                onlineUserManager.getFromGameRoom(user1.getUserId()),
+                onlineUserManager.getFromGameRoom(user2.getUserId())));
+        log.info("玩家 {} 判负！获胜方{}", user.getUsername(), thatUser.getUserId());
+        reason.increment();
+        finish(thatUser.getUserId(), user.getUserId());
+    }
+
+    //接下来轮到谁落子：还没有人落子的时候是先手方，否则是上一步落子的对手
+    public int currentTurn() {
+        return turn != 0 ? turn : whiteUser;
+    }
 
-        //2.检查所有列
-        for(int r = row - 4;r <= row;r++) {
-            try {
-                if(board[r][col] == chess
-                    && board[r+1][col] == chess
-                    && board[r+2][col] == chess
-                    && board[r+3][col] == chess
-                    && board[r+4][col] == chess) {
-                    return chess == 1 ? user1.getUserId() : user2.getUserId();
-                }
-            }catch (ArrayIndexOutOfBoundsException e){
-                continue;
+    //重连时发给玩家的快照：棋盘压成一个 225 个字符的字符串，再加上接下来轮到谁
+    private BroadcastFrame resumeSnapshot(User thisUser, User thatUser) {
+        GameResumeResponse resp = new GameResumeResponse();
+        resp.setMessage("gameResume");
+        resp.setOk(true);
+        resp.setReason("");
+        resp.setRoomId(roomId);
+        resp.setThisUserId(thisUser.getUserId());
+        resp.setThatUserId(thatUser.getUserId());
+        resp.setWhiteUser(whiteUser);
+        resp.setTurn(currentTurn());
+        resp.setThisClockMillis(remainingMillis(thisUser));
+        resp.setThatClockMillis(remainingMillis(thatUser));
+        resp.setIncrementMillis(incrementMillis);
+        int whiteChess = whiteUser == user1.getUserId() ? 1 : 2;
+        char[] cells = new char[MAX_ROW * MAX_COL];
+        for (int r = 0; r < MAX_ROW; r++) {
+            for (int c = 0; c < MAX_COL; c++) {
+                int chess = board.get(r, c);
+                cells[r * MAX_COL + c] = chess == 0 ? '0' : chess == whiteChess ? '1' : '2';
             }
         }
+        resp.setBoard(new String(cells));
+        return BroadcastFrame.json(resp);
+    }
 
+    private void sendNotice(User to, String message, int userId, long seconds) throws IOException {
+        WebSocketSession session = onlineUserManager.getFromGameRoom(to.getUserId());
+        if (session == null) {
+            return;
+        }
+        GameNotice notice = new GameNotice();
+        notice.setMessage(message);
+        notice.setOk(true);
+        notice.setUserId(userId);
+        notice.setSeconds(seconds);
+        BroadcastFrame.json(notice).sendTo(session);
+    }
 
-        //3.检查左对角线
-        for (int r = row - 4,c = col - 4; r <=  row && c <= col;r++,c++){
-            try {
-                if (board[r][c] == chess
-                    && board[r + 1][c + 1] == chess
-                    && board[r + 2][c + 2] == chess
-                    && board[r + 3][c + 3] == chess
-                    && board[r + 4][c + 4] == chess) {
-                    return chess  == 1 ? user1.getUserId() : user2.getUserId();
-                }
-            }catch (ArrayIndexOutOfBoundsException e) {
-                continue;
+    //取消这个房间在时间轮上的所有定时：断线等待和棋钟
+    private void cancelTimers() {
+        for (int i = 0; i < graceTimers.length; i++) {
+            if (graceTimers[i] != null) {
+                graceTimers[i].cancel();
+                graceTimers[i] = null;
             }
         }
+        if (clockTimer != null) {
+            clockTimer.cancel();
+            clockTimer = null;
+        }
+    }
+
+    //房间里 userId 对应的玩家，不在房间里返回 null
+    public User getPlayer(int userId) {
+        if (user1 != null && user1.getUserId() == userId) {
+            return user1;
+        }
+        if (user2 != null && user2.getUserId() == userId) {
+            return user2;
+        }
+        return null;
+    }
+
+    //玩家现在是不是连在房间里；电脑一直都在
+    private boolean isConnected(User user) {
+        return AiPlayer.isAi(user.getUserId()) || onlineUserManager.getFromGameRoom(user.getUserId()) != null;
+    }
+
+    //按照 userId 比较，重连之后拿到的 User 不是同一个对象
+    public boolean isPlayer(int userId) {
+        return (user1 != null && user1.getUserId() == userId) || (user2 != null && user2.getUserId() == userId);
+    }
+
+    private User opponentOf(User user) {
+        return user1 != null && user.getUserId() == user1.getUserId() ? user2 : user1;
+    }
 
-        //4.检查右对角线
-        for (int r = row - 4,c = col + 4; r <=  row && c >= col;r++,c--){
-            try {
-                if (board[r][c] == chess
-                        && board[r + 1][c - 1] == chess
-                        && board[r + 2][c - 2] == chess
-                        && board[r + 3][c - 3] == chess
-                        && board[r + 4][c - 4] == chess) {
-                    return chess  == 1 ? user1.getUserId() : user2.getUserId();
-                }
-            }catch (ArrayIndexOutOfBoundsException e) {
-                continue;
+    private int chessOf(User user) {
+        return user1 != null && user.getUserId() == user1.getUserId() ? 1 : 2;
+    }
+
+    //把棋盘拼成一个字符串，一次交给日志输出，不再逐个格子往 stdout 里写
+    String renderBoard() {
+        StringBuilder sb = new StringBuilder((MAX_COL * 2 + 1) * (MAX_ROW + 2));
+        sb.append("==============================\n");
+        for (int r = 0; r < MAX_ROW; r++) {
+            for (int c = 0; c < MAX_COL; c++) {
+                //针对一行之内的若干列，不要换行
+                sb.append(board.get(r, c)).append(' ');
             }
+            //每次遍历完一行之后，再换行
+            sb.append('\n');
         }
+        sb.append("==============================");
+        return sb.toString();
+    }
 
+    //对局结束，把落子记录编码好交给 ReplayStore，写文件在后台线程上完成
+    public void saveReplay(int winner) {
+        if (replayStore == null || user1 == null || user2 == null) {
+            return;
+        }
+        replayStore.submit(ReplayCodec.encode(roomId, user1.getUserId(), user2.getUserId(),
+                whiteUser, winner, moveLog));
+    }
+
+    //使用这个方法进行判定
+    //如果玩家1获胜，就返回玩家1的id
+    //如果玩家2获胜，就返回玩家2的id
+    //胜负未分 返回0
+    int checkWinner(int row, int col, int chess) {
+        //检查经过 (row,col) 的横、竖、两条对角线，是否构成了五子连珠
+        if (board.isFive(row, col, chess)) {
+            return chess == 1 ? user1.getUserId() : user2.getUserId();
+        }
         //胜负未分，直接返回0
         return 0;
     }
 
+    Board getBoard() {
+        return board;
+    }
+
     public int getWhiteUser() {
         return whiteUser;
     }
@@ -210,12 +656,18 @@ public class Room {
         this.whiteUser = whiteUser;
     }
 
-    public String getRoomId() {
+    public long getRoomId() {
         return roomId;
     }
 
-    public void setRoomId(String roomId) {
-        this.roomId = roomId;
+    //和电脑对局：电脑直接坐在 user2 的位置上，需要在房间交给 RoomManager 之前设置
+    public void setAi(AiPlayer ai) {
+        this.ai = ai;
+        this.user2 = ai.getUser();
+    }
+
+    public AiPlayer getAi() {
+        return ai;
     }
 
     public User getUser1() {
@@ -234,18 +686,21 @@ public class Room {
         this.user2 = user2;
     }
 
-    public Room() {
-        //构造Room的时候生成唯一的字符串表示房间id
-        //使用UUID来作为房间id
-        roomId = UUID.randomUUID().toString();
-        //通过入口类中记录的context来手动获取到前面的roommanager和onlineUserManager
-        onlineUserManager = JavaGobangApplication.context.getBean(OnlineUserManager.class);
-        roomManager = JavaGobangApplication.context.getBean(RoomManager.class);
-        userMapper = JavaGobangApplication.context.getBean(UserMapper.class);
-    }
-
-    public static void main(String[] args) {
-        Room room = new Room();
-        System.out.println(room.roomId);
+    //房间由 RoomFactory 创建，依赖由调用方直接传进来 (benchmark 里直接传桩对象)
+    //factory 为 null 的时候对局结束之后不回收棋盘
+    Room(long roomId, Board board, OnlineUserManager onlineUserManager, RoomManager roomManager,
+         GameResultWriter gameResultWriter, RoomExecutor roomExecutor, ReplayStore replayStore,
+         OutboundExecutor outboundExecutor, TimingWheel timingWheel, RoomFactory factory) {
+        this.roomId = roomId;
+        this.board = board;
+        this.onlineUserManager = onlineUserManager;
+        this.roomManager = roomManager;
+        this.gameResultWriter = gameResultWriter;
+        this.mailbox = roomExecutor == null ? null : new RoomMailbox(roomId, roomExecutor);
+        this.replayStore = replayStore;
+        this.moveLog = new MoveLog(System.currentTimeMillis());
+        this.spectators = new SpectatorGroup(roomId, outboundExecutor);
+        this.timingWheel = timingWheel;
+        this.factory = factory;
     }
 }
@@ -0,0 +1,104 @@
+package com.example.java_gobang.game;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//所有房间共用的线程池
+//线程池里排队的是房间的信箱 (RoomMailbox)，而不是单个任务：一个房间在队列里最多只出现一次
+//单个房间的负载：每次投递时记下信箱的深度 (gobang.room.mailbox.depth 的最大值和分位数)，
+//超过 slow-task-ms 的任务打一条带 roomId 的日志；信箱最深的房间在 /actuator/rooms 列出来
+@Component
+public class RoomExecutor {
+    private static final Logger log = LoggerFactory.getLogger(RoomExecutor.class);
+
+    //线程数，默认和CPU核数一样
+    @Value("${gobang.room-executor.threads:0}")
+    private int threads;
+
+    //单个任务超过多久算慢，打一条警告日志 (MDC 里带着 roomId)，0 表示不打
+    @Value("${gobang.room-executor.slow-task-ms:100}")
+    private long slowTaskMs;
+
+    private ExecutorService pool;
+    private long slowTaskNanos;
+
+    //所有房间里排队中的任务总数
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    private final Timer taskTimer = Timer.builder("gobang.room.task")
+            .description("房间内单个任务 (落子、判负等) 的处理耗时")
+            .register(Metrics.globalRegistry);
+    //不按房间打标签 (房间太多)，用分布来看单个房间的信箱能堆到多深
+    private final DistributionSummary mailboxDepth = DistributionSummary.builder("gobang.room.mailbox.depth")
+            .description("投递任务时房间信箱里排队的任务数 (包括这一个)")
+            .publishPercentiles(0.5, 0.99)
+            .register(Metrics.globalRegistry);
+
+    @PostConstruct
+    public void start() {
+        slowTaskNanos = TimeUnit.MILLISECONDS.toNanos(slowTaskMs);
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "room-worker-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Gauge.builder("gobang.room.pending", pendingTasks, AtomicInteger::get)
+                .description("所有房间里排队等待处理的任务数")
+                .register(Metrics.globalRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public int getPendingTasks() {
+        return pendingTasks.get();
+    }
+
+    void schedule(RoomMailbox mailbox) {
+        pool.execute(mailbox);
+    }
+
+    void taskSubmitted(int depth) {
+        pendingTasks.incrementAndGet();
+        mailboxDepth.record(depth);
+    }
+
+    //执行一个任务，返回耗时 (纳秒)
+    long runTask(RoomMailbox mailbox, RoomMailbox.Task task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (Throwable e) {
+            //一个任务出错不能影响这个房间后面的任务
+            log.error("房间任务执行失败", e);
+        } finally {
+            pendingTasks.decrementAndGet();
+        }
+        long elapsed = System.nanoTime() - start;
+        taskTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (slowTaskNanos > 0 && elapsed > slowTaskNanos) {
+            log.warn("房间任务耗时 {}ms，信箱里还有 {} 个任务", TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    mailbox.getPendingTasks() - 1);
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.cluster.RoomIdAllocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//创建房间
+//房间要用到的组件在这里注入一次，创建房间的时候直接传给 Room，不用每次都到 Spring 容器里查
+//房间由 Matcher 在玩家大厅连接所在的节点上创建，这里的每一步都要足够便宜：
+// 1) 房间号是一个递增的 long，不再用 UUID (UUID.randomUUID 要用 SecureRandom)；多节点部署时由 RoomIdAllocator 保证整个集群里不重复
+// 2) 棋盘可以复用：对局结束之后清空放回池子里，下一个房间直接拿去用
+@Component
+public class RoomFactory {
+    //房间号 >= 当前毫秒数 << 10 (下限交给 RoomIdAllocator，单节点就是 max(上一个房间号 + 1, 下限))
+    //只要 (整个集群) 平均每毫秒创建的房间不超过 1024 个，重启之后的房间号就不会和重启之前的重复 (对局记录按房间号保存)
+    //毫秒数 < 2^41，房间号 < 2^51，在 JavaScript 里也能精确表示
+    private static final int SEQUENCE_BITS = 10;
+
+    @Autowired
+    private OnlineUserManager onlineUserManager;
+
+    @Autowired
+    private RoomManager roomManager;
+
+    @Autowired
+    private GameResultWriter gameResultWriter;
+
+    @Autowired
+    private RoomExecutor roomExecutor;
+
+    @Autowired
+    private ReplayStore replayStore;
+
+    @Autowired
+    private OutboundExecutor outboundExecutor;
+
+    @Autowired
+    private TimingWheel timingWheel;
+
+    @Autowired
+    private RoomIdAllocator roomIdAllocator;
+
+    //最多缓存多少块空棋盘，0 表示不复用
+    @Value("${gobang.room.board-pool-size:256}")
+    private int boardPoolSize;
+
+    private BlockingQueue<Board> boardPool;
+
+    @PostConstruct
+    public void init() {
+        if (boardPoolSize > 0) {
+            boardPool = new ArrayBlockingQueue<>(boardPoolSize);
+        }
+    }
+
+    public Room create() {
+        return new Room(nextRoomId(), takeBoard(), onlineUserManager, roomManager,
+                gameResultWriter, roomExecutor, replayStore, outboundExecutor, timingWheel, this);
+    }
+
+    //对局结束之后房间把棋盘还回来，需要在房间的信箱里调用，调用之后房间不能再碰这块棋盘
+    void recycle(Board board) {
+        if (boardPool == null || board == null) {
+            return;
+        }
+        board.clear();
+        //池子满了就交给 GC
+        boardPool.offer(board);
+    }
+
+    private long nextRoomId() {
+        return roomIdAllocator.next(System.currentTimeMillis() << SEQUENCE_BITS);
+    }
+
+    private Board takeBoard() {
+        Board board = boardPool == null ? null : boardPool.poll();
+        return board != null ? board : new BitBoard();
+    }
+
+    //解析客户端传上来的房间号，格式不对返回 0 (不会有房间号为 0 的房间)
+    public static long parseRoomId(String roomId) {
+        if (roomId == null || roomId.isEmpty()) {
+            return 0;
+        }
+        try {
+            long id = Long.parseLong(roomId.trim());
+            return id > 0 ? id : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
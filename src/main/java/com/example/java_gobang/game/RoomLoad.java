@@ -0,0 +1,80 @@
+package com.example.java_gobang.game;
+
+//一个房间的信箱负载，/actuator/rooms 返回的一条记录
+public class RoomLoad {
+    private long roomId;
+    private int userId1;
+    private int userId2;
+    //现在信箱里排着的任务数 (包括正在执行的)
+    private int pendingTasks;
+    //房间创建以来信箱最深的时候
+    private int maxPendingTasks;
+    private long processedTasks;
+    //执行任务一共用了多久、最慢的一个任务用了多久
+    private long busyMillis;
+    private long maxTaskMillis;
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public int getUserId1() {
+        return userId1;
+    }
+
+    public void setUserId1(int userId1) {
+        this.userId1 = userId1;
+    }
+
+    public int getUserId2() {
+        return userId2;
+    }
+
+    public void setUserId2(int userId2) {
+        this.userId2 = userId2;
+    }
+
+    public int getPendingTasks() {
+        return pendingTasks;
+    }
+
+    public void setPendingTasks(int pendingTasks) {
+        this.pendingTasks = pendingTasks;
+    }
+
+    public int getMaxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    public void setMaxPendingTasks(int maxPendingTasks) {
+        this.maxPendingTasks = maxPendingTasks;
+    }
+
+    public long getProcessedTasks() {
+        return processedTasks;
+    }
+
+    public void setProcessedTasks(long processedTasks) {
+        this.processedTasks = processedTasks;
+    }
+
+    public long getBusyMillis() {
+        return busyMillis;
+    }
+
+    public void setBusyMillis(long busyMillis) {
+        this.busyMillis = busyMillis;
+    }
+
+    public long getMaxTaskMillis() {
+        return maxTaskMillis;
+    }
+
+    public void setMaxTaskMillis(long maxTaskMillis) {
+        this.maxTaskMillis = maxTaskMillis;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.java_gobang.game;
+
+import org.slf4j.MDC;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//房间的"信箱"
+//同一个房间里的所有操作 (落子、掉线判负) 都先投递到这里，再按顺序一个一个在共享线程池上执行
+//同一时刻一个房间最多只占用一个线程，所以房间内部不需要加锁；不同房间之间互不影响，可以并行
+//执行任务的时候会在日志的 MDC 里带上 roomId，以及投递这个任务的玩家 userId
+public class RoomMailbox implements Runnable {
+    //一次最多连续处理多少个任务，处理完就把线程让出来给别的房间，避免一个房间霸占线程
+    private static final int MAX_BATCH = 32;
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    //排在信箱里的一个任务，连同投递时的 userId 一起记下来
+    private static class Envelope {
+        final Task task;
+        final String userId;
+
+        Envelope(Task task, String userId) {
+            this.task = task;
+            this.userId = userId;
+        }
+    }
+
+    //放进日志 MDC 用的房间号，先转成字符串，不用每批任务都转一次
+    private final String roomId;
+    private final RoomExecutor executor;
+    private final Queue<Envelope> tasks = new ConcurrentLinkedQueue<>();
+    //还没执行完的任务数 (包括正在执行的那一个)，从0变成1的那个投递方负责把信箱提交给线程池
+    private final AtomicInteger pending = new AtomicInteger();
+
+    //负载统计，给 /actuator/rooms 看的；执行相关的三个只在执行任务的线程上写 (同一时刻只有一个)
+    private volatile long processedTasks;
+    private volatile long busyNanos;
+    private volatile long maxTaskNanos;
+    //信箱最深的时候有多少个任务；投递方并发更新，偶尔少记一次无所谓
+    private volatile int maxPendingTasks;
+
+    public RoomMailbox(long roomId, RoomExecutor executor) {
+        this.roomId = Long.toString(roomId);
+        this.executor = executor;
+    }
+
+    public void execute(Task task) {
+        tasks.offer(new Envelope(task, MDC.get(LogContext.USER_ID)));
+        int before = pending.getAndIncrement();
+        executor.taskSubmitted(before + 1);
+        if (before >= maxPendingTasks) {
+            maxPendingTasks = before + 1;
+        }
+        if (before == 0) {
+            executor.schedule(this);
+        }
+    }
+
+    public int getPendingTasks() {
+        return pending.get();
+    }
+
+    public int getMaxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    public long getProcessedTasks() {
+        return processedTasks;
+    }
+
+    //执行任务一共用了多久 (纳秒)
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    //最慢的一个任务用了多久 (纳秒)
+    public long getMaxTaskNanos() {
+        return maxTaskNanos;
+    }
+
+    @Override
+    public void run() {
+        int processed = 0;
+        MDC.put(LogContext.ROOM_ID, roomId);
+        try {
+            while (true) {
+                Envelope envelope = tasks.poll();
+                LogContext.putUserId(envelope.userId);
+                long elapsed = executor.runTask(this, envelope.task);
+                processedTasks++;
+                busyNanos += elapsed;
+                if (elapsed > maxTaskNanos) {
+                    maxTaskNanos = elapsed;
+                }
+                if (pending.decrementAndGet() == 0) {
+                    return;
+                }
+                if (++processed >= MAX_BATCH) {
+                    //还有任务，重新排队，等下一次轮到这个房间
+                    executor.schedule(this);
+                    return;
+                }
+            }
+        } finally {
+            //线程池里的线程会接着去跑别的房间，不能把这个房间的上下文带过去
+            MDC.remove(LogContext.ROOM_ID);
+            MDC.remove(LogContext.USER_ID);
+        }
+    }
+}
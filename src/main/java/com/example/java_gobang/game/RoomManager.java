@@ -1,38 +1,175 @@
 package com.example.java_gobang.game;
 
+import com.example.java_gobang.cluster.ClusterNode;
+import com.example.java_gobang.cluster.RoomLocation;
+import com.example.java_gobang.cluster.RoomRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 //房间管理器类
 //这个类也希望有唯一实例
+//这里只管当前节点上的房间；房间在哪个节点上登记在 RoomRegistry 里，多节点部署时玩家按照它被引到房间所在的节点
+//房间号是原始类型的键，查找不装箱；玩家所在的房间记在 UserIndex 里这个玩家的 UserState 上，和他的连接在一起
 @Component
 public class RoomManager {
-    private ConcurrentHashMap<String,Room> rooms = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<Integer,String> userIdToRoomId = new ConcurrentHashMap<>();
+    private final ConcurrentLongMap<Entry> rooms = new ConcurrentLongMap<>();
 
-    public void add(Room room,int userId1,int userId2) {
-        rooms.put(room.getRoomId(),room);
-        userIdToRoomId.put(userId1,room.getRoomId());
-        userIdToRoomId.put(userId2,room.getRoomId());
+    @Autowired
+    private UserIndex users;
+
+    //Reaper 分批扫描房间用的游标，只在 Reaper 的线程上使用
+    private final ConcurrentLongMap<Entry>.Cursor sweepCursor = rooms.cursor();
+
+    //不经过 Spring 创建的时候 (例如 benchmark) 为 null，只管本地的房间
+    @Autowired
+    private RoomRegistry roomRegistry;
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    //一个房间，以及创建房间时匹配进来的两个玩家
+    //房间里的 user1/user2 要等玩家连上 /game 才有，释放映射关系以这里记下的为准
+    private static class Entry {
+        final Room room;
+        final int userId1;
+        final int userId2;
+
+        Entry(Room room, int userId1, int userId2) {
+            this.room = room;
+            this.userId1 = userId1;
+            this.userId2 = userId2;
+        }
+    }
+
+    public RoomManager() {
+    }
+
+    //不经过 Spring 创建的时候 (例如 benchmark) 用，和 OnlineUserManager 传同一个 UserIndex
+    RoomManager(UserIndex users) {
+        this.users = users;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("gobang.rooms.active", rooms, ConcurrentLongMap::size)
+                .description("当前正在进行中的房间数")
+                .register(Metrics.globalRegistry);
     }
 
-    public void remove(String roomId,int userId1, int userId2) {
-        rooms.remove(roomId);
-        userIdToRoomId.remove(userId1);
-        userIdToRoomId.remove(userId2);
+    public void add(Room room,int userId1,int userId2) {
+        //加锁登记玩家的映射，和 remove 互斥，不会出现房间已经删掉了映射却刚刚加上的情况
+        Entry entry = new Entry(room, userId1, userId2);
+        synchronized (this) {
+            rooms.put(room.getRoomId(), entry);
+            enterRoom(userId1, room);
+            enterRoom(userId2, room);
+        }
+        //目录可能在别的节点上，不放在锁里访问
+        if (roomRegistry != null) {
+            roomRegistry.register(new RoomLocation(room.getRoomId(), clusterNode.getNodeId(),
+                    clusterNode.getAdvertisedUrl(), userId1, userId2));
+        }
+    }
 
+    //释放房间，同时释放匹配进这个房间的两个玩家的映射
+    //只删除仍然指向这个房间的映射，玩家可能已经匹配进了新的房间
+    public void remove(long roomId) {
+        boolean removed;
+        synchronized (this) {
+            Entry entry = rooms.remove(roomId);
+            removed = entry != null;
+            if (removed) {
+                leaveRoom(entry.userId1, entry.room);
+                leaveRoom(entry.userId2, entry.room);
+            }
+        }
+        if (removed && roomRegistry != null) {
+            roomRegistry.unregister(roomId);
+        }
     }
 
-    public Room getRoomByRoomId(String roomId) {
-        return rooms.get(roomId);
+    public Room getRoomByRoomId(long roomId) {
+        Entry entry = rooms.get(roomId);
+        return entry == null ? null : entry.room;
     }
     public Room getRoomByUserId(int userId){
-        String roomId = userIdToRoomId.get(userId);
-        if(roomId == null){
-            //userId -> roomId 映射关系不存在，直接返回 null
+        UserState state = users.get(userId);
+        //玩家不在线也不在任何房间里，直接返回 null
+        return state == null ? null : state.getCurrentRoom();
+    }
+
+    private void enterRoom(int userId, Room room) {
+        users.update(userId, state -> {
+            state.setCurrentRoom(room);
+            return null;
+        });
+    }
+
+    private void leaveRoom(int userId, Room room) {
+        users.updateIfPresent(userId, state -> {
+            if (state.getCurrentRoom() == room) {
+                state.setCurrentRoom(null);
+            }
             return null;
+        });
+    }
+
+    //玩家所在的房间在哪个节点上 (可能是别的节点)，不在任何房间里返回 null
+    public RoomLocation locateByUserId(int userId) {
+        return roomRegistry == null ? null : roomRegistry.locateByUserId(userId);
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+
+    //信箱里排队最多的 limit 个房间，从多到少；给 /actuator/rooms 用，会遍历整张表
+    public List<RoomLoad> busiest(int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
         }
-        return rooms.get(roomId);
+        Comparator<RoomLoad> byPending = Comparator.comparingInt(RoomLoad::getPendingTasks)
+                .thenComparingInt(RoomLoad::getMaxPendingTasks);
+        //小顶堆里放当前最深的 limit 个
+        PriorityQueue<RoomLoad> top = new PriorityQueue<>(limit + 1, byPending);
+        rooms.cursor().advance(Integer.MAX_VALUE, entry -> {
+            RoomMailbox mailbox = entry.room.getMailbox();
+            if (mailbox == null) {
+                return;
+            }
+            RoomLoad load = new RoomLoad();
+            load.setRoomId(entry.room.getRoomId());
+            load.setUserId1(entry.userId1);
+            load.setUserId2(entry.userId2);
+            load.setPendingTasks(mailbox.getPendingTasks());
+            load.setMaxPendingTasks(mailbox.getMaxPendingTasks());
+            load.setProcessedTasks(mailbox.getProcessedTasks());
+            load.setBusyMillis(TimeUnit.NANOSECONDS.toMillis(mailbox.getBusyNanos()));
+            load.setMaxTaskMillis(TimeUnit.NANOSECONDS.toMillis(mailbox.getMaxTaskNanos()));
+            top.add(load);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<RoomLoad> result = new ArrayList<>(top);
+        result.sort(byPending.reversed());
+        return result;
+    }
+
+    //从上次停下的地方接着往下检查最多 limit 个房间，返回实际检查的个数
+    //只给 Reaper 用；一次只看一小批，不会长时间占着整张表
+    int sweep(int limit, Consumer<Room> visitor) {
+        //上一批已经走到表尾的话，这一批从头开始
+        return sweepCursor.advance(limit, entry -> visitor.accept(entry.room));
     }
 }
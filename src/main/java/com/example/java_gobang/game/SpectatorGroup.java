@@ -0,0 +1,165 @@
+package com.example.java_gobang.game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//一个房间的所有观战连接
+//房间线程只负责把要广播的消息放进队列 (O(1))，真正挨个发给观众的工作在 OutboundExecutor 的发送线程上做，
+//所以观众再多、某个观众再慢，也不会拖慢房间里两个玩家的落子
+//每个观众的连接都包了一层 OutboundSession，发送只是入队；跟不上的观众会被断开，重新连上来会拿到新的快照
+//
+//加入观战也走同一个队列：先把快照发给新观众，再把他加到观众列表里，
+//快照之前的落子已经包含在快照里，之后的落子一定排在快照后面，不会漏也不会重复
+public class SpectatorGroup {
+    private static final Logger log = LoggerFactory.getLogger(SpectatorGroup.class);
+
+    private final long roomId;
+    private final OutboundExecutor executor;
+    //sessionId -> 观众的连接
+    private final ConcurrentHashMap<String, WebSocketSession> members = new ConcurrentHashMap<>();
+    //还没发出去的广播消息 / 加入观战的请求，按照房间线程投递的顺序处理
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    //当前是否已经有发送线程在处理这个队列
+    private final AtomicBoolean draining = new AtomicBoolean();
+    //观众数，包括已经提交了加入请求但是还没处理完的，没有观众的时候广播直接跳过
+    private final AtomicInteger watchers = new AtomicInteger();
+    //对局已经结束，只在分发线程上修改
+    private boolean finished;
+
+    //队列里的一项：要么是广播一条消息，要么是一个观众带着他的快照加入
+    private static class Event {
+        final BroadcastFrame frame;
+        final WebSocketSession joiner;
+        final boolean finish;
+
+        Event(BroadcastFrame frame, WebSocketSession joiner, boolean finish) {
+            this.frame = frame;
+            this.joiner = joiner;
+            this.finish = finish;
+        }
+    }
+
+    public SpectatorGroup(long roomId, OutboundExecutor executor) {
+        this.roomId = roomId;
+        this.executor = executor;
+    }
+
+    //观众数 (包括正在加入的)
+    public int size() {
+        return watchers.get();
+    }
+
+    //加入观战，需要在房间的信箱里调用，这样快照和之后的落子顺序是对的
+    //session 应该已经经过 OutboundExecutor.wrap 包装
+    public void join(WebSocketSession session, BroadcastFrame snapshot) {
+        watchers.incrementAndGet();
+        GameMetrics.SPECTATORS.incrementAndGet();
+        enqueue(new Event(snapshot, session, false));
+    }
+
+    //离开观战，任何线程都可以调用
+    public void leave(WebSocketSession session) {
+        if (members.remove(session.getId()) != null) {
+            left();
+        }
+    }
+
+    //把消息发给所有观众，需要在房间的信箱里调用
+    public void broadcast(BroadcastFrame frame) {
+        if (watchers.get() == 0) {
+            return;
+        }
+        enqueue(new Event(frame, null, false));
+    }
+
+    //对局结束：前面的消息都发完之后放开所有观众，之后再加入的只能拿到最终的快照
+    //观众的连接由客户端看到胜负之后自己关闭
+    public void finish() {
+        enqueue(new Event(null, null, true));
+    }
+
+    private void enqueue(Event event) {
+        if (executor == null) {
+            //没有发送线程池 (benchmark 里的房间)，也就不会有观众
+            return;
+        }
+        events.offer(event);
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    //在发送线程上执行：按顺序处理队列里的事件
+    private void drain() {
+        while (true) {
+            Event event;
+            while ((event = events.poll()) != null) {
+                try {
+                    handle(event);
+                } catch (RuntimeException e) {
+                    log.warn("房间 {} 的观战消息分发失败", roomId, e);
+                }
+            }
+            draining.set(false);
+            //释放标记之后再看一眼，避免刚好在这中间入队的事件没人处理
+            if (events.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Event event) {
+        if (event.finish) {
+            finished = true;
+            for (WebSocketSession session : members.values()) {
+                leave(session);
+            }
+            return;
+        }
+        if (event.joiner != null) {
+            admit(event.joiner, event.frame);
+            return;
+        }
+        //每个观众的 sendMessage 只是放进他自己的发送缓冲区，慢的观众只会让自己的缓冲区满掉
+        for (WebSocketSession session : members.values()) {
+            send(session, event.frame);
+        }
+    }
+
+    private void admit(WebSocketSession session, BroadcastFrame snapshot) {
+        if (!send(session, snapshot) || finished || !session.isOpen()) {
+            //观众已经走了，或者对局已经结束了，只给快照不再加入
+            left();
+            return;
+        }
+        members.put(session.getId(), session);
+        //加入的过程中连接刚好断开，afterConnectionClosed 里的 leave 可能已经先执行了
+        if (!session.isOpen()) {
+            leave(session);
+        }
+    }
+
+    private boolean send(WebSocketSession session, BroadcastFrame frame) {
+        try {
+            frame.sendTo(session);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.debug("给观众 {} 发送消息失败：{}", session.getId(), e.toString());
+            leave(session);
+            return false;
+        }
+    }
+
+    private void left() {
+        watchers.decrementAndGet();
+        GameMetrics.SPECTATORS.decrementAndGet();
+    }
+}
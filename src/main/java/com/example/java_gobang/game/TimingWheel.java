@@ -0,0 +1,246 @@
+package com.example.java_gobang.game;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//所有房间共用的定时器：哈希时间轮 (思路和 Netty 的 HashedWheelTimer 一样)
+//一圈有 wheelSize 个格子，每 tickMs 走一格；到期时间落在哪一格，定时任务就挂在哪一格的链表上，
+//超过一圈的任务记下还要再转几圈。添加、取消都是 O(1)，不管有多少个房间都只有一个线程
+//
+//到期的任务直接在时间轮的线程上执行，所以任务本身要很快：房间里的定时任务只是把操作投递到房间的信箱里
+//精度是一个 tick，断线等待、棋钟超时这种秒级的定时足够了
+@Component
+public class TimingWheel {
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    //多久走一格
+    @Value("${gobang.timing-wheel.tick-ms:100}")
+    private long tickMs;
+
+    //一圈多少格，会向上取整到 2 的幂
+    @Value("${gobang.timing-wheel.wheel-size:512}")
+    private int wheelSize;
+
+    private Bucket[] wheel;
+    private int mask;
+    private long tickNanos;
+    private long startTime;
+    //时间轮线程已经走过的格数，只在时间轮线程上读写
+    private long tick;
+
+    //新加的任务先放在这里，由时间轮线程在下一格开始的时候挂到对应的格子上
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    //取消的任务同样交给时间轮线程从链表上摘掉
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    //还没到期也没取消的任务数
+    private final AtomicInteger scheduled = new AtomicInteger();
+
+    private Thread worker;
+    private volatile boolean running;
+
+    //一个定时任务
+    public static final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel owner;
+        private final Runnable task;
+        //相对于时间轮启动时间的到期时间，纳秒
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        //还要再转几圈才到期，只在时间轮线程上读写
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel owner, Runnable task, long deadline) {
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        //取消定时任务，返回 false 说明已经执行过或者已经取消过了
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            owner.scheduled.decrementAndGet();
+            owner.cancelled.offer(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            owner.scheduled.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("定时任务执行失败", e);
+            }
+        }
+    }
+
+    //时间轮上的一个格子：一个双向链表，只在时间轮线程上操作
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        //这一格里转够了圈数的任务全部执行，其余的圈数减一
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        int size = 1;
+        while (size < Math.max(wheelSize, 1)) {
+            size <<= 1;
+        }
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMs, 1));
+        startTime = System.nanoTime();
+        running = true;
+        worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+        Gauge.builder("gobang.timer.scheduled", scheduled, AtomicInteger::get)
+                .description("时间轮上还没到期的定时任务数")
+                .register(Metrics.globalRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(1000);
+    }
+
+    //delay 之后在时间轮线程上执行 task
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(this, task, deadline);
+        scheduled.incrementAndGet();
+        pending.offer(timeout);
+        return timeout;
+    }
+
+    //还没到期也没取消的任务数
+    public int getScheduled() {
+        return scheduled.get();
+    }
+
+    private void run() {
+        while (running) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            removeCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    //睡到下一格开始的时间，被 stop 打断时返回 false
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            //已经过了到期时间的任务挂到当前这一格，马上就会执行
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.java_gobang.game;
+
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+//当前节点上 userId -> UserState 的索引，在线状态 (OnlineUserManager) 和所在的房间 (RoomManager) 都记在这里
+//原来是三张 ConcurrentHashMap<Integer, ...>：每次查找都要把 userId 装箱，按玩家找房间还要先查到房间号再查一次；
+//现在是一张以 int 为键的开放寻址表，一次查找就能拿到玩家的连接和房间，每个在线玩家只占一个 UserState
+//
+//查找不加锁；修改都通过 update，锁住这个玩家的 UserState，不同玩家之间互不影响
+//玩家的三样状态都没有了 (下线并且不在任何房间里) 就把 UserState 删掉
+@Component
+public class UserIndex {
+    private final ConcurrentLongMap<UserState> states = new ConcurrentLongMap<>(1024);
+
+    //不存在返回 null
+    public UserState get(int userId) {
+        return states.get(userId);
+    }
+
+    //修改 userId 的状态，不存在就先建一个；返回 change 的结果
+    public <T> T update(int userId, Function<UserState, T> change) {
+        while (true) {
+            UserState state = states.get(userId);
+            if (state == null) {
+                UserState created = new UserState(userId);
+                state = states.putIfAbsent(userId, created);
+                if (state == null) {
+                    state = created;
+                }
+            }
+            synchronized (state) {
+                if (state.removed) {
+                    //刚好被删掉了，重新建一个
+                    continue;
+                }
+                return apply(state, change);
+            }
+        }
+    }
+
+    //修改 userId 的状态，不存在的话什么也不做，返回 null
+    public <T> T updateIfPresent(int userId, Function<UserState, T> change) {
+        UserState state = states.get(userId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            //已经被删掉的状态上面什么都没有了，和不存在一样
+            return state.removed ? null : apply(state, change);
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    //分批遍历所有玩家，只给 Reaper 用
+    ConcurrentLongMap<UserState>.Cursor cursor() {
+        return states.cursor();
+    }
+
+    private <T> T apply(UserState state, Function<UserState, T> change) {
+        T result = change.apply(state);
+        if (state.isEmpty()) {
+            state.removed = true;
+            states.remove(state.getUserId(), state);
+        }
+        return result;
+    }
+}
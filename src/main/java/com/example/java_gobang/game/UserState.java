@@ -0,0 +1,54 @@
+package com.example.java_gobang.game;
+
+import org.springframework.web.socket.WebSocketSession;
+
+//一个玩家在当前节点上的全部状态：大厅的连接、房间的连接、匹配进的房间
+//OnlineUserManager 和 RoomManager 共用一份，按 userId 查一次就全拿到了
+//字段的读不加锁；写只在 UserIndex.update 里进行 (锁住这个对象)
+public final class UserState {
+    private final int userId;
+    private volatile WebSocketSession hall;
+    private volatile WebSocketSession room;
+    private volatile Room currentRoom;
+    //已经从 UserIndex 里删掉了，之后的修改要换一个新的对象，只在锁里读写
+    boolean removed;
+
+    UserState(int userId) {
+        this.userId = userId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    //大厅里的连接 (已经包上了发送缓冲区)，不在大厅返回 null
+    public WebSocketSession getHall() {
+        return hall;
+    }
+
+    void setHall(WebSocketSession hall) {
+        this.hall = hall;
+    }
+
+    //房间里的连接 (已经包上了发送缓冲区)，没有连上房间返回 null
+    public WebSocketSession getRoom() {
+        return room;
+    }
+
+    void setRoom(WebSocketSession room) {
+        this.room = room;
+    }
+
+    //匹配进的房间 (可能还没有连上 /game)，没有返回 null
+    public Room getCurrentRoom() {
+        return currentRoom;
+    }
+
+    void setCurrentRoom(Room currentRoom) {
+        this.currentRoom = currentRoom;
+    }
+
+    boolean isEmpty() {
+        return hall == null && room == null && currentRoom == null;
+    }
+}
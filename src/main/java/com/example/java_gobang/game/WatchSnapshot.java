@@ -0,0 +1,101 @@
+package com.example.java_gobang.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//观众连接到房间后收到的第一条消息：当前的棋盘 (按顺序给出已经下过的每一步)
+//之后收到的就是和玩家一样的落子消息 (putChess)
+public class WatchSnapshot {
+    private String message;
+    private boolean ok;
+    private String reason;
+    private long roomId;
+    private int user1;
+    private int user2;
+    //先手方；两个玩家都还没进入房间的时候是 0，这时第一步棋是谁下的谁就是先手
+    private int whiteUser;
+    //对局是否已经结束；结束时 winner 是获胜方，0 表示对局没有开始就取消了
+    private boolean over;
+    private int winner;
+    private List<Replay.Move> moves = new ArrayList<>();
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public boolean isOk() {
+        return ok;
+    }
+
+    public void setOk(boolean ok) {
+        this.ok = ok;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public int getUser1() {
+        return user1;
+    }
+
+    public void setUser1(int user1) {
+        this.user1 = user1;
+    }
+
+    public int getUser2() {
+        return user2;
+    }
+
+    public void setUser2(int user2) {
+        this.user2 = user2;
+    }
+
+    public int getWhiteUser() {
+        return whiteUser;
+    }
+
+    public void setWhiteUser(int whiteUser) {
+        this.whiteUser = whiteUser;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    public void setOver(boolean over) {
+        this.over = over;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public List<Replay.Move> getMoves() {
+        return moves;
+    }
+
+    public void setMoves(List<Replay.Move> moves) {
+        this.moves = moves;
+    }
+}
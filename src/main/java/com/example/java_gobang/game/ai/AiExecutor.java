@@ -0,0 +1,106 @@
+package com.example.java_gobang.game.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+//电脑思考专用的线程池
+//搜索一步要占满一个 CPU 几百毫秒到几秒，不能放在房间线程或者 websocket 的线程上做，否则会拖慢所有对局
+//线程数和排队数都有上限；排满了就不搜索了，直接按照局面打分挑一步 (见 AiPlayer)
+@Component
+public class AiExecutor {
+    private static final Logger log = LoggerFactory.getLogger(AiExecutor.class);
+
+    //每个 AI 线程自己的搜索器，置换表跟着线程复用
+    private static final ThreadLocal<Searcher> SEARCHER = ThreadLocal.withInitial(Searcher::new);
+
+    //线程数，0 表示CPU核数的一半 (至少一个)，给房间线程和发送线程留出CPU
+    @Value("${gobang.ai.threads:0}")
+    private int threads;
+
+    //最多排队多少个思考任务
+    @Value("${gobang.ai.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor pool;
+
+    private final Map<AiLevel, Timer> thinkTimers = new EnumMap<>(AiLevel.class);
+
+    private final Counter rejected = Counter.builder("gobang.ai.rejected")
+            .description("AI 线程池排满之后没有搜索、直接按局面打分落子的次数")
+            .register(Metrics.globalRegistry);
+
+    @PostConstruct
+    public void start() {
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger index = new AtomicInteger();
+        pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), r -> {
+            Thread t = new Thread(r, "ai-worker-" + index.incrementAndGet());
+            t.setDaemon(true);
+            //搜索是纯计算，和网络 I/O 抢CPU的时候让一让
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        for (AiLevel level : AiLevel.values()) {
+            thinkTimers.put(level, Timer.builder("gobang.ai.think")
+                    .description("电脑想一步棋的耗时")
+                    .tag("level", level.name())
+                    .register(Metrics.globalRegistry));
+        }
+        Gauge.builder("gobang.ai.queued", pool.getQueue(), BlockingQueue::size)
+                .description("排队等待 AI 线程的思考任务数")
+                .register(Metrics.globalRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    //在 AI 线程上算 color 一方的下一步，算完之后在同一个线程上调用 callback (参数是 row * 15 + col，-1 表示没有可以落子的地方)
+    //线程池已经排满了返回 false，callback 不会被调用
+    public boolean think(int[] board, int color, AiLevel level, IntConsumer callback) {
+        try {
+            pool.execute(() -> {
+                long start = System.nanoTime();
+                int move;
+                try {
+                    move = SEARCHER.get().think(board, color, level);
+                } catch (Throwable e) {
+                    log.error("电脑思考失败，改为按局面打分落子", e);
+                    move = Searcher.greedy(board, color);
+                }
+                thinkTimers.get(level).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                callback.accept(move);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    //不搜索，只按照局面打分挑一步，调用方的线程上很快就能算完
+    public static int quickMove(int[] board, int color) {
+        return Searcher.greedy(board, color);
+    }
+}
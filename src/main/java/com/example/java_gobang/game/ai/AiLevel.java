@@ -0,0 +1,51 @@
+package com.example.java_gobang.game.ai;
+
+//电脑的难度
+//depth 是 alpha-beta 搜索的最大深度 (按迭代加深一层层往下搜)，width 是每一层最多看几个候选点，
+//vcfDepth 是算杀 (连续冲四取胜) 最多走几步，0 表示不算杀；timeMillis 是一步最多想多久
+//mistakeRate 是故意不走最好的那一步的概率，让简单难度的电脑偶尔犯错
+public enum AiLevel {
+    EASY("简单", 2, 8, 0, 300, 0.25),
+    NORMAL("普通", 4, 12, 8, 1000, 0),
+    HARD("困难", 8, 14, 16, 3000, 0);
+
+    private final String label;
+    private final int depth;
+    private final int width;
+    private final int vcfDepth;
+    private final long timeMillis;
+    private final double mistakeRate;
+
+    AiLevel(String label, int depth, int width, int vcfDepth, long timeMillis, double mistakeRate) {
+        this.label = label;
+        this.depth = depth;
+        this.width = width;
+        this.vcfDepth = vcfDepth;
+        this.timeMillis = timeMillis;
+        this.mistakeRate = mistakeRate;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getVcfDepth() {
+        return vcfDepth;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public double getMistakeRate() {
+        return mistakeRate;
+    }
+}
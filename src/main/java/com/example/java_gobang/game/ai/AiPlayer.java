@@ -0,0 +1,44 @@
+package com.example.java_gobang.game.ai;
+
+import com.example.java_gobang.model.User;
+
+import java.util.function.IntConsumer;
+
+//坐在房间里的电脑玩家
+//电脑用一个 userId 为负数的 User 占住房间里的一个位置，不会和数据库里的玩家冲突；
+//它没有 websocket 连接，发给它的消息直接跳过；和电脑的对局不计入天梯，也不写战绩
+public class AiPlayer {
+    private final User user;
+    private final AiLevel level;
+    private final AiExecutor executor;
+
+    public AiPlayer(AiLevel level, AiExecutor executor) {
+        this.level = level;
+        this.executor = executor;
+        user = new User();
+        //每个难度一个固定的 id：-1 简单，-2 普通，-3 困难
+        user.setUserId(-(level.ordinal() + 1));
+        user.setUsername("电脑(" + level.getLabel() + ")");
+    }
+
+    //这个 userId 是不是电脑
+    public static boolean isAi(int userId) {
+        return userId < 0;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public AiLevel getLevel() {
+        return level;
+    }
+
+    //想一想 color 一方的下一步，想好之后调用 onMove (参数是 row * 15 + col，-1 表示没有可以落子的地方)
+    //正常情况下在 AI 线程上回调；AI 线程池排满了就不搜索，直接在调用方的线程上按局面打分挑一步
+    public void think(int[] board, int color, IntConsumer onMove) {
+        if (!executor.think(board, color, level, onMove)) {
+            onMove.accept(AiExecutor.quickMove(board, color));
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.java_gobang.game.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//搜索用的棋盘：除了棋子本身，还增量维护局面分数、Zobrist 哈希和候选点
+//约定和 Board 一样：0 表示空，1/2 表示两个玩家的棋子；格子下标是 row * 15 + col
+//
+//局面分数按“五格窗口”计算：棋盘上每一段连续的 5 格，如果里面只有一方的棋子，就按棋子数给这一方加分
+//活三、冲四这些棋型会同时落在好几个窗口里，自然就比死三、死四分数高
+//每条线 (横、竖、两条对角线) 的分数单独记下来，落子/悔棋只重新计算经过这个格子的 4 条线
+//
+//只在一个线程上使用，不是线程安全的
+final class Position {
+    static final int SIZE = 15;
+    static final int CELLS = SIZE * SIZE;
+    static final int CENTER = (SIZE / 2) * SIZE + SIZE / 2;
+
+    //窗口里有 k 个同一方的棋子 (没有对方的棋子) 时这一方得到的分数
+    static final int[] WINDOW_SCORE = {0, 1, 12, 150, 2500, 1_000_000};
+    //threat 达到这个值说明在这里落子就能连成五个：有一个窗口里已经有 4 个子
+    //其余窗口最多 4 个方向 * 5 个窗口 * 2500，加起来也到不了
+    static final int MAKE_FIVE = WINDOW_SCORE[5] - WINDOW_SCORE[4];
+    //threat 达不到这个值的空格，落子之后不可能成四
+    static final int MAKE_FOUR = WINDOW_SCORE[4] - WINDOW_SCORE[3];
+
+    //横、竖、主对角线、副对角线
+    private static final int[] DR = {0, 1, 1, 1};
+    private static final int[] DC = {1, 0, 1, -1};
+
+    //棋盘上所有长度不少于 5 的线，每条线是按顺序排好的格子下标
+    private static final int[][] LINES;
+    //格子在每个方向上所在的线，以及在这条线上的位置；-1 表示这个方向上的线不到 5 格
+    private static final int[][] LINE_OF = new int[CELLS][4];
+    private static final int[][] INDEX_IN_LINE = new int[CELLS][4];
+    //每个格子周围两格以内的格子，用来维护候选点
+    private static final int[][] NEIGHBORS = new int[CELLS][];
+    //Zobrist 哈希用的随机数，固定种子，同一个局面在任何线程上算出来的哈希都一样
+    private static final long[][] ZOBRIST = new long[3][CELLS];
+
+    static {
+        List<int[]> lines = new ArrayList<>();
+        for (int cell = 0; cell < CELLS; cell++) {
+            for (int d = 0; d < 4; d++) {
+                LINE_OF[cell][d] = -1;
+            }
+        }
+        for (int d = 0; d < 4; d++) {
+            for (int r = 0; r < SIZE; r++) {
+                for (int c = 0; c < SIZE; c++) {
+                    if (onBoard(r - DR[d], c - DC[d])) {
+                        //不是一条线的起点
+                        continue;
+                    }
+                    int length = 0;
+                    while (onBoard(r + DR[d] * length, c + DC[d] * length)) {
+                        length++;
+                    }
+                    if (length < 5) {
+                        continue;
+                    }
+                    int[] line = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        int cell = (r + DR[d] * i) * SIZE + c + DC[d] * i;
+                        line[i] = cell;
+                        LINE_OF[cell][d] = lines.size();
+                        INDEX_IN_LINE[cell][d] = i;
+                    }
+                    lines.add(line);
+                }
+            }
+        }
+        LINES = lines.toArray(new int[0][]);
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            int r = cell / SIZE;
+            int c = cell % SIZE;
+            List<Integer> neighbors = new ArrayList<>();
+            for (int dr = -2; dr <= 2; dr++) {
+                for (int dc = -2; dc <= 2; dc++) {
+                    if ((dr != 0 || dc != 0) && onBoard(r + dr, c + dc)) {
+                        neighbors.add((r + dr) * SIZE + c + dc);
+                    }
+                }
+            }
+            NEIGHBORS[cell] = neighbors.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        Random random = new Random(0x5EEDL);
+        for (int color = 1; color <= 2; color++) {
+            for (int cell = 0; cell < CELLS; cell++) {
+                ZOBRIST[color][cell] = random.nextLong();
+            }
+        }
+    }
+
+    private final byte[] cells = new byte[CELLS];
+    //每条线上两方各自的分数，下标 [线][颜色]
+    private final int[][] lineScore = new int[LINES.length][3];
+    //两方的总分，下标是颜色
+    private final int[] total = new int[3];
+    //每个格子周围两格以内有多少个棋子，大于 0 的空格才是候选点
+    private final int[] near = new int[CELLS];
+    private long hash;
+    private int stones;
+
+    //把整个棋盘换成 board 上的局面 (长度 225，取值 0/1/2)
+    void load(int[] board) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (cells[cell] != 0) {
+                remove(cell);
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (board[cell] != 0) {
+                place(cell, board[cell]);
+            }
+        }
+    }
+
+    void place(int cell, int color) {
+        cells[cell] = (byte) color;
+        hash ^= ZOBRIST[color][cell];
+        stones++;
+        for (int n : NEIGHBORS[cell]) {
+            near[n]++;
+        }
+        updateLines(cell);
+    }
+
+    void remove(int cell) {
+        int color = cells[cell];
+        cells[cell] = 0;
+        hash ^= ZOBRIST[color][cell];
+        stones--;
+        for (int n : NEIGHBORS[cell]) {
+            near[n]--;
+        }
+        updateLines(cell);
+    }
+
+    int get(int cell) {
+        return cells[cell];
+    }
+
+    long hash() {
+        return hash;
+    }
+
+    int stones() {
+        return stones;
+    }
+
+    //站在 color 一方看的局面分数
+    int evaluate(int color) {
+        return total[color] - total[3 - color];
+    }
+
+    //把所有候选点 (周围两格以内有棋子的空格) 写进 out，返回个数
+    int candidates(int[] out) {
+        int n = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (cells[cell] == 0 && near[cell] > 0) {
+                out[n++] = cell;
+            }
+        }
+        return n;
+    }
+
+    //在空格 cell 落下 color 的子，color 一方的分数会增加多少 (不真的落子)
+    //对 color 是进攻的价值，对另一方就是在这里堵住 color 的价值
+    int threat(int cell, int color) {
+        int other = 3 - color;
+        int sum = 0;
+        for (int d = 0; d < 4; d++) {
+            int lineIndex = LINE_OF[cell][d];
+            if (lineIndex < 0) {
+                continue;
+            }
+            int[] line = LINES[lineIndex];
+            int pos = INDEX_IN_LINE[cell][d];
+            int from = Math.max(0, pos - 4);
+            int to = Math.min(pos, line.length - 5);
+            for (int s = from; s <= to; s++) {
+                int own = 0;
+                boolean blocked = false;
+                for (int i = s; i < s + 5; i++) {
+                    int v = cells[line[i]];
+                    if (v == other) {
+                        blocked = true;
+                        break;
+                    }
+                    if (v == color) {
+                        own++;
+                    }
+                }
+                if (!blocked) {
+                    sum += WINDOW_SCORE[own + 1] - WINDOW_SCORE[own];
+                }
+            }
+        }
+        return sum;
+    }
+
+    //刚刚在 cell 落下了 color 的子，找出 color 下一步能连成五个的空格，写进 out 返回个数
+    //0 个说明这一步没有成四；2 个以上是活四或者双四，对方只能堵一个
+    int fives(int cell, int color, int[] out) {
+        int other = 3 - color;
+        int n = 0;
+        for (int d = 0; d < 4; d++) {
+            int lineIndex = LINE_OF[cell][d];
+            if (lineIndex < 0) {
+                continue;
+            }
+            int[] line = LINES[lineIndex];
+            int pos = INDEX_IN_LINE[cell][d];
+            int from = Math.max(0, pos - 4);
+            int to = Math.min(pos, line.length - 5);
+            for (int s = from; s <= to; s++) {
+                int own = 0;
+                int empty = -1;
+                boolean blocked = false;
+                for (int i = s; i < s + 5; i++) {
+                    int v = cells[line[i]];
+                    if (v == other) {
+                        blocked = true;
+                        break;
+                    }
+                    if (v == color) {
+                        own++;
+                    } else {
+                        empty = line[i];
+                    }
+                }
+                if (!blocked && own == 4 && !contains(out, n, empty)) {
+                    out[n++] = empty;
+                }
+            }
+        }
+        return n;
+    }
+
+    //刚刚落在 cell 的子是不是连成了五个 (长连也算)
+    boolean isFive(int cell, int color) {
+        int r = cell / SIZE;
+        int c = cell % SIZE;
+        for (int d = 0; d < 4; d++) {
+            int count = 1;
+            for (int rr = r + DR[d], cc = c + DC[d]; onBoard(rr, cc) && cells[rr * SIZE + cc] == color;
+                 rr += DR[d], cc += DC[d]) {
+                count++;
+            }
+            for (int rr = r - DR[d], cc = c - DC[d]; onBoard(rr, cc) && cells[rr * SIZE + cc] == color;
+                 rr -= DR[d], cc -= DC[d]) {
+                count++;
+            }
+            if (count >= 5) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //重新计算经过 cell 的 4 条线的分数
+    private void updateLines(int cell) {
+        for (int d = 0; d < 4; d++) {
+            int lineIndex = LINE_OF[cell][d];
+            if (lineIndex < 0) {
+                continue;
+            }
+            int[] score = lineScore[lineIndex];
+            total[1] -= score[1];
+            total[2] -= score[2];
+            scoreLine(LINES[lineIndex], score);
+            total[1] += score[1];
+            total[2] += score[2];
+        }
+    }
+
+    //滑动窗口统计一条线上每个 5 格窗口里两方的棋子数
+    private void scoreLine(int[] line, int[] score) {
+        int count1 = 0;
+        int count2 = 0;
+        for (int i = 0; i < 5; i++) {
+            int v = cells[line[i]];
+            count1 += v == 1 ? 1 : 0;
+            count2 += v == 2 ? 1 : 0;
+        }
+        int score1 = 0;
+        int score2 = 0;
+        for (int s = 0; ; s++) {
+            if (count2 == 0) {
+                score1 += WINDOW_SCORE[count1];
+            }
+            if (count1 == 0) {
+                score2 += WINDOW_SCORE[count2];
+            }
+            if (s + 5 >= line.length) {
+                break;
+            }
+            int out = cells[line[s]];
+            int in = cells[line[s + 5]];
+            count1 += (in == 1 ? 1 : 0) - (out == 1 ? 1 : 0);
+            count2 += (in == 2 ? 1 : 0) - (out == 2 ? 1 : 0);
+        }
+        score[1] = score1;
+        score[2] = score2;
+    }
+
+    private static boolean contains(int[] values, int n, int value) {
+        for (int i = 0; i < n; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean onBoard(int r, int c) {
+        return r >= 0 && r < SIZE && c >= 0 && c < SIZE;
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.java_gobang.game.ai;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//电脑的搜索：给定一个局面和轮到的一方，算出下一步落在哪里
+//1) 能直接连成五个就走；对方下一步能连成五个就堵
+//2) 算杀 (VCF)：只走冲四，对方每一步都只能堵，看能不能一路冲到连成五个或者活四
+//3) 算不出杀棋，就用 alpha-beta 搜索，按迭代加深一层层往下搜，时间到了就用上一层的结果
+//   候选点按照“进攻价值 + 防守价值”排序，只看最好的 width 个；搜过的局面记在置换表里
+//
+//一个 Searcher 只在一个线程上使用，AiExecutor 给每个 AI 线程准备一个，置换表也跟着线程复用
+final class Searcher {
+    //连成五个的分数，减去步数，越快赢越好
+    static final int WIN = 100_000_000;
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    //alpha-beta 最多搜多少层
+    private static final int MAX_PLY = 16;
+    //置换表 2^18 项，每项 16 字节，一个线程 4MB
+    private static final int TABLE_BITS = 18;
+    //算杀最多走多少步
+    private static final int MAX_VCF_DEPTH = 32;
+    //每隔多少个节点看一次时间
+    private static final int CHECK_TIME_INTERVAL = 1024;
+
+    private final Position position = new Position();
+    private final TranspositionTable table = new TranspositionTable(TABLE_BITS);
+    //每一层的候选点和排序用的分数，搜索过程中不分配内存
+    private final int[][] moves = new int[MAX_PLY + 1][Position.CELLS];
+    private final int[][] scores = new int[MAX_PLY + 1][Position.CELLS];
+    private final int[][] vcfMoves = new int[MAX_VCF_DEPTH + 1][Position.CELLS];
+    private final int[] fives = new int[16];
+
+    //第一层最多看几个候选点，往下每一层少看一个
+    private int width;
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private int rootMove;
+    private int vcfMove;
+
+    //轮到 color 一方，算出下一步 (row * 15 + col)；board 长度 225，取值 0/1/2
+    //棋盘已经下满了返回 -1
+    int think(int[] board, int color, AiLevel level) {
+        position.load(board);
+        if (position.stones() == 0) {
+            return Position.CENTER;
+        }
+        width = level.getWidth();
+        deadline = System.nanoTime() + level.getTimeMillis() * 1_000_000L;
+        aborted = false;
+        nodes = 0;
+
+        int n = orderMoves(0, color, width, -1);
+        if (n <= 1) {
+            //没得选：只剩一个空格，或者能直接连成五个，或者必须堵对方的五
+            return n == 0 ? -1 : moves[0][0];
+        }
+        int vcfDepth = Math.min(level.getVcfDepth(), MAX_VCF_DEPTH);
+        if (vcfDepth > 0 && vcf(color, vcfDepth, true)) {
+            return vcfMove;
+        }
+        if (level.getMistakeRate() > 0 && ThreadLocalRandom.current().nextDouble() < level.getMistakeRate()) {
+            //故意不搜索，从排在前面的几个点里随便挑一个
+            return moves[0][ThreadLocalRandom.current().nextInt(Math.min(n, 3))];
+        }
+
+        int best = moves[0][0];
+        for (int depth = 1; depth <= Math.min(level.getDepth(), MAX_PLY); depth++) {
+            rootMove = -1;
+            int score = search(depth, -INFINITY, INFINITY, color, 0);
+            if (aborted) {
+                //这一层没有搜完，用上一层的结果
+                break;
+            }
+            if (rootMove >= 0) {
+                best = rootMove;
+            }
+            if (Math.abs(score) >= WIN - MAX_PLY) {
+                //已经算出了输赢，再往深搜也不会变
+                break;
+            }
+        }
+        return best;
+    }
+
+    //这次搜索一共看了多少个节点
+    long getNodes() {
+        return nodes;
+    }
+
+    //不搜索，只按照候选点的分数挑一步；AI 线程池满了的时候用，几十微秒就能算完
+    static int greedy(int[] board, int color) {
+        Position position = new Position();
+        position.load(board);
+        if (position.stones() == 0) {
+            return Position.CENTER;
+        }
+        int[] candidates = new int[Position.CELLS];
+        int n = position.candidates(candidates);
+        int best = -1;
+        int bestScore = -1;
+        for (int i = 0; i < n; i++) {
+            int score = moveScore(position, candidates[i], color);
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidates[i];
+            }
+        }
+        return best;
+    }
+
+    //negamax 形式的 alpha-beta，返回站在 color 一方看的分数
+    private int search(int depth, int alpha, int beta, int color, int ply) {
+        if (++nodes % CHECK_TIME_INTERVAL == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        long key = position.hash();
+        long entry = table.probe(key);
+        int hashMove = -1;
+        if (TranspositionTable.isHit(entry)) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT
+                        || (flag == TranspositionTable.LOWER && score >= beta)
+                        || (flag == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        if (depth == 0) {
+            return position.evaluate(color);
+        }
+
+        //越深的层只看越少的候选点
+        int n = orderMoves(ply, color, Math.max(4, width - ply), hashMove);
+        if (n == 0) {
+            //棋盘下满了，和棋
+            return 0;
+        }
+        int alphaOrig = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        int[] list = moves[ply];
+        for (int i = 0; i < n; i++) {
+            int move = list[i];
+            position.place(move, color);
+            int score = position.isFive(move, color)
+                    ? WIN - ply
+                    : -search(depth - 1, -beta, -alpha, 3 - color, ply + 1);
+            position.remove(move);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootMove = move;
+                }
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        int flag = best <= alphaOrig ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, depth, best, flag, bestMove);
+        return best;
+    }
+
+    //生成并排序 ply 这一层的候选点，返回要看的个数
+    //能连成五个的只留这一个点，对方能连成五个的只留堵的点
+    private int orderMoves(int ply, int color, int limit, int hashMove) {
+        int[] list = moves[ply];
+        int[] score = scores[ply];
+        int n = position.candidates(list);
+        if (n == 0 && position.stones() == 0) {
+            list[0] = Position.CENTER;
+            return 1;
+        }
+        int other = 3 - color;
+        int blocks = 0;
+        for (int i = 0; i < n; i++) {
+            int cell = list[i];
+            int attack = position.threat(cell, color);
+            if (attack >= Position.MAKE_FIVE) {
+                list[0] = cell;
+                return 1;
+            }
+            int defense = position.threat(cell, other);
+            if (defense >= Position.MAKE_FIVE) {
+                //对方在这里能连成五个，先挪到前面
+                list[i] = list[blocks];
+                list[blocks] = cell;
+                blocks++;
+                continue;
+            }
+            //进攻比防守稍微优先一点
+            score[i] = cell == hashMove ? INFINITY : attack + attack / 4 + defense;
+        }
+        if (blocks > 0) {
+            //对方有两个以上能连成五个的点就已经输了，堵哪个都一样
+            return blocks;
+        }
+        //只排出前 limit 个
+        int count = Math.min(n, limit);
+        for (int i = 0; i < count; i++) {
+            int max = i;
+            for (int j = i + 1; j < n; j++) {
+                if (score[j] > score[max]) {
+                    max = j;
+                }
+            }
+            swap(list, i, max);
+            swap(score, i, max);
+        }
+        return count;
+    }
+
+    //算杀：color 一方只走冲四，能不能在 depth 步之内赢；能的话第一步记在 vcfMove
+    //调用之前要保证对方没有能直接连成五个的点 (orderMoves 已经处理过了)
+    private boolean vcf(int color, int depth, boolean root) {
+        if (depth == 0) {
+            return false;
+        }
+        if (++nodes % CHECK_TIME_INTERVAL == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (aborted) {
+            return false;
+        }
+        int other = 3 - color;
+        int[] list = vcfMoves[depth];
+        int n = position.candidates(list);
+        for (int i = 0; i < n; i++) {
+            int move = list[i];
+            if (position.threat(move, color) < Position.MAKE_FOUR) {
+                //不可能成四
+                continue;
+            }
+            position.place(move, color);
+            int count = position.fives(move, color, fives);
+            boolean win;
+            if (count == 0) {
+                win = false;
+            } else if (count >= 2) {
+                //活四或者双四，对方只能堵一个
+                win = true;
+            } else {
+                //对方只能堵在这里；堵的这一步要是让对方自己也成了四，就不能接着冲了
+                int block = fives[0];
+                position.place(block, other);
+                win = !position.isFive(block, other)
+                        && position.fives(block, other, fives) == 0
+                        && vcf(color, depth - 1, false);
+                position.remove(block);
+            }
+            position.remove(move);
+            if (win) {
+                if (root) {
+                    vcfMove = move;
+                }
+                return true;
+            }
+            if (aborted) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int moveScore(Position position, int cell, int color) {
+        int attack = position.threat(cell, color);
+        int defense = position.threat(cell, 3 - color);
+        if (attack >= Position.MAKE_FIVE) {
+            return INFINITY;
+        }
+        return attack + attack / 4 + defense;
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int t = values[i];
+        values[i] = values[j];
+        values[j] = t;
+    }
+}
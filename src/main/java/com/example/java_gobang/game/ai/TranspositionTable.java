@@ -0,0 +1,77 @@
+package com.example.java_gobang.game.ai;
+
+//置换表：按 Zobrist 哈希记下搜索过的局面，不同的落子顺序走到同一个局面时直接用上次的结果
+//固定大小的两个 long 数组，直接按哈希的低位定位，冲突了就覆盖；不分配对象，也不需要清空
+//同一个局面不管是哪一局、哪一步走到的结果都一样，所以一个线程上的多次搜索共用一张表
+//
+//一项数据压在一个 long 里：
+//  0-31  分数
+//  32-39 搜索深度
+//  40-41 分数的类型 (EXACT/LOWER/UPPER)
+//  42-49 最好的一步，255 表示没有
+//  63    有效位
+final class TranspositionTable {
+    //分数是准确值
+    static final int EXACT = 0;
+    //分数是下界 (发生了 beta 剪枝)
+    static final int LOWER = 1;
+    //分数是上界 (所有走法都没有超过 alpha)
+    static final int UPPER = 2;
+
+    static final int NO_MOVE = 255;
+
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    //一共 2^bits 项
+    TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        data = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    //没有记录返回 0
+    long probe(long key) {
+        int index = (int) key & mask;
+        return keys[index] == key ? data[index] : 0;
+    }
+
+    void store(long key, int depth, int score, int flag, int move) {
+        int index = (int) key & mask;
+        //同一个位置上已经有更深的搜索结果就保留它
+        if (keys[index] != key && depth(data[index]) > depth) {
+            return;
+        }
+        keys[index] = key;
+        data[index] = VALID
+                | (long) (move < 0 ? NO_MOVE : move) << 42
+                | (long) flag << 40
+                | (long) depth << 32
+                | (score & 0xFFFFFFFFL);
+    }
+
+    static boolean isHit(long entry) {
+        return (entry & VALID) != 0;
+    }
+
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int flag(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    //没有记录最好的一步返回 -1
+    static int move(long entry) {
+        int move = (int) (entry >>> 42) & 0xFF;
+        return move == NO_MOVE ? -1 : move;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.java_gobang.model;
+
+//对局历史 (game_result 表) 里的一条记录
+//保存对局前的分数和这一局的分数变化，可以用来核对，也可以换一套规则从头重算
+public class GameRecord {
+    private long id;
+    private int winUserId;
+    private int loseUserId;
+    //对局前双方的天梯分数
+    private int winScoreBefore;
+    private int loseScoreBefore;
+    //这一局双方的分数变化
+    private int winDelta;
+    private int loseDelta;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public int getWinUserId() {
+        return winUserId;
+    }
+
+    public void setWinUserId(int winUserId) {
+        this.winUserId = winUserId;
+    }
+
+    public int getLoseUserId() {
+        return loseUserId;
+    }
+
+    public void setLoseUserId(int loseUserId) {
+        this.loseUserId = loseUserId;
+    }
+
+    public int getWinScoreBefore() {
+        return winScoreBefore;
+    }
+
+    public void setWinScoreBefore(int winScoreBefore) {
+        this.winScoreBefore = winScoreBefore;
+    }
+
+    public int getLoseScoreBefore() {
+        return loseScoreBefore;
+    }
+
+    public void setLoseScoreBefore(int loseScoreBefore) {
+        this.loseScoreBefore = loseScoreBefore;
+    }
+
+    public int getWinDelta() {
+        return winDelta;
+    }
+
+    public void setWinDelta(int winDelta) {
+        this.winDelta = winDelta;
+    }
+
+    public int getLoseDelta() {
+        return loseDelta;
+    }
+
+    public void setLoseDelta(int loseDelta) {
+        this.loseDelta = loseDelta;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.java_gobang.model;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
+
+@Mapper
+public interface GameRecordMapper {
+    //一条 INSERT 写入一批对局记录，在玩家分数提交之后单独写
+    void batchInsert(@Param("records") List<GameRecord> records);
+
+    //按 id 改写一批对局记录里的分数和分数变化，重算天梯分数写回的时候用
+    void batchUpdateRatings(@Param("records") List<GameRecord> records);
+
+    //按照对局的先后顺序逐行读出所有对局，用于重算天梯分数
+    void selectAll(ResultHandler<GameRecord> handler);
+}
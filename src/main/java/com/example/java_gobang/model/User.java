@@ -2,6 +2,9 @@ package com.example.java_gobang.model;
 
 //使用它表示数据库中的一条记录
 public class User {
+    //新注册玩家的天梯分数，和 UserMapper.xml 里 insert 语句写的值保持一致
+    public static final int INITIAL_SCORE = 1000;
+
     private int userId;
     private  String username;
     private String password;
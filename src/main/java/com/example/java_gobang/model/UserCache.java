@@ -0,0 +1,86 @@
+package com.example.java_gobang.model;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//UserMapper 前面的一层进程内缓存，登录和游戏大厅刷新个人信息都先查这里
+//  users：userId -> User，有容量上限，按照 Caffeine 的策略淘汰
+//  userIds：username -> userId，用户名注册之后不会变，所以这个映射不会过期，只会被淘汰
+//缓存里的 User 对象不会被原地修改，战绩变化时整个替换成新对象；调用方也不要修改拿到的对象
+//命中率通过 Micrometer 导出 (cache_gets_total{cache="users",result="hit|miss"})
+@Component
+public class UserCache {
+    @Autowired
+    private UserMapper userMapper;
+
+    //最多缓存多少个玩家
+    @Value("${gobang.user-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    //兜底的过期时间，防止绕过程序直接改库之后缓存一直是旧数据
+    @Value("${gobang.user-cache.expire-after-write-seconds:600}")
+    private long expireAfterWriteSeconds;
+
+    private Cache<Integer, User> users;
+    private Cache<String, Integer> userIds;
+
+    @PostConstruct
+    public void start() {
+        users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        userIds = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, users, "users");
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, userIds, "user-ids");
+    }
+
+    //按照 userId 查询，查不到返回 null (不存在的用户不缓存)
+    //加载数据库是在 Caffeine 对这个 key 的原子计算里完成的，不会和 refresh 交错
+    public User getById(int userId) {
+        return users.get(userId, userMapper::selectById);
+    }
+
+    //按照用户名查询，查不到返回 null
+    public User getByName(String username) {
+        Integer userId = userIds.getIfPresent(username);
+        if (userId == null) {
+            User user = userMapper.selectByName(username);
+            if (user == null) {
+                return null;
+            }
+            userIds.put(username, user.getUserId());
+            userId = user.getUserId();
+        }
+        //这里不直接把上面查到的对象放进缓存：查询和放入之间可能刚好写回了一局战绩，放进去的就是旧数据
+        return getById(userId);
+    }
+
+    //战绩写回数据库并提交之后调用：传进来的是刚从数据库查出来的最新数据
+    //只替换缓存里已经有的玩家，没有缓存的不管；这样一局结束后大厅页面刷新个人信息时仍然命中缓存，而不是所有人同时回源
+    public void refresh(List<User> latest) {
+        for (User user : latest) {
+            //computeIfPresent 和 getById 里的加载对同一个 key 是互斥的
+            users.asMap().computeIfPresent(user.getUserId(), (key, old) -> user);
+        }
+    }
+
+    //拿不到最新数据的时候直接失效，下次访问时再回源
+    public void invalidate(Collection<Integer> userIds) {
+        users.invalidateAll(userIds);
+    }
+}
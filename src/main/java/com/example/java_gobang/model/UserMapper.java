@@ -1,6 +1,10 @@
 package com.example.java_gobang.model;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
 
 @Mapper // 没有@Mapper，Spring就无法识别这个类了
 public interface UserMapper {
@@ -10,9 +14,18 @@ public interface UserMapper {
     //根据用户名，来查询用户的详细信息，用于登录功能
     User selectByName(String username);
 
-    //总比赛场数+1 获胜场数+1，天梯分数+30
-    void userWin(int userId);
+    //根据 userId 查询用户，用于用户缓存
+    User selectById(int userId);
+
+    //批量查询多个用户的最新数据，用于战绩写回之后刷新用户缓存
+    List<User> selectByIds(@Param("userIds") List<Integer> userIds);
+
+    //逐行读出所有玩家的 userId/用户名/天梯分数/总场数，用于启动时加载排行榜，不会把整张表放进一个 List 里
+    void selectAllScores(ResultHandler<User> handler);
+
+    //一条 UPDATE 批量累加多个玩家的 总场数/获胜场数/天梯分数，每个 userId 在列表中只能出现一次
+    void batchUpdateResult(@Param("deltas") List<UserResultDelta> deltas);
 
-    //总比赛场数+1 获胜场数不变 天体分数-30
-    void userLose(int userId);
+    //一条 UPDATE 直接设置多个玩家的天梯分数，用于按照对局历史重算分数
+    void batchSetScore(@Param("users") List<User> users);
 }
@@ -0,0 +1,48 @@
+package com.example.java_gobang.model;
+
+//一次批量更新中，某一个玩家需要累加的变化量
+public class UserResultDelta {
+    private int userId;
+    //比赛总场数的增量
+    private int totalDelta;
+    //获胜场数的增量
+    private int winDelta;
+    //天梯分数的增量
+    private int scoreDelta;
+
+    public UserResultDelta(int userId) {
+        this.userId = userId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getTotalDelta() {
+        return totalDelta;
+    }
+
+    public void setTotalDelta(int totalDelta) {
+        this.totalDelta = totalDelta;
+    }
+
+    public int getWinDelta() {
+        return winDelta;
+    }
+
+    public void setWinDelta(int winDelta) {
+        this.winDelta = winDelta;
+    }
+
+    public int getScoreDelta() {
+        return scoreDelta;
+    }
+
+    public void setScoreDelta(int scoreDelta) {
+        this.scoreDelta = scoreDelta;
+    }
+}
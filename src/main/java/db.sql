@@ -14,4 +14,18 @@ create table user(
 
 insert into user values(null,'zhangsan','123',1000,0,0);
 insert into user values(null,'lisi','123',1000,0,0);
-insert into user values(null,'wangwu','123',1000,0,0);
\ No newline at end of file
+insert into user values(null,'wangwu','123',1000,0,0);
+
+-- 对局历史，每局一行 (gobang.rating.record-history 打开之后由 GameResultWriter 写入)
+-- 天梯分数可以用 /actuator/ratings 按照这张表重算；写回要求历史完整，所以 record-history 要从第一天起就打开
+-- 已经部署的库单独执行这一段 (或者 sql/game_result.sql) 就行，不会动 user 表
+create table if not exists game_result(
+    id bigint primary key auto_increment,
+    winUserId int not null,
+    loseUserId int not null,
+    winScoreBefore int not null, -- 对局之前双方的分数
+    loseScoreBefore int not null,
+    winDelta int not null, -- 这一局双方的分数变化
+    loseDelta int not null,
+    createTime datetime not null default current_timestamp
+);
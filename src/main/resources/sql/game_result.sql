@@ -0,0 +1,13 @@
+-- 对局历史，每局一行；gobang.rating.record-history 打开之后，GameResultWriter 在玩家分数提交之后写入
+-- 和 src/main/java/db.sql 里的同名表一致
+-- 天梯分数可以用 /actuator/ratings 按照这张表重算；写回要求历史完整，所以 record-history 要从第一天起就打开
+create table if not exists game_result (
+    id bigint primary key auto_increment,
+    winUserId int not null,
+    loseUserId int not null,
+    winScoreBefore int not null,
+    loseScoreBefore int not null,
+    winDelta int not null,
+    loseDelta int not null,
+    createTime datetime not null default current_timestamp
+);
@@ -5,6 +5,16 @@ let gameInfo = {
     isWhite: true,
 }
 
+// 棋钟, 以服务器为准, 这里只是按照本地时间倒数用来显示; 不限时的对局 increment 和剩余时间都是 0
+let clock = {
+    me: 0,
+    that: 0,
+    increment: 0,
+    myTurn: false,
+    running: false,
+    last: 0,
+}
+
 //////////////////////////////////////////////////
 // 设定界面显示相关操作
 //////////////////////////////////////////////////
@@ -18,32 +28,147 @@ function setScreenText(me) {
     }
 }
 
+function formatClock(millis) {
+    let seconds = Math.max(0, Math.ceil(millis / 1000));
+    let m = Math.floor(seconds / 60);
+    let s = seconds % 60;
+    return m + ':' + (s < 10 ? '0' + s : s);
+}
+
+function renderClock() {
+    let clockDiv = document.querySelector('#clock');
+    if (!clock.running) {
+        return;
+    }
+    let now = Date.now();
+    if (clock.myTurn) {
+        clock.me -= now - clock.last;
+    } else {
+        clock.that -= now - clock.last;
+    }
+    clock.last = now;
+    clockDiv.innerHTML = '我: ' + formatClock(clock.me) + ' 对手: ' + formatClock(clock.that);
+}
+
+function startClock(me, that, increment, myTurn) {
+    clock.me = me;
+    clock.that = that;
+    clock.increment = increment;
+    clock.myTurn = myTurn;
+    clock.last = Date.now();
+    clock.running = me > 0 || that > 0;
+    renderClock();
+}
+
+setInterval(renderClock, 200);
+
 //////////////////////////////////////////////////
 // 初始化 websocket
 //////////////////////////////////////////////////
 
 // 此处写的路径要写作 /game, 不要写作 /game/
 let websocketUrl = "ws://" + location.host + "/game";
-let websocket = new WebSocket(websocketUrl);
+// 优先使用二进制的落子格式, 服务器不支持时退回到 JSON
+const BINARY_PROTOCOL = "gobang.binary.v1";
+const JSON_PROTOCOL = "gobang.json";
+let websocket = null;
+// 对局是否已经结束, 结束之后断开连接就不再重连了
+let gameOver = false;
+// 连续重连失败的次数, 服务器默认给断线的玩家保留 30 秒
+let reconnectAttempts = 0;
+const MAX_RECONNECT_ATTEMPTS = 10;
+
+//////////////////////////////////////////////////
+// 二进制落子格式的编解码, 和服务器的 BinaryMoveCodec 对应
+//////////////////////////////////////////////////
+
+const TYPE_PUT_CHESS = 1;
+
+function isBinaryProtocol() {
+    return websocket.protocol == BINARY_PROTOCOL;
+}
 
-websocket.onopen = function() {
-    console.log("连接游戏房间成功!");
+// 落子请求: [类型 1字节][row 1字节][col 1字节]
+function encodePutChess(row, col) {
+    return new Uint8Array([TYPE_PUT_CHESS, row, col]);
 }
 
-websocket.close = function() {
-    console.log("和游戏服务器断开连接!");
+// 落子响应: [类型 1字节][row 1字节][col 1字节][userId 4字节][winner 4字节], 大端序
+function decodePutChess(buffer) {
+    let view = new DataView(buffer);
+    if (view.byteLength != 11 || view.getUint8(0) != TYPE_PUT_CHESS) {
+        return null;
+    }
+    return {
+        message: 'putChess',
+        row: view.getUint8(1),
+        col: view.getUint8(2),
+        userId: view.getInt32(3),
+        winner: view.getInt32(7),
+    };
+}
+
+// 房间可能在别的节点上 (多节点部署), 连接之前先通过 /route 问一下房间在哪里
+// 房间在别的节点上的时候带上服务器签发的凭证, 那个节点上没有我们的登录状态
+function routedUrl(route) {
+    if (!route.ok || !route.url) {
+        return websocketUrl;
+    }
+    let url = route.url.replace(/^http/, 'ws').replace(/\/$/, '') + "/game";
+    return route.token ? url + "?token=" + encodeURIComponent(route.token) : url;
 }
 
-websocket.onerror = function() {
-    console.log("和服务器的连接出现异常!");
+// 建立 (或者断线之后重新建立) 和游戏房间的连接
+function connect() {
+    fetch('/route', { credentials: 'same-origin' })
+        .then(resp => resp.json())
+        .then(route => openSocket(routedUrl(route)))
+        // 问不到就连当前页面的地址, 由服务器返回具体的错误
+        .catch(() => openSocket(websocketUrl));
+}
+
+function openSocket(url) {
+    websocket = new WebSocket(url, [BINARY_PROTOCOL, JSON_PROTOCOL]);
+    websocket.binaryType = 'arraybuffer';
+
+    websocket.onopen = function() {
+        console.log("连接游戏房间成功!");
+        reconnectAttempts = 0;
+    }
+
+    websocket.onclose = function() {
+        console.log("和游戏服务器断开连接!");
+        if (gameOver || gameInfo.roomId == null) {
+            return;
+        }
+        // 对局进行中断开了, 服务器会保留房间一段时间, 在这段时间里重新连上就能接着下
+        if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
+            document.querySelector('#screen').innerHTML = '和服务器断开连接!';
+            return;
+        }
+        reconnectAttempts++;
+        document.querySelector('#screen').innerHTML = '连接断开, 正在重连...';
+        setTimeout(connect, 1000 * reconnectAttempts);
+    }
+
+    websocket.onerror = function() {
+        console.log("和服务器的连接出现异常!");
+    }
+
+    websocket.onmessage = handleGameReady;
 }
 
 window.onbeforeunload = function() {
-    websocket.close();
+    gameOver = true;
+    if (websocket) {
+        websocket.close();
+    }
 }
 
+connect();
+
 // 处理服务器返回的响应数据
-websocket.onmessage = function(event) {
+function handleGameReady(event) {
     console.log("[handlerGameReady] " + event.data);
     let resp = JSON.parse(event.data);
 
@@ -54,16 +179,24 @@ websocket.onmessage = function(event) {
         return;
     }
 
-    if (resp.message == 'gameReady') {
+    if (resp.message == 'gameReady' || resp.message == 'gameResume') {
         gameInfo.roomId = resp.roomId;
         gameInfo.thisUserId = resp.thisUserId;
         gameInfo.thatUserId = resp.thatUserId;
         gameInfo.isWhite = (resp.whiteUser == resp.thisUserId);
+        // 房间号放在标题上, 方便分享给别人观战 (/watch.html?roomId=...)
+        document.title = "游戏房间 " + resp.roomId;
 
-        // 初始化棋盘
-        initGame();
+        // 初始化棋盘; 断线重连时服务器会带上当前的棋盘和接下来轮到谁
+        let me = resp.message == 'gameResume' ? (resp.turn == gameInfo.thisUserId) : gameInfo.isWhite;
+        if (resp.message == 'gameResume') {
+            startClock(resp.thisClockMillis, resp.thatClockMillis, resp.incrementMillis, me);
+        } else {
+            startClock(resp.clockMillis, resp.clockMillis, resp.incrementMillis, me);
+        }
+        initGame(resp.board, me);
         // 设置显示区域的内容
-        setScreenText(gameInfo.isWhite);
+        setScreenText(me);
     } else if (resp.message == 'repeatConnection') {
         alert("检测到游戏多开! 请使用其他账号登录!");
         location.assign("/login.html");
@@ -72,10 +205,9 @@ websocket.onmessage = function(event) {
 
 //////////////////////////////////////////////////
 // 初始化一局游戏
+// board: 断线重连时服务器给出的棋盘, 225 个字符, '0' 没有子, '1' 白子, '2' 黑子; 新开局时没有
 //////////////////////////////////////////////////
-function initGame() {
-    // 是我下还是对方下. 根据服务器分配的先后手情况决定
-    let me = gameInfo.isWhite;
+function initGame(board, me) {
     // 游戏是否结束
     let over = false;
     let chessBoard = [];
@@ -83,7 +215,7 @@ function initGame() {
     for (let i = 0; i < 15; i++) {
         chessBoard[i] = [];
         for (let j = 0; j < 15; j++) {
-            chessBoard[i][j] = 0;
+            chessBoard[i][j] = board ? Number(board.charAt(i * 15 + j)) : 0;
         }
     }
     let chess = document.querySelector('#chess');
@@ -95,6 +227,14 @@ function initGame() {
     logo.onload = function () {
         context.drawImage(logo, 0, 0, 450, 450);
         initChessBoard();
+        // 把已经下过的棋子画出来
+        for (let i = 0; i < 15; i++) {
+            for (let j = 0; j < 15; j++) {
+                if (chessBoard[i][j] != 0) {
+                    oneStep(j, i, chessBoard[i][j] == 1);
+                }
+            }
+        }
     }
 
     // 绘制棋盘网格
@@ -149,6 +289,10 @@ function initGame() {
     }
 
     function send(row, col) {
+        if (isBinaryProtocol()) {
+            websocket.send(encodePutChess(row, col));
+            return;
+        }
         let req = {
             message: 'putChess',
             userId: gameInfo.thisUserId,
@@ -162,16 +306,40 @@ function initGame() {
     // 之前 websocket.onmessage 主要是用来处理了游戏就绪响应. 在游戏就绪之后, 初始化完毕之后, 也就不再有这个游戏就绪响应了. 
     // 就在这个 initGame 内部, 修改 websocket.onmessage 方法~~, 让这个方法里面针对落子响应进行处理!
     websocket.onmessage = function(event) {
-        console.log("[handlerPutChess] " + event.data);
-
-        let resp = JSON.parse(event.data);
+        let resp;
+        if (event.data instanceof ArrayBuffer) {
+            resp = decodePutChess(event.data);
+            if (resp == null) {
+                console.log("二进制响应格式错误!");
+                return;
+            }
+        } else {
+            console.log("[handlerPutChess] " + event.data);
+            resp = JSON.parse(event.data);
+        }
+        if (resp.message == 'gameResume' || resp.message == 'repeatConnection') {
+            // 重连成功之后服务器发来的当前棋盘, 重新初始化
+            handleGameReady(event);
+            return;
+        }
+        if (resp.message == 'opponentOffline') {
+            document.querySelector('#screen').innerHTML = '对手断线了, 最多等待 ' + resp.seconds + ' 秒';
+            return;
+        }
+        if (resp.message == 'opponentOnline') {
+            setScreenText(me);
+            return;
+        }
         if (resp.message != 'putChess') {
             console.log("响应类型错误!");
             return;
         }
 
-        // 先判定当前这个响应是自己落的子, 还是对方落的子.
-        if (resp.userId == gameInfo.thisUserId) {
+        // 判负 (断线没有回来 / 超时) 的响应没有落子位置, row/col 是 -1 (二进制格式里是 255)
+        let placed = resp.row >= 0 && resp.row < 15 && resp.col >= 0 && resp.col < 15;
+        if (!placed) {
+            // 没有落子, 直接看胜负结果
+        } else if (resp.userId == gameInfo.thisUserId) {
             // 我自己落的子
             // 根据我自己子的颜色, 来绘制一个棋子
             oneStep(resp.col, resp.row, gameInfo.isWhite);
@@ -184,16 +352,27 @@ function initGame() {
             return;
         }
 
-        // 给对应的位置设为 1, 方便后续逻辑判定当前位置是否已经有子了. 
-        chessBoard[resp.row][resp.col] = 1;
+        if (placed) {
+            // 给对应的位置设为 1, 方便后续逻辑判定当前位置是否已经有子了.
+            chessBoard[resp.row][resp.col] = 1;
 
-        // 交换双方的落子轮次
-        me = !me;
-        setScreenText(me);
+            // 落子的一方加上每步的加秒, 然后交换双方的落子轮次
+            if (me) {
+                clock.me += clock.increment;
+            } else {
+                clock.that += clock.increment;
+            }
+            me = !me;
+            clock.myTurn = me;
+            setScreenText(me);
+        }
 
         // 判定游戏是否结束
         let screenDiv = document.querySelector('#screen');
         if (resp.winner != 0) {
+            over = true;
+            gameOver = true;
+            clock.running = false;
             if (resp.winner == gameInfo.thisUserId) {
                 // alert('你赢了!');
                 screenDiv.innerHTML = '你赢了!';
@@ -0,0 +1,219 @@
+// 观战页面: /watch.html?roomId=xxx
+// 连上之后先收到一份棋盘快照 (watchSnapshot), 之后收到和玩家一样的落子消息 (putChess)
+
+let watchInfo = {
+    roomId: new URLSearchParams(location.search).get('roomId'),
+    user1: 0,
+    user2: 0,
+    whiteUser: 0,
+    over: false,
+}
+
+//////////////////////////////////////////////////
+// 棋盘的绘制
+//////////////////////////////////////////////////
+
+let chessBoard = [];
+let chess = document.querySelector('#chess');
+let context = chess.getContext('2d');
+context.strokeStyle = "#BFBFBF";
+let logo = new Image();
+logo.src = "image/sky.jpeg";
+// 背景图片加载完之前收到的落子先记下来, 加载完之后一起画
+let boardReady = false;
+logo.onload = function () {
+    boardReady = true;
+    redraw();
+}
+
+function clearBoard() {
+    for (let i = 0; i < 15; i++) {
+        chessBoard[i] = [];
+        for (let j = 0; j < 15; j++) {
+            chessBoard[i][j] = 0;
+        }
+    }
+}
+
+// 按照 chessBoard 重新画整个棋盘, 1 表示白子, 2 表示黑子
+function redraw() {
+    if (!boardReady) {
+        return;
+    }
+    context.drawImage(logo, 0, 0, 450, 450);
+    for (let i = 0; i < 15; i++) {
+        context.moveTo(15 + i * 30, 15);
+        context.lineTo(15 + i * 30, 430);
+        context.stroke();
+        context.moveTo(15, 15 + i * 30);
+        context.lineTo(435, 15 + i * 30);
+        context.stroke();
+    }
+    for (let row = 0; row < 15; row++) {
+        for (let col = 0; col < 15; col++) {
+            if (chessBoard[row][col] != 0) {
+                oneStep(col, row, chessBoard[row][col] == 1);
+            }
+        }
+    }
+}
+
+function oneStep(i, j, isWhite) {
+    context.beginPath();
+    context.arc(15 + i * 30, 15 + j * 30, 13, 0, 2 * Math.PI);
+    context.closePath();
+    let gradient = context.createRadialGradient(15 + i * 30 + 2, 15 + j * 30 - 2, 13, 15 + i * 30 + 2, 15 + j * 30 - 2, 0);
+    if (!isWhite) {
+        gradient.addColorStop(0, "#0A0A0A");
+        gradient.addColorStop(1, "#636766");
+    } else {
+        gradient.addColorStop(0, "#D1D1D1");
+        gradient.addColorStop(1, "#F9F9F9");
+    }
+    context.fillStyle = gradient;
+    context.fill();
+}
+
+// 落一个子; 快照里两个玩家都还没进房间的时候没有先手信息, 第一步是谁下的谁就是先手
+function place(row, col, userId) {
+    if (watchInfo.whiteUser == 0) {
+        watchInfo.whiteUser = userId;
+    }
+    let isWhite = (userId == watchInfo.whiteUser);
+    chessBoard[row][col] = isWhite ? 1 : 2;
+    if (boardReady) {
+        oneStep(col, row, isWhite);
+    }
+}
+
+function setScreenText(text) {
+    document.querySelector('#screen').innerHTML = text;
+}
+
+function showWinner(winner) {
+    watchInfo.over = true;
+    if (winner == 0) {
+        setScreenText('对局已取消');
+    } else {
+        setScreenText((winner == watchInfo.whiteUser ? '白方' : '黑方') + ' (玩家 ' + winner + ') 获胜!');
+    }
+    websocket.close();
+}
+
+clearBoard();
+
+//////////////////////////////////////////////////
+// 初始化 websocket
+//////////////////////////////////////////////////
+
+if (!watchInfo.roomId) {
+    watchInfo.roomId = prompt("请输入要观战的房间号");
+}
+let websocketUrl = "ws://" + location.host + "/watch?roomId=" + encodeURIComponent(watchInfo.roomId || '');
+// 落子消息和游戏房间一样, 优先使用二进制格式
+const BINARY_PROTOCOL = "gobang.binary.v1";
+const JSON_PROTOCOL = "gobang.json";
+const TYPE_PUT_CHESS = 1;
+let websocket = null;
+
+// 落子响应: [类型 1字节][row 1字节][col 1字节][userId 4字节][winner 4字节], 大端序
+function decodePutChess(buffer) {
+    let view = new DataView(buffer);
+    if (view.byteLength != 11 || view.getUint8(0) != TYPE_PUT_CHESS) {
+        return null;
+    }
+    return {
+        message: 'putChess',
+        row: view.getUint8(1),
+        col: view.getUint8(2),
+        userId: view.getInt32(3),
+        winner: view.getInt32(7),
+    };
+}
+
+// 房间可能在别的节点上 (多节点部署), 先通过 /route 问到房间所在节点的地址
+function routedUrl(route) {
+    if (!route.ok || !route.url) {
+        return websocketUrl;
+    }
+    return route.url.replace(/^http/, 'ws').replace(/\/$/, '')
+        + "/watch?roomId=" + encodeURIComponent(watchInfo.roomId || '');
+}
+
+function openSocket(url) {
+    websocket = new WebSocket(url, [BINARY_PROTOCOL, JSON_PROTOCOL]);
+    websocket.binaryType = 'arraybuffer';
+
+    websocket.onopen = function() {
+        console.log("连接观战房间成功!");
+    }
+
+    websocket.onclose = function() {
+        console.log("和观战房间断开连接!");
+        if (!watchInfo.over) {
+            // 服务器认为我们跟不上的时候会断开连接, 重新进来会拿到新的快照
+            setScreenText('连接已断开, <a href="javascript:location.reload()">重新观战</a>');
+        }
+    }
+
+    websocket.onerror = function() {
+        console.log("和服务器的连接出现异常!");
+    }
+
+    websocket.onmessage = function(event) {
+        let resp;
+        if (event.data instanceof ArrayBuffer) {
+            resp = decodePutChess(event.data);
+            if (resp == null) {
+                console.log("二进制响应格式错误!");
+                return;
+            }
+        } else {
+            resp = JSON.parse(event.data);
+        }
+
+        if (resp.message == 'watchSnapshot') {
+            if (!resp.ok) {
+                watchInfo.over = true;
+                setScreenText(resp.reason);
+                return;
+            }
+            // 快照给出的是完整的棋盘, 直接替换掉当前的
+            watchInfo.user1 = resp.user1;
+            watchInfo.user2 = resp.user2;
+            watchInfo.whiteUser = resp.whiteUser;
+            clearBoard();
+            for (let move of resp.moves) {
+                place(move.row, move.col, move.userId);
+            }
+            redraw();
+            if (resp.over) {
+                showWinner(resp.winner);
+            } else {
+                setScreenText('观战中, 已下 ' + resp.moves.length + ' 手');
+            }
+        } else if (resp.message == 'putChess') {
+            // 掉线判负不会发 putChess 给观众, 胜负结果由最终的快照给出
+            place(resp.row, resp.col, resp.userId);
+            if (resp.winner != 0) {
+                showWinner(resp.winner);
+            } else {
+                setScreenText('观战中, 轮到' + (resp.userId == watchInfo.whiteUser ? '黑方' : '白方') + '落子');
+            }
+        } else {
+            console.log("响应类型错误! message=" + resp.message);
+        }
+    }
+}
+
+fetch('/route?roomId=' + encodeURIComponent(watchInfo.roomId || ''))
+    .then(resp => resp.json())
+    .then(route => openSocket(routedUrl(route)))
+    // 问不到就连当前页面的地址, 由服务器返回具体的错误
+    .catch(() => openSocket(websocketUrl));
+
+window.onbeforeunload = function() {
+    if (websocket) {
+        websocket.close();
+    }
+}
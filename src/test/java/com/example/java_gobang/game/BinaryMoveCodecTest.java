@@ -0,0 +1,75 @@
+package com.example.java_gobang.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//二进制落子帧：长度和类型不对的帧一律不解析，row/col 按无符号字节解析
+public class BinaryMoveCodecTest {
+    @Test
+    public void decodesPutChess() {
+        GameRequest request = new GameRequest();
+        assertTrue(BinaryMoveCodec.decodeRequest(ByteBuffer.wrap(new byte[]{1, 7, 14}), 42, request));
+        assertEquals("putChess", request.getMessage());
+        assertEquals(42, request.getUserId());
+        assertEquals(7, request.getRow());
+        assertEquals(14, request.getCol());
+    }
+
+    @Test
+    public void rejectsWrongLengthAndType() {
+        GameRequest request = new GameRequest();
+        assertFalse(BinaryMoveCodec.decodeRequest(ByteBuffer.wrap(new byte[0]), 1, request));
+        assertFalse(BinaryMoveCodec.decodeRequest(ByteBuffer.wrap(new byte[]{1, 7}), 1, request));
+        assertFalse(BinaryMoveCodec.decodeRequest(ByteBuffer.wrap(new byte[]{1, 7, 7, 0}), 1, request));
+        assertFalse(BinaryMoveCodec.decodeRequest(ByteBuffer.wrap(new byte[]{2, 7, 7}), 1, request));
+        //解析失败不能改动 request
+        assertNull(request.getMessage());
+    }
+
+    @Test
+    public void negativeBytesDecodeAsUnsigned() {
+        //客户端传 -1 会变成 255，不会变成负数，由房间按棋盘范围拒绝
+        GameRequest request = new GameRequest();
+        assertTrue(BinaryMoveCodec.decodeRequest(ByteBuffer.wrap(new byte[]{1, -1, (byte) 0x80}), 1, request));
+        assertEquals(255, request.getRow());
+        assertEquals(128, request.getCol());
+    }
+
+    @Test
+    public void decodesFromBufferPosition() {
+        //帧可能是大缓冲区里的一段，只看 position..limit 之间的字节
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{9, 9, 1, 3, 4, 9});
+        buffer.position(2).limit(5);
+        GameRequest request = new GameRequest();
+        assertTrue(BinaryMoveCodec.decodeRequest(buffer, 1, request));
+        assertEquals(3, request.getRow());
+        assertEquals(4, request.getCol());
+        //解析不消费读指针
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void encodesResponseBigEndian() {
+        GameResponse response = new GameResponse();
+        response.setRow(14);
+        response.setCol(0);
+        response.setUserId(0x01020304);
+        response.setWinner(-1);
+        byte[] bytes = BinaryMoveCodec.encodeResponse(response);
+        assertEquals(BinaryMoveCodec.RESPONSE_LENGTH, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(BinaryMoveCodec.TYPE_PUT_CHESS, buffer.get());
+        assertEquals(14, buffer.get());
+        assertEquals(0, buffer.get());
+        assertEquals(1, bytes[3]);
+        assertEquals(4, bytes[6]);
+        assertEquals(0x01020304, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.java_gobang.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//BitBoard 和 ArrayBoard (最早写在 Room 里的判定逻辑) 互相对照
+//随机下满整个棋盘，每落一个子都比较两边的 isFive；五连之后不停下来，长连 (6 个以上) 的情况也一起比较
+public class BoardTest {
+    private static final int GAMES = 2000;
+
+    @Test
+    public void bitBoardMatchesArrayBoard() {
+        //固定种子，失败的时候可以复现
+        Random random = new Random(20220405L);
+        //同一块 BitBoard 清空之后复用，顺便检查 clear
+        BitBoard bitBoard = new BitBoard();
+        int[] cells = new int[Board.MAX_ROW * Board.MAX_COL];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+        }
+        int fives = 0;
+        for (int game = 0; game < GAMES; game++) {
+            ArrayBoard arrayBoard = new ArrayBoard();
+            bitBoard.clear();
+            shuffle(cells, random);
+            for (int move = 0; move < cells.length; move++) {
+                int row = cells[move] / Board.MAX_COL;
+                int col = cells[move] % Board.MAX_COL;
+                int chess = move % 2 == 0 ? 1 : 2;
+                assertEquals(0, bitBoard.get(row, col), "game " + game + " move " + move);
+                arrayBoard.put(row, col, chess);
+                bitBoard.put(row, col, chess);
+                boolean expected = arrayBoard.isFive(row, col, chess);
+                assertEquals(expected, bitBoard.isFive(row, col, chess),
+                        "game " + game + " move " + move + " (" + row + "," + col + ") chess " + chess);
+                //落子点上另一方的棋子不可能连成五个
+                assertEquals(arrayBoard.isFive(row, col, 3 - chess), bitBoard.isFive(row, col, 3 - chess),
+                        "game " + game + " move " + move + " (" + row + "," + col + ") chess " + (3 - chess));
+                if (expected) {
+                    fives++;
+                }
+            }
+        }
+        //确认随机对局里真的出现了足够多的五连，而不是一直在比较 false
+        assertTrue(fives > GAMES, "fives = " + fives);
+    }
+
+    private static void shuffle(int[] cells, Random random) {
+        for (int i = cells.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = cells[i];
+            cells[i] = cells[j];
+            cells[j] = tmp;
+        }
+    }
+}
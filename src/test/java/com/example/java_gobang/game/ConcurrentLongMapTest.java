@@ -0,0 +1,209 @@
+package com.example.java_gobang.game;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//开放寻址表的墓碑、重建和遍历
+public class ConcurrentLongMapTest {
+
+    @Test
+    public void putGetRemove() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertNull(map.put(1, "a"));
+        assertEquals("a", map.put(1, "b"));
+        assertEquals("b", map.get(1));
+        assertNull(map.get(2));
+        assertEquals("b", map.putIfAbsent(1, "c"));
+        assertNull(map.putIfAbsent(-7, "c"));
+        assertEquals(2, map.size());
+        assertEquals("b", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals(1, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, "zero"));
+        assertThrows(NullPointerException.class, () -> map.put(3, null));
+    }
+
+    @Test
+    public void conditionalRemoveAndReplaceCompareIdentity() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        String value = new String("room");
+        map.put(5, value);
+        assertFalse(map.remove(5, new String("room")));
+        assertFalse(map.replace(5, new String("room"), "other"));
+        assertTrue(map.replace(5, value, "other"));
+        assertFalse(map.remove(5, value));
+        assertTrue(map.remove(5, "other"));
+        assertEquals(0, map.size());
+        //墓碑上不能 replace
+        assertFalse(map.replace(5, "other", "again"));
+        assertNull(map.get(5));
+    }
+
+    @Test
+    public void tombstoneIsReusedBySameKey() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.put(42, "a");
+        int used = used(map);
+        map.remove(42);
+        //键还留在原地
+        assertEquals(used, used(map));
+        map.put(42, "b");
+        assertEquals(used, used(map));
+        assertEquals("b", map.get(42));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void tombstonesAreDroppedByRehash() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        //源源不断的新键，同时在表里的最多 5 个：墓碑不断堆积，表只重建不变大
+        for (long key = 1; key <= 100000; key++) {
+            map.put(key, key);
+            if (key > 5) {
+                assertEquals(Long.valueOf(key - 5), map.remove(key - 5));
+            }
+        }
+        assertEquals(5, map.size());
+        assertEquals(16, capacity(map));
+        assertTrue(used(map) <= 12);
+        for (long key = 1; key <= 100000; key++) {
+            assertEquals(key > 99995 ? Long.valueOf(key) : null, map.get(key));
+        }
+    }
+
+    @Test
+    public void growsAndKeepsEveryKey() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        int n = 10000;
+        for (long key = 1; key <= n; key++) {
+            //房间号那样的大数，低位连续
+            map.put((key << 20) | key, key);
+        }
+        assertEquals(n, map.size());
+        assertTrue(capacity(map) >= 2 * n / 1.5);
+        for (long key = 1; key <= n; key++) {
+            assertEquals(Long.valueOf(key), map.get((key << 20) | key));
+        }
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(20240101);
+        ConcurrentLongMap<Integer> map = new ConcurrentLongMap<>(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = 1 + random.nextInt(500);
+            if (random.nextBoolean()) {
+                int value = random.nextInt();
+                assertEquals(expected.put(key, value), map.put(key, value));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 1; key <= 500; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void readersNeverMissStableKeysDuringRehash() throws InterruptedException {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for (long key = 1; key <= 100; key++) {
+            map.put(key, key);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get() && failure.get() == null) {
+                for (long key = 1; key <= 100; key++) {
+                    Long value = map.get(key);
+                    if (value == null || value != key) {
+                        failure.set("key " + key + " -> " + value);
+                    }
+                }
+            }
+        });
+        reader.start();
+        //写线程制造大量墓碑和扩容，前 100 个键一直都在
+        for (long key = 1000; key < 200000; key++) {
+            map.put(key, key);
+            if (key % 3 != 0) {
+                map.remove(key);
+            }
+        }
+        running.set(false);
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void cursorVisitsEveryValueInBatchesAndWraps() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for (long key = 1; key <= 100; key++) {
+            map.put(key, key);
+        }
+        for (long key = 1; key <= 100; key += 2) {
+            map.remove(key);
+        }
+        ConcurrentLongMap<Long>.Cursor cursor = map.cursor();
+        Set<Long> seen = new HashSet<>();
+        //一批访问不满 7 个说明走到了表尾
+        int visited;
+        int total = 0;
+        int batches = 0;
+        do {
+            visited = cursor.advance(7, seen::add);
+            total += visited;
+            batches++;
+        } while (visited == 7);
+        assertEquals(50, total);
+        assertEquals(50, seen.size());
+        assertEquals(8, batches);
+        for (Long value : seen) {
+            assertEquals(0, value % 2);
+        }
+        //走到表尾之后下一次从头开始
+        Set<Long> again = new HashSet<>();
+        assertEquals(7, cursor.advance(7, again::add));
+        assertTrue(seen.containsAll(again));
+    }
+
+    @Test
+    public void valuesAreNotCopiedOnRehash() {
+        ConcurrentLongMap<Object> map = new ConcurrentLongMap<>();
+        Object value = new Object();
+        map.put(1, value);
+        for (long key = 2; key < 1000; key++) {
+            map.put(key, key);
+        }
+        assertSame(value, map.get(1));
+    }
+
+    private static int used(ConcurrentLongMap<?> map) {
+        Object table = ReflectionTestUtils.getField(map, "table");
+        return (int) ReflectionTestUtils.getField(table, "used");
+    }
+
+    private static int capacity(ConcurrentLongMap<?> map) {
+        Object table = ReflectionTestUtils.getField(map, "table");
+        return ((AtomicLongArray) ReflectionTestUtils.getField(table, "keys")).length();
+    }
+}
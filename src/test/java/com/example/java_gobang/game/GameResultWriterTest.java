@@ -0,0 +1,91 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.cluster.ScoreFeed;
+import com.example.java_gobang.model.GameRecordMapper;
+import com.example.java_gobang.model.UserCache;
+import com.example.java_gobang.model.UserMapper;
+import com.example.java_gobang.model.UserResultDelta;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//数据库跟不上、有界队列满了的时候，提交方不能等，结果也一局都不能丢
+public class GameResultWriterTest {
+    private static final int GAMES = 500;
+
+    @Test
+    public void fullQueueSpillsWithoutLosingResults() throws Exception {
+        CountDownLatch databaseStalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger games = new AtomicInteger();
+        AtomicInteger wins = new AtomicInteger();
+        UserMapper userMapper = mock(UserMapper.class);
+        doAnswer(invocation -> {
+            databaseStalled.countDown();
+            //第一批写库的时候卡住，让提交的结果把队列塞满
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            List<UserResultDelta> deltas = invocation.getArgument(0);
+            for (UserResultDelta delta : deltas) {
+                games.addAndGet(delta.getTotalDelta());
+                wins.addAndGet(delta.getWinDelta());
+            }
+            return deltas.size();
+        }).when(userMapper).batchUpdateResult(anyList());
+        when(userMapper.selectByIds(anyList())).thenReturn(Collections.emptyList());
+        RatingEngine ratingEngine = mock(RatingEngine.class);
+        when(ratingEngine.rate(any(), any())).thenReturn(new int[]{10, -10});
+
+        GameResultWriter writer = new GameResultWriter();
+        ReflectionTestUtils.setField(writer, "userMapper", userMapper);
+        ReflectionTestUtils.setField(writer, "userCache", mock(UserCache.class));
+        ReflectionTestUtils.setField(writer, "leaderboard", mock(Leaderboard.class));
+        ReflectionTestUtils.setField(writer, "scoreFeed", mock(ScoreFeed.class));
+        ReflectionTestUtils.setField(writer, "ratingEngine", ratingEngine);
+        ReflectionTestUtils.setField(writer, "gameRecordMapper", mock(GameRecordMapper.class));
+        ReflectionTestUtils.setField(writer, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(writer, "capacity", 8);
+        ReflectionTestUtils.setField(writer, "batchSize", 16);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(writer, "maxRetries", 5);
+        ReflectionTestUtils.setField(writer, "initialBackoffMs", 1L);
+        ReflectionTestUtils.setField(writer, "maxBackoffMs", 5L);
+        ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 10000L);
+        writer.start();
+
+        writer.submit(1, 2);
+        assertTrue(databaseStalled.await(10, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        for (int i = 1; i < GAMES; i++) {
+            writer.submit(2 * i + 1, 2 * i + 2);
+        }
+        //队列早就满了，提交还是立刻返回
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(GAMES - 1, writer.getQueueDepth());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (wins.get() < GAMES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        writer.stop();
+        assertEquals(GAMES, wins.get());
+        assertEquals(2 * GAMES, games.get());
+        assertEquals(0, writer.getQueueDepth());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.java_gobang.game;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//流式读写的结果要和原来 new ObjectMapper() 的完全一样，客户端感觉不到区别
+public class JsonCodecTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void gameResponseMatchesObjectMapper() throws Exception {
+        GameResponse response = response("putChess", 7, 3, 14, 0);
+        assertEquals(objectMapper.writeValueAsString(response), JsonCodec.writeGameResponse(response));
+        //负数、需要转义的字符、null 也一样
+        response = response("a\"b\\c\n中文", -1, 0, -1, Integer.MIN_VALUE);
+        assertEquals(objectMapper.writeValueAsString(response), JsonCodec.writeGameResponse(response));
+        response = response(null, 1, 2, 3, 4);
+        assertEquals(objectMapper.writeValueAsString(response), JsonCodec.write(response));
+    }
+
+    @Test
+    public void reusedWriterDoesNotLeakPreviousOutput() throws Exception {
+        String longer = JsonCodec.writeGameResponse(response("putChess-with-a-long-message", 100000, 1, 1, 100000));
+        String shorter = JsonCodec.writeGameResponse(response("x", 1, 1, 1, 0));
+        assertEquals(objectMapper.writeValueAsString(response("x", 1, 1, 1, 0)), shorter);
+        assertEquals(objectMapper.readTree(longer).size(), objectMapper.readTree(shorter).size());
+    }
+
+    @Test
+    public void otherPayloadsGoThroughObjectMapper() throws Exception {
+        MatchResponse response = new MatchResponse();
+        assertEquals(objectMapper.writeValueAsString(response), JsonCodec.write(response));
+    }
+
+    @Test
+    public void readsGameRequestLikeObjectMapper() throws Exception {
+        String[] inputs = {
+                "{\"message\":\"putChess\",\"userId\":1,\"row\":7,\"col\":8}",
+                //字段顺序、空白、数字写成字符串、null
+                " { \"col\" : \"8\", \"row\": 7 ,\"message\":null, \"userId\": null } ",
+                "{\"message\":\"other\",\"row\":-1,\"col\":20}",
+                "{}",
+        };
+        for (String input : inputs) {
+            GameRequest expected = objectMapper.readValue(input, GameRequest.class);
+            GameRequest actual = new GameRequest();
+            JsonCodec.readGameRequest(input, actual);
+            assertEquals(expected.getMessage(), actual.getMessage(), input);
+            assertEquals(expected.getUserId(), actual.getUserId(), input);
+            assertEquals(expected.getRow(), actual.getRow(), input);
+            assertEquals(expected.getCol(), actual.getCol(), input);
+        }
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws Exception {
+        GameRequest request = new GameRequest();
+        JsonCodec.readGameRequest("{\"extra\":{\"row\":99,\"list\":[1,{\"col\":99}]},\"row\":3,\"tail\":[],\"col\":4}", request);
+        assertEquals(3, request.getRow());
+        assertEquals(4, request.getCol());
+    }
+
+    @Test
+    public void reusedRequestIsReset() throws Exception {
+        GameRequest request = new GameRequest();
+        JsonCodec.readGameRequest("{\"message\":\"putChess\",\"userId\":1,\"row\":7,\"col\":8}", request);
+        //房间复用同一个 GameRequest，上一条消息的字段不能留下来
+        JsonCodec.readGameRequest("{\"row\":2}", request);
+        assertNull(request.getMessage());
+        assertEquals(0, request.getUserId());
+        assertEquals(2, request.getRow());
+        assertEquals(0, request.getCol());
+    }
+
+    @Test
+    public void commonMessagesAreInterned() throws Exception {
+        GameRequest request = new GameRequest();
+        JsonCodec.readGameRequest("{\"message\":\"putChess\"}", request);
+        assertSame("putChess", request.getMessage());
+        assertSame("startMatch", JsonCodec.readMatchRequest("{\"message\":\"startMatch\",\"x\":[1]}").getMessage());
+        assertSame("stopMatch", JsonCodec.readMatchRequest("{\"message\":\"stopMatch\"}").getMessage());
+        assertEquals("putChesz", JsonCodec.readMatchRequest("{\"message\":\"putChesz\"}").getMessage());
+    }
+
+    @Test
+    public void malformedInputThrowsJsonProcessingException() {
+        GameRequest request = new GameRequest();
+        for (String input : new String[]{"", "[]", "\"putChess\"", "{\"row\":", "{\"row\":\"abc\"}",
+                "{\"row\":[1]}", "{\"message\":1}", "{\"row\":1,}"}) {
+            assertThrows(JsonProcessingException.class, () -> JsonCodec.readGameRequest(input, request), input);
+        }
+        assertThrows(JsonProcessingException.class, () -> JsonCodec.readMatchRequest("not json"));
+    }
+
+    private static GameResponse response(String message, int userId, int row, int col, int winner) {
+        GameResponse response = new GameResponse();
+        response.setMessage(message);
+        response.setUserId(userId);
+        response.setRow(row);
+        response.setCol(col);
+        response.setWinner(winner);
+        return response;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserMapper;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//名次由树状数组计算：同分同名次，下一个分数的名次跳过并列的人数
+public class LeaderboardTest {
+    private static final int MIN_SCORE = 0;
+    private static final int MAX_SCORE = 3000;
+
+    private final UserMapper userMapper = mock(UserMapper.class);
+    private Leaderboard leaderboard;
+
+    @AfterEach
+    public void tearDown() {
+        if (leaderboard != null) {
+            leaderboard.stop();
+        }
+    }
+
+    @Test
+    public void tiedScoresShareARank() {
+        start();
+        leaderboard.update(Arrays.asList(user(1, 1500, 3), user(2, 1200, 3), user(3, 1500, 3),
+                user(4, 1400, 3), user(5, 1500, 3), user(6, 1200, 3)));
+
+        assertEquals(1, leaderboard.rank(1).getRank());
+        assertEquals(1, leaderboard.rank(3).getRank());
+        assertEquals(1, leaderboard.rank(5).getRank());
+        assertEquals(4, leaderboard.rank(4).getRank());
+        assertEquals(5, leaderboard.rank(2).getRank());
+        assertEquals(5, leaderboard.rank(6).getRank());
+        assertNull(leaderboard.rank(7));
+
+        //前 N 名的名次和 rank 算出来的一样，同分按 userId 排
+        List<LeaderboardEntry> top = leaderboard.top(10);
+        assertEquals(Arrays.asList(1, 3, 5, 4, 2, 6), userIds(top));
+        assertEquals(Arrays.asList(1, 1, 1, 4, 5, 5), ranks(top));
+        for (LeaderboardEntry entry : top) {
+            assertEquals(entry.getRank(), leaderboard.rank(entry.getUserId()).getRank());
+        }
+        assertEquals(Arrays.asList(1, 3), userIds(leaderboard.top(2)));
+    }
+
+    @Test
+    public void scoreChangesMoveThePlayer() {
+        start();
+        leaderboard.update(Arrays.asList(user(1, 1500, 3), user(2, 1400, 3), user(3, 1400, 3)));
+        //玩家1 输了一局，和另外两个人并列
+        leaderboard.update(user(1, 1400, 4));
+        assertEquals(Arrays.asList(1, 1, 1), ranks(leaderboard.top(10)));
+        //玩家3 赢了一局，独占第一
+        leaderboard.update(user(3, 1420, 4));
+        assertEquals(1, leaderboard.rank(3).getRank());
+        assertEquals(2, leaderboard.rank(1).getRank());
+        assertEquals(2, leaderboard.rank(2).getRank());
+        assertEquals(3, leaderboard.size());
+        assertEquals(Arrays.asList(3, 1, 2), userIds(leaderboard.top(10)));
+    }
+
+    @Test
+    public void sameScoreUpdateReplacesTheEntry() {
+        start();
+        leaderboard.update(user(1, 1500, 3));
+        User renamed = user(1, 1500, 4);
+        renamed.setUsername("renamed");
+        leaderboard.update(renamed);
+        //跳表里的旧对象被换掉了，树状数组里还是只有一个人
+        List<LeaderboardEntry> top = leaderboard.top(10);
+        assertEquals(1, top.size());
+        assertEquals("renamed", top.get(0).getUsername());
+        assertEquals(4, leaderboard.rating(1).getGames());
+        leaderboard.update(user(2, 1000, 1));
+        assertEquals(2, leaderboard.rank(2).getRank());
+    }
+
+    @Test
+    public void staleUpdateIsIgnored() {
+        start();
+        leaderboard.update(user(1, 1500, 5));
+        //别的节点晚到的旧数据：局数更少
+        leaderboard.update(user(1, 1300, 4));
+        assertEquals(1500, leaderboard.rating(1).getScore());
+        //局数相同 (重算分数) 照常更新
+        leaderboard.update(user(1, 1450, 5));
+        assertEquals(1450, leaderboard.rating(1).getScore());
+        assertEquals(1, leaderboard.top(10).size());
+    }
+
+    @Test
+    public void scoresOutsideTheRangeAreClamped() {
+        start();
+        leaderboard.update(Arrays.asList(user(1, MAX_SCORE + 500, 3), user(2, MAX_SCORE, 3),
+                user(3, MIN_SCORE - 100, 3), user(4, MIN_SCORE, 3)));
+        //超出范围的分数按边界值算名次，跳表里的顺序还是按真实分数
+        assertEquals(1, leaderboard.rank(1).getRank());
+        assertEquals(1, leaderboard.rank(2).getRank());
+        assertEquals(3, leaderboard.rank(3).getRank());
+        assertEquals(3, leaderboard.rank(4).getRank());
+        assertEquals(Arrays.asList(1, 2, 4, 3), userIds(leaderboard.top(10)));
+    }
+
+    @Test
+    public void topIsCappedByMaxTop() {
+        start();
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 30; i++) {
+            users.add(user(i, 1000 + i, 1));
+        }
+        leaderboard.update(users);
+        assertEquals(20, leaderboard.top(100).size());
+        assertEquals(0, leaderboard.top(-1).size());
+    }
+
+    @Test
+    public void updatesDuringTheLoadWin() throws InterruptedException {
+        CountDownLatch updated = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(updated.await(5, TimeUnit.SECONDS));
+            ResultHandler<User> handler = invocation.getArgument(0);
+            for (User user : Arrays.asList(user(1, 1000, 2), user(2, 1100, 2))) {
+                @SuppressWarnings("unchecked")
+                ResultContext<User> context = mock(ResultContext.class);
+                when(context.getResultObject()).thenReturn(user);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(userMapper).selectAllScores(any());
+        start();
+        //加载的时候读到的是玩家1 的旧数据，以加载期间推过来的更新为准
+        leaderboard.update(user(1, 1200, 3));
+        updated.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!leaderboard.isLoaded() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(leaderboard.isLoaded());
+        assertEquals(1200, leaderboard.rating(1).getScore());
+        assertEquals(Arrays.asList(1, 2), userIds(leaderboard.top(10)));
+        assertEquals(2, leaderboard.rank(2).getRank());
+    }
+
+    private void start() {
+        leaderboard = new Leaderboard();
+        ReflectionTestUtils.setField(leaderboard, "userMapper", userMapper);
+        ReflectionTestUtils.setField(leaderboard, "minScore", MIN_SCORE);
+        ReflectionTestUtils.setField(leaderboard, "maxScore", MAX_SCORE);
+        ReflectionTestUtils.setField(leaderboard, "maxTop", 20);
+        ReflectionTestUtils.setField(leaderboard, "loadRetryMs", 5000L);
+        leaderboard.start();
+    }
+
+    private static User user(int userId, int score, int totalCount) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUsername("user" + userId);
+        user.setScore(score);
+        user.setTotalCount(totalCount);
+        return user;
+    }
+
+    private static List<Integer> userIds(List<LeaderboardEntry> entries) {
+        List<Integer> result = new ArrayList<>();
+        for (LeaderboardEntry entry : entries) {
+            result.add(entry.getUserId());
+        }
+        return result;
+    }
+
+    private static List<Integer> ranks(List<LeaderboardEntry> entries) {
+        List<Integer> result = new ArrayList<>();
+        for (LeaderboardEntry entry : entries) {
+            result.add(entry.getRank());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.java_gobang.game;
+
+import com.example.java_gobang.cluster.ScoreFeed;
+import com.example.java_gobang.model.GameRecord;
+import com.example.java_gobang.model.GameRecordMapper;
+import com.example.java_gobang.model.User;
+import com.example.java_gobang.model.UserMapper;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//重算只能从历史里记下的起点开始，历史不完整的时候不能写回
+public class RatingRecalculatorTest {
+    private final List<GameRecord> history = new ArrayList<>();
+    private final List<Rating> seen = new ArrayList<>();
+    private GameRecordMapper gameRecordMapper;
+    private UserMapper userMapper;
+    private Leaderboard leaderboard;
+    private GameResultWriter gameResultWriter;
+    private RatingRecalculator recalculator;
+
+    @BeforeEach
+    public void setUp() {
+        gameRecordMapper = mock(GameRecordMapper.class);
+        //每次读历史都给一份新的对象，和数据库一样
+        doAnswer(invocation -> {
+            ResultHandler<GameRecord> handler = invocation.getArgument(0);
+            for (GameRecord record : history) {
+                GameRecord copy = record(record.getId(), record.getWinUserId(), record.getLoseUserId(),
+                        record.getWinScoreBefore(), record.getLoseScoreBefore(), record.getWinDelta(), record.getLoseDelta());
+                @SuppressWarnings("unchecked")
+                ResultContext<GameRecord> context = mock(ResultContext.class);
+                when(context.getResultObject()).thenReturn(copy);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(gameRecordMapper).selectAll(any());
+        userMapper = mock(UserMapper.class);
+        when(userMapper.selectByIds(anyList())).thenReturn(Collections.emptyList());
+        leaderboard = mock(Leaderboard.class);
+        when(leaderboard.isLoaded()).thenReturn(true);
+        gameResultWriter = new GameResultWriter();
+        ReflectionTestUtils.setField(gameResultWriter, "recordHistory", true);
+        //新的规则：赢一局 +10，输一局 -10
+        RatingEngine ratingEngine = (winner, loser) -> {
+            seen.add(winner);
+            seen.add(loser);
+            return new int[]{10, -10};
+        };
+
+        recalculator = new RatingRecalculator();
+        ReflectionTestUtils.setField(recalculator, "gameRecordMapper", gameRecordMapper);
+        ReflectionTestUtils.setField(recalculator, "userMapper", userMapper);
+        ReflectionTestUtils.setField(recalculator, "ratingEngine", ratingEngine);
+        ReflectionTestUtils.setField(recalculator, "leaderboard", leaderboard);
+        ReflectionTestUtils.setField(recalculator, "scoreFeed", mock(ScoreFeed.class));
+        ReflectionTestUtils.setField(recalculator, "gameResultWriter", gameResultWriter);
+        ReflectionTestUtils.setField(recalculator, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    public void replayStartsFromTheRecordedScore() {
+        //玩家 1 在历史开始之前已经下了 10 局，1100 分；玩家 2 是新玩家
+        history.add(record(1, 1, 2, 1100, 1000, 5, -5));
+        history.add(record(2, 2, 1, 995, 1105, 7, -7));
+        when(leaderboard.rating(1)).thenReturn(new Rating(1098, 12));
+        when(leaderboard.rating(2)).thenReturn(new Rating(1002, 2));
+
+        RatingRecalculator.Summary summary = recalculator.recalculate(true);
+        assertEquals(2, summary.getGames());
+        assertEquals(0, summary.getIncompletePlayers());
+        assertTrue(summary.isApplied());
+        //历史开始之前的分数和局数原样保留
+        assertEquals(1100, seen.get(0).getScore());
+        assertEquals(10, seen.get(0).getGames());
+        assertEquals(1000, seen.get(1).getScore());
+        assertEquals(0, seen.get(1).getGames());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> users = ArgumentCaptor.forClass(List.class);
+        verify(userMapper).batchSetScore(users.capture());
+        assertEquals(2, users.getValue().size());
+        for (User user : users.getValue()) {
+            assertEquals(user.getUserId() == 1 ? 1100 : 1000, user.getScore());
+        }
+        //历史也改成了新规则下的结果，下次重算还接得上
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<GameRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(gameRecordMapper).batchUpdateRatings(records.capture());
+        assertEquals(2, records.getValue().size());
+        GameRecord second = records.getValue().get(1);
+        assertEquals(990, second.getWinScoreBefore());
+        assertEquals(1110, second.getLoseScoreBefore());
+        assertEquals(10, second.getWinDelta());
+        assertEquals(-10, second.getLoseDelta());
+    }
+
+    @Test
+    public void missingGameRefusesToApply() {
+        //第一局之后玩家 1 应该是 1105，第二局记的却是 1120：中间有一局没有写进历史
+        history.add(record(1, 1, 2, 1100, 1000, 5, -5));
+        history.add(record(2, 2, 1, 995, 1120, 7, -7));
+        when(leaderboard.rating(1)).thenReturn(new Rating(1113, 13));
+        when(leaderboard.rating(2)).thenReturn(new Rating(1002, 2));
+
+        RatingRecalculator.Summary summary = recalculator.recalculate(true);
+        assertEquals(1, summary.getIncompletePlayers());
+        assertFalse(summary.isApplied());
+        verify(userMapper, never()).batchSetScore(anyList());
+        verify(gameRecordMapper, never()).batchUpdateRatings(anyList());
+    }
+
+    @Test
+    public void gamesAfterTheHistoryRefuseToApply() {
+        //历史之后玩家 1 又下了一局 (分数对不上)，之后的对局没有进历史
+        history.add(record(1, 1, 2, 1100, 1000, 5, -5));
+        when(leaderboard.rating(1)).thenReturn(new Rating(1112, 12));
+        when(leaderboard.rating(2)).thenReturn(new Rating(995, 1));
+
+        assertEquals(1, recalculator.recalculate(false).getIncompletePlayers());
+        assertFalse(recalculator.recalculate(true).isApplied());
+        verify(userMapper, never()).batchSetScore(anyList());
+    }
+
+    @Test
+    public void historyDisabledRefusesToApply() {
+        history.add(record(1, 1, 2, 1000, 1000, 5, -5));
+        when(leaderboard.rating(1)).thenReturn(new Rating(1005, 1));
+        when(leaderboard.rating(2)).thenReturn(new Rating(995, 1));
+        ReflectionTestUtils.setField(gameResultWriter, "recordHistory", false);
+
+        RatingRecalculator.Summary summary = recalculator.recalculate(true);
+        assertEquals(0, summary.getIncompletePlayers());
+        assertEquals(2, summary.getChangedPlayers());
+        assertFalse(summary.isApplied());
+        verify(userMapper, never()).batchSetScore(anyList());
+    }
+
+    private static GameRecord record(long id, int winUserId, int loseUserId,
+                                     int winScoreBefore, int loseScoreBefore, int winDelta, int loseDelta) {
+        GameRecord record = new GameRecord();
+        record.setId(id);
+        record.setWinUserId(winUserId);
+        record.setLoseUserId(loseUserId);
+        record.setWinScoreBefore(winScoreBefore);
+        record.setLoseScoreBefore(loseScoreBefore);
+        record.setWinDelta(winDelta);
+        record.setLoseDelta(loseDelta);
+        return record;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.java_gobang.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//对局记录的编码：varint、整条记录的往返和校验和
+public class ReplayCodecTest {
+    private static final long ROOM_ID = 1789012345678L << 10;
+
+    @Test
+    public void varintRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 51, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 5, 8, 9, 10, 10};
+        for (int i = 0; i < values.length; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            ReplayCodec.putVarint(buffer, values[i]);
+            assertEquals(sizes[i], buffer.position(), "varint 长度：" + values[i]);
+            assertEquals(sizes[i], ReplayCodec.varintSize(values[i]));
+            buffer.flip();
+            assertEquals(values[i], ReplayCodec.getVarint(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    public void varintTooLongIsRejected() {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> ReplayCodec.getVarint(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void recordRoundTrip() {
+        //下满整个棋盘，电脑玩家的 userId 是负数
+        MoveLog log = fullBoard(1000);
+        byte[] record = ReplayCodec.encode(ROOM_ID, 7, -1, 7, -1, log);
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int length = (int) ReplayCodec.getVarint(buffer);
+        int bodyOffset = buffer.position();
+        assertEquals(record.length, bodyOffset + length + ReplayCodec.CRC_LENGTH);
+        assertTrue(ReplayCodec.checksumMatches(buffer, bodyOffset, length));
+        assertEquals(ROOM_ID, ReplayCodec.roomIdOf(buffer, bodyOffset));
+
+        buffer.limit(bodyOffset + length);
+        Replay replay = ReplayCodec.decode(buffer.slice());
+        assertEquals(ROOM_ID, replay.getRoomId());
+        assertEquals(7, replay.getUser1());
+        assertEquals(-1, replay.getUser2());
+        assertEquals(7, replay.getWhiteUser());
+        assertEquals(-1, replay.getWinner());
+        assertEquals(1000, replay.getStartTime());
+        assertEquals(MoveLog.MAX_MOVES, replay.getMoves().size());
+        long time = 0;
+        for (int i = 0; i < MoveLog.MAX_MOVES; i++) {
+            Replay.Move move = replay.getMoves().get(i);
+            time += (i % 7) * 100;
+            assertEquals(i / Board.MAX_COL, move.getRow());
+            assertEquals(i % Board.MAX_COL, move.getCol());
+            assertEquals(i % 2 == 0 ? 7 : -1, move.getUserId());
+            assertEquals(time, move.getTime());
+        }
+        //和观战快照用的展开结果一致
+        assertEquals(log.toMoves(7, -1).size(), replay.getMoves().size());
+    }
+
+    @Test
+    public void emptyGameRoundTrip() {
+        byte[] record = ReplayCodec.encode(1, 2, 3, 3, 0, new MoveLog(0));
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int length = (int) ReplayCodec.getVarint(buffer);
+        buffer.limit(buffer.position() + length);
+        Replay replay = ReplayCodec.decode(buffer.slice());
+        assertEquals(1, replay.getRoomId());
+        assertTrue(replay.getMoves().isEmpty());
+    }
+
+    @Test
+    public void corruptedRecordIsDetected() {
+        byte[] record = ReplayCodec.encode(ROOM_ID, 7, 8, 8, 7, fullBoard(0));
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int length = (int) ReplayCodec.getVarint(buffer);
+        int bodyOffset = buffer.position();
+        for (int offset : new int[]{bodyOffset, bodyOffset + length / 2, record.length - 1}) {
+            byte[] copy = record.clone();
+            copy[offset] ^= 0x10;
+            assertFalse(ReplayCodec.checksumMatches(ByteBuffer.wrap(copy), bodyOffset, length), "offset " + offset);
+        }
+        assertArrayEquals(record, ReplayCodec.encode(ROOM_ID, 7, 8, 8, 7, fullBoard(0)));
+    }
+
+    @Test
+    public void unknownVersionIsRejected() {
+        byte[] record = ReplayCodec.encode(ROOM_ID, 7, 8, 8, 7, new MoveLog(0));
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int length = (int) ReplayCodec.getVarint(buffer);
+        int bodyOffset = buffer.position();
+        record[bodyOffset] = ReplayCodec.VERSION + 1;
+        assertEquals(0, ReplayCodec.roomIdOf(buffer, bodyOffset));
+        buffer.limit(bodyOffset + length);
+        ByteBuffer body = buffer.slice();
+        assertThrows(IllegalArgumentException.class, () -> ReplayCodec.decode(body));
+    }
+
+    //按顺序下满棋盘，两步之间隔 (i % 7) * 100ms
+    static MoveLog fullBoard(long startMillis) {
+        MoveLog log = new MoveLog(startMillis);
+        long now = startMillis;
+        for (int i = 0; i < MoveLog.MAX_MOVES; i++) {
+            now += (i % 7) * 100;
+            log.record(i / Board.MAX_COL, i % Board.MAX_COL, i % 2 == 0 ? 1 : 2, now);
+        }
+        return log;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.java_gobang.game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//段文件的写入、重启之后的恢复 (包括上次没写完的记录)、换段和删除最老的段
+public class ReplayStoreTest {
+    private static final long TIMEOUT_MS = 10000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void recordsSurviveRestart() throws Exception {
+        ReplayStore store = start(0);
+        int length = 0;
+        for (long roomId = 1; roomId <= 3; roomId++) {
+            byte[] record = record(roomId);
+            length += record.length;
+            store.submit(record);
+        }
+        await(() -> store.size() == 3);
+        assertEquals(2, store.read("2").getRoomId());
+        assertNull(store.read("4"));
+        assertNull(store.read("abc"));
+        store.stop();
+
+        ReplayStore restarted = start(0);
+        assertEquals(3, restarted.size());
+        for (long roomId = 1; roomId <= 3; roomId++) {
+            Replay replay = restarted.read(Long.toString(roomId));
+            assertNotNull(replay);
+            assertEquals(roomId, replay.getRoomId());
+            assertEquals(MoveLog.MAX_MOVES, replay.getMoves().size());
+        }
+        //接着上次的位置往后写
+        assertEquals(length, ReflectionTestUtils.getField(restarted, "writePosition"));
+        restarted.stop();
+    }
+
+    @Test
+    public void truncatedTailIsDiscardedAndZeroed() throws Exception {
+        ReplayStore store = start(0);
+        int length = 0;
+        for (long roomId = 1; roomId <= 2; roomId++) {
+            byte[] record = record(roomId);
+            length += record.length;
+            store.submit(record);
+        }
+        await(() -> store.size() == 2);
+        store.stop();
+
+        //模拟写到一半宕机：第三条记录只写进去了前一半
+        byte[] partial = record(3);
+        File segment = dir.resolve("replay-000001.seg").toFile();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(length);
+            file.write(partial, 0, partial.length / 2);
+        }
+
+        ReplayStore restarted = start(0);
+        assertEquals(2, restarted.size());
+        assertNull(restarted.read("3"));
+        assertEquals(length, ReflectionTestUtils.getField(restarted, "writePosition"));
+        //写了一半的内容被清零 (映射的内存和文件是同一份页缓存)，下一条记录从这里开始写
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+            file.seek(length);
+            for (int i = 0; i < partial.length; i++) {
+                assertEquals(0, file.read(), "offset " + (length + i));
+            }
+        }
+        restarted.submit(record(4));
+        await(() -> restarted.read("4") != null);
+        restarted.stop();
+
+        ReplayStore again = start(0);
+        assertEquals(3, again.size());
+        assertEquals(4, again.read("4").getRoomId());
+        again.stop();
+    }
+
+    @Test
+    public void corruptedRecordEndsTheSegment() throws Exception {
+        ReplayStore store = start(0);
+        byte[] first = record(1);
+        store.submit(first);
+        store.submit(record(2));
+        await(() -> store.size() == 2);
+        store.stop();
+
+        //第二条记录中间的一个字节坏了，校验和对不上，它 (和它后面的内容) 都不要了
+        File segment = dir.resolve("replay-000001.seg").toFile();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(first.length + 20);
+            int b = file.read();
+            file.seek(first.length + 20);
+            file.write(b ^ 0x01);
+        }
+        ReplayStore restarted = start(0);
+        assertEquals(1, restarted.size());
+        assertNotNull(restarted.read("1"));
+        assertNull(restarted.read("2"));
+        assertEquals(first.length, ReflectionTestUtils.getField(restarted, "writePosition"));
+        restarted.stop();
+    }
+
+    @Test
+    public void rollsSegmentsAndDropsTheOldest() throws Exception {
+        ReplayStore store = start(2);
+        byte[] sample = record(1);
+        //够写满两个多段 (每段 1MB)
+        int records = 2 * 1024 * 1024 / sample.length + 1000;
+        for (long roomId = 1; roomId <= records; roomId++) {
+            store.submit(record(roomId));
+        }
+        await(() -> store.read(Long.toString(records)) != null);
+        assertEquals(3, (int) ReflectionTestUtils.getField(store, "currentSegment"));
+        //第一个段被删掉了，里面的对局找不到了；第二个段开始的都还在
+        assertNull(store.read("1"));
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(".seg"));
+        assertNotNull(files);
+        assertEquals(2, files.length);
+        assertTrue(store.size() < records);
+        assertEquals(records - store.size() + 1, firstAvailable(store, records));
+        store.stop();
+
+        //重启之后还是这两个段
+        ReplayStore restarted = start(2);
+        assertEquals(store.size(), restarted.size());
+        assertNotNull(restarted.read(Long.toString(records)));
+        restarted.stop();
+    }
+
+    private static long firstAvailable(ReplayStore store, int records) {
+        for (long roomId = 1; roomId <= records; roomId++) {
+            if (store.read(Long.toString(roomId)) != null) {
+                return roomId;
+            }
+        }
+        return -1;
+    }
+
+    private ReplayStore start(int maxSegments) throws IOException {
+        ReplayStore store = new ReplayStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "dir", dir.toString());
+        ReflectionTestUtils.setField(store, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(store, "maxSegments", maxSegments);
+        ReflectionTestUtils.setField(store, "queueCapacity", 100000);
+        ReflectionTestUtils.setField(store, "flushIntervalMs", 10L);
+        store.start();
+        return store;
+    }
+
+    private static byte[] record(long roomId) {
+        return ReplayCodec.encode(roomId, 7, 8, 8, 7, ReplayCodecTest.fullBoard(1000));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
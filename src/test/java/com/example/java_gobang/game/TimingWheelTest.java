@@ -0,0 +1,142 @@
+package com.example.java_gobang.game;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//一圈只有 4 格、每格 10ms 的时间轮，几百毫秒的任务就要转好几圈
+public class TimingWheelTest {
+    private static final long TICK_MS = 10;
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new TimingWheel();
+        ReflectionTestUtils.setField(wheel, "tickMs", TICK_MS);
+        //向上取整到 4
+        ReflectionTestUtils.setField(wheel, "wheelSize", 3);
+        wheel.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        wheel.stop();
+    }
+
+    @Test
+    public void wheelSizeIsRoundedUpToPowerOfTwo() {
+        assertEquals(4, ((Object[]) ReflectionTestUtils.getField(wheel, "wheel")).length);
+    }
+
+    @Test
+    public void tasksFireAfterTheirDelayAcrossRounds() throws InterruptedException {
+        long[] delays = {250, 15, 120, 0, 40};
+        CountDownLatch done = new CountDownLatch(delays.length);
+        List<Long> order = Collections.synchronizedList(new ArrayList<>());
+        long[] elapsed = new long[delays.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            wheel.schedule(() -> {
+                elapsed[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                order.add(delays[index]);
+                done.countDown();
+            }, delays[i], TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < delays.length; i++) {
+            //不会提前，最多晚一两格 (再留出调度的余量)
+            assertTrue(elapsed[i] >= delays[i], delays[i] + "ms 的任务在 " + elapsed[i] + "ms 执行");
+            assertTrue(elapsed[i] < delays[i] + 500, delays[i] + "ms 的任务在 " + elapsed[i] + "ms 执行");
+        }
+        assertEquals(Arrays.asList(0L, 15L, 40L, 120L, 250L), order);
+        assertEquals(0, wheel.getScheduled());
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 100, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.getScheduled());
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.getScheduled());
+        Thread.sleep(200);
+        assertFalse(ran.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void cancellingFromTheMiddleOfABucketKeepsTheOthers() throws InterruptedException {
+        //三个任务挂在同一格的链表上，等它们挂上去之后取消中间的那个，再取消头上的那个
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicLong ran = new AtomicLong();
+        TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[4];
+        for (int i = 0; i < timeouts.length; i++) {
+            int bit = 1 << i;
+            timeouts[i] = wheel.schedule(() -> {
+                ran.accumulateAndGet(bit, (a, b) -> a | b);
+                done.countDown();
+            }, 150, TimeUnit.MILLISECONDS);
+        }
+        Thread.sleep(5 * TICK_MS);
+        assertTrue(timeouts[1].cancel());
+        assertTrue(timeouts[0].cancel());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(5 * TICK_MS);
+        assertEquals(0b1100, ran.get());
+        assertTrue(timeouts[2].isExpired());
+        //已经执行过的任务取消不了
+        assertFalse(timeouts[3].cancel());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("测试");
+        }, 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(later::countDown, 60, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void tasksScheduledFromTheWheelThreadRun() throws InterruptedException {
+        //看门狗之类的任务会在到期时把自己重新挂上去
+        int rounds = 3;
+        CountDownLatch done = new CountDownLatch(rounds);
+        long[] fired = new long[rounds];
+        AtomicInteger count = new AtomicInteger();
+        Runnable[] task = new Runnable[1];
+        task[0] = () -> {
+            int index = count.getAndIncrement();
+            fired[index] = System.nanoTime();
+            done.countDown();
+            if (index + 1 < rounds) {
+                wheel.schedule(task[0], 30, TimeUnit.MILLISECONDS);
+            }
+        };
+        wheel.schedule(task[0], 30, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < rounds; i++) {
+            assertTrue(fired[i] - fired[i - 1] >= TimeUnit.MILLISECONDS.toNanos(30 - TICK_MS));
+        }
+    }
+}